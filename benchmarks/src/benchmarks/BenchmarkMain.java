@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every persistence benchmark with the gc profiler and keeps the results as JSON, to
+ * compare a change against: "benchmarks/results.json" unless another file is given.
+ * "quick" as the first argument runs a small store (10 000 orders) with shorter iterations;
+ * it checks that everything runs, it is not a baseline.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        boolean quick = args.length > 0 && args[0].equals("quick");
+        int next = quick ? 1 : 0;
+        String results = args.length > next ? args[next] : "benchmarks/results.json";
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include("benchmarks\\..*Benchmark|persistence\\.fileio\\.ParseBenchmark")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results);
+        if (quick) {
+            options.param("drinks", "100")
+                    .param("orders", "10000")
+                    .param("employees", "30")
+                    .param("facilities", "2")
+                    .param("shifts", "200")
+                    .warmupIterations(1)
+                    .measurementIterations(2)
+                    .jvmArgsAppend("-Xmx2g");
+        }
+        new Runner(options.build()).run();
+    }
+}
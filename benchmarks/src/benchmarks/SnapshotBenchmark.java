@@ -0,0 +1,152 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import persistence.JsonSerializer;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotIndex;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading whole snapshots of the generated store. Next to the time per
+ * operation JMH reports objects and bytes per second (the Processed counters); run with
+ * the gc profiler (BenchmarkMain does) for the allocation rate. The snapshot size is
+ * printed when the store is built.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms24g", "-Xmx24g"})
+public class SnapshotBenchmark {
+
+    /** What one operation went through, reported by JMH as rates. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Processed {
+        public long objects;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            objects = 0;
+            bytes = 0;
+        }
+    }
+
+    /** Deletes what a write benchmark produced, outside of the measured time. */
+    @State(Scope.Thread)
+    public static class Written {
+        Path file;
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            if (file == null) return;
+            Files.deleteIfExists(SnapshotIndex.pathFor(file));
+            Files.deleteIfExists(file);
+            file = null;
+        }
+    }
+
+    /** Empties the registries before each read, as a process that starts from a snapshot has them. */
+    @State(Scope.Thread)
+    public static class Emptied {
+        @Setup(Level.Invocation)
+        public void clear() {
+            Store.clear();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class OneClass {
+        @Param({"models.Drink", "models.Employee", "models.Shift", "models.Order"})
+        public String className;
+
+        Class<?> clazz;
+        SnapshotIndex.Block block;
+
+        @Setup(Level.Trial)
+        public void resolve(StoreState store) throws IOException, ClassNotFoundException {
+            clazz = Class.forName(className);
+            block = SnapshotIndex.read(store.snapshot).block(className);
+        }
+    }
+
+    /** Counts the chars it is given and drops them. */
+    private static final class CountingWriter extends Writer {
+        long chars;
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            chars += len;
+        }
+
+        @Override
+        public void write(String s, int off, int len) {
+            chars += len;
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    @Benchmark
+    public long serializeObjects(StoreState store, Processed processed) throws IOException {
+        CountingWriter out = new CountingWriter();
+        JsonSerializer.serializeObjects(Store.CLASSES, out);
+        processed.objects += store.objects;
+        processed.bytes += out.chars;
+        return out.chars;
+    }
+
+    /** The old way through one String: serializeObjects() and FileOut.writeJson. */
+    @Benchmark
+    public Path writeJson(StoreState store, Processed processed, Written written) throws IOException {
+        written.file = FileOut.writeJson(store.directory, "written", JsonSerializer.serializeObjects(Store.CLASSES));
+        processed.objects += store.objects;
+        processed.bytes += Files.size(written.file);
+        return written.file;
+    }
+
+    @Benchmark
+    public Path writeSnapshot(StoreState store, Processed processed, Written written) throws IOException {
+        written.file = FileOut.writeSnapshot(store.directory, "written", Store.CLASSES);
+        processed.objects += store.objects;
+        processed.bytes += Files.size(written.file);
+        return written.file;
+    }
+
+    @Benchmark
+    public int readJson(StoreState store, Emptied emptied, Processed processed) throws IOException {
+        FileIn.readJson(store.snapshot, Store.CLASSES);
+        processed.objects += store.objects;
+        processed.bytes += Files.size(store.snapshot);
+        return models.Order.orders.size();
+    }
+
+    @Benchmark
+    public int readJsonParallel(StoreState store, Emptied emptied, Processed processed) throws IOException {
+        FileIn.readJsonParallel(store.snapshot, Store.CLASSES);
+        processed.objects += store.objects;
+        processed.bytes += Files.size(store.snapshot);
+        return models.Order.orders.size();
+    }
+
+    /** Restores one class through the snapshot's index, leaving the other blocks unread. */
+    @Benchmark
+    public long readOneClass(StoreState store, OneClass one, Emptied emptied, Processed processed) throws IOException {
+        FileIn.readClasses(store.snapshot, List.of(one.clazz));
+        processed.objects += one.block.objects();
+        processed.bytes += one.block.end() - one.block.start();
+        return one.block.objects();
+    }
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import models.*;
+import models.aspects.ColdDrink;
+import models.aspects.HoneySweetened;
+import models.aspects.HotDrink;
+import models.aspects.SugarSweetened;
+import models.aspects.SweetenerAspect;
+import models.aspects.TemperatureAspect;
+import models.utils.Address;
+import models.utils.Drink_Size;
+import models.utils.OrderQualifier;
+import persistence.ObjectIds;
+import persistence.SerializerPlan;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds a store through the models' own constructors and association methods, the way
+ * the application fills it, with the repetition real data has: a handful of allergens,
+ * fruits, toppings, cities and certification names shared by thousands of objects.
+ * The same sizes and seed always give the same store.
+ */
+public final class Store {
+
+    /** The classes the benchmarks write and read, in an order FileIn can restore. */
+    public static final List<Class<?>> CLASSES = List.of(
+            Employee.class, Certification.class, Drink.class, Facility.class, Stock.class, Shop.class,
+            Shift.class, Order.class, Order_Drink.class);
+
+    public record Sizes(int drinks, int orders, int drinksPerOrder, int employees, int facilities, int shifts) {
+        /** The store the backlog asked to measure: 10k drinks, 5M orders, 15M order drinks. */
+        public static final Sizes PRODUCTION = new Sizes(10_000, 5_000_000, 3, 3_000, 200, 20_000);
+
+        public long objects() {
+            return (long) drinks + orders + (long) orders * drinksPerOrder + employees * 2L + facilities * 3L + shifts;
+        }
+    }
+
+    private static final String[] ALLERGENS = {"none", "nuts", "milk", "gluten", "soy", "milk, nuts"};
+    private static final String[] FRUITS = {"apple", "banana", "mango", "strawberry", "orange", "kiwi", "lime"};
+    private static final String[] TOPPINGS = {"cream", "cinnamon", "cocoa", "caramel", "sprinkles"};
+    private static final String[] CITIES = {"Warszawa", "Kraków", "Gdańsk", "Wrocław", "Poznań", "Łódź"};
+    private static final String[] STREETS = {"Marszałkowska", "Długa", "Piotrkowska", "Świętojańska", "Floriańska"};
+    private static final String[] NAMES = {"Anna", "Jan", "Maria", "Piotr", "Katarzyna", "Tomasz", "Zofia"};
+    private static final String[] SURNAMES = {"Nowak", "Kowalski", "Wiśniewska", "Wójcik", "Kamiński"};
+    private static final String[] CERTIFICATES = {"Cash Handling", "Food Safety", "Barista I", "Barista II", "First Aid"};
+    private static final Drink_Size[] SIZES = Drink_Size.values();
+    private static final TemperatureAspect HOT = new HotDrink();
+    private static final TemperatureAspect COLD = new ColdDrink();
+    private static final Set<SweetenerAspect> SUGAR = Set.of(new SugarSweetened());
+    private static final Set<SweetenerAspect> HONEY = Set.of(new HoneySweetened());
+
+    private Store() {}
+
+    /** Empties every registry the benchmarks touch and forgets all object ids. */
+    public static void clear() {
+        for (Class<?> clazz : CLASSES) {
+            for (SerializerPlan.Property registry : SerializerPlan.of(clazz).registries()) {
+                if (registry.getStatic() instanceof List<?> list) list.clear();
+            }
+        }
+        OrderQualifier.orderQualifiers.clear();
+        ObjectIds.clear();
+    }
+
+    /** Clears the registries and fills them with a store of the given sizes. */
+    public static void build(Sizes sizes, long seed) {
+        clear();
+        Random random = new Random(seed);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 6, 0);
+
+        Employee[] employees = new Employee[sizes.employees()];
+        for (int i = 0; i < employees.length; i++) {
+            Employee e = new Employee(NAMES[i % NAMES.length], SURNAMES[i % SURNAMES.length],
+                    "employee" + i + "@shop.example", String.format("9901%07d", i), null);
+            if (i % 3 == 0) e.becomeCashier(i % 2 == 0, "CASH-" + i, 1 + random.nextInt(5));
+            new Certification(e, "CERT-" + i, CERTIFICATES[i % CERTIFICATES.length], start.minusDays(1 + random.nextInt(700)));
+            employees[i] = e;
+        }
+
+        Drink[] drinks = new Drink[sizes.drinks()];
+        for (int i = 0; i < drinks.length; i++) {
+            Drink d = new Drink("Drink " + i, 5 + random.nextInt(20), ALLERGENS[random.nextInt(ALLERGENS.length)]);
+            if (i % 4 == 0) d.addFruits(List.of(FRUITS[i % FRUITS.length], FRUITS[(i + 3) % FRUITS.length]), i % 8 == 0);
+            drinks[i] = d;
+        }
+
+        Facility[] facilities = new Facility[sizes.facilities()];
+        Shop[] shops = new Shop[facilities.length];
+        for (int i = 0; i < shops.length; i++) {
+            Facility f = facilities[i] = new Facility(new Address(CITIES[i % CITIES.length], STREETS[random.nextInt(STREETS.length)],
+                    String.valueOf(1 + random.nextInt(120)), 10_000 + random.nextInt(89_999)));
+            shops[i] = new Shop(f, start);
+        }
+
+        for (int i = 0; i < sizes.shifts(); i++) {
+            LocalDateTime begin = start.plusHours(8L * i);
+            Shift s = new Shift(begin, begin.plusHours(8));
+            if (facilities.length > 0) s.addFacility(facilities[i % facilities.length]);
+            for (int k = 0; k < 3 && employees.length > 0; k++) s.addEmployee(employees[random.nextInt(employees.length)]);
+        }
+
+        int cashiers = (employees.length + 2) / 3;
+        for (int i = 0; i < sizes.orders(); i++) {
+            Order o = new Order(i + 1L, start.plusSeconds(i), random.nextInt(4));
+            if (cashiers > 0) {
+                employees[3 * (i % cashiers)].addOrder(o);
+                if (shops.length > 0) o.addShop(shops[i % shops.length]); // a shop files orders by cashier
+            }
+            for (int k = 0; k < sizes.drinksPerOrder() && drinks.length > 0; k++) {
+                List<String> toppings = random.nextInt(3) == 0 ? List.of() : List.of(TOPPINGS[random.nextInt(TOPPINGS.length)]);
+                Set<SweetenerAspect> sweeteners = switch (random.nextInt(3)) {
+                    case 0 -> SUGAR;
+                    case 1 -> HONEY;
+                    default -> Set.of();
+                };
+                o.addDrink(new Order_Drink(o, drinks[random.nextInt(drinks.length)], random.nextBoolean() ? HOT : COLD,
+                        sweeteners, SIZES[random.nextInt(SIZES.length)], toppings));
+            }
+        }
+    }
+}
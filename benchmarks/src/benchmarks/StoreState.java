@@ -0,0 +1,64 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import persistence.fileio.FileOut;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * The generated store and a JSON snapshot of it, built once per fork. The defaults are the
+ * production sizes; pass smaller ones with -p (or run BenchmarkMain quick) for a fast check.
+ */
+@State(Scope.Benchmark)
+public class StoreState {
+
+    @Param("10000")
+    public int drinks;
+
+    @Param("5000000")
+    public int orders;
+
+    @Param("3")
+    public int drinksPerOrder;
+
+    @Param("3000")
+    public int employees;
+
+    @Param("200")
+    public int facilities;
+
+    @Param("20000")
+    public int shifts;
+
+    public Path directory;
+    /** Snapshot of the store as FileOut.writeSnapshot writes it. */
+    public Path snapshot;
+    public long objects;
+
+    @Setup(Level.Trial)
+    public void build() throws IOException {
+        Store.Sizes sizes = new Store.Sizes(drinks, orders, drinksPerOrder, employees, facilities, shifts);
+        Store.build(sizes, 42);
+        objects = sizes.objects();
+        directory = Files.createTempDirectory("persistence-bench");
+        snapshot = FileOut.writeSnapshot(directory, "store", Store.CLASSES);
+        System.out.printf("%nstore: %,d objects, snapshot %,d bytes%n", objects, Files.size(snapshot));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Store.clear();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package persistence.fileio;
+
+import benchmarks.StoreState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON reader alone, without building any model: tokenizing the whole snapshot, and
+ * parsing every object into the tree FileIn falls back to for classes without a @JsonCtor.
+ * Lives in persistence.fileio because JsonReader is package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms24g", "-Xmx24g"})
+public class ParseBenchmark {
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Parsed {
+        public long bytes;
+        public long objects;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            objects = 0;
+        }
+    }
+
+    @Benchmark
+    public long skipSnapshot(StoreState store, Parsed parsed) throws IOException {
+        try (JsonReader reader = JsonReader.openMapped(store.snapshot)) {
+            reader.skipValue();
+            parsed.bytes += reader.position();
+            return reader.position();
+        }
+    }
+
+    @Benchmark
+    public void parseObjects(StoreState store, Parsed parsed, Blackhole blackhole) throws IOException {
+        try (JsonReader reader = JsonReader.openMapped(store.snapshot)) {
+            reader.useStrings(new StringTable());
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("models")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (!reader.nextName().equals("objects")) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            blackhole.consume(reader.readValue());
+                            parsed.objects++;
+                        }
+                        reader.endArray();
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        parsed.bytes += Files.size(store.snapshot);
+    }
+}
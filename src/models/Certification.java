@@ -1,5 +1,6 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
@@ -44,12 +45,18 @@ public class Certification implements Validatable {
         }
 
         this.employee.addCertification(this);
-        certifications.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            certifications.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     public void removeConnection() {
         if (this.employee != null) {
-            certifications.remove(this);
+            synchronized (ChangeTracker.REGISTRY_LOCK) {
+                certifications.remove(this);
+            }
+            ChangeTracker.removed(this);
             this.employee = null;
         }
     }
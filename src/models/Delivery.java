@@ -2,9 +2,13 @@ package models;
 
 import models.utils.EmployeeType;
 import models.utils.Status;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
+import persistence.JsonIgnore;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
+import persistence.journal.Journal;
+import persistence.journal.JournalRecord;
 import validation.*;
 
 import java.time.LocalDateTime;
@@ -18,6 +22,10 @@ public class Delivery implements Validatable {
     @ObjectList
     public static List<Delivery> deliveries = new ArrayList<>();
 
+    @JsonIgnore
+    public static final Multiplicity<Delivery> LOADERS = Multiplicity.of(
+            "Delivery can have at most 3 loaders", Delivery.class, d -> d.loaders.size(), 0, 3);
+
     @NotBlank
     @NotFuture
     @NotNull
@@ -41,6 +49,7 @@ public class Delivery implements Validatable {
 
     public void addDrink(Drink drink) {
         if (drink != null && !drinks.contains(drink)) {
+            ChangeTracker.touch(this);
             drinks.add(drink);
             drink.addDelivery(this); // sync inverse
         }
@@ -48,6 +57,7 @@ public class Delivery implements Validatable {
 
     public void removeDrink(Drink drink) {
         if (drink != null && drinks.contains(drink)) {
+            ChangeTracker.touch(this);
             drinks.remove(drink);
             drink.removeDelivery(this); // sync inverse
         }
@@ -79,7 +89,11 @@ public class Delivery implements Validatable {
         if (sourceWarehouse != null)
             sourceWarehouse.addDelivery(this);
 
-        deliveries.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            deliveries.add(this);
+        }
+        ChangeTracker.created(this);
+        if (Journal.isActive()) Journal.log(JournalRecord.deliveryCreated(this, capacityKg));
     }
 
     public Warehouse getSourceWarehouse() {
@@ -102,6 +116,14 @@ public class Delivery implements Validatable {
         return status;
     }
 
+    public void setStatus(Status status) {
+        if (status == null) throw new ValidationException("Invalid data");
+        if (this.status == status) return;
+        ChangeTracker.touch(this);
+        this.status = status;
+        if (Journal.isActive()) Journal.log(JournalRecord.deliveryStatus(this, status));
+    }
+
     public boolean addLoader(Employee loader) {
         if(loader ==  null) throw new ValidationException("Invalid data");
 
@@ -111,8 +133,10 @@ public class Delivery implements Validatable {
         }
 
         if(loaders.contains(loader)) return true;
-        if(loaders.size() >=3) throw new ValidationException("Too many loaders");
+        if(!LOADERS.allows(loaders.size() + 1)) throw new ValidationException("Too many loaders");
+        ChangeTracker.touch(this);
         loaders.add(loader);
+        LOADERS.update(this);
         loader.addDelivery(this);
         return true;
     }
@@ -120,7 +144,9 @@ public class Delivery implements Validatable {
     public void removeLoader(Employee loader) {
         if(loader ==  null) throw new ValidationException("Invalid data");
         if(!loaders.contains(loader)) return;
+        ChangeTracker.touch(this);
         loaders.remove(loader);
+        LOADERS.update(this);
         loader.removeDelivery(this);
     }
 
@@ -128,10 +154,12 @@ public class Delivery implements Validatable {
         if(oldLoader ==  null) throw new ValidationException("Invalid data");
         if(newLoader ==  null) throw new ValidationException("Invalid data");
         if(loaders.contains(oldLoader)) {
+            ChangeTracker.touch(this);
             loaders.remove(oldLoader);
             oldLoader.removeDelivery(this);
-            if(loaders.size() >=3) throw new ValidationException("Too many loaders");
+            if(!LOADERS.allows(loaders.size() + 1)) throw new ValidationException("Too many loaders");
             loaders.add(newLoader);
+            LOADERS.update(this);
             newLoader.addDelivery(this);
         }
     }
@@ -6,9 +6,12 @@ import models.utils.DrinkType;
 import models.utils.Drink_Size;
 import models.utils.TypeOfMilk;
 import models.utils.TypeOfTea;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
+import persistence.journal.Journal;
+import persistence.journal.JournalRecord;
 import validation.*;
 
 import java.util.*;
@@ -73,7 +76,11 @@ public class Drink implements Validatable {
             throw new ValidationException(e.getMessage());
         }
 
-        drinks.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            drinks.add(this);
+        }
+        ChangeTracker.created(this);
+        if (Journal.isActive()) Journal.log(JournalRecord.drinkCreated(this));
     }
 
     // ---------------- Orders (association class) ----------------
@@ -116,12 +123,14 @@ public class Drink implements Validatable {
         }
 
         addOrder(od);
+        if (Journal.isActive()) Journal.log(JournalRecord.drinkAdded(order, this, temperature, safeSweeteners, size, safeToppings));
     }
 
     public void addOrder(Order_Drink od) {
         if (od == null) throw new ValidationException("Invalid data");
         if (orders.contains(od)) return;
 
+        ChangeTracker.touch(this);
         orders.add(od);
         od.getOrder().addDrink(od); // sync inverse
     }
@@ -159,6 +168,7 @@ public class Drink implements Validatable {
         if (od == null) throw new ValidationException("Invalid data");
         if (!orders.contains(od)) return;
 
+        ChangeTracker.touch(this);
         orders.remove(od);
         od.getOrder().removeDrink(od); // sync inverse
     }
@@ -168,6 +178,7 @@ public class Drink implements Validatable {
         if (newOd == null) throw new ValidationException("Invalid data");
         if (!orders.contains(oldOd)) return;
 
+        ChangeTracker.touch(this);
         orders.remove(oldOd);
         orders.add(newOd);
 
@@ -178,6 +189,7 @@ public class Drink implements Validatable {
 
     public void addDelivery(Delivery delivery) {
         if (delivery != null && !deliveries.contains(delivery)) {
+            ChangeTracker.touch(this);
             deliveries.add(delivery);
             delivery.addDrink(this);
         }
@@ -185,6 +197,7 @@ public class Drink implements Validatable {
 
     public void removeDelivery(Delivery delivery) {
         if (delivery != null && deliveries.contains(delivery)) {
+            ChangeTracker.touch(this);
             deliveries.remove(delivery);
             delivery.removeDrink(this);
         }
@@ -198,11 +211,13 @@ public class Drink implements Validatable {
     //Coffee
     public void addCoffee(int caffeineLevel){
         if(caffeineLevel < 0 || caffeineLevel > 10) throw new ValidationException("Invalid data");
+        ChangeTracker.touch(this);
         if(!this.drinkTypes.contains(DrinkType.COFFEE)) this.drinkTypes.add(DrinkType.COFFEE);
         this.caffeineLevel = caffeineLevel;
     }
 
     public void removeCoffee(){
+        ChangeTracker.touch(this);
         this.drinkTypes.remove(DrinkType.COFFEE);
         this.caffeineLevel = 0;
     }
@@ -210,11 +225,13 @@ public class Drink implements Validatable {
     //Tea
     public void addTea(TypeOfTea typeOfTea){
         if(typeOfTea == null) throw new ValidationException("Invalid data");
+        ChangeTracker.touch(this);
         if(!this.drinkTypes.contains(DrinkType.TEA))  this.drinkTypes.add(DrinkType.TEA);
         this.typeOfTea = typeOfTea;
     }
 
     public void removeTea(){
+        ChangeTracker.touch(this);
         this.drinkTypes.remove(DrinkType.TEA);
         this.typeOfTea = null;
     }
@@ -222,11 +239,13 @@ public class Drink implements Validatable {
     //Milk
     public void addMilk(TypeOfMilk milk){
         if(milk == null) throw new ValidationException("Invalid data");
+        ChangeTracker.touch(this);
         if(!this.drinkTypes.contains(DrinkType.MILK))  this.drinkTypes.add(DrinkType.MILK);
         this.typeOfMilk = milk;
     }
 
     public void removeMilk(){
+        ChangeTracker.touch(this);
         this.drinkTypes.remove(DrinkType.MILK);
         this.typeOfMilk = null;
     }
@@ -234,6 +253,7 @@ public class Drink implements Validatable {
     //Fruit
     public void addFruits(List<String> fruits, boolean pulp){
         if(fruits == null || fruits.isEmpty()) throw new ValidationException("Invalid data");
+        ChangeTracker.touch(this);
         if(!this.drinkTypes.contains(DrinkType.FRUIT))  this.drinkTypes.add(DrinkType.FRUIT);
         this.fruits = fruits;
         this.pulp = pulp;
@@ -241,6 +261,7 @@ public class Drink implements Validatable {
 
     public void addFruit(String fruit, boolean pulp){
         if(fruit == null || fruit.isEmpty()) throw new ValidationException("Invalid data");
+        ChangeTracker.touch(this);
         if(!this.drinkTypes.contains(DrinkType.FRUIT)) this.drinkTypes.add(DrinkType.FRUIT);
         if(this.fruits == null) this.fruits = new ArrayList<>();
         this.fruits.add(fruit);
@@ -249,6 +270,7 @@ public class Drink implements Validatable {
 
     public void removeFruit(String fruit){
         if(fruit == null || fruit.isEmpty()) throw new ValidationException("Invalid data");
+        ChangeTracker.touch(this);
         this.fruits.remove(fruit);
         if(this.fruits.isEmpty()){
             this.fruits = null;
@@ -258,16 +280,19 @@ public class Drink implements Validatable {
     }
 
     public void removeFruits(){
+        ChangeTracker.touch(this);
         this.drinkTypes.remove(DrinkType.FRUIT);
         this.fruits = null;
         this.pulp = false;
     }
 
     public void addPulp(){
+        ChangeTracker.touch(this);
         this.pulp = true;
     }
 
     public void removePulp(){
+        ChangeTracker.touch(this);
         this.pulp = false;
     }
 
@@ -276,6 +301,7 @@ public class Drink implements Validatable {
     }
 
     public void setDrinkTypes(List<DrinkType> drinkTypes) {
+        ChangeTracker.touch(this);
         this.drinkTypes = drinkTypes;
     }
 
@@ -284,6 +310,7 @@ public class Drink implements Validatable {
     }
 
     public void setName(String name) {
+        ChangeTracker.touch(this);
         this.name = name;
     }
 
@@ -292,6 +319,7 @@ public class Drink implements Validatable {
     }
 
     public void setBasePrice(double basePrice) {
+        ChangeTracker.touch(this);
         this.basePrice = basePrice;
     }
 
@@ -300,6 +328,7 @@ public class Drink implements Validatable {
     }
 
     public void setPersistentAllergens(String persistentAllergens) {
+        ChangeTracker.touch(this);
         this.persistentAllergens = persistentAllergens;
     }
 
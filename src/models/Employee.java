@@ -1,12 +1,17 @@
 package models;
 
 import models.utils.EmployeeType;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
+import persistence.JsonSerializable;
 import persistence.ObjectList;
+import persistence.journal.Journal;
+import persistence.journal.JournalRecord;
 import validation.*;
 
 import java.util.*;
 
+@JsonSerializable
 public class Employee extends Person {
 
     @ObjectList
@@ -64,14 +69,21 @@ public class Employee extends Person {
             throw new ValidationException("Either PESEL or passport must be provided");
 
         register();
+        if (Journal.isActive()) Journal.log(JournalRecord.employeeCreated(this, peselNumber, passportNumber));
     }
 
     private void register() {
-        if (!employees.contains(this)) employees.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            if (!employees.contains(this)) employees.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     private void unregister() {
-        employees.remove(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            employees.remove(this);
+        }
+        ChangeTracker.removed(this);
     }
 
     private void clearRoles() {
@@ -117,6 +129,7 @@ public class Employee extends Person {
     public void becomeLoader(double score) {
         if (score < 0) throw new ValidationException("Score cannot be negative");
 
+        ChangeTracker.touch(this);
         clearRoles();
 
         this.type = EmployeeType.LOADER;
@@ -128,6 +141,7 @@ public class Employee extends Person {
         if (score < 0) throw new ValidationException("Score cannot be negative");
         if (bonusPercent < 0) throw new ValidationException("Bonus cannot be negative");
 
+        ChangeTracker.touch(this);
         clearRoles();
 
         this.type = EmployeeType.MANAGER;
@@ -141,6 +155,7 @@ public class Employee extends Person {
         if (cashierId == null || cashierId.isBlank()) throw new ValidationException("Cashier ID required");
         if (score < 0) throw new ValidationException("Score cannot be negative");
 
+        ChangeTracker.touch(this);
         clearRoles(); 
 
         this.type = EmployeeType.CASHIER;
@@ -148,6 +163,7 @@ public class Employee extends Person {
         this.cashierId = cashierId;
         this.cashierEvaluationScore = score;
         this.orders = new ArrayList<>();
+        if (Journal.isActive()) Journal.log(JournalRecord.becameCashier(this, handlesCash, cashierId, score));
     }
 
     public EmployeeType getType() {
@@ -189,6 +205,7 @@ public class Employee extends Person {
         }
         if (delivery == null) throw new ValidationException("Invalid data");
 
+        ChangeTracker.touch(this);
         if (deliveries == null) deliveries = new ArrayList<>();
 
         if (!deliveries.contains(delivery)) {
@@ -204,6 +221,7 @@ public class Employee extends Person {
         if (deliveries == null) return;
 
         if (deliveries.contains(delivery)) {
+            ChangeTracker.touch(this);
             deliveries.remove(delivery);
             delivery.removeLoader(this);
         }
@@ -226,6 +244,7 @@ public class Employee extends Person {
         }
         if (employee == null) throw new ValidationException("Invalid data");
 
+        ChangeTracker.touch(this);
         if (managed == null) managed = new ArrayList<>();
 
         if(!this.managed.contains(employee)){
@@ -239,6 +258,7 @@ public class Employee extends Person {
         if (managed == null) return;
 
         if(this.managed.contains(employee)){
+            ChangeTracker.touch(this);
             this.managed.remove(employee);
             employee.removeManager(this);
         }
@@ -255,6 +275,7 @@ public class Employee extends Person {
             throw new ValidationException("This Trainer does not manage this Employee");
         }
 
+        ChangeTracker.touch(this);
         if (trained == null) trained = new ArrayList<>();
 
         if (!this.trained.contains(trainee)) {
@@ -268,6 +289,7 @@ public class Employee extends Person {
         if (trainee == null || trained == null) throw new ValidationException("Invalid data");
 
         if (this.trained.contains(trainee)) {
+            ChangeTracker.touch(this);
             this.trained.remove(trainee);
             trainee.removeTrainer(this);
         }
@@ -288,6 +310,7 @@ public class Employee extends Person {
         }
         if (order == null) throw new ValidationException("Invalid data");
 
+        ChangeTracker.touch(this);
         if (orders == null) orders = new ArrayList<>();
 
         if(!orders.contains(order)) {
@@ -301,6 +324,7 @@ public class Employee extends Person {
         if (order == null || orders == null) throw new ValidationException("Invalid data");
 
         if (orders.contains(order)) {
+            ChangeTracker.touch(this);
             orders.remove(order);
             order.removeCashier(this);
         }
@@ -312,6 +336,7 @@ public class Employee extends Person {
             throw new ValidationException("Assigned supervisor must be a Manager type");
         }
 
+        ChangeTracker.touch(this);
         if(this.manager != null && this.manager != manager){
             this.manager.removeManaged(this);
         }
@@ -319,6 +344,7 @@ public class Employee extends Person {
         this.manager = manager;
 
         if(this.manager != null) {
+            ChangeTracker.touch(this.manager);
             if (this.manager.managed == null) this.manager.managed = new ArrayList<>();
             if(!this.manager.managed.contains(this)){
                 this.manager.managed.add(this);
@@ -328,6 +354,7 @@ public class Employee extends Person {
 
     public void removeManager(Employee manager) {
         if(this.manager == manager) {
+            ChangeTracker.touch(this);
             this.manager = null;
         }
     }
@@ -339,8 +366,10 @@ public class Employee extends Person {
         }
         if (this.trainer == trainer) return;
 
+        ChangeTracker.touch(this);
         this.trainer = trainer;
         if (trainer != null) {
+            ChangeTracker.touch(trainer);
             if (trainer.trained == null) trainer.trained = new ArrayList<>();
             if (!trainer.trained.contains(this)) trainer.trained.add(this);
         }
@@ -348,6 +377,7 @@ public class Employee extends Person {
 
     public void removeTrainer(Employee trainer) {
         if (this.trainer == trainer) {
+            ChangeTracker.touch(this);
             this.trainer = null;
         }
     }
@@ -356,6 +386,7 @@ public class Employee extends Person {
         if (shift == null) throw new ValidationException("Invalid data");
 
         if (shifts.contains(shift)) {
+            ChangeTracker.touch(this);
             shifts.remove(shift);
 
             // this assumes Shift.removeEmployee(Employee e) only unlinks without invoking removeConnection()
@@ -374,6 +405,7 @@ public class Employee extends Person {
     public void addCertification(Certification certification) {
         if (certification == null) throw new ValidationException("Invalid data");
         if (!certifications.contains(certification)) {
+            ChangeTracker.touch(this);
             certifications.add(certification);
         }
     }
@@ -381,6 +413,7 @@ public class Employee extends Person {
     public void removeCertification(Certification certification) {
         if (certification == null) throw new ValidationException("Invalid data");
         if (certifications.contains(certification)) {
+            ChangeTracker.touch(this);
             certifications.remove(certification);
             certification.removeConnection();
         }
@@ -403,6 +436,7 @@ public class Employee extends Person {
     public void addShift(Shift shift) {
         if (shift == null) throw new ValidationException("Invalid data");
         if (!shifts.contains(shift)) {
+            ChangeTracker.touch(this);
             shifts.add(shift);
             if (!shift.getEmployees().contains(this)) {
                 shift.addEmployee(this);
@@ -416,6 +450,7 @@ public class Employee extends Person {
         if (this.manager != null) {
             Employee mgr = this.manager;
             this.manager = null;
+            ChangeTracker.touch(mgr);
             if (mgr.managed != null) {
                 mgr.managed.remove(this);
             }
@@ -424,6 +459,7 @@ public class Employee extends Person {
         if (this.trainer != null) {
             Employee tr = this.trainer;
             this.trainer = null;
+            ChangeTracker.touch(tr);
             if (tr.trained != null) {
                 tr.trained.remove(this);
             }
@@ -450,12 +486,14 @@ public class Employee extends Person {
         // removing from managed and trained lists (manager role)
         if (this.managed != null) {
             for (Employee e : new ArrayList<>(this.managed)) {
+                ChangeTracker.touch(e);
                 e.manager = null;
             }
             this.managed = null;
         }
         if (this.trained != null) {
             for (Employee e : new ArrayList<>(this.trained)) {
+                ChangeTracker.touch(e);
                 e.trainer = null;
             }
             this.trained = null;
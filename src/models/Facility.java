@@ -1,7 +1,9 @@
 package models;
 
 import models.utils.Address;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
+import persistence.JsonIgnore;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
 import validation.*;
@@ -15,6 +17,10 @@ public class Facility implements Validatable {
     @ObjectList
     public static final List<Facility> facilities = new ArrayList<>();
 
+    @JsonIgnore
+    public static final Multiplicity<Facility> SHIFTS = Multiplicity.of(
+            "Facility must have at least one Shift", Facility.class, f -> f.shifts.size(), 1, Multiplicity.MANY);
+
     private Warehouse warehouse; // 0..1 composed Warehouse
 
     private Shop shop; // 0..1 composed Shop
@@ -38,6 +44,12 @@ public class Facility implements Validatable {
         } catch (IllegalAccessException | ValidationException e) {
             throw new ValidationException(e.getMessage());
         }
+
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            facilities.add(this);
+        }
+        ChangeTracker.created(this);
+        SHIFTS.update(this); // no Shift yet: listed until addShift
     }
 
     // -------- Shift relation (1..*) --------
@@ -46,7 +58,9 @@ public class Facility implements Validatable {
         if (shift == null) throw new IllegalArgumentException("Shift cannot be null");
 
         if (!shifts.contains(shift)) {
+            ChangeTracker.touch(this);
             shifts.add(shift);
+            SHIFTS.update(this);
             if (!shift.getFacilities().contains(this)) {
                 shift.addFacility(this);
             }
@@ -54,7 +68,9 @@ public class Facility implements Validatable {
     }
 
     public void removeShift(Shift shift) {
+        ChangeTracker.touch(this);
         if (shifts.remove(shift)) {
+            SHIFTS.update(this);
             if (shift.getFacilities().contains(this)) {
                 shift.removeFacility(this);
             }
@@ -62,8 +78,8 @@ public class Facility implements Validatable {
     }
 
     public void validate() {
-        if (shifts.isEmpty())
-            throw new ValidationException("Facility must have at least one Shift");
+        if (!SHIFTS.allows(shifts.size()))
+            throw new ValidationException(SHIFTS.name());
     }
 
     public List<Shift> getShifts() {
@@ -84,11 +100,13 @@ public class Facility implements Validatable {
         if (this.warehouse != null)
             throw new ValidationException("Facility can have only one Warehouse");
 
+        ChangeTracker.touch(this);
         this.warehouse = warehouse;
     }
 
     public void removeWarehouse() {
         if (this.warehouse != null) {
+            ChangeTracker.touch(this);
             this.warehouse.removeConnection();
             this.warehouse = null;
         }
@@ -103,11 +121,13 @@ public class Facility implements Validatable {
         if (this.shop != null)
             throw new ValidationException("Facility can have only one Shop");
 
+        ChangeTracker.touch(this);
         this.shop = shop;
     }
 
     public void removeShop() {
         if (this.shop != null) {
+            ChangeTracker.touch(this);
             this.shop.removeConnection();
             this.shop = null;
         }
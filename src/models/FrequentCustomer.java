@@ -1,5 +1,6 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonIgnore;
 import persistence.JsonSerializable;
@@ -33,7 +34,10 @@ public class FrequentCustomer extends Person {
             throw new ValidationException(e.getMessage());
         }
 
-        frequentCustomers.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            frequentCustomers.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     public int getAmountOfOrders() {
@@ -55,6 +59,7 @@ public class FrequentCustomer extends Person {
         for (FrequentCustomer fc : frequentCustomers) {
             if(fc.referredCustomers.contains(ref)) throw new ValidationException("Customer already referred");
         }
+        ChangeTracker.touch(this);
         referredCustomers.add(ref);
         ref.addReferrer(this);
     }
@@ -63,6 +68,7 @@ public class FrequentCustomer extends Person {
         if (ref == null) throw new ValidationException("Invalid data");
         if (referrer != null) throw new ValidationException("Customer already referred");
         if (referrer == ref) return;
+        ChangeTracker.touch(this);
         referrer = ref;
         ref.addReferredCustomer(this);
     }
@@ -70,6 +76,7 @@ public class FrequentCustomer extends Person {
     public void removeReferredCustomer(FrequentCustomer ref) {
         if (ref == null) throw new ValidationException("Invalid data");
         if (referredCustomers.contains(ref)) {
+            ChangeTracker.touch(this);
             referredCustomers.remove(ref);
             ref.removeReferrer(this);
         }
@@ -78,6 +85,7 @@ public class FrequentCustomer extends Person {
     public void removeReferrer(FrequentCustomer ref) {
         if (ref == null) throw new ValidationException("Invalid data");
         if(referrer == ref){
+            ChangeTracker.touch(this);
             referrer = null;
             ref.removeReferredCustomer(this);
         }
@@ -87,6 +95,7 @@ public class FrequentCustomer extends Person {
         if (ref == null) throw new ValidationException("Invalid data");
         if (referred == null) throw new ValidationException("Invalid data");
         if (referredCustomers.contains(ref)) {
+            ChangeTracker.touch(this);
             referredCustomers.remove(ref);
             ref.removeReferrer(this);
             referredCustomers.add(referred);
@@ -98,6 +107,7 @@ public class FrequentCustomer extends Person {
         if (ref == null) throw new ValidationException("Invalid data");
         if (referred == null) throw new ValidationException("Invalid data");
         if (referrer == ref) {
+            ChangeTracker.touch(this);
             ref.removeReferredCustomer(this);
             referrer = referred;
             referrer.addReferredCustomer(this);
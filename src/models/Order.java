@@ -4,9 +4,12 @@ import models.aspects.SweetenerAspect;
 import models.aspects.TemperatureAspect;
 import models.utils.Drink_Size;
 import models.utils.EmployeeType;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
+import persistence.journal.Journal;
+import persistence.journal.JournalRecord;
 import validation.*;
 
 import java.time.LocalDateTime;
@@ -42,7 +45,11 @@ public class Order implements Validatable {
         } catch (IllegalAccessException | ValidationException e) {
             throw new ValidationException(e.getMessage());
         }
-        orders.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            orders.add(this);
+        }
+        ChangeTracker.created(this);
+        if (Journal.isActive()) Journal.log(JournalRecord.orderCreated(this));
     }
 
     // ---------------- Associations: Shop ----------------
@@ -50,6 +57,7 @@ public class Order implements Validatable {
     public void addShop(Shop shop) {
         if (shop == null) throw new ValidationException("Invalid data");
         if (this.shop == shop) return;
+        ChangeTracker.touch(this);
         this.shop = shop;
         shop.addOrder(timeOfOrder, cashier, this);
     }
@@ -57,6 +65,7 @@ public class Order implements Validatable {
     public void removeShop(Shop shop) {
         if (shop == null) throw new ValidationException("Invalid data");
         if (this.shop == shop) {
+            ChangeTracker.touch(this);
             this.shop = null;
             shop.removeOrder(timeOfOrder, cashier, this);
         }
@@ -66,6 +75,7 @@ public class Order implements Validatable {
         if (oldShop == null) throw new ValidationException("Invalid data");
         if (newShop == null) throw new ValidationException("Invalid data");
         if (this.shop == oldShop) {
+            ChangeTracker.touch(this);
             oldShop.removeOrder(timeOfOrder, cashier, this);
             this.shop = newShop;
             newShop.addOrder(timeOfOrder, cashier, this);
@@ -78,6 +88,7 @@ public class Order implements Validatable {
             throw new ValidationException("Only Cashier can perform this order");
         }
         if (this.cashier == cashier) return;
+        ChangeTracker.touch(this);
         this.cashier = cashier;
         cashier.addOrder(this);
     }
@@ -85,6 +96,7 @@ public class Order implements Validatable {
     public void removeCashier(Employee cashier) {
         if (cashier == null) throw new ValidationException("Invalid data");
         if (this.cashier == cashier) {
+            ChangeTracker.touch(this);
             this.cashier = null;
             cashier.removeOrder(this);
         }
@@ -94,6 +106,7 @@ public class Order implements Validatable {
         if (oldCashier == null) throw new ValidationException("Invalid data");
         if (newCashier == null) throw new ValidationException("Invalid data");
         if (this.cashier == oldCashier) {
+            ChangeTracker.touch(this);
             oldCashier.removeOrder(this);
             this.cashier = newCashier;
             newCashier.addOrder(this);
@@ -125,6 +138,7 @@ public class Order implements Validatable {
         }
 
         addDrink(od); // keep inverse consistent
+        if (Journal.isActive()) Journal.log(JournalRecord.drinkAdded(this, drink, temperature, safeSweeteners, size, safeToppings));
     }
 
     public void addDrink(Order_Drink od) {
@@ -132,6 +146,7 @@ public class Order implements Validatable {
         if (od.getOrder() != this) throw new ValidationException("Order_Drink belongs to a different Order");
         if (this.drinks.contains(od)) return;
 
+        ChangeTracker.touch(this);
         this.drinks.add(od);
         od.getDrink().addOrder(od); // sync inverse
     }
@@ -161,6 +176,7 @@ public class Order implements Validatable {
         if (od == null) throw new ValidationException("Invalid data");
         if (!this.drinks.contains(od)) return;
 
+        ChangeTracker.touch(this);
         this.drinks.remove(od);
         od.getDrink().removeOrder(od); // sync inverse
     }
@@ -171,6 +187,7 @@ public class Order implements Validatable {
         if (!this.drinks.contains(oldOd)) return;
         if (newOd.getOrder() != this) throw new ValidationException("New Order_Drink belongs to a different Order");
 
+        ChangeTracker.touch(this);
         this.drinks.remove(oldOd);
         this.drinks.add(newOd);
 
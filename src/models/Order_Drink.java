@@ -2,12 +2,18 @@ package models;
 
 import models.aspects.*;
 import models.utils.Drink_Size;
+import persistence.ChangeTracker;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectList;
 import validation.*;
 
 import java.util.*;
 
+@JsonSerializable
 public class Order_Drink implements Validatable {
 
+    @ObjectList
     public static List<Order_Drink> order_Drinks = new ArrayList<>();
 
     private final Order order;
@@ -27,6 +33,7 @@ public class Order_Drink implements Validatable {
     @Derived
     private double additionalCost;
 
+    @JsonCtor
     public Order_Drink(
             Order order,
             Drink drink,
@@ -52,7 +59,10 @@ public class Order_Drink implements Validatable {
 
         this.additionalCost = calculateCost();
 
-        order_Drinks.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            order_Drinks.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     private double calculateCost() {
@@ -1,5 +1,6 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonSerializable;
 import validation.NotBlank;
@@ -57,6 +58,7 @@ public abstract class Person implements Validatable {
 
     public void setName(String name) {
         if (name == null || name.isBlank()) throw new ValidationException("Name cannot be blank");
+        ChangeTracker.touch(this);
         this.name = name;
     }
 
@@ -66,6 +68,7 @@ public abstract class Person implements Validatable {
 
     public void setSurname(String surname) {
         if (surname == null || surname.isBlank()) throw new ValidationException("Surname cannot be blank");
+        ChangeTracker.touch(this);
         this.surname = surname;
     }
 
@@ -75,6 +78,7 @@ public abstract class Person implements Validatable {
 
     public void setEmail(String email) {
         if (email == null || email.isBlank()) throw new ValidationException("Email cannot be blank");
+        ChangeTracker.touch(this);
         this.email = email;
     }
 }
@@ -1,5 +1,6 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
@@ -18,6 +19,9 @@ public class Quantity implements Validatable {
         } catch (IllegalAccessException | ValidationException e) {
             throw new ValidationException(e.getMessage());
         }
-        quantities.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            quantities.add(this);
+        }
+        ChangeTracker.created(this);
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
+import persistence.JsonIgnore;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
 import validation.*;
@@ -16,6 +18,10 @@ public class Shift implements Validatable {
     @ObjectList
     public static final List<Shift> shifts = new ArrayList<>();
 
+    @JsonIgnore
+    public static final Multiplicity<Shift> FACILITIES = Multiplicity.of(
+            "Shift must belong to at least one Facility", Shift.class, s -> s.facilities.size(), 1, Multiplicity.MANY);
+
     // mandatory many-to-many
     @ObjectList
     private final List<Facility> facilities = new ArrayList<>(); // 1..*
@@ -42,7 +48,11 @@ public class Shift implements Validatable {
             throw new ValidationException(e.getMessage());
         }
 
-        shifts.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            shifts.add(this);
+        }
+        ChangeTracker.created(this);
+        FACILITIES.update(this); // no Facility yet: listed until addFacility
     }
 
     // -------- Facility relation (1..*) --------
@@ -50,21 +60,25 @@ public class Shift implements Validatable {
     public void addFacility(Facility facility) {
         if (facility == null) return;
         if (!facilities.contains(facility)) {
+            ChangeTracker.touch(this);
             facilities.add(facility);
+            FACILITIES.update(this);
             facility.addShift(this);
         }
     }
 
     public void removeFacility(Facility facility) {
         if (facility == null) return;
+        ChangeTracker.touch(this);
         if (facilities.remove(facility)) {
+            FACILITIES.update(this);
             facility.removeShift(this);
         }
     }
 
     public void validate() {
-        if (facilities.isEmpty())
-            throw new ValidationException("Shift must belong to at least one Facility");
+        if (!FACILITIES.allows(facilities.size()))
+            throw new ValidationException(FACILITIES.name());
     }
 
     public List<Facility> getFacilities() {
@@ -76,6 +90,7 @@ public class Shift implements Validatable {
     public void addEmployee(Employee e) {
         if (e == null) return;
         if (!employees.contains(e)) {
+            ChangeTracker.touch(this);
             employees.add(e);
             e.addShift(this);
         }
@@ -83,6 +98,7 @@ public class Shift implements Validatable {
 
     public void removeEmployee(Employee e) {
         if (e == null) return;
+        ChangeTracker.touch(this);
         if (employees.remove(e)) {
             e.removeShift(this);
         }
@@ -1,10 +1,13 @@
 package models;
 
 import models.utils.OrderQualifier;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonIgnore;
 import persistence.JsonSerializable;
 import persistence.ObjectList;
+import persistence.journal.Journal;
+import persistence.journal.JournalRecord;
 import validation.*;
 
 import java.time.LocalDate;
@@ -30,7 +33,11 @@ public class Shop implements Validatable {
 
     @JsonCtor
     public Shop(Facility facility, LocalDateTime dateOfLastStock) {
+        if (facility == null)
+            throw new ValidationException("Shop cannot exist without a Facility (Composition)");
+
         this.dateOfLastStock = dateOfLastStock;
+        this.facility = facility;
 
         try {
             if (!validate(this)) throw new ValidationException("Invalid data");
@@ -38,15 +45,15 @@ public class Shop implements Validatable {
             throw new ValidationException(e.getMessage());
         }
 
-        if (facility == null)
-            throw new ValidationException("Shop cannot exist without a Facility (Composition)");
-
-        this.facility = facility;
         facility.addShop(this);
 
         this.salesNum = 0;
 
-        shops.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            shops.add(this);
+        }
+        ChangeTracker.created(this);
+        if (Journal.isActive()) Journal.log(JournalRecord.shopCreated(this, facility, dateOfLastStock));
     }
 
     public void addOrder(LocalDateTime time, Employee cashier, Order order) {
@@ -58,7 +65,9 @@ public class Shop implements Validatable {
             key = new OrderQualifier(time, cashier); //check time and cashier !null in ctor
         }
         if (orders.containsKey(key)) return;
+        ChangeTracker.touch(this);
         orders.put(key, order);
+        if (Journal.isActive()) Journal.log(JournalRecord.shopOrderAdded(this, time, cashier, order));
         order.addShop(this);
     }
 
@@ -69,6 +78,7 @@ public class Shop implements Validatable {
         OrderQualifier key = OrderQualifier.find(time, cashier);
         if(key == null) throw new ValidationException("Invalid data");
         if(orders.containsKey(key)) {
+            ChangeTracker.touch(this);
             orders.remove(key);
             order.removeShop(this);
         }
@@ -81,6 +91,7 @@ public class Shop implements Validatable {
         if(order2 == null) throw new ValidationException("Invalid data");
         if(orders.containsKey(oq)) {
             if(orders.get(oq).equals(order)) {
+                ChangeTracker.touch(this);
                 orders.remove(oq);
                 order.removeShop(this);
                 orders.put(oq2, order2);
@@ -104,7 +115,10 @@ public class Shop implements Validatable {
             Facility tmp = facility;
             facility = null;
             tmp.removeShop();
-            shops.remove(this);
+            synchronized (ChangeTracker.REGISTRY_LOCK) {
+                shops.remove(this);
+            }
+            ChangeTracker.removed(this);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonIgnore;
 import persistence.JsonSerializable;
@@ -40,11 +41,15 @@ public class Stock implements Validatable {
         }
 
         this.salePrice = 0.0; // derive later if needed
-        stocks.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            stocks.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     public void recordDelivery(Delivery d) {
         if (d != null && !deliveryHistory.contains(d)) {
+            ChangeTracker.touch(this);
             deliveryHistory.add(d);
             lastUpdated = LocalDateTime.now();
         }
@@ -63,6 +68,7 @@ public class Stock implements Validatable {
     }
 
     public void setLastUpdated(LocalDateTime lastUpdated) {
+        ChangeTracker.touch(this);
         this.lastUpdated = lastUpdated;
     }
 
@@ -71,14 +77,17 @@ public class Stock implements Validatable {
     }
 
     public void setSalePrice(double salePrice) {
+        ChangeTracker.touch(this);
         this.salePrice = salePrice;
     }
 
     public void setDeliveryHistory(List<Delivery> deliveryHistory) {
+        ChangeTracker.touch(this);
         this.deliveryHistory = deliveryHistory;
     }
 
     public void setFacility(Facility facility) {
+        ChangeTracker.touch(this);
         this.facility = facility;
     }
 }
@@ -1,5 +1,6 @@
 package models;
 
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
 import persistence.JsonIgnore;
 import persistence.JsonSerializable;
@@ -13,6 +14,10 @@ public class Warehouse implements Validatable {
     @ObjectList
     public static List<Warehouse> warehouses = new ArrayList<>();
 
+    @JsonIgnore
+    public static final Constraint<Warehouse> CAPACITY = Constraint.define(
+            "Warehouse deliveries must fit its capacity", Warehouse.class, Warehouse::fits);
+
     @NotNull
     private Facility facility; // The owner
 
@@ -24,9 +29,18 @@ public class Warehouse implements Validatable {
     @Derived
     private double availableCapacity;
 
-    @JsonIgnore   // prevent infinite recursion during serialization
     private List<Delivery> deliveries = new ArrayList<>();
 
+    //availableCapacity has the first counted deliveries of countedList taken off, up to the one that did not fit
+    @JsonIgnore
+    private List<Delivery> countedList;
+    @JsonIgnore
+    private int counted;
+    @JsonIgnore
+    private Delivery lastCounted;
+    @JsonIgnore
+    private boolean overfull;
+
     @NotNull
     private boolean temperatureControlled;
 
@@ -46,30 +60,44 @@ public class Warehouse implements Validatable {
             throw new ValidationException(e.getMessage());
         }
         this.facility.addWarehouse(this);
-        warehouses.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            warehouses.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     public double getAvailableCapacity() {
-        double tmpCapacity = this.capacity;
-        for(Delivery delivery : deliveries) {
-            double deliveryCapacity = delivery.getCapacityKg();
-            if (deliveryCapacity > tmpCapacity) {
-                throw new ValidationException("Delivery capacity is greater than the total capacity");
-            } else {
-                tmpCapacity -= deliveryCapacity;
-            }
-        }
-        availableCapacity = tmpCapacity;
-
+        if (!fits()) throw new ValidationException("Delivery capacity is greater than the total capacity");
         return availableCapacity;
     }
 
+    //takes off the deliveries added since the last call, in list order; all of them again when the list was changed otherwise
+    private boolean fits() {
+        if (countedList != deliveries || deliveries.size() < counted
+                || counted > 0 && deliveries.get(counted - 1) != lastCounted) {
+            countedList = deliveries;
+            counted = 0;
+            availableCapacity = capacity;
+            overfull = false;
+        }
+        for (; counted < deliveries.size(); counted++) {
+            double deliveryCapacity = deliveries.get(counted).getCapacityKg();
+            if (overfull) continue;
+            if (deliveryCapacity > availableCapacity) overfull = true;
+            else availableCapacity -= deliveryCapacity;
+        }
+        lastCounted = counted > 0 ? deliveries.get(counted - 1) : null;
+        return !overfull;
+    }
+
     public void addDelivery(Delivery d) {
+        ChangeTracker.touch(this);
         deliveries.add(d);
+        CAPACITY.update(this);
     }
 
     public List<Delivery> getDeliveries() {
-        return deliveries;
+        return Collections.unmodifiableList(deliveries); // changes go through addDelivery, which keeps fits() current
     }
 
     public void removeConnection() {
@@ -77,7 +105,10 @@ public class Warehouse implements Validatable {
             Facility tmp = facility;
             facility = null;
             tmp.removeWarehouse();
-            warehouses.remove(this);
+            synchronized (ChangeTracker.REGISTRY_LOCK) {
+                warehouses.remove(this);
+            }
+            ChangeTracker.removed(this);
         }
     }
 }
\ No newline at end of file
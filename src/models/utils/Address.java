@@ -1,5 +1,6 @@
 package models.utils;
 
+import persistence.JsonCtor;
 import validation.NotBlank;
 import validation.NotNull;
 
@@ -13,6 +14,7 @@ public class Address {
     @NotNull
     private long postCode;
 
+    @JsonCtor
     public Address(String city, String street, String building, long postCode) {
         this.city = city;
         this.street = street;
@@ -1,7 +1,9 @@
 package models.utils;
 
 import models.Employee;
+import persistence.ChangeTracker;
 import persistence.JsonCtor;
+import persistence.JsonSerializable;
 import persistence.ObjectList;
 import validation.NotNull;
 import validation.Validatable;
@@ -12,6 +14,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+@JsonSerializable
 public class OrderQualifier implements Validatable {
     @ObjectList
     public static List<OrderQualifier> orderQualifiers = new ArrayList<>();
@@ -33,7 +36,10 @@ public class OrderQualifier implements Validatable {
         } catch (IllegalAccessException | ValidationException e) {
             throw new ValidationException(e.getMessage());
         }
-        orderQualifiers.add(this);
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            orderQualifiers.add(this);
+        }
+        ChangeTracker.created(this);
     }
 
     @Override
@@ -0,0 +1,15 @@
+package persistence;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What changed between two checkpoints: objects created or modified, in the order they
+ * were first touched, and the ids of objects removed from their registries, per class.
+ */
+public record ChangeSet(long sequence, List<Object> changed, Map<Class<?>, List<Long>> removed) {
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+}
@@ -0,0 +1,143 @@
+package persistence;
+
+import java.util.*;
+
+/**
+ * Dirty tracking for delta snapshots. Model constructors and mutators report here;
+ * mutators call touch before they change anything. Nothing is recorded until the
+ * first checkpoint, so code that never writes deltas pays one volatile read per call.
+ * Listeners see every report on the mutating thread, tracking or not.
+ */
+public final class ChangeTracker {
+
+    /**
+     * Held while a model is added to or removed from its static @ObjectList registry, and by
+     * Epoch while it copies the registries, so an epoch sees all of them as of one moment.
+     */
+    public static final Object REGISTRY_LOCK = new Object();
+
+    private static final Object LOCK = new Object();
+    private static volatile boolean tracking;
+
+    private static final Map<Object, Boolean> dirtySet = new IdentityHashMap<>();
+    private static List<Object> dirty = new ArrayList<>();
+    private static Map<Class<?>, List<Long>> removed = new LinkedHashMap<>();
+    private static long sequence;
+
+    private static volatile Listener[] listeners = new Listener[0];
+
+    /**
+     * Told about model changes as they are reported. touched comes before the change is made;
+     * restored comes once a restore has set and linked all of o's fields, past its mutators.
+     */
+    public interface Listener {
+        default void created(Object o) {}
+
+        default void touched(Object o) {}
+
+        default void removed(Object o) {}
+
+        default void restored(Object o) {}
+    }
+
+    private ChangeTracker() {}
+
+    public static synchronized void addListener(Listener listener) {
+        Listener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[next.length - 1] = Objects.requireNonNull(listener);
+        listeners = next;
+    }
+
+    public static synchronized void removeListener(Listener listener) {
+        List<Listener> next = new ArrayList<>(Arrays.asList(listeners));
+        next.removeIf(l -> l == listener);
+        listeners = next.toArray(new Listener[0]);
+    }
+
+    public static void created(Object o) {
+        if (o == null) return;
+        for (Listener l : listeners) l.created(o);
+        record(o);
+    }
+
+    /** A restore finished o; only listeners hear about it, it is not a change to write. */
+    public static void restored(Object o) {
+        if (o == null) return;
+        for (Listener l : listeners) l.restored(o);
+    }
+
+    public static void touch(Object o) {
+        if (o == null) return;
+        for (Listener l : listeners) l.touched(o);
+        record(o);
+    }
+
+    private static void record(Object o) {
+        if (!tracking) return;
+        synchronized (LOCK) {
+            if (dirtySet.put(o, Boolean.TRUE) == null) dirty.add(o);
+        }
+    }
+
+    /** The object left its registry; it is written as a removal if an earlier snapshot has it. */
+    public static void removed(Object o) {
+        if (o == null) return;
+        for (Listener l : listeners) l.removed(o);
+        long id = ObjectIds.peek(o);
+        if (tracking) {
+            synchronized (LOCK) {
+                if (dirtySet.remove(o) != null) dirty.removeIf(d -> d == o);
+                if (id != 0) removed.computeIfAbsent(o.getClass(), k -> new ArrayList<>()).add(id);
+            }
+        }
+        if (id != 0) ObjectIds.forget(o);
+    }
+
+    /** Closes the current window and starts a new one; the first call turns tracking on. */
+    public static ChangeSet checkpoint() {
+        synchronized (LOCK) {
+            ChangeSet changes = new ChangeSet(sequence++, dirty, removed);
+            dirtySet.clear();
+            dirty = new ArrayList<>();
+            removed = new LinkedHashMap<>();
+            tracking = true;
+            return changes;
+        }
+    }
+
+    /** Puts the changes of a checkpoint that could not be written back into the current window. */
+    public static void requeue(ChangeSet changes) {
+        synchronized (LOCK) {
+            Map<Object, Boolean> seen = new IdentityHashMap<>();
+            List<Object> merged = new ArrayList<>();
+            for (Object o : changes.changed()) {
+                if (seen.put(o, Boolean.TRUE) == null) merged.add(o);
+            }
+            for (Object o : dirty) {
+                if (seen.put(o, Boolean.TRUE) == null) merged.add(o);
+            }
+            dirtySet.putAll(seen);
+            dirty = merged;
+
+            Map<Class<?>, List<Long>> mergedRemoved = new LinkedHashMap<>();
+            changes.removed().forEach((c, ids) -> mergedRemoved.computeIfAbsent(c, k -> new ArrayList<>()).addAll(ids));
+            removed.forEach((c, ids) -> mergedRemoved.computeIfAbsent(c, k -> new ArrayList<>()).addAll(ids));
+            removed = mergedRemoved;
+        }
+    }
+
+    public static boolean isTracking() {
+        return tracking;
+    }
+
+    /** Stops tracking and drops everything recorded so far. */
+    public static void reset() {
+        synchronized (LOCK) {
+            tracking = false;
+            dirtySet.clear();
+            dirty = new ArrayList<>();
+            removed = new LinkedHashMap<>();
+            sequence = 0;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A point-in-time view of the @ObjectList registries that stays put while the models keep
+ * changing. Beginning one only copies the registry arrays and static fields; the registries are
+ * copied together under ChangeTracker.REGISTRY_LOCK, so they form one cut. Field values are
+ * read lazily: the first time a model reports (through ChangeTracker.touch) that it is about
+ * to change, its fields are copied first, so the view keeps what the object held when the
+ * epoch began. Objects that do not change are read as they are when they get written.
+ * Objects created after the epoch began are not part of it. Changes made without a
+ * ChangeTracker report are not seen by the epoch.
+ */
+public final class Epoch implements AutoCloseable {
+
+    //marks an object that was written already: later changes need no copy any more
+    private static final Object[] WRITTEN = new Object[0];
+
+    /** Identity key: models may define equals/hashCode over fields that change. */
+    private record Key(Object o) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key k && k.o == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(o);
+        }
+    }
+
+    private final List<Class<?>> classes;
+    private final Set<Class<?>> types = new HashSet<>();
+    private final Map<Class<?>, List<Object[]>> registries = new LinkedHashMap<>();
+    private final Map<Class<?>, Object[]> statics = new LinkedHashMap<>();
+    private final ConcurrentHashMap<Key, Object[]> images = new ConcurrentHashMap<>();
+    private final AtomicLong copies = new AtomicLong();
+    private final ChangeTracker.Listener listener = new ChangeTracker.Listener() {
+        @Override
+        public void touched(Object o) {
+            if (!types.contains(o.getClass())) return;
+            images.computeIfAbsent(new Key(o), k -> {
+                copies.incrementAndGet();
+                return copy(k.o());
+            });
+        }
+    };
+    private final long objects;
+
+    private Epoch(List<Class<?>> classes) {
+        this.classes = List.copyOf(classes);
+        this.types.addAll(this.classes);
+        ChangeTracker.addListener(listener); // before copying, so nothing changes unseen in between
+        long count = 0;
+        synchronized (ChangeTracker.REGISTRY_LOCK) {
+            for (Class<?> clazz : this.classes) {
+                List<Object[]> lists = new ArrayList<>();
+                for (SerializerPlan.Property registry : SerializerPlan.of(clazz).registries()) {
+                    if (registry.getStatic() instanceof List<?> list) {
+                        Object[] members = list.toArray();
+                        lists.add(members);
+                        count += members.length;
+                    }
+                }
+                registries.put(clazz, lists);
+            }
+        }
+        for (Class<?> clazz : this.classes) {
+            SerializerPlan plan = SerializerPlan.of(clazz);
+            SerializerPlan.Property[] fields = plan.staticFields();
+            Object[] values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) values[i] = detach(fields[i].getStatic());
+            statics.put(clazz, values);
+        }
+        this.objects = count;
+    }
+
+    /** Starts an epoch over the registries of the given classes. Close it once it is written. */
+    public static Epoch begin(List<Class<?>> classes) {
+        if (classes == null) throw new IllegalArgumentException("Model classes must not be null");
+        return new Epoch(classes);
+    }
+
+    public List<Class<?>> classes() {
+        return classes;
+    }
+
+    /** The members of each @ObjectList registry of the class when the epoch began. */
+    public List<Object[]> registries(Class<?> clazz) {
+        return registries.getOrDefault(clazz, List.of());
+    }
+
+    /** Values of SerializerPlan.staticFields() of the class when the epoch began. */
+    public Object[] staticValues(Class<?> clazz) {
+        return statics.getOrDefault(clazz, new Object[0]);
+    }
+
+    /** Values of SerializerPlan.instanceFields() of o as of the beginning of the epoch. */
+    public Object[] values(Object o) {
+        Object[] image = images.computeIfAbsent(new Key(o), k -> copy(k.o()));
+        return image == WRITTEN ? copy(o) : image;
+    }
+
+    /** o has been written; its copy is dropped and later changes to it need none. */
+    public void written(Object o) {
+        images.put(new Key(o), WRITTEN);
+    }
+
+    /** Number of registry entries in the epoch. */
+    public long objectCount() {
+        return objects;
+    }
+
+    /** How many objects had to be copied because they changed before they were written. */
+    public long copiesMade() {
+        return copies.get();
+    }
+
+    @Override
+    public void close() {
+        ChangeTracker.removeListener(listener);
+        images.clear();
+    }
+
+    private static Object[] copy(Object o) {
+        Object[] values = SerializerPlan.of(o.getClass()).values(o);
+        for (int i = 0; i < values.length; i++) values[i] = detach(values[i]);
+        return values;
+    }
+
+    //collections are changed in place, so the epoch keeps its own shallow copy
+    private static Object detach(Object value) {
+        if (value instanceof Collection<?> c) return new ArrayList<>(c);
+        if (value instanceof Map<?, ?> m) return new LinkedHashMap<>(m);
+        return value;
+    }
+}
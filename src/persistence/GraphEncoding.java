@@ -0,0 +1,56 @@
+package persistence;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * How field values are written so that the object graph survives a snapshot round trip.
+ * Model objects are written as a reference to their ObjectIds id and relinked on restore;
+ * collections and maps are written element by element; other application objects are
+ * embedded with their type; JDK value types (java.time and the like) are written as text.
+ */
+public final class GraphEncoding {
+
+    /** Key holding the id of a serialized object. */
+    public static final String ID = "@id";
+    /** {"@ref":id} stands for the model object with that id. */
+    public static final String REF = "@ref";
+    /** {"@type":fqcn, field:value...} is an embedded non-model object. */
+    public static final String TYPE = "@type";
+    /** {"@map":[[key,value]...]} is a map; keys need not be strings. */
+    public static final String MAP = "@map";
+
+    /** Embedded values nest at most this deep, which also stops cycles through them. */
+    public static final int MAX_DEPTH = 64;
+
+    public enum Kind { NULL, STRING, CHARACTER, BOOLEAN, NUMBER, ENUM, TEXT, COLLECTION, MAP, REFERENCE, EMBEDDED }
+
+    private GraphEncoding() {}
+
+    public static Kind kindOf(Object value) {
+        if (value == null) return Kind.NULL;
+        if (value instanceof String) return Kind.STRING;
+        if (value instanceof Character) return Kind.CHARACTER;
+        if (value instanceof Boolean) return Kind.BOOLEAN;
+        if (value instanceof Number) return Kind.NUMBER;
+        if (value instanceof Enum<?>) return Kind.ENUM;
+        if (value instanceof Collection<?>) return Kind.COLLECTION;
+        if (value instanceof Map<?, ?>) return Kind.MAP;
+        Class<?> type = value.getClass();
+        if (isPlatformType(type)) return Kind.TEXT;
+        return SerializerPlan.of(type).isModel() ? Kind.REFERENCE : Kind.EMBEDDED;
+    }
+
+    /** JDK classes and arrays are never embedded field by field; they are written as text. */
+    public static boolean isPlatformType(Class<?> type) {
+        if (type.isArray() || type.isPrimitive()) return true;
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun.");
+    }
+
+    public static SerializeException tooDeep(Object value) {
+        return new SerializeException("Value nested deeper than " + MAX_DEPTH + " levels (cycle through "
+                + value.getClass().getName() + "?)");
+    }
+}
@@ -1,119 +1,331 @@
 package persistence;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.StringJoiner;
+import java.util.Map;
 
 public class JsonSerializer {
     //implement serializer and create factory if more than json persistence would exist
 
-    //serialize one object to a json string
-    private static String serialize(Object o) throws SerializeException {
+    /** Told where class blocks and objects begin while a snapshot streams out, e.g. to index it. */
+    public interface BlockListener {
+        /** The opening brace of the class block is next. */
+        void blockStarted(Class<?> type) throws IOException;
+
+        /** The object with this position in the block is next. */
+        void objectStarted(Class<?> type, long index) throws IOException;
+
+        /** The class block has just been closed. */
+        void blockFinished(Class<?> type, long objects) throws IOException;
+    }
+
+    private static final BlockListener NO_LISTENER = new BlockListener() {
+        public void blockStarted(Class<?> type) {}
+        public void objectStarted(Class<?> type, long index) {}
+        public void blockFinished(Class<?> type, long objects) {}
+    };
+
+    //serialize one object straight into the writer
+    private static void serialize(JsonWriter out, Object o) throws IOException, SerializeException {
+        serialize(out, o, null);
+    }
+
+    //values, when given, replace the live field values (see Epoch)
+    private static void serialize(JsonWriter out, Object o, Object[] values) throws IOException, SerializeException {
         if (o == null) throw new SerializeException("Object is null");
-        if (!o.getClass().isAnnotationPresent(JsonSerializable.class)) {
+        SerializerPlan plan = SerializerPlan.of(o.getClass());
+        if (!plan.isSerializable()) {
             throw new SerializeException("Object is not JsonSerializable");
         }
 
-        StringJoiner sj = new StringJoiner(",\n", "{\n", "\n}");
-        Class<?> c = o.getClass();
-        while (c != Object.class) {
-            for (Field field : c.getDeclaredFields()) {
-                if (Modifier.isStatic(field.getModifiers())) continue;
-                if (field.isAnnotationPresent(ObjectList.class)) continue;
-                if (field.isAnnotationPresent(JsonIgnore.class)) continue;
-
-                field.setAccessible(true);
-                try {
-                    Object raw = field.get(o);
-                    String name = "\"" + field.getName() + "\"";
-                    String value = (raw == null) ? "null"
-                            : (field.getType() == String.class ? "\"" + escapeJson(raw.toString()) + "\"" : raw.toString());
-                    sj.add(name + ":" + value);
-                } catch (IllegalAccessException e) {
-                    throw new SerializeException(e.getMessage());
+        out.write("{\n\"" + GraphEncoding.ID + "\":");
+        out.writeLong(ObjectIds.idOf(o)); // lets later delta snapshots refer to this object
+        SerializerPlan.Property[] fields = plan.instanceFields();
+        if (values == null) values = plan.values(o);
+        for (int i = 0; i < fields.length; i++) {
+            out.write(",\n");
+            writeField(out, fields[i], values[i]);
+        }
+        out.write("\n}");
+    }
+
+    private static void writeField(JsonWriter out, SerializerPlan.Property field, Object raw) throws IOException {
+        out.write(field.key());
+        writeValue(out, raw, 0);
+    }
+
+    /** Writes one field value; see GraphEncoding for how each kind of value is represented. */
+    private static void writeValue(JsonWriter out, Object v, int depth) throws IOException {
+        switch (GraphEncoding.kindOf(v)) {
+            case NULL -> out.write("null");
+            case NUMBER -> out.writeNumber((Number) v);
+            case BOOLEAN -> out.write((Boolean) v ? "true" : "false");
+            case ENUM -> out.writeString(((Enum<?>) v).name());
+            case STRING -> out.writeString((String) v);
+            case CHARACTER -> out.writeString((char) (Character) v);
+            case TEXT -> out.writeString(v.toString());
+            case REFERENCE -> {
+                out.write("{\"" + GraphEncoding.REF + "\":");
+                out.writeLong(ObjectIds.idOf(v));
+                out.write('}');
+            }
+            case COLLECTION -> {
+                if (depth >= GraphEncoding.MAX_DEPTH) throw GraphEncoding.tooDeep(v);
+                out.write('[');
+                boolean first = true;
+                for (Object e : (Collection<?>) v) {
+                    if (!first) out.write(',');
+                    first = false;
+                    writeValue(out, e, depth + 1);
+                }
+                out.write(']');
+            }
+            case MAP -> {
+                if (depth >= GraphEncoding.MAX_DEPTH) throw GraphEncoding.tooDeep(v);
+                out.write("{\"" + GraphEncoding.MAP + "\":[");
+                boolean first = true;
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                    if (!first) out.write(',');
+                    first = false;
+                    out.write('[');
+                    writeValue(out, e.getKey(), depth + 1);
+                    out.write(',');
+                    writeValue(out, e.getValue(), depth + 1);
+                    out.write(']');
+                }
+                out.write("]}");
+            }
+            case EMBEDDED -> {
+                if (depth >= GraphEncoding.MAX_DEPTH) throw GraphEncoding.tooDeep(v);
+                SerializerPlan plan = SerializerPlan.of(v.getClass());
+                out.write("{\"" + GraphEncoding.TYPE + "\":");
+                out.writeString(plan.type().getName());
+                for (SerializerPlan.Property field : plan.instanceFields()) {
+                    out.write(',');
+                    out.write(field.key());
+                    writeValue(out, field.get(v), depth + 1);
                 }
+                out.write('}');
             }
-            c = c.getSuperclass();
         }
-        return sj.toString();
     }
 
-    private static String escapeJson(String s) {
-        return s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\b","\\b")
-                .replace("\f","\\f")
-                .replace("\n","\\n")
-                .replace("\r","\\r")
-                .replace("\t","\\t");
+    private static void serializeStaticFields(JsonWriter out, SerializerPlan plan) throws IOException, SerializeException {
+        serializeStaticFields(out, plan, null);
+    }
+
+    private static void serializeStaticFields(JsonWriter out, SerializerPlan plan, Object[] values)
+            throws IOException, SerializeException {
+        out.write("{\n");
+        SerializerPlan.Property[] fields = plan.staticFields(); // registries are excluded by the plan
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) out.write(",\n");
+            writeField(out, fields[i], values == null ? fields[i].getStatic() : values[i]);
+        }
+        out.write("\n}");
+    }
+
+    //writes one class block with all objects of this class, one object at a time
+    private static void serializeArray(JsonWriter out, SerializerPlan plan, List<?> objects, BlockListener listener)
+            throws IOException, SerializeException {
+        out.write(plan.blockKey());
+        listener.blockStarted(plan.type());
+        out.write("{\n\"static\":");
+        serializeStaticFields(out, plan);
+        out.write(",\n\"objects\":[\n");
+        long written = writeObjects(out, plan.type(), objects, listener);
+        out.write("\n]\n}");
+        listener.blockFinished(plan.type(), written);
     }
 
-    private static String serializeStaticFields(Class<?> clazz) throws SerializeException {
-        StringJoiner sj = new StringJoiner(",\n", "{\n", "\n}");
+    private static long writeObjects(JsonWriter out, Class<?> type, List<?> objects, BlockListener listener)
+            throws IOException, SerializeException {
+        long n = 0;
+        for (Object o : objects) {
+            if (o == null) continue;
+            if (n > 0) out.write(",\n");
+            listener.objectStarted(type, n++);
+            serialize(out, o);
+        }
+        return n;
+    }
+
+    public static String serializeObjects(List<Class<?>> classes) throws SerializeException {
+        StringWriter sw = new StringWriter();
         try {
-            for (Field field : clazz.getDeclaredFields()) {
-                if (!Modifier.isStatic(field.getModifiers())) continue;
-                if (field.isAnnotationPresent(ObjectList.class)) continue; // don’t dump the registry list
-                if (field.isAnnotationPresent(JsonIgnore.class)) continue;
-
-                field.setAccessible(true);
-                Object raw = field.get(null);
-                String name = "\"" + field.getName() + "\"";
-                String value;
-                if (raw == null) {
-                    value = "null";
-                } else if (field.getType() == String.class) {
-                    value = "\"" + escapeJson(raw.toString()) + "\"";
-                } else {
-                    value = raw.toString();
+            serializeObjects(classes, sw);
+        } catch (IOException e) {
+            throw new SerializeException(e.getMessage());
+        }
+        return sw.toString();
+    }
+
+    //streaming variant: every class block and object goes straight to the writer, nothing is joined in memory
+    public static void serializeObjects(List<Class<?>> classes, Writer out) throws IOException, SerializeException {
+        serializeObjects(classes, out, NO_LISTENER);
+    }
+
+    public static void serializeObjects(List<Class<?>> classes, Writer out, BlockListener listener)
+            throws IOException, SerializeException {
+        JsonWriter json = open(out);
+        listener = draining(json, out, listener);
+        json.write("{\n\"models\":{\n");
+        boolean first = true;
+        for (Class<?> clazz : classes) {
+            SerializerPlan plan = SerializerPlan.of(clazz);
+            for (SerializerPlan.Property registry : plan.registries()) {
+                Object value = registry.getStatic(); // static list holder
+                if (value instanceof List<?> list) {
+                    if (list.isEmpty()) continue; // skip empties
+                    if (!first) json.write(",\n");
+                    first = false;
+                    serializeArray(json, plan, list, listener);
                 }
-                sj.add(name + ":" + value);
             }
-        } catch (IllegalAccessException e) {
-            throw new SerializeException("Static field access failed in " + clazz.getName() + ": " + e.getMessage());
         }
-        return sj.toString();
+        json.write("\n}\n}");
+        finish(json, out);
+    }
+
+    /**
+     * Writes the registries as they were when the epoch began, in the same layout as
+     * serializeObjects. Meant for a background thread while the models keep changing.
+     */
+    public static void serializeObjects(Epoch epoch, Writer out, BlockListener listener)
+            throws IOException, SerializeException {
+        JsonWriter json = open(out);
+        listener = draining(json, out, listener);
+        json.write("{\n\"models\":{\n");
+        boolean first = true;
+        for (Class<?> clazz : epoch.classes()) {
+            SerializerPlan plan = SerializerPlan.of(clazz);
+            for (Object[] members : epoch.registries(clazz)) {
+                if (members.length == 0) continue;
+                if (!first) json.write(",\n");
+                first = false;
+                writeBlock(json, epoch, plan, members, 0, members.length, true, listener);
+            }
+        }
+        json.write("\n}\n}");
+        finish(json, out);
     }
 
-    //by passing an array of objects of the same class, we can create a json field with all the object of this class
-    private static String serializeArray(Class<?> clazz, Object[] oArr) throws SerializeException {
-        // objects
-        StringJoiner objects = new StringJoiner(",\n", "[\n", "\n]");
-        for (Object o : oArr) {
+    /**
+     * Writes members[from, to) of one registry as the epoch sees them, as a snapshot holding just
+     * that class block; its static fields only when withStatic is set. Several of these may be
+     * written at once from the same epoch (see FileOut.writeSharded).
+     */
+    public static void serializeShard(Epoch epoch, Class<?> clazz, Object[] members, int from, int to,
+                                      boolean withStatic, Writer out) throws IOException, SerializeException {
+        if (from < 0 || to > members.length || from > to) {
+            throw new IllegalArgumentException("Bad shard range [" + from + ", " + to + ") of " + members.length);
+        }
+        JsonWriter json = open(out);
+        json.write("{\n\"models\":{\n");
+        writeBlock(json, epoch, SerializerPlan.of(clazz), members, from, to, withStatic, NO_LISTENER);
+        json.write("\n}\n}");
+        finish(json, out);
+    }
+
+    private static void writeBlock(JsonWriter json, Epoch epoch, SerializerPlan plan, Object[] members, int from, int to,
+                                   boolean withStatic, BlockListener listener) throws IOException, SerializeException {
+        Class<?> clazz = plan.type();
+        json.write(plan.blockKey());
+        listener.blockStarted(clazz);
+        json.write('{');
+        if (withStatic) {
+            json.write("\n\"static\":");
+            serializeStaticFields(json, plan, epoch.staticValues(clazz));
+            json.write(',');
+        }
+        json.write("\n\"objects\":[\n");
+        long n = 0;
+        for (int i = from; i < to; i++) {
+            Object o = members[i];
             if (o == null) continue;
-            objects.add(serialize(o));
+            if (n > 0) json.write(",\n");
+            listener.objectStarted(clazz, n++);
+            serialize(json, o, epoch.values(o));
+            epoch.written(o);
         }
+        json.write("\n]\n}");
+        listener.blockFinished(clazz, n);
+    }
 
-        String staticJson = serializeStaticFields(clazz);
+    //the serializer always writes through a JsonWriter; one passed in is used as it is
+    private static JsonWriter open(Writer out) {
+        return out instanceof JsonWriter json ? json : new JsonWriter(out);
+    }
 
-        String key = "\"" + clazz.getName() + "\"";
-        return key + ":{\n" +
-                "\"static\":" + staticJson + ",\n" +
-                "\"objects\":" + objects.toString() + "\n" +
-                "}";
+    private static void finish(JsonWriter json, Writer out) throws IOException {
+        if (json == out) json.flush();
+        else json.release(); // flushes out as well
     }
 
-    public static String serializeObjects(List<Class<?>> classes) throws SerializeException {
-        StringJoiner sj = new StringJoiner(",\n", "{\n\"models\":{\n", "\n}\n}");
+    //a listener measuring the caller's writer has to see everything written before each call
+    private static BlockListener draining(JsonWriter json, Writer out, BlockListener listener) {
+        if (json == out || listener == NO_LISTENER) return listener;
+        return new BlockListener() {
+            public void blockStarted(Class<?> type) throws IOException {
+                json.drain();
+                listener.blockStarted(type);
+            }
+
+            public void objectStarted(Class<?> type, long index) throws IOException {
+                json.drain();
+                listener.objectStarted(type, index);
+            }
+
+            public void blockFinished(Class<?> type, long objects) throws IOException {
+                json.drain();
+                listener.blockFinished(type, objects);
+            }
+        };
+    }
+
+    /**
+     * Writes only what changed since the previous checkpoint: a block per class with its static
+     * fields, the new and modified objects (keyed by "@id") and the ids of removed objects.
+     * Classes without changes and without static fields are left out.
+     */
+    public static void serializeDelta(List<Class<?>> classes, ChangeSet changes, Writer out)
+            throws IOException, SerializeException {
+        JsonWriter json = open(out);
+        Map<Class<?>, List<Object>> changed = new LinkedHashMap<>();
+        for (Object o : changes.changed()) {
+            changed.computeIfAbsent(o.getClass(), k -> new ArrayList<>()).add(o);
+        }
+
+        json.write("{\n\"delta\":{\n\"sequence\":");
+        json.writeLong(changes.sequence());
+        json.write("\n},\n\"models\":{\n");
+        boolean first = true;
         for (Class<?> clazz : classes) {
-            for (Field field : clazz.getDeclaredFields()) {
-                if (!field.isAnnotationPresent(ObjectList.class)) continue;
-
-                try {
-                    field.setAccessible(true);
-                    Object value = field.get(null); // static list holder
-                    if (value instanceof List<?> list) {
-                        if (list.isEmpty()) continue; // skip empties
-                        Object[] array = list.toArray();
-                        sj.add(serializeArray(clazz, array));
-                    }
-                } catch (IllegalAccessException e) {
-                    throw new SerializeException("Could not access field " +
-                            field.getName() + " in " + clazz.getName() + ": " + e.getMessage());
-                }
+            SerializerPlan plan = SerializerPlan.of(clazz);
+            List<Object> objects = changed.getOrDefault(clazz, List.of());
+            List<Long> removed = changes.removed().getOrDefault(clazz, List.of());
+            if (objects.isEmpty() && removed.isEmpty() && plan.staticFields().length == 0) continue;
+
+            if (!first) json.write(",\n");
+            first = false;
+            json.write(plan.blockKey());
+            json.write("{\n\"static\":");
+            serializeStaticFields(json, plan);
+            json.write(",\n\"objects\":[\n");
+            writeObjects(json, clazz, objects, NO_LISTENER);
+            json.write("\n],\n\"removed\":[");
+            for (int i = 0; i < removed.size(); i++) {
+                if (i > 0) json.write(',');
+                json.writeLong(removed.get(i));
             }
+            json.write("]\n}");
         }
-        return sj.toString();
+        json.write("\n}\n}");
+        finish(json, out);
     }
 }
@@ -0,0 +1,207 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Buffered writer for the serializer: strings are escaped in a single pass and numbers
+ * are written as digits, all straight into one char buffer. The buffer is taken from a
+ * per-thread pool and handed back on close or release(), so writing a snapshot allocates
+ * next to nothing per field. Not thread-safe.
+ */
+public final class JsonWriter extends Writer {
+
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    private static final ThreadLocal<char[]> POOL = new ThreadLocal<>();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    //largest magnitude Double.toString still writes without an exponent
+    private static final double PLAIN_LIMIT = 1e7;
+
+    private final Writer out;
+    private char[] buf;
+    private int pos;
+
+    public JsonWriter(Writer out) {
+        if (out == null) throw new IllegalArgumentException("Writer must not be null");
+        this.out = out;
+        char[] pooled = POOL.get();
+        if (pooled != null) {
+            POOL.remove(); // a nested writer on the same thread gets a buffer of its own
+            this.buf = pooled;
+        } else {
+            this.buf = new char[BUFFER_SIZE];
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] chars, int off, int len) throws IOException {
+        while (len > 0) {
+            if (pos == buf.length) drain();
+            int n = Math.min(len, buf.length - pos);
+            System.arraycopy(chars, off, buf, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    @Override
+    public void write(String s, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            if (pos == buf.length) drain();
+            int n = Math.min(end - off, buf.length - pos);
+            s.getChars(off, off + n, buf, pos);
+            pos += n;
+            off += n;
+        }
+    }
+
+    /** Writes s as a quoted JSON string; control characters without a short escape are written as \\u00XX. */
+    public void writeString(String s) throws IOException {
+        write('"');
+        int run = 0; // start of the chars that need no escaping
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+            if (run < i) write(s, run, i - run);
+            run = i + 1;
+            writeEscaped(c);
+        }
+        if (run < s.length()) write(s, run, s.length() - run);
+        write('"');
+    }
+
+    /** Writes c as a quoted one-character JSON string. */
+    public void writeString(char c) throws IOException {
+        write('"');
+        if (c >= 0x20 && c != '"' && c != '\\') write(c);
+        else writeEscaped(c);
+        write('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        ensure(6);
+        buf[pos++] = '\\';
+        switch (c) {
+            case '"' -> buf[pos++] = '"';
+            case '\\' -> buf[pos++] = '\\';
+            case '\b' -> buf[pos++] = 'b';
+            case '\f' -> buf[pos++] = 'f';
+            case '\n' -> buf[pos++] = 'n';
+            case '\r' -> buf[pos++] = 'r';
+            case '\t' -> buf[pos++] = 't';
+            default -> {
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[(c >> 4) & 0xF];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    /** Writes the decimal digits of v, as Long.toString would. */
+    public void writeLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            write("-9223372036854775808");
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int end = pos + digits(v);
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        pos = end;
+    }
+
+    /** Writes d exactly as Double.toString would; whole numbers skip the string. */
+    public void writeDouble(double d) throws IOException {
+        if (d == (long) d && Math.abs(d) < PLAIN_LIMIT) {
+            if (d == 0 && Double.doubleToRawLongBits(d) != 0) write('-'); // -0.0
+            writeLong((long) d);
+            write(".0");
+            return;
+        }
+        write(Double.toString(d));
+    }
+
+    /** Writes f exactly as Float.toString would; whole numbers skip the string. */
+    public void writeFloat(float f) throws IOException {
+        if (f == (long) f && Math.abs(f) < PLAIN_LIMIT) {
+            if (f == 0 && Float.floatToRawIntBits(f) != 0) write('-');
+            writeLong((long) f);
+            write(".0");
+            return;
+        }
+        write(Float.toString(f));
+    }
+
+    /** Writes n as its toString would, without the intermediate string for the usual boxes. */
+    public void writeNumber(Number n) throws IOException {
+        if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+            writeLong(n.longValue());
+        } else if (n instanceof Double d) {
+            writeDouble(d);
+        } else if (n instanceof Float f) {
+            writeFloat(f);
+        } else {
+            write(n.toString());
+        }
+    }
+
+    /** Hands the buffered chars to the underlying writer without flushing it. */
+    public void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /** Flushes and returns the buffer to the pool, leaving the underlying writer open. */
+    public void release() throws IOException {
+        if (buf == null) return;
+        flush();
+        POOL.set(buf);
+        buf = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+        out.close();
+    }
+
+    private void ensure(int room) throws IOException {
+        if (buf.length - pos < room) drain();
+    }
+
+    private static int digits(long v) {
+        int n = 1;
+        for (long limit = 10; n < 19 && v >= limit; limit *= 10) n++;
+        return n;
+    }
+}
@@ -0,0 +1,128 @@
+package persistence;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stable numeric ids for model objects, so a snapshot written later can refer to
+ * objects written earlier. Ids are handed out on first serialization and restored
+ * from the "@id" key when a snapshot is read back.
+ * <p>
+ * Objects are held weakly: an object nothing else refers to any more loses its id
+ * and can be collected. Both directions are concurrent maps, so parallel and sharded
+ * writes look ids up without a shared lock.
+ */
+public final class ObjectIds {
+
+    //keys are Refs; lookups probe with a Probe, which compares by identity against them
+    private static final Map<Object, Ref> ids = new ConcurrentHashMap<>();
+    private static final Map<Long, Ref> objects = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private ObjectIds() {}
+
+    /** The id of o, assigning the next free one if it has none yet. */
+    public static long idOf(Object o) {
+        if (o == null) throw new IllegalArgumentException("Object is null");
+        Ref known = ids.get(new Probe(o));
+        if (known != null) return known.id;
+        expunge();
+        Ref fresh = new Ref(o);
+        return ids.computeIfAbsent(fresh, k -> {
+            fresh.id = nextId.getAndIncrement();
+            objects.put(fresh.id, fresh);
+            return fresh;
+        }).id;
+    }
+
+    /** The id of o, or 0 when it was never given one. */
+    public static long peek(Object o) {
+        Ref known = ids.get(new Probe(o));
+        return known == null ? 0 : known.id;
+    }
+
+    public static Object find(long id) {
+        Ref ref = objects.get(id);
+        return ref == null ? null : ref.get();
+    }
+
+    /** Binds a restored object to the id it was saved with; whatever held that id before loses it. */
+    public static void assign(Object o, long id) {
+        if (o == null) throw new IllegalArgumentException("Object is null");
+        if (id <= 0) throw new IllegalArgumentException("Id must be positive");
+        expunge();
+        Ref[] holder = new Ref[1];
+        ids.compute(new Ref(o), (k, known) -> {
+            Ref ref = known != null ? known : (Ref) k;
+            if (ref.id != 0 && ref.id != id) objects.remove(ref.id, ref);
+            ref.id = id;
+            holder[0] = objects.put(id, ref);
+            return ref;
+        });
+        if (holder[0] != null && holder[0].get() != o) ids.remove(holder[0]);
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    public static void forget(Object o) {
+        Ref ref = ids.remove(new Probe(o));
+        if (ref != null) objects.remove(ref.id, ref);
+    }
+
+    public static void clear() {
+        ids.clear();
+        objects.clear();
+        nextId.set(1);
+    }
+
+    //drops the entries of collected objects
+    private static void expunge() {
+        for (Reference<?> r; (r = collected.poll()) != null; ) {
+            Ref ref = (Ref) r;
+            ids.remove(ref);
+            objects.remove(ref.id, ref);
+        }
+    }
+
+    /** The weak key of one object, and the value both maps hold for it. */
+    private static final class Ref extends WeakReference<Object> {
+        private final int hash;
+        volatile long id;
+
+        Ref(Object o) {
+            super(o, collected);
+            hash = System.identityHashCode(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        //same object while it lives; once collected, only itself
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Ref ref)) return false;
+            Object o = get();
+            return o != null && o == ref.get();
+        }
+    }
+
+    /** Looks up o without making a Ref for it. */
+    private record Probe(Object o) {
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(o);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Ref ref && ref.get() == o;
+        }
+    }
+}
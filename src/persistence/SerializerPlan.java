@@ -0,0 +1,208 @@
+package persistence;
+
+import persistence.codegen.Codecs;
+import persistence.codegen.ModelCodec;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the serializer needs to know about one model class, resolved once.
+ * Field filtering (static, @JsonIgnore), accessibility and the quoted JSON keys
+ * are computed on first use; afterwards serializing an object is a
+ * straight loop over prebuilt accessors, or one call into the generated
+ * ModelCodec of the class when there is one.
+ */
+public final class SerializerPlan {
+
+    //one plan per class, computed on first use; a plan holds its class and the handles bound to it
+    private static final ClassValue<SerializerPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected SerializerPlan computeValue(Class<?> type) {
+            return new SerializerPlan(type);
+        }
+    };
+
+    private static final MethodType INSTANCE_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType STATIC_GETTER = MethodType.methodType(Object.class);
+
+    private final Class<?> type;
+    private final boolean serializable;
+    private final boolean model;
+    private final String blockKey;
+    private final Property[] instanceFields;
+    private final Property[] staticFields;
+    private final Property[] registries;
+    private final ModelCodec<Object> codec;
+
+    private SerializerPlan(Class<?> type) {
+        this.type = type;
+        this.serializable = type.isAnnotationPresent(JsonSerializable.class);
+        this.blockKey = "\"" + type.getName() + "\":";
+
+        boolean isModel = false;
+        List<Property> instance = new ArrayList<>();
+        Class<?> c = type;
+        while (c != null && c != Object.class) {
+            isModel |= c.isAnnotationPresent(JsonSerializable.class);
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    isModel |= field.isAnnotationPresent(ObjectList.class);
+                    continue;
+                }
+                if (field.isAnnotationPresent(JsonIgnore.class)) continue;
+                instance.add(new Property(field, false));
+            }
+            c = c.getSuperclass();
+        }
+        this.model = isModel;
+
+        List<Property> statics = new ArrayList<>();
+        List<Property> lists = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) continue;
+            if (field.isAnnotationPresent(ObjectList.class)) {
+                lists.add(new Property(field, true));
+                continue;
+            }
+            if (field.isAnnotationPresent(JsonIgnore.class)) continue;
+            statics.add(new Property(field, true));
+        }
+
+        this.instanceFields = instance.toArray(new Property[0]);
+        this.staticFields = statics.toArray(new Property[0]);
+        this.registries = lists.toArray(new Property[0]);
+        this.codec = matchingCodec(type, instanceFields);
+    }
+
+    //a codec compiled against another version of the class is not used
+    @SuppressWarnings("unchecked")
+    private static ModelCodec<Object> matchingCodec(Class<?> type, Property[] fields) {
+        ModelCodec<?> codec = Codecs.find(type);
+        if (codec == null) return null;
+        String[] names = codec.fields();
+        if (names.length != fields.length) return null;
+        for (int i = 0; i < names.length; i++) {
+            if (!names[i].equals(fields[i].name())) return null;
+        }
+        return (ModelCodec<Object>) codec;
+    }
+
+    public static SerializerPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    public Class<?> type() {
+        return type;
+    }
+
+    public boolean isSerializable() {
+        return serializable;
+    }
+
+    /**
+     * Whether objects of this class have an identity of their own: the class (or a superclass)
+     * is @JsonSerializable or keeps a static @ObjectList registry. Fields pointing at such
+     * objects are written as id references instead of by value.
+     */
+    public boolean isModel() {
+        return model;
+    }
+
+    /** The quoted class name followed by ':', as written in front of a class block. */
+    public String blockKey() {
+        return blockKey;
+    }
+
+    /**
+     * Non-static, non-ignored fields of the class and its superclasses, subclass first.
+     * Instance @ObjectList associations are included; they are written as lists of references.
+     */
+    public Property[] instanceFields() {
+        return instanceFields;
+    }
+
+    /** Current values of instanceFields() of o, in the same order. */
+    public Object[] values(Object o) {
+        Object[] values = new Object[instanceFields.length];
+        if (codec != null) {
+            codec.read(o, values);
+        } else {
+            for (int i = 0; i < values.length; i++) values[i] = instanceFields[i].get(o);
+        }
+        return values;
+    }
+
+    /** The generated codec of the class, or null when it goes through the accessors above. */
+    public ModelCodec<Object> codec() {
+        return codec;
+    }
+
+    /** Static fields of the class itself, excluding the @ObjectList registries. */
+    public Property[] staticFields() {
+        return staticFields;
+    }
+
+    /** Static @ObjectList registries declared by the class. */
+    public Property[] registries() {
+        return registries;
+    }
+
+    public static final class Property {
+        private final String name;
+        private final String key;
+        private final Class<?> type;
+        private final MethodHandle getter;
+
+        private Property(Field field, boolean isStatic) {
+            this.name = field.getName();
+            this.key = "\"" + name + "\":";
+            this.type = field.getType();
+            try {
+                field.setAccessible(true);
+                MethodHandle mh = MethodHandles.lookup().unreflectGetter(field);
+                this.getter = mh.asType(isStatic ? STATIC_GETTER : INSTANCE_GETTER);
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new SerializeException("Field access failed for " + field.getDeclaringClass().getName()
+                        + "." + name + ": " + e.getMessage());
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /** The quoted field name followed by ':'. */
+        public String key() {
+            return key;
+        }
+
+        public Class<?> type() {
+            return type;
+        }
+
+        public Object get(Object target) {
+            try {
+                return getter.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SerializeException("Could not read " + name + ": " + t.getMessage());
+            }
+        }
+
+        public Object getStatic() {
+            try {
+                return getter.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SerializeException("Could not read static " + name + ": " + t.getMessage());
+            }
+        }
+    }
+}
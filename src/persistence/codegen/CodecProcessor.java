@@ -0,0 +1,322 @@
+package persistence.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates a ModelCodec for every @JsonSerializable class. Fields the codec can see
+ * (non-private fields of the model itself) are read directly; the others go through
+ * VarHandles resolved once when the codec is loaded. The @JsonCtor is called with a plain
+ * constructor call when it is not private. Classes the generated code could not name
+ * (private or inner classes, generic classes, inaccessible superclasses) get no codec and
+ * stay on the reflective path.
+ *
+ * <p>Field order follows SerializerPlan: declared fields of the class, then of each
+ * superclass, skipping static and @JsonIgnore fields.
+ *
+ * <p>Codecs are opt-in: the processor has to be compiled before the models it processes,
+ * so a plain build of the project generates none and everything stays reflective. To
+ * generate them, compile this package on its own first, then put it on the processor path:
+ * <pre>
+ * javac -d out/codegen src/persistence/codegen/*.java
+ * javac -parameters -processorpath out/codegen -processor persistence.codegen.CodecProcessor ...
+ * </pre>
+ * In IntelliJ, run the first command, then enable the "Codecs" annotation processing
+ * profile, which already points at out/codegen.
+ */
+@SupportedAnnotationTypes("persistence.JsonSerializable")
+public final class CodecProcessor extends AbstractProcessor {
+
+    private static final String JSON_CTOR = "persistence.JsonCtor";
+    private static final String JSON_IGNORE = "persistence.JsonIgnore";
+    private static final String OBJECT_LIST = "persistence.ObjectList";
+
+    private record Field(VariableElement element, TypeElement owner, String handle, boolean direct) {}
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (Element e : round.getElementsAnnotatedWith(annotation)) {
+                if (e.getKind() != ElementKind.CLASS) continue;
+                TypeElement model = (TypeElement) e;
+                String reason = unsupported(model);
+                if (reason != null) {
+                    note(model, "No codec for " + model.getQualifiedName() + ": " + reason);
+                    continue;
+                }
+                try {
+                    generate(model);
+                } catch (IOException ex) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Cannot write codec of " + model.getQualifiedName() + ": " + ex.getMessage(), model);
+                }
+            }
+        }
+        return false; // the annotation stays visible to other processors
+    }
+
+    private String unsupported(TypeElement model) {
+        if (!model.getTypeParameters().isEmpty()) return "generic class";
+        for (TypeElement t = model; t != null; t = superclassOf(t)) {
+            if (!nameable(t, packageOf(model))) return t.getQualifiedName() + " cannot be named from its package";
+            for (VariableElement f : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (!typeNameable(f.asType(), packageOf(model))) return "type of " + f.getSimpleName() + " cannot be named";
+            }
+        }
+        ExecutableElement ctor = jsonCtor(model);
+        if (ctor != null) {
+            for (VariableElement p : ctor.getParameters()) {
+                if (!typeNameable(p.asType(), packageOf(model))) return "type of " + p.getSimpleName() + " cannot be named";
+            }
+        }
+        return null;
+    }
+
+    private boolean typeNameable(TypeMirror type, PackageElement pkg) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        while (erased.getKind() == TypeKind.ARRAY) erased = ((ArrayType) erased).getComponentType();
+        return erased.getKind() != TypeKind.DECLARED || nameable((TypeElement) ((DeclaredType) erased).asElement(), pkg);
+    }
+
+    //whether generated code in package pkg can write T.class
+    private boolean nameable(TypeElement type, PackageElement pkg) {
+        for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (!(e instanceof TypeElement t)) return false;
+            if (t.getModifiers().contains(Modifier.PRIVATE)) return false;
+            if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) return false;
+            if (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC)
+                    && t.getKind() == ElementKind.CLASS) return false;
+            boolean visible = t.getModifiers().contains(Modifier.PUBLIC) || packageOf(t).equals(pkg);
+            if (!visible) return false;
+        }
+        return true;
+    }
+
+    private void generate(TypeElement model) throws IOException {
+        PackageElement pkg = packageOf(model);
+        String packageName = pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(model).toString();
+        String codecName = Codecs.codecName(binaryName);
+        String simpleName = codecName.substring(codecName.lastIndexOf('.') + 1);
+        String modelName = model.getQualifiedName().toString();
+
+        List<Field> fields = new ArrayList<>();
+        for (TypeElement t = model; t != null; t = superclassOf(t)) {
+            for (VariableElement f : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (f.getModifiers().contains(Modifier.STATIC) || annotated(f, JSON_IGNORE)) continue;
+                boolean direct = t == model && !f.getModifiers().contains(Modifier.PRIVATE);
+                fields.add(new Field(f, t, "F" + fields.size(), direct));
+            }
+        }
+        List<Field> statics = new ArrayList<>();
+        for (VariableElement f : ElementFilter.fieldsIn(model.getEnclosedElements())) {
+            Set<Modifier> mods = f.getModifiers();
+            if (!mods.contains(Modifier.STATIC) || mods.contains(Modifier.FINAL)) continue;
+            if (annotated(f, OBJECT_LIST) || annotated(f, JSON_IGNORE)) continue;
+            statics.add(new Field(f, model, "S" + statics.size(), !mods.contains(Modifier.PRIVATE)));
+        }
+        ExecutableElement ctor = jsonCtor(model);
+        if (ctor != null && throwsChecked(ctor)) {
+            note(ctor, "Codec of " + model.getQualifiedName() + " does not construct: its @JsonCtor throws checked exceptions");
+            ctor = null;
+        }
+
+        StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) src.append("package ").append(packageName).append(";\n\n");
+        src.append("import java.lang.invoke.MethodHandles;\n");
+        src.append("import java.lang.invoke.VarHandle;\n\n");
+        src.append("/** Generated by ").append(CodecProcessor.class.getName()).append(" from ")
+                .append(modelName).append("; do not edit. */\n");
+        src.append("@javax.annotation.processing.Generated(\"").append(CodecProcessor.class.getName()).append("\")\n");
+        src.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        src.append("public final class ").append(simpleName)
+                .append(" implements persistence.codegen.ModelCodec<").append(modelName).append("> {\n\n");
+
+        src.append("    private static final String[] FIELDS = {");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append('"').append(fields.get(i).element().getSimpleName()).append('"');
+        }
+        src.append("};\n");
+        src.append("    private static final String[] CTOR = ");
+        if (ctor == null) {
+            src.append("null;\n");
+        } else {
+            src.append('{');
+            List<? extends VariableElement> params = ctor.getParameters();
+            for (int i = 0; i < params.size(); i++) {
+                src.append(i == 0 ? "" : ", ").append('"').append(params.get(i).getSimpleName()).append('"');
+            }
+            src.append("};\n");
+        }
+
+        List<Field> handles = new ArrayList<>();
+        for (Field f : fields) if (!f.direct()) handles.add(f);
+        for (Field f : statics) if (!f.direct()) handles.add(f);
+        for (Field f : handles) src.append("    private static final VarHandle ").append(f.handle()).append(";\n");
+        if (!handles.isEmpty()) {
+            src.append("\n    static {\n        try {\n");
+            List<TypeElement> owners = new ArrayList<>();
+            for (Field f : handles) {
+                if (owners.contains(f.owner())) continue;
+                src.append("            MethodHandles.Lookup L").append(owners.size())
+                        .append(" = MethodHandles.privateLookupIn(").append(f.owner().getQualifiedName())
+                        .append(".class, MethodHandles.lookup());\n");
+                owners.add(f.owner());
+            }
+            for (Field f : handles) {
+                String owner = f.owner().getQualifiedName() + ".class";
+                boolean isStatic = f.element().getModifiers().contains(Modifier.STATIC);
+                src.append("            ").append(f.handle()).append(" = L").append(owners.indexOf(f.owner()))
+                        .append(isStatic ? ".findStaticVarHandle(" : ".findVarHandle(")
+                        .append(owner).append(", \"").append(f.element().getSimpleName()).append("\", ")
+                        .append(erasure(f.element().asType())).append(".class);\n");
+            }
+            src.append("        } catch (ReflectiveOperationException e) {\n");
+            src.append("            throw new ExceptionInInitializerError(e);\n");
+            src.append("        }\n    }\n");
+        }
+
+        src.append("\n    @Override\n    public Class<").append(modelName).append("> type() {\n");
+        src.append("        return ").append(modelName).append(".class;\n    }\n");
+
+        src.append("\n    @Override\n    public String[] fields() {\n        return FIELDS.clone();\n    }\n");
+
+        src.append("\n    @Override\n    public void read(").append(modelName).append(" o, Object[] values) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            Field f = fields.get(i);
+            src.append("        values[").append(i).append("] = ");
+            if (f.direct()) {
+                src.append("o.").append(f.element().getSimpleName());
+            } else {
+                src.append('(').append(erasure(f.element().asType())).append(") ").append(f.handle()).append(".get(o)");
+            }
+            src.append(";\n");
+        }
+        src.append("    }\n");
+
+        src.append("\n    @Override\n    public String[] constructorParameters() {\n");
+        src.append("        return CTOR == null ? null : CTOR.clone();\n    }\n");
+
+        src.append("\n    @Override\n    public ").append(modelName).append(" construct(Object[] args) {\n");
+        if (ctor == null) {
+            src.append("        throw new UnsupportedOperationException(\"No accessible @JsonCtor in ")
+                    .append(modelName).append("\");\n");
+        } else {
+            src.append("        return new ").append(modelName).append('(');
+            List<? extends VariableElement> params = ctor.getParameters();
+            for (int i = 0; i < params.size(); i++) {
+                src.append(i == 0 ? "" : ", ").append('(').append(boxed(params.get(i).asType()))
+                        .append(") args[").append(i).append(']');
+            }
+            src.append(");\n");
+        }
+        src.append("    }\n");
+
+        src.append("\n    @Override\n    public boolean setStatic(String name, Object value) {\n");
+        if (statics.isEmpty()) {
+            src.append("        return false;\n");
+        } else {
+            src.append("        switch (name) {\n");
+            for (Field f : statics) {
+                String cast = "(" + boxed(f.element().asType()) + ") value";
+                src.append("            case \"").append(f.element().getSimpleName()).append("\" -> ");
+                if (f.direct()) {
+                    src.append(modelName).append('.').append(f.element().getSimpleName()).append(" = ").append(cast);
+                } else {
+                    TypeMirror type = f.element().asType();
+                    String exact = type.getKind().isPrimitive() ? "(" + type + ") " + cast : cast;
+                    src.append(f.handle()).append(".set(").append(exact).append(')');
+                }
+                src.append(";\n");
+            }
+            src.append("            default -> {\n                return false;\n            }\n");
+            src.append("        }\n        return true;\n");
+        }
+        src.append("    }\n}\n");
+
+        try (Writer out = processingEnv.getFiler().createSourceFile(codecName, model).openWriter()) {
+            out.write(src.toString());
+        }
+    }
+
+    //the first @JsonCtor, as CtorBinding picks it; null when it is private or absent
+    private ExecutableElement jsonCtor(TypeElement model) {
+        if (model.getModifiers().contains(Modifier.ABSTRACT)) return null;
+        for (ExecutableElement c : ElementFilter.constructorsIn(model.getEnclosedElements())) {
+            if (!annotated(c, JSON_CTOR)) continue;
+            return c.getModifiers().contains(Modifier.PRIVATE) ? null : c;
+        }
+        return null;
+    }
+
+    //construct(Object[]) declares none, so such a constructor is left to reflection
+    private boolean throwsChecked(ExecutableElement ctor) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror runtime = processingEnv.getElementUtils().getTypeElement("java.lang.RuntimeException").asType();
+        TypeMirror error = processingEnv.getElementUtils().getTypeElement("java.lang.Error").asType();
+        for (TypeMirror thrown : ctor.getThrownTypes()) {
+            if (!types.isSubtype(thrown, runtime) && !types.isSubtype(thrown, error)) return true;
+        }
+        return false;
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    //a cast that unboxes into primitive parameters and checks the erased type of reference ones
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+                    .getQualifiedName().toString();
+        }
+        return erasure(type);
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror sup = type.getSuperclass();
+        if (sup.getKind() != TypeKind.DECLARED) return null;
+        TypeElement e = (TypeElement) ((DeclaredType) sup).asElement();
+        return e.getQualifiedName().contentEquals("java.lang.Object") ? null : e;
+    }
+
+    private PackageElement packageOf(Element e) {
+        return processingEnv.getElementUtils().getPackageOf(e);
+    }
+
+    private static boolean annotated(Element e, String annotation) {
+        return e.getAnnotationMirrors().stream()
+                .anyMatch(a -> ((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation));
+    }
+
+    private void note(Element e, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, e);
+    }
+}
@@ -0,0 +1,50 @@
+package persistence.codegen;
+
+/**
+ * Finds the generated codec of a model class. A codec is looked up by name (the binary
+ * name of the model with '$' replaced by '_', plus "Codec") in the model's class loader,
+ * only when the model is first used, so classes without one simply keep the reflective path.
+ * Setting the system property "persistence.codecs" to "false" turns every codec off.
+ * Codecs only exist when the models were compiled with CodecProcessor; see there.
+ */
+public final class Codecs {
+
+    public static final String SUFFIX = "Codec";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("persistence.codecs"));
+
+    private static final ClassValue<ModelCodec<?>> CODECS = new ClassValue<>() {
+        @Override
+        protected ModelCodec<?> computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private Codecs() {}
+
+    /** The codec generated for the class, or null. */
+    public static ModelCodec<?> find(Class<?> type) {
+        return ENABLED ? CODECS.get(type) : null;
+    }
+
+    /** Name of the codec class generated for a model with this binary name. */
+    public static String codecName(String binaryName) {
+        int dot = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, dot + 1) + binaryName.substring(dot + 1).replace('$', '_') + SUFFIX;
+    }
+
+    private static ModelCodec<?> load(Class<?> type) {
+        if (type.isArray() || type.isPrimitive()) return null;
+        try {
+            Class<?> c = Class.forName(codecName(type.getName()), true, type.getClassLoader());
+            if (!ModelCodec.class.isAssignableFrom(c)) return null;
+            ModelCodec<?> codec = (ModelCodec<?>) c.getDeclaredConstructor().newInstance();
+            return codec.type() == type ? codec : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            System.err.println("Cannot use codec of " + type.getName() + ": " + e + " — skipping");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package persistence.codegen;
+
+/**
+ * Straight-line field access and construction for one @JsonSerializable class, generated at
+ * compile time by CodecProcessor as "&lt;Model&gt;Codec" next to the model. The serializer and
+ * FileIn use it in place of their reflective accessors when it matches the class they see;
+ * see Codecs.
+ */
+public interface ModelCodec<T> {
+
+    Class<T> type();
+
+    /** Names of the serialized instance fields, in SerializerPlan.instanceFields() order. */
+    String[] fields();
+
+    /** Copies the values of fields() of o into values. */
+    void read(T o, Object[] values);
+
+    /** Parameter names of the @JsonCtor, or null when the codec cannot call it. */
+    String[] constructorParameters();
+
+    /** Calls the @JsonCtor with already converted arguments, in constructorParameters() order. */
+    T construct(Object[] args);
+
+    /** Sets a serialized static field of the class; false when the codec has no such field. */
+    boolean setStatic(String name, Object value);
+}
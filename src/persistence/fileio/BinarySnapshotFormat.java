@@ -0,0 +1,432 @@
+package persistence.fileio;
+
+import persistence.GraphEncoding;
+import persistence.ObjectIds;
+import persistence.SerializeException;
+import persistence.SerializerPlan;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Compact length-prefixed snapshot encoding.
+ *
+ * <pre>
+ * file   := "BSNP" version:u8 block* END
+ * block  := CLASS className:str staticCount:varint (name:str value)* fieldCount:varint name:str*
+ *           (OBJECT id:varint value{fieldCount})* END
+ * str    := varint(index &lt;&lt; 1)                  reference into the string table
+ *         | varint(length &lt;&lt; 1 | 1) utf8-bytes    new string, appended to the table
+ * value  := tag payload   (zigzag varints for int/long, epoch seconds + nanos for LocalDateTime,
+ *                          ordinals for enums, IEEE bits for double/float)
+ *         | REF id:varint | LIST count:varint value* | MAP count:varint (value value)*
+ *         | EMBEDDED className:str count:varint (name:str value)*
+ * </pre>
+ * Field names are written once per class block, objects then carry only their values.
+ */
+final class BinarySnapshotFormat implements SnapshotFormat {
+
+    private static final byte[] MAGIC = {'B', 'S', 'N', 'P'};
+    private static final int VERSION = 3; // 2: objects carry their ObjectIds id, 3: graph values
+
+    private static final int END = 0;
+    private static final int CLASS = 1;
+    private static final int OBJECT = 2;
+
+    //value tags
+    private static final int T_NULL = 0;
+    private static final int T_FALSE = 1;
+    private static final int T_TRUE = 2;
+    private static final int T_INT = 3;
+    private static final int T_LONG = 4;
+    private static final int T_DOUBLE = 5;
+    private static final int T_FLOAT = 6;
+    private static final int T_STRING = 7;
+    private static final int T_CHAR = 8;
+    private static final int T_ENUM = 9;
+    private static final int T_LOCAL_DATE_TIME = 10;
+    private static final int T_LOCAL_DATE = 11;
+    private static final int T_LOCAL_TIME = 12;
+    private static final int T_OTHER = 13;
+    private static final int T_REF = 14;
+    private static final int T_LIST = 15;
+    private static final int T_MAP = 16;
+    private static final int T_EMBEDDED = 17;
+
+    //repeated text is shared through the table, but unique strings must not grow it forever
+    private static final int STRING_TABLE_LIMIT = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    //the largest array the VM hands out
+    private static final int MAX_STRING_LENGTH = Integer.MAX_VALUE - 8;
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public String extension() {
+        return "bsnap";
+    }
+
+    @Override
+    public boolean matches(byte[] header, int length) {
+        if (length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    // ---------------- writing ----------------
+
+    @Override
+    public void write(List<Class<?>> classes, OutputStream out) throws IOException {
+        Encoder enc = new Encoder(out);
+        enc.bytes(MAGIC, MAGIC.length);
+        enc.u8(VERSION);
+        for (Class<?> clazz : classes) {
+            SerializerPlan plan = SerializerPlan.of(clazz);
+            for (SerializerPlan.Property registry : plan.registries()) {
+                if (registry.getStatic() instanceof List<?> list && !list.isEmpty()) {
+                    writeBlock(enc, plan, list);
+                }
+            }
+        }
+        enc.u8(END);
+        enc.flush();
+    }
+
+    private static void writeBlock(Encoder enc, SerializerPlan plan, List<?> objects) throws IOException {
+        enc.u8(CLASS);
+        enc.string(plan.type().getName());
+
+        SerializerPlan.Property[] statics = plan.staticFields();
+        enc.varint(statics.length);
+        for (SerializerPlan.Property p : statics) {
+            enc.string(p.name());
+            enc.value(p.getStatic(), 0);
+        }
+
+        SerializerPlan.Property[] fields = plan.instanceFields();
+        enc.varint(fields.length);
+        for (SerializerPlan.Property p : fields) enc.string(p.name());
+
+        for (Object o : objects) {
+            if (o == null) continue;
+            SerializerPlan objPlan = SerializerPlan.of(o.getClass());
+            if (!objPlan.isSerializable()) throw new SerializeException("Object is not JsonSerializable");
+            if (objPlan != plan) {
+                throw new SerializeException("Registry of " + plan.type().getName()
+                        + " holds a " + o.getClass().getName());
+            }
+            enc.u8(OBJECT);
+            enc.varint(ObjectIds.idOf(o));
+            for (Object v : plan.values(o)) enc.value(v, 0);
+        }
+        enc.u8(END);
+    }
+
+    private static final class Encoder {
+        private final OutputStream out;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int n;
+        private final Map<String, Integer> table = new HashMap<>();
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        void u8(int b) throws IOException {
+            if (n == buf.length) drain();
+            buf[n++] = (byte) b;
+        }
+
+        void bytes(byte[] b, int len) throws IOException {
+            if (len > buf.length - n) {
+                drain();
+                if (len > buf.length) {
+                    out.write(b, 0, len);
+                    return;
+                }
+            }
+            System.arraycopy(b, 0, buf, n, len);
+            n += len;
+        }
+
+        void varint(long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                u8((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            u8((int) v);
+        }
+
+        void zigzag(long v) throws IOException {
+            varint((v << 1) ^ (v >> 63));
+        }
+
+        void fixed64(long v) throws IOException {
+            for (int i = 0; i < 8; i++) u8((int) (v >>> (i * 8)));
+        }
+
+        void string(String s) throws IOException {
+            Integer idx = table.get(s);
+            if (idx != null) {
+                varint((long) idx << 1);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varint(((long) b.length << 1) | 1);
+            bytes(b, b.length);
+            if (table.size() < STRING_TABLE_LIMIT) table.put(s, table.size());
+        }
+
+        void value(Object v, int depth) throws IOException {
+            if (v == null) { u8(T_NULL); return; }
+            if (v instanceof Boolean b) { u8(b ? T_TRUE : T_FALSE); return; }
+            if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+                u8(T_INT); zigzag(((Number) v).intValue()); return;
+            }
+            if (v instanceof Long l) { u8(T_LONG); zigzag(l); return; }
+            if (v instanceof Double d) { u8(T_DOUBLE); fixed64(Double.doubleToRawLongBits(d)); return; }
+            if (v instanceof Float f) { u8(T_FLOAT); varint(Integer.toUnsignedLong(Float.floatToRawIntBits(f))); return; }
+            if (v instanceof String s) { u8(T_STRING); string(s); return; }
+            if (v instanceof Character c) { u8(T_CHAR); varint(c); return; }
+            if (v instanceof Enum<?> e) { u8(T_ENUM); varint(e.ordinal()); return; }
+            if (v instanceof LocalDateTime t) {
+                u8(T_LOCAL_DATE_TIME);
+                zigzag(t.toEpochSecond(ZoneOffset.UTC));
+                varint(t.getNano());
+                return;
+            }
+            if (v instanceof LocalDate d) { u8(T_LOCAL_DATE); zigzag(d.toEpochDay()); return; }
+            if (v instanceof LocalTime t) { u8(T_LOCAL_TIME); varint(t.toNanoOfDay()); return; }
+            switch (GraphEncoding.kindOf(v)) {
+                case REFERENCE -> {
+                    u8(T_REF);
+                    varint(ObjectIds.idOf(v));
+                }
+                case COLLECTION -> {
+                    if (depth >= GraphEncoding.MAX_DEPTH) throw GraphEncoding.tooDeep(v);
+                    Collection<?> c = (Collection<?>) v;
+                    u8(T_LIST);
+                    varint(c.size());
+                    for (Object e : c) value(e, depth + 1);
+                }
+                case MAP -> {
+                    if (depth >= GraphEncoding.MAX_DEPTH) throw GraphEncoding.tooDeep(v);
+                    Map<?, ?> m = (Map<?, ?>) v;
+                    u8(T_MAP);
+                    varint(m.size());
+                    for (Map.Entry<?, ?> e : m.entrySet()) {
+                        value(e.getKey(), depth + 1);
+                        value(e.getValue(), depth + 1);
+                    }
+                }
+                case EMBEDDED -> {
+                    if (depth >= GraphEncoding.MAX_DEPTH) throw GraphEncoding.tooDeep(v);
+                    SerializerPlan plan = SerializerPlan.of(v.getClass());
+                    u8(T_EMBEDDED);
+                    string(plan.type().getName());
+                    varint(plan.instanceFields().length);
+                    for (SerializerPlan.Property p : plan.instanceFields()) {
+                        string(p.name());
+                        value(p.get(v), depth + 1);
+                    }
+                }
+                default -> {
+                    u8(T_OTHER); // same fallback as the JSON serializer
+                    string(v.toString());
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        private void drain() throws IOException {
+            out.write(buf, 0, n);
+            n = 0;
+        }
+    }
+
+    // ---------------- reading ----------------
+
+    @Override
+    public void read(InputStream in, Collection<Class<?>> knownModels) throws IOException {
+        Decoder dec = new Decoder(in);
+        for (byte m : MAGIC) {
+            if (dec.u8() != (m & 0xFF)) throw new IOException("Not a binary snapshot");
+        }
+        int version = dec.u8();
+        if (version != VERSION) throw new IOException("Unsupported binary snapshot version " + version);
+
+        GraphRestore graph = new GraphRestore(knownModels);
+        while (dec.u8() == CLASS) {
+            String fqcn = dec.string();
+            Class<?> clazz = FileIn.resolveClass(fqcn, knownModels);
+            if (clazz == null) System.err.println("Unknown class: " + fqcn + " (skipping)");
+            else graph.block(clazz);
+
+            int staticCount = (int) dec.varint();
+            Map<String, Object> stat = new LinkedHashMap<>();
+            for (int i = 0; i < staticCount; i++) {
+                String name = dec.string();
+                stat.put(name, dec.value());
+            }
+            if (clazz != null) FileIn.restoreStaticFields(clazz, stat);
+
+            String[] names = new String[(int) dec.varint()];
+            for (int i = 0; i < names.length; i++) names[i] = dec.string();
+
+            while (dec.u8() == OBJECT) {
+                Map<String, Object> obj = new HashMap<>();
+                obj.put(GraphEncoding.ID, dec.varint());
+                for (String name : names) obj.put(name, dec.value());
+                if (clazz != null) graph.restore(clazz, obj);
+            }
+        }
+        graph.finish();
+    }
+
+    private static final class Decoder {
+        private final InputStream in;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos, limit;
+        private final List<String> table = new ArrayList<>();
+
+        Decoder(InputStream in) {
+            this.in = in;
+        }
+
+        int u8() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    throw new EOFException("Truncated binary snapshot");
+                }
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        long varint() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = u8();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long zigzag() throws IOException {
+            long v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        long fixed64() throws IOException {
+            long v = 0;
+            for (int i = 0; i < 8; i++) v |= (long) u8() << (i * 8);
+            return v;
+        }
+
+        String string() throws IOException {
+            long head = varint();
+            long n = head >>> 1;
+            if ((head & 1) == 0) {
+                if (n >= table.size()) {
+                    throw new IOException("String table index " + n + " out of range (" + table.size() + " entries)");
+                }
+                return table.get((int) n);
+            }
+            if (n > MAX_STRING_LENGTH) throw new IOException("String length " + n + " out of range");
+            String s = utf8((int) n);
+            if (table.size() < STRING_TABLE_LIMIT) table.add(s);
+            return s;
+        }
+
+        //decodes straight from the buffer when the bytes are there; longer ones are read in bulk
+        private String utf8(int len) throws IOException {
+            int buffered = limit - pos;
+            if (len <= buffered) {
+                String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+                pos += len;
+                return s;
+            }
+            byte[] rest = in.readNBytes(len - buffered); // grows as it reads, so a bad length cannot allocate it all
+            if (rest.length < len - buffered) throw new EOFException("Truncated binary snapshot");
+            byte[] b = new byte[len];
+            System.arraycopy(buf, pos, b, 0, buffered);
+            System.arraycopy(rest, 0, b, buffered, rest.length);
+            pos = limit;
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        Object value() throws IOException {
+            int tag = u8();
+            switch (tag) {
+                case T_NULL: return null;
+                case T_FALSE: return false;
+                case T_TRUE: return true;
+                case T_INT: return (int) zigzag();
+                case T_LONG: return zigzag();
+                case T_DOUBLE: return Double.longBitsToDouble(fixed64());
+                case T_FLOAT: return Float.intBitsToFloat((int) varint());
+                case T_STRING: return string();
+                case T_CHAR: return (char) varint();
+                case T_ENUM: { // the enum coercer maps ordinals back
+                    long ordinal = varint();
+                    if (ordinal < 0 || ordinal > Integer.MAX_VALUE) throw new IOException("Enum ordinal " + ordinal + " out of range");
+                    return (int) ordinal;
+                }
+                case T_LOCAL_DATE_TIME: {
+                    long seconds = zigzag();
+                    return LocalDateTime.ofEpochSecond(seconds, (int) varint(), ZoneOffset.UTC);
+                }
+                case T_LOCAL_DATE: return LocalDate.ofEpochDay(zigzag());
+                case T_LOCAL_TIME: return LocalTime.ofNanoOfDay(varint());
+                case T_OTHER: return string();
+                //graph values decode to the same shapes the JSON reader produces
+                case T_REF: return Map.of(GraphEncoding.REF, varint());
+                case T_LIST: {
+                    int n = (int) varint();
+                    List<Object> list = new ArrayList<>(Math.min(n, 1 << 16));
+                    for (int i = 0; i < n; i++) list.add(value());
+                    return list;
+                }
+                case T_MAP: {
+                    int n = (int) varint();
+                    List<Object> entries = new ArrayList<>(Math.min(n, 1 << 16));
+                    for (int i = 0; i < n; i++) {
+                        Object key = value();
+                        entries.add(Arrays.asList(key, value()));
+                    }
+                    return Map.of(GraphEncoding.MAP, entries);
+                }
+                case T_EMBEDDED: {
+                    Map<String, Object> obj = new HashMap<>();
+                    obj.put(GraphEncoding.TYPE, string());
+                    for (int i = (int) varint(); i > 0; i--) {
+                        String name = string();
+                        obj.put(name, value());
+                    }
+                    return obj;
+                }
+                default: throw new IOException("Unknown value tag " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package persistence.fileio;
+
+import persistence.Epoch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes snapshots on a background thread while the models keep changing. A checkpoint
+ * begins an Epoch on the calling thread (a copy of the registry arrays, nothing more) and
+ * hands it to a single writer thread; objects changed before the writer reaches them are
+ * copied by their ChangeTracker report, so the file shows one consistent point in time.
+ * Checkpoints are written one after another in the order they were asked for.
+ */
+public final class CheckpointService implements Closeable {
+
+    /** What one checkpoint wrote and what it cost. */
+    public record Checkpoint(Path file, long objects, long bytes, long copiesMade, Duration pause, Duration duration) {}
+
+    private interface Sink {
+        Path write(Epoch epoch);
+    }
+
+    private final Sink sink;
+    private final List<Class<?>> classes;
+    private final ExecutorService writer;
+    private volatile Checkpoint last;
+
+    public CheckpointService(Path directory, String baseName, List<Class<?>> classes) {
+        this(directory, baseName, classes, Compression.forFileName(baseName));
+    }
+
+    public CheckpointService(Path directory, String baseName, List<Class<?>> classes, Compression compression) {
+        if (directory == null) throw new IllegalArgumentException("Directory must not be null");
+        if (baseName == null || baseName.isBlank()) throw new IllegalArgumentException("Base name must not be blank");
+        if (classes == null) throw new IllegalArgumentException("Model classes must not be null");
+        if (compression == null) throw new IllegalArgumentException("Compression must not be null");
+        this.sink = epoch -> FileOut.writeSnapshot(directory, baseName, epoch, compression);
+        this.classes = List.copyOf(classes);
+        this.writer = newWriter();
+    }
+
+    /** Writes the checkpoints as the next snapshots of the directory, which applies its retention policy. */
+    public CheckpointService(SnapshotDirectory snapshots, List<Class<?>> classes, Compression compression) {
+        if (snapshots == null) throw new IllegalArgumentException("Snapshot directory must not be null");
+        if (classes == null) throw new IllegalArgumentException("Model classes must not be null");
+        if (compression == null) throw new IllegalArgumentException("Compression must not be null");
+        this.sink = epoch -> snapshots.write(epoch, compression).file();
+        this.classes = List.copyOf(classes);
+        this.writer = newWriter();
+    }
+
+    /**
+     * Writes each checkpoint as a sharded snapshot (see FileOut.writeSharded), its shards on the
+     * common pool, so a checkpoint of a big store uses every core instead of the writer thread alone.
+     */
+    public static CheckpointService sharded(Path directory, String baseName, List<Class<?>> classes) {
+        if (directory == null) throw new IllegalArgumentException("Directory must not be null");
+        if (baseName == null || baseName.isBlank()) throw new IllegalArgumentException("Base name must not be blank");
+        if (classes == null) throw new IllegalArgumentException("Model classes must not be null");
+        Compression compression = Compression.forFileName(baseName);
+        return new CheckpointService(epoch -> FileOut.writeSharded(directory, baseName, epoch,
+                ShardedSnapshot.DEFAULT_SHARD_OBJECTS, compression, ForkJoinPool.commonPool()), classes);
+    }
+
+    private CheckpointService(Sink sink, List<Class<?>> classes) {
+        this.sink = sink;
+        this.classes = List.copyOf(classes);
+        this.writer = newWriter();
+    }
+
+    private static ExecutorService newWriter() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Takes the point-in-time view now and writes it in the background. The future completes
+     * with the file and its statistics, or exceptionally with the SerializeException of a
+     * failed write (no partial file is left behind).
+     */
+    public CompletableFuture<Checkpoint> checkpoint() {
+        long began = System.nanoTime();
+        Epoch epoch = Epoch.begin(classes);
+        long captured = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try (epoch) {
+                    Path file = sink.write(epoch);
+                    Checkpoint done = new Checkpoint(file, epoch.objectCount(), sizeOf(file), epoch.copiesMade(),
+                            Duration.ofNanos(captured - began), Duration.ofNanos(System.nanoTime() - began));
+                    last = done;
+                    return done;
+                }
+            }, writer);
+        } catch (RuntimeException e) {
+            epoch.close(); // rejected after close
+            throw e;
+        }
+    }
+
+    /** The most recent checkpoint that was written, or null. */
+    public Checkpoint last() {
+        return last;
+    }
+
+    /** Finishes the checkpoints already asked for, then stops the writer thread. */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                throw new IOException("Checkpoint writer did not stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for checkpoints");
+        }
+    }
+
+    //a sharded checkpoint is a directory: its size is that of its files
+    private static long sizeOf(Path file) {
+        try {
+            if (Files.isDirectory(file)) {
+                try (Stream<Path> files = Files.list(file)) {
+                    return files.mapToLong(CheckpointService::sizeOf).sum();
+                }
+            }
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
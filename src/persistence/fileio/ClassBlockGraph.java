@@ -0,0 +1,100 @@
+package persistence.fileio;
+
+import persistence.JsonCtor;
+
+import java.lang.reflect.Constructor;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Dependency ordering between model class blocks for parallel restore.
+ * A class depends on every other known class that its @JsonCtor takes as a parameter
+ * (Shop, Warehouse and Stock need their Facility, Certification its Employee, ...),
+ * because those constructors link to, and register with, the owner.
+ */
+final class ClassBlockGraph {
+
+    private ClassBlockGraph() {}
+
+    /** For each class, the classes among the given ones that have to be restored before it. */
+    static Map<Class<?>, Set<Class<?>>> dependencies(Collection<Class<?>> classes) {
+        Map<Class<?>, Set<Class<?>>> deps = new LinkedHashMap<>();
+        for (Class<?> c : classes) {
+            Set<Class<?>> needs = new LinkedHashSet<>();
+            for (Constructor<?> ctor : c.getDeclaredConstructors()) {
+                if (!ctor.isAnnotationPresent(JsonCtor.class)) continue;
+                for (Class<?> param : ctor.getParameterTypes()) {
+                    for (Class<?> other : classes) {
+                        if (other != c && param.isAssignableFrom(other)) needs.add(other);
+                    }
+                }
+            }
+            deps.put(c, needs);
+        }
+        return deps;
+    }
+
+    /**
+     * Runs task over all blocks on the executor. Blocks of the same class run one after another
+     * in their original order; blocks of different classes run concurrently unless one depends
+     * on the other. Classes caught in a dependency cycle fall back to running one by one.
+     * Rethrows the first failure once everything has settled.
+     */
+    static <T> void run(List<T> blocks, Function<T, Class<?>> classOf, Consumer<T> task, Executor executor) {
+        Map<Class<?>, List<T>> byClass = new LinkedHashMap<>();
+        for (T b : blocks) byClass.computeIfAbsent(classOf.apply(b), k -> new ArrayList<>()).add(b);
+        Map<Class<?>, Set<Class<?>>> deps = dependencies(byClass.keySet());
+
+        Map<Class<?>, CompletableFuture<Void>> futures = new HashMap<>();
+        List<Class<?>> pending = new ArrayList<>(byClass.keySet());
+        boolean progress = true;
+        while (!pending.isEmpty() && progress) {
+            progress = false;
+            for (Iterator<Class<?>> it = pending.iterator(); it.hasNext(); ) {
+                Class<?> c = it.next();
+                if (!futures.keySet().containsAll(deps.get(c))) continue;
+                futures.put(c, schedule(after(deps.get(c), futures), byClass.get(c), task, executor));
+                it.remove();
+                progress = true;
+            }
+        }
+
+        // whatever is left sits on or behind a cycle: chain it in file order
+        CompletableFuture<Void> previous = null;
+        for (Class<?> c : pending) {
+            List<CompletableFuture<Void>> before = new ArrayList<>();
+            for (Class<?> d : deps.get(c)) if (futures.containsKey(d)) before.add(futures.get(d));
+            if (previous != null) before.add(previous);
+            previous = schedule(CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0])),
+                    byClass.get(c), task, executor);
+            futures.put(c, previous);
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    private static CompletableFuture<Void> after(Set<Class<?>> deps, Map<Class<?>, CompletableFuture<Void>> futures) {
+        if (deps.isEmpty()) return CompletableFuture.completedFuture(null);
+        List<CompletableFuture<Void>> before = new ArrayList<>();
+        for (Class<?> d : deps) before.add(futures.get(d));
+        return CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static <T> CompletableFuture<Void> schedule(CompletableFuture<Void> before, List<T> blocks,
+                                                        Consumer<T> task, Executor executor) {
+        return before.thenRunAsync(() -> {
+            for (T b : blocks) task.accept(b);
+        }, executor);
+    }
+}
@@ -0,0 +1,108 @@
+package persistence.fileio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Optional stream compression for snapshot files. FileOut picks it from the file name
+ * ("*.gz", "*.deflate") or an explicit option; FileIn recognizes it from the first bytes.
+ * Snapshots repeat the same keys and class names over and over, so even the fastest
+ * deflate level shrinks them a lot while keeping the writer from being CPU bound.
+ */
+public enum Compression {
+    NONE(null),
+    GZIP("gz"),
+    /** Raw zlib stream (RFC 1950). */
+    DEFLATE("deflate");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    private final String extension;
+
+    Compression(String extension) {
+        this.extension = extension;
+    }
+
+    /** File extension without the dot, null for NONE. */
+    public String extension() {
+        return extension;
+    }
+
+    /** The compression a file name asks for by its last extension. */
+    public static Compression forFileName(String name) {
+        if (name == null) return NONE;
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        for (Compression c : values()) {
+            if (c.extension != null && lower.endsWith("." + c.extension)) return c;
+        }
+        return NONE;
+    }
+
+    /** Recognizes the gzip magic or a zlib header; anything else is read as is. */
+    public static Compression detect(byte[] header, int length) {
+        if (length < 2) return NONE;
+        int b0 = header[0] & 0xFF, b1 = header[1] & 0xFF;
+        if (b0 == 0x1F && b1 == 0x8B) return GZIP;
+        if ((b0 & 0x0F) == 8 && (b0 >>> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0) return DEFLATE;
+        return NONE;
+    }
+
+    /** Wraps out so that closing the result finishes the compressed stream and closes out. */
+    public OutputStream compress(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE) {
+                    {
+                        def.setLevel(LEVEL);
+                    }
+                };
+            case DEFLATE: {
+                Deflater deflater = new Deflater(LEVEL);
+                return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            deflater.end(); // our own Deflater is not released by the stream
+                        }
+                    }
+                };
+            }
+            default:
+                return out;
+        }
+    }
+
+    /** Wraps in so that reading the result yields the uncompressed bytes. */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case DEFLATE: {
+                Inflater inflater = new Inflater();
+                return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            inflater.end();
+                        }
+                    }
+                };
+            }
+            default:
+                return in;
+        }
+    }
+}
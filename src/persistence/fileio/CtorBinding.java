@@ -0,0 +1,317 @@
+package persistence.fileio;
+
+import persistence.GraphEncoding;
+import persistence.JsonCtor;
+import persistence.ObjectIds;
+import persistence.SerializerPlan;
+import persistence.codegen.Codecs;
+import persistence.codegen.ModelCodec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How to build one model class from its JSON keys, resolved once per class:
+ * the @JsonCtor as a spreading MethodHandle, its parameter names (compiled with
+ * -parameters) and one coercer per parameter type. Coercers also turn the graph
+ * values of GraphEncoding back into objects: references resolve through ObjectIds.
+ * When the class has a generated ModelCodec for the same constructor, the call goes
+ * through it instead of the MethodHandle.
+ */
+final class CtorBinding {
+
+    /** Converts a parsed JSON value to one Java type. */
+    interface Coercer {
+        Object coerce(Object raw);
+    }
+
+    private static final ClassValue<CtorBinding> BINDINGS = new ClassValue<>() {
+        @Override
+        protected CtorBinding computeValue(Class<?> type) {
+            return new CtorBinding(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final String[] names;
+    private final Class<?>[] types;
+    private final Coercer[] coercers;
+    private final MethodHandle ctor; // (Object[])Object, null when the class has no @JsonCtor
+    private final ModelCodec<?> codec;
+
+    private CtorBinding(Class<?> type) {
+        this.type = type;
+        Constructor<?> target = null;
+        for (Constructor<?> c : type.getDeclaredConstructors()) {
+            if (c.isAnnotationPresent(JsonCtor.class)) { target = c; break; }
+        }
+        if (target == null) {
+            this.names = new String[0];
+            this.types = new Class<?>[0];
+            this.coercers = new Coercer[0];
+            this.ctor = null;
+            this.codec = null;
+            return;
+        }
+
+        Parameter[] params = target.getParameters();
+        this.names = new String[params.length];
+        this.types = new Class<?>[params.length];
+        this.coercers = new Coercer[params.length];
+        for (int i = 0; i < params.length; i++) {
+            names[i] = params[i].getName();
+            types[i] = params[i].getType();
+            coercers[i] = coercerFor(params[i].getParameterizedType());
+        }
+
+        try {
+            target.setAccessible(true);
+            this.ctor = MethodHandles.lookup().unreflectConstructor(target)
+                    .asType(MethodType.genericMethodType(params.length))
+                    .asSpreader(Object[].class, params.length);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access @JsonCtor of " + type.getName() + ": " + e.getMessage());
+        }
+        ModelCodec<?> generated = Codecs.find(type);
+        this.codec = generated != null && Arrays.equals(generated.constructorParameters(), names) ? generated : null;
+    }
+
+    static CtorBinding of(Class<?> type) {
+        return BINDINGS.get(type);
+    }
+
+    boolean hasConstructor() {
+        return ctor != null;
+    }
+
+    String[] names() {
+        return names;
+    }
+
+    Class<?>[] types() {
+        return types;
+    }
+
+    /** Use @JsonCtor constructor; parameter names (via -parameters) must match JSON keys. */
+    Object construct(Map<?, ?> obj) throws ReflectiveOperationException {
+        if (ctor == null) throw new NoSuchMethodException("@JsonCtor not found in " + type.getName());
+
+        Object[] args = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            args[i] = coerceArg(i, obj.get(names[i]));
+        }
+        return invoke(args);
+    }
+
+    /** Coerces one raw value for parameter i, failing like a bad constructor argument. */
+    Object coerceArg(int i, Object raw) {
+        Object coerced;
+        try {
+            coerced = coercers[i].coerce(raw);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cannot convert '" + names[i] + "' for " + type.getName()
+                    + ": " + e.getMessage());
+        }
+        if (coerced == null && types[i].isPrimitive()) {
+            throw new IllegalArgumentException("Missing primitive arg '" + names[i] + "' for " + type.getName());
+        }
+        return coerced;
+    }
+
+    /** Calls the constructor; anything it throws comes back wrapped as with Constructor.newInstance. */
+    Object invoke(Object[] args) throws ReflectiveOperationException {
+        if (ctor == null) throw new NoSuchMethodException("@JsonCtor not found in " + type.getName());
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != null && !wrap(types[i]).isInstance(args[i])) {
+                throw new IllegalArgumentException("argument type mismatch for '" + names[i] + "' in " + type.getName());
+            }
+        }
+        try {
+            if (codec != null) return codec.construct(args);
+            return (Object) ctor.invokeExact(args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    // ---------------- coercers ----------------
+
+    /** Minimal type coercion for String/number/boolean/char/enum/java.time/null; graph values for the rest. */
+    static Coercer coercerFor(Class<?> target) {
+        if (target == String.class) return raw -> raw == null ? null : String.valueOf(raw);
+        if (target == int.class || target == Integer.class) return raw -> raw == null ? null : toNumber(raw).intValue();
+        if (target == long.class || target == Long.class) return raw -> raw == null ? null : toNumber(raw).longValue();
+        if (target == double.class || target == Double.class) return raw -> raw == null ? null : toNumber(raw).doubleValue();
+        if (target == float.class || target == Float.class) return raw -> raw == null ? null : toNumber(raw).floatValue();
+        if (target == boolean.class || target == Boolean.class) return raw -> raw == null ? null : toBoolean(raw);
+        if (target == char.class || target == Character.class) {
+            return raw -> {
+                if (raw == null) return null;
+                String s = String.valueOf(raw);
+                return s.isEmpty() ? '\0' : s.charAt(0);
+            };
+        }
+        if (target == LocalDateTime.class) return raw -> raw instanceof String s ? LocalDateTime.parse(s) : raw;
+        if (target == LocalDate.class) return raw -> raw instanceof String s ? LocalDate.parse(s) : raw;
+        if (target == LocalTime.class) return raw -> raw instanceof String s ? LocalTime.parse(s) : raw;
+        if (target.isEnum()) return enumCoercer(target);
+        if (Collection.class.isAssignableFrom(target)) return collectionCoercer(target, GRAPH);
+        if (Map.class.isAssignableFrom(target)) return mapCoercer(GRAPH, GRAPH);
+        return target == Object.class ? GRAPH : raw -> resolveGraph(raw, target);
+    }
+
+    /** Like coercerFor(Class), but element types of generic collections and maps are honored too. */
+    static Coercer coercerFor(Type target) {
+        if (target instanceof Class<?> c) return coercerFor(c);
+        if (target instanceof ParameterizedType p && p.getRawType() instanceof Class<?> raw) {
+            Type[] args = p.getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw) && args.length == 1) {
+                return collectionCoercer(raw, coercerFor(args[0]));
+            }
+            if (Map.class.isAssignableFrom(raw) && args.length == 2) {
+                return mapCoercer(coercerFor(args[0]), coercerFor(args[1]));
+            }
+            return coercerFor(raw);
+        }
+        return GRAPH; // type variables and wildcards
+    }
+
+    /** Resolves references, embedded objects, maps and lists without a declared target type. */
+    private static final Coercer GRAPH = raw -> resolveGraph(raw, Object.class);
+
+    //an embedded object has to be a target
+    private static Object resolveGraph(Object raw, Class<?> target) {
+        if (raw instanceof List<?> list) return collectionCoercer(List.class, GRAPH).coerce(list);
+        if (!(raw instanceof Map<?, ?> map)) return raw;
+        if (map.get(GraphEncoding.REF) instanceof Number id) return ObjectIds.find(id.longValue());
+        if (map.containsKey(GraphEncoding.TYPE)) return buildEmbedded(map, target);
+        if (map.containsKey(GraphEncoding.MAP)) return mapCoercer(GRAPH, GRAPH).coerce(map);
+        return raw;
+    }
+
+    static boolean isRef(Object raw) {
+        return raw instanceof Map<?, ?> m && m.get(GraphEncoding.REF) instanceof Number;
+    }
+
+    private static Coercer collectionCoercer(Class<?> target, Coercer element) {
+        return raw -> {
+            if (!(raw instanceof List<?> list)) return raw;
+            Collection<Object> out;
+            if (target.isAssignableFrom(ArrayList.class)) out = new ArrayList<>(list.size());
+            else if (target.isAssignableFrom(LinkedHashSet.class)) out = new LinkedHashSet<>();
+            else return raw;
+            for (Object e : list) {
+                Object v = element.coerce(e);
+                if (v != null || !isRef(e)) out.add(v); // objects that were not restored drop out
+            }
+            return out;
+        };
+    }
+
+    private static Coercer mapCoercer(Coercer key, Coercer value) {
+        return raw -> {
+            if (!(raw instanceof Map<?, ?> m) || !(m.get(GraphEncoding.MAP) instanceof List<?> entries)) return raw;
+            Map<Object, Object> out = new LinkedHashMap<>();
+            for (Object e : entries) {
+                if (e instanceof List<?> pair && pair.size() == 2) {
+                    out.put(key.coerce(pair.get(0)), value.coerce(pair.get(1)));
+                }
+            }
+            return out;
+        };
+    }
+
+    /**
+     * Rebuilds an embedded value object through its @JsonCtor, or its no-arg constructor and
+     * fields. Only application classes that are not models and fit the declared type of the
+     * parameter or field can be embedded; the class is not initialized before that is checked.
+     */
+    private static Object buildEmbedded(Map<?, ?> raw, Class<?> target) {
+        String fqcn = String.valueOf(raw.get(GraphEncoding.TYPE));
+        try {
+            Class<?> type = Class.forName(fqcn, false, CtorBinding.class.getClassLoader());
+            if (!target.isAssignableFrom(type)) {
+                throw new IllegalArgumentException("Cannot embed " + fqcn + " as " + target.getName());
+            }
+            if (GraphEncoding.isPlatformType(type) || SerializerPlan.of(type).isModel()) {
+                throw new IllegalArgumentException("Cannot embed " + fqcn);
+            }
+            CtorBinding binding = of(type);
+            if (binding.ctor != null) return binding.construct(raw);
+            Constructor<?> ctor = type.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            Object value = ctor.newInstance();
+            FieldBinding.of(type).apply(value, raw);
+            return value;
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException("Cannot rebuild " + fqcn + ": " + e.getTargetException().getMessage());
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot rebuild " + fqcn + ": " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Coercer enumCoercer(Class<?> target) {
+        Object[] constants = target.getEnumConstants();
+        return raw -> {
+            if (raw instanceof String s) return Enum.valueOf((Class) target, s);
+            if (raw instanceof Number n) {
+                int ordinal = n.intValue();
+                if (ordinal < 0 || ordinal >= constants.length || ordinal != n.doubleValue()) {
+                    throw new IllegalArgumentException("No " + target.getName() + " with ordinal " + n);
+                }
+                return constants[ordinal];
+            }
+            return raw;
+        };
+    }
+
+    static Number toNumber(Object o) {
+        if (o instanceof Number n) return n;
+        String s = String.valueOf(o);
+        if (s.contains(".") || s.contains("e") || s.contains("E")) return Double.parseDouble(s);
+        long L = Long.parseLong(s);
+        if (L >= Integer.MIN_VALUE && L <= Integer.MAX_VALUE) return (int) L;
+        return L;
+    }
+
+    static boolean toBoolean(Object o) {
+        if (o instanceof Boolean b) return b;
+        String s = String.valueOf(o).toLowerCase(Locale.ROOT);
+        return s.equals("true") || s.equals("1") || s.equals("yes");
+    }
+
+    static Class<?> wrap(Class<?> c) {
+        if (!c.isPrimitive()) return c;
+        if (c == int.class) return Integer.class;
+        if (c == long.class) return Long.class;
+        if (c == double.class) return Double.class;
+        if (c == float.class) return Float.class;
+        if (c == boolean.class) return Boolean.class;
+        if (c == char.class) return Character.class;
+        if (c == byte.class) return Byte.class;
+        if (c == short.class) return Short.class;
+        return c;
+    }
+}
@@ -0,0 +1,102 @@
+package persistence.fileio;
+
+import persistence.JsonIgnore;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Setters for the serialized instance fields of one model class, resolved once per class.
+ * Used to fill in what the constructor did not set, to link references once every object
+ * exists, and by delta restores to bring an existing object up to date in place.
+ * Final collections and maps are refilled in place; other final fields are left alone.
+ */
+final class FieldBinding {
+
+    private static final ClassValue<FieldBinding> BINDINGS = new ClassValue<>() {
+        @Override
+        protected FieldBinding computeValue(Class<?> type) {
+            return new FieldBinding(type);
+        }
+    };
+
+    //handle is a setter, or for final collections and maps a getter of the instance to refill
+    private record Setter(Class<?> type, CtorBinding.Coercer coercer, MethodHandle handle, boolean inPlace) {}
+
+    private final Map<String, Setter> setters = new HashMap<>();
+
+    private FieldBinding(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || f.isAnnotationPresent(JsonIgnore.class)) continue;
+                boolean inPlace = Modifier.isFinal(mod);
+                if (inPlace && !Collection.class.isAssignableFrom(f.getType())
+                        && !Map.class.isAssignableFrom(f.getType())) continue;
+                if (setters.containsKey(f.getName())) continue; // the subclass field wins, as in the serializer
+                try {
+                    f.setAccessible(true);
+                    MethodHandle h = inPlace
+                            ? lookup.unreflectGetter(f).asType(MethodType.methodType(Object.class, Object.class))
+                            : lookup.unreflectSetter(f).asType(MethodType.methodType(void.class, Object.class, Object.class));
+                    setters.put(f.getName(), new Setter(f.getType(), CtorBinding.coercerFor(f.getGenericType()), h, inPlace));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    // not writable from here: the field keeps its current value
+                }
+            }
+        }
+    }
+
+    static FieldBinding of(Class<?> type) {
+        return BINDINGS.get(type);
+    }
+
+    /**
+     * Copies the given values onto target. Keys without a matching field, and values that
+     * cannot be converted to the field's type, are skipped and reported.
+     */
+    void apply(Object target, Map<?, ?> values) {
+        for (Map.Entry<?, ?> e : values.entrySet()) {
+            Setter s = setters.get(String.valueOf(e.getKey()));
+            if (s == null) continue;
+            Object value;
+            try {
+                value = s.coercer().coerce(e.getValue());
+            } catch (RuntimeException ex) {
+                System.err.println("Cannot convert '" + e.getKey() + "' for " + target.getClass().getSimpleName()
+                        + ": " + ex.getMessage());
+                continue;
+            }
+            if (value == null ? s.type().isPrimitive() : !CtorBinding.wrap(s.type()).isInstance(value)) continue;
+            try {
+                if (s.inPlace()) {
+                    refill((Object) s.handle().invokeExact(target), value);
+                    continue;
+                }
+                s.handle().invokeExact(target, value);
+            } catch (Throwable t) {
+                System.err.println("Cannot set " + target.getClass().getSimpleName() + "." + e.getKey()
+                        + ": " + t.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void refill(Object current, Object value) {
+        if (current == value || value == null) return;
+        if (current instanceof Collection<?> c && value instanceof Collection<?> v) {
+            c.clear();
+            ((Collection<Object>) c).addAll(v);
+        } else if (current instanceof Map<?, ?> m && value instanceof Map<?, ?> v) {
+            m.clear();
+            ((Map<Object, Object>) m).putAll(v);
+        }
+    }
+}
@@ -1,281 +1,597 @@
 package persistence.fileio;
 
-import persistence.JsonCtor;
-
-import java.io.BufferedReader;
+import persistence.ChangeTracker;
+import persistence.GraphEncoding;
+import persistence.ObjectIds;
+import persistence.SerializerPlan;
+import persistence.codegen.Codecs;
+import persistence.codegen.ModelCodec;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 //TODO redo
 public class FileIn {
 
+    //how many restore constructor calls this thread is inside of
+    private static final ThreadLocal<int[]> RESTORING = ThreadLocal.withInitial(() -> new int[1]);
+
+    /** Whether this thread is inside a model constructor called to restore an object. */
+    public static boolean isRestoring() {
+        return RESTORING.get()[0] > 0;
+    }
+
     public static void readJson(Path file, Collection<Class<?>> knownModels) throws IOException {
-        String json;
-        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) sb.append(line).append('\n');
-            json = sb.toString();
+        try (JsonReader reader = openReader(file)) {
+            read(reader, knownModels);
         }
+    }
 
-        Object rootObj = JsonMini.parse(json);
-        if (!(rootObj instanceof Map)) return;
-        Map<?, ?> root = (Map<?, ?>) rootObj;
+    //plain files are read through the channel, compressed ones through a decompressing stream
+    private static JsonReader openReader(Path file) throws IOException {
+        Compression compression = detectCompression(file);
+        if (compression == Compression.NONE) return JsonReader.open(file);
+        InputStream in = compression.decompress(Files.newInputStream(file));
+        return new JsonReader(JsonReader.streamSource(in));
+    }
 
-        Object modelsObj = root.get("models");
-        if (!(modelsObj instanceof Map)) return;
-        Map<?, ?> models = (Map<?, ?>) modelsObj;
+    private static Compression detectCompression(Path file) throws IOException {
+        byte[] header = new byte[2];
+        try (InputStream in = Files.newInputStream(file)) {
+            return Compression.detect(header, in.readNBytes(header, 0, header.length));
+        }
+    }
 
-        for (Map.Entry<?, ?> e : models.entrySet()) {
-            String fqcn = String.valueOf(e.getKey());
-            Object block = e.getValue();
-            if (!(block instanceof Map)) continue;
-            Map<?, ?> classBlock = (Map<?, ?>) block;
+    /**
+     * Restores a snapshot in any known format, compressed or not. Format and compression
+     * are recognized from the first bytes of the file, so callers do not need to know how
+     * it was written.
+     */
+    public static SnapshotFormat readSnapshot(Path file, Collection<Class<?>> knownModels) throws IOException {
+        try (InputStream in = new BufferedInputStream(
+                detectCompression(file).decompress(Files.newInputStream(file)), SnapshotFormats.HEADER_SIZE)) {
+            SnapshotFormat format = detectFormat(in);
+            if (format == null) throw new IOException("Unrecognized snapshot format: " + file);
+            format.read(in, knownModels);
+            return format;
+        }
+    }
 
-            Class<?> clazz = resolveClass(fqcn, knownModels);
-            if (clazz == null) {
-                System.err.println("Unknown class: " + fqcn + " (skipping)");
-                continue;
+    /**
+     * Restores the newest snapshot of the directory, found through its manifest. When that file
+     * is gone the next older one is read instead. Returns the file that was read, or null when
+     * the directory has no snapshot.
+     */
+    public static Path readLatest(SnapshotDirectory snapshots, Collection<Class<?>> knownModels) throws IOException {
+        List<SnapshotDirectory.Entry> entries = snapshots.entries();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Path file = entries.get(i).file();
+            try {
+                readSnapshot(file, knownModels);
+                return file;
+            } catch (NoSuchFileException e) {
+                System.err.println("Snapshot " + file.getFileName() + " is missing — skipping");
             }
+        }
+        return null;
+    }
 
-            Object stat = classBlock.get("static");
-            if (stat instanceof Map) {
-                restoreStaticFields(clazz, (Map<?, ?>) stat);
-            }
+    //peeks at the header without consuming it
+    private static SnapshotFormat detectFormat(InputStream in) throws IOException {
+        byte[] header = new byte[SnapshotFormats.HEADER_SIZE];
+        in.mark(header.length);
+        int n = in.readNBytes(header, 0, header.length);
+        in.reset();
+        return SnapshotFormats.detect(header, n);
+    }
 
-            Object arr = classBlock.get("objects");
-            if (!(arr instanceof List)) continue;
-            List<?> items = (List<?>) arr;
-
-            for (Object item : items) {
-                if (!(item instanceof Map)) continue;
-                Map<?, ?> objMap = (Map<?, ?>) item;
-                try {
-                    Object instance = constructViaAnnotatedCtorUsingParamNames(clazz, objMap);
-                } catch (InvocationTargetException ite) {
-                    Throwable cause = ite.getTargetException();
-                    if (isValidationException(cause)) {
-                        System.err.println("ValidationException in " + clazz.getSimpleName()
-                                + ": " + cause.getMessage() + " — skipping " + objMap);
-                    } else {
-                        System.err.println("Ctor threw " + cause.getClass().getSimpleName()
-                                + ": " + cause.getMessage() + " — skipping " + objMap);
+    /**
+     * Same as readJson, but parses UTF-8 straight from a memory-mapped view of the file.
+     * Files over 2 GB are mapped in segments. Meant for cold-start restores of large snapshots.
+     * Compressed files cannot be mapped and are streamed like readJson.
+     */
+    public static void readJsonMapped(Path file, Collection<Class<?>> knownModels) throws IOException {
+        if (detectCompression(file) != Compression.NONE) {
+            readJson(file, knownModels);
+            return;
+        }
+        try (JsonReader reader = JsonReader.openMapped(file)) {
+            read(reader, knownModels);
+        }
+    }
+
+    /**
+     * Restores class blocks concurrently on the common fork-join pool. The file is first
+     * scanned (without building anything) for the byte range of each class block; every
+     * block is then parsed from its own mapped range and constructed once the classes its
+     * @JsonCtor depends on are restored. Objects of one class keep their file order.
+     * Compressed files have no random access, so they are restored sequentially.
+     */
+    public static void readJsonParallel(Path file, Collection<Class<?>> knownModels) throws IOException {
+        if (detectCompression(file) != Compression.NONE) {
+            readJson(file, knownModels);
+            return;
+        }
+        List<Block> blocks = new ArrayList<>();
+        SnapshotIndex index = SnapshotIndex.read(file);
+        if (index != null) {
+            for (SnapshotIndex.Block b : index.blocks()) {
+                Class<?> clazz = resolveClass(b.className(), knownModels);
+                if (clazz == null) System.err.println("Unknown class: " + b.className() + " (skipping)");
+                else blocks.add(new Block(clazz, b.start(), b.end()));
+            }
+        } else {
+            try (JsonReader reader = JsonReader.openMapped(file)) {
+                if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (!key.equals("models") || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
                     }
-                } catch (ReflectiveOperationException | IllegalArgumentException ex) {
-                    System.err.println("Failed to construct " + clazz.getSimpleName()
-                            + ": " + ex.getMessage() + " — skipping " + objMap);
+                    scanBlocks(reader, knownModels, blocks);
                 }
+                reader.endObject();
             }
         }
-    }
 
-    private static Class<?> resolveClass(String fqcn, Collection<Class<?>> known) {
-        for (Class<?> c : known) if (c.getName().equals(fqcn)) return c;
-        try { return Class.forName(fqcn); } catch (ClassNotFoundException e) { return null; }
+        GraphRestore graph = new GraphRestore(knownModels);
+        try {
+            ClassBlockGraph.run(blocks, Block::clazz, block -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                     JsonReader reader = new JsonReader(JsonReader.mappedSource(
+                             channel, block.start(), block.end(), JsonReader.MAPPED_SEGMENT_SIZE))) {
+                    reader.useStrings(new StringTable()); // blocks run concurrently, each has its own
+                    readClassBlock(reader, block.clazz(), graph);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, ForkJoinPool.commonPool());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        graph.finish();
     }
 
-    private static void restoreStaticFields(Class<?> clazz, Map<?, ?> stat) {
-        for (Field f : clazz.getDeclaredFields()) {
-            if (!Modifier.isStatic(f.getModifiers())) continue;
-            if (hasAnnotation(f, "ObjectList")) continue;
-            if (!stat.containsKey(f.getName())) continue;
+    /**
+     * Restores a sharded snapshot written by FileOut.writeSharded. The shards are parsed
+     * concurrently on the common fork-join pool: shards of one class one after another in
+     * manifest order, and a class only once the classes its @JsonCtor depends on are restored.
+     */
+    public static void readSharded(Path directory, Collection<Class<?>> knownModels) throws IOException {
+        List<ShardFile> shards = new ArrayList<>();
+        for (ShardedSnapshot.Shard s : ShardedSnapshot.read(directory).shards()) {
+            Class<?> clazz = resolveClass(s.className(), knownModels);
+            if (clazz == null) System.err.println("Unknown class: " + s.className() + " (skipping)");
+            else shards.add(new ShardFile(clazz, s.file()));
+        }
 
-            Object raw = stat.get(f.getName());
-            Object coerced = coerce(raw, f.getType());
-            try {
-                f.setAccessible(true);
-                f.set(null, coerced);
-            } catch (IllegalAccessException ex) {
-                System.err.println("Cannot set " + clazz.getSimpleName() + "." + f.getName() + ": " + ex.getMessage());
-            }
+        GraphRestore graph = new GraphRestore(knownModels);
+        try {
+            ClassBlockGraph.run(shards, ShardFile::clazz, shard -> {
+                try (JsonReader reader = openReader(shard.file())) {
+                    reader.useStrings(new StringTable());
+                    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String key = reader.nextName();
+                        if (!key.equals("models") || reader.peek() != JsonReader.Token.BEGIN_OBJECT) reader.skipValue();
+                        else readModels(reader, knownModels, graph);
+                    }
+                    reader.endObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, ForkJoinPool.commonPool());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        graph.finish();
     }
 
-    /** Use @JsonCtor constructor; parameter names (via -parameters) must match JSON keys. */
-    private static Object constructViaAnnotatedCtorUsingParamNames(Class<?> clazz, Map<?, ?> obj)
-            throws ReflectiveOperationException {
+    private record ShardFile(Class<?> clazz, Path file) {}
+
+    /**
+     * Restores only the given classes from a JSON snapshot. With a SnapshotIndex next to the
+     * file only their blocks are mapped and parsed; otherwise the file is streamed and every
+     * other block is skipped without being built. References to objects of classes that are
+     * not loaded stay empty.
+     */
+    public static void readClasses(Path file, Collection<Class<?>> classes) throws IOException {
+        SnapshotIndex index = detectCompression(file) == Compression.NONE ? SnapshotIndex.read(file) : null;
+        GraphRestore graph = new GraphRestore(classes);
+        StringTable strings = new StringTable();
+        if (index == null) {
+            try (JsonReader reader = openReader(file)) {
+                reader.useStrings(strings);
+                if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (!key.equals("models") || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        Class<?> clazz = findClass(reader.nextName(), classes);
+                        if (clazz == null || reader.peek() != JsonReader.Token.BEGIN_OBJECT) reader.skipValue();
+                        else readClassBlock(reader, clazz, graph);
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            }
+        } else {
+            for (Class<?> clazz : classes) {
+                SnapshotIndex.Block block = index.block(clazz.getName());
+                if (block == null) continue;
+                try (JsonReader reader = new JsonReader(JsonReader.mappedSource(
+                        FileChannel.open(file, StandardOpenOption.READ), block.start(), block.end(),
+                        JsonReader.MAPPED_SEGMENT_SIZE))) {
+                    reader.useStrings(strings);
+                    readClassBlock(reader, clazz, graph);
+                }
+            }
+        }
+        graph.finish();
+    }
 
-        Constructor<?> target = null;
-        for (Constructor<?> c : clazz.getDeclaredConstructors()) {
-            if (c.isAnnotationPresent(JsonCtor.class)) { target = c; break; }
+    /**
+     * Restores the objects [from, from + count) of one class without touching the rest of the
+     * snapshot: reading starts at the closest indexed object before from, so at most
+     * stride - 1 objects are skipped. Static fields are left alone. A snapshot without an
+     * index is indexed first (and the index kept). Returns how many objects were read.
+     */
+    public static long readObjects(Path file, Class<?> clazz, long from, long count) throws IOException {
+        if (from < 0 || count < 0) throw new IllegalArgumentException("Object range must not be negative");
+        if (detectCompression(file) != Compression.NONE) {
+            throw new IOException("Compressed snapshots have no random access: " + file);
+        }
+        SnapshotIndex index = SnapshotIndex.read(file);
+        if (index == null) {
+            index = SnapshotIndex.scan(file, SnapshotIndex.DEFAULT_STRIDE);
+            index.write(file);
         }
-        if (target == null) throw new NoSuchMethodException("@JsonCtor not found in " + clazz.getName());
-
-        target.setAccessible(true);
-        Parameter[] params = target.getParameters();
-        Object[] args = new Object[params.length];
-
-        for (int i = 0; i < params.length; i++) {
-            String key = params[i].getName();
-            Object raw = obj.get(key);
-            Object coerced = coerce(raw, params[i].getType());
-            if (coerced == null && params[i].getType().isPrimitive()) {
-                throw new IllegalArgumentException("Missing primitive arg '" + key + "' for " + clazz.getName());
+        SnapshotIndex.Block block = index.block(clazz.getName());
+        if (block == null || from >= block.objects() || count == 0) return 0;
+
+        int slot = (int) (from / index.stride());
+        long skip = from - (long) slot * index.stride();
+        GraphRestore graph = new GraphRestore(List.of(clazz));
+        long read = 0;
+        try (JsonReader reader = new JsonReader(JsonReader.mappedSource(
+                FileChannel.open(file, StandardOpenOption.READ), block.objectOffsets()[slot], block.end(),
+                JsonReader.MAPPED_SEGMENT_SIZE))) {
+            reader.useStrings(new StringTable());
+            reader.resumeArray(); // the indexed offset points at an element of the "objects" array
+            for (; skip > 0 && reader.hasNext(); skip--) reader.skipValue();
+            while (read < count && reader.hasNext()) {
+                read++;
+                if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                restore(reader, clazz, graph);
             }
-            args[i] = coerced;
         }
-        return target.newInstance(args);
+        graph.finish();
+        return read;
     }
 
-    private static boolean isValidationException(Throwable t) {
-        if (t == null) return false;
-        return "ValidationException".equals(t.getClass().getSimpleName());
-    }
+    /** Byte range [start, end) of one class block value inside the snapshot. */
+    private record Block(Class<?> clazz, long start, long end) {}
 
-    private static boolean hasAnnotation(Field f, String simpleName) {
-        for (Annotation a : f.getAnnotations()) {
-            if (a.annotationType().getSimpleName().equals(simpleName)) return true;
+    private static void scanBlocks(JsonReader reader, Collection<Class<?>> knownModels, List<Block> blocks)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fqcn = reader.nextName();
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            long start = reader.position() - 1; // peek consumed the opening brace
+            reader.skipValue();
+
+            Class<?> clazz = resolveClass(fqcn, knownModels);
+            if (clazz == null) {
+                System.err.println("Unknown class: " + fqcn + " (skipping)");
+                continue;
+            }
+            blocks.add(new Block(clazz, start, reader.position()));
         }
-        return false;
+        reader.endObject();
     }
 
-    /** Minimal type coercion for String/number/boolean/char/null; pass-through for Map/List. */
-//    @SuppressWarnings("unchecked")
-    private static Object coerce(Object raw, Class<?> target) {
-        if (raw == null) return null;
-        if (target == String.class) return String.valueOf(raw);
-        if (target == int.class || target == Integer.class) return toNumber(raw).intValue();
-        if (target == long.class || target == Long.class) return toNumber(raw).longValue();
-        if (target == double.class || target == Double.class) return toNumber(raw).doubleValue();
-        if (target == float.class || target == Float.class) return toNumber(raw).floatValue();
-        if (target == boolean.class || target == Boolean.class) return toBoolean(raw);
-        if (target == char.class || target == Character.class) {
-            String s = String.valueOf(raw);
-            return s.isEmpty() ? '\0' : s.charAt(0);
+    static void read(JsonReader reader, Collection<Class<?>> knownModels) throws IOException {
+        reader.useStrings(new StringTable());
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (!key.equals("models") || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            GraphRestore graph = new GraphRestore(knownModels);
+            readModels(reader, knownModels, graph);
+            graph.finish();
         }
-        if (raw instanceof Map && Map.class.isAssignableFrom(target)) return raw;
-        if (raw instanceof List && List.class.isAssignableFrom(target)) return raw;
-        return raw;
+        reader.endObject();
     }
 
-    private static Number toNumber(Object o) {
-        if (o instanceof Number n) return n;
-        String s = String.valueOf(o);
-        if (s.contains(".") || s.contains("e") || s.contains("E")) return Double.parseDouble(s);
-        long L = Long.parseLong(s);
-        if (L >= Integer.MIN_VALUE && L <= Integer.MAX_VALUE) return (int) L;
-        return L;
+    private static void readModels(JsonReader reader, Collection<Class<?>> knownModels, GraphRestore graph)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fqcn = reader.nextName();
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            Class<?> clazz = resolveClass(fqcn, knownModels);
+            if (clazz == null) {
+                System.err.println("Unknown class: " + fqcn + " (skipping)");
+                reader.skipValue();
+                continue;
+            }
+            readClassBlock(reader, clazz, graph);
+        }
+        reader.endObject();
     }
 
-    private static boolean toBoolean(Object o) {
-        if (o instanceof Boolean b) return b;
-        String s = String.valueOf(o).toLowerCase(Locale.ROOT);
-        return s.equals("true") || s.equals("1") || s.equals("yes");
+    //classes with a @JsonCtor are decoded straight into its arguments, others through a map
+    private static void restore(JsonReader reader, Class<?> clazz, GraphRestore graph) throws IOException {
+        if (CtorBinding.of(clazz).hasConstructor()) {
+            graph.restore(clazz, ObjectDecoder.of(clazz).read(reader));
+        } else {
+            graph.restore(clazz, (Map<?, ?>) reader.readValue());
+        }
     }
 
-    /** Tiny JSON parser supporting objects, arrays, strings, numbers, booleans, null. */
-    static final class JsonMini {
-        private final String s;
-        private int i;
-        private JsonMini(String s){
-            this.s=s;
+    private static void readClassBlock(JsonReader reader, Class<?> clazz, GraphRestore graph) throws IOException {
+        graph.block(clazz);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            JsonReader.Token next = reader.peek();
+            if (key.equals("static") && next == JsonReader.Token.BEGIN_OBJECT) {
+                restoreStaticFields(clazz, (Map<?, ?>) reader.readValue());
+            } else if (key.equals("objects") && next == JsonReader.Token.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    // only this one object is held in memory, unless it has references to link later
+                    restore(reader, clazz, graph);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
         }
+        reader.endObject();
+    }
 
-        static Object parse(String json){ return new JsonMini(json).val(); }
+    /** Builds one object through its @JsonCtor and gives it back its id; null when it is skipped. */
+    static Object restoreObject(Class<?> clazz, Map<?, ?> objMap) {
+        long id = objMap.get(GraphEncoding.ID) instanceof Number n ? n.longValue() : ObjectDecoder.Decoded.NO_ID;
+        return restoreObject(clazz, id, () -> objMap, () -> constructViaAnnotatedCtorUsingParamNames(clazz, objMap));
+    }
 
-        private void ws(){ while(i<s.length() && " \n\r\t".indexOf(s.charAt(i))>=0) i++; }
+    /** Same, from an object ObjectDecoder read; its map is only made to report a skipped object. */
+    static Object restoreObject(Class<?> clazz, ObjectDecoder.Decoded decoded) {
+        CtorBinding binding = CtorBinding.of(clazz);
+        return restoreObject(clazz, decoded.id, () -> decoded.toMap(binding),
+                () -> binding.invoke(decoded.arguments(binding)));
+    }
 
-        private Object val(){
-            ws(); if(i>=s.length()) throw err("Unexpected end");
-            char c=s.charAt(i);
-            if(c=='{') return obj();
-            if(c=='[') return arr();
-            if(c=='"') return str();
-            if(c=='t'||c=='f') return bool();
-            if(c=='n') return nul();
-            if(c=='-'||Character.isDigit(c)) return num();
-            throw err("Unexpected char '"+c+"'");
-        }
+    private interface Construction {
+        Object build() throws ReflectiveOperationException;
+    }
 
-        private Map<String,Object> obj(){
-            Map<String,Object> m=new LinkedHashMap<>();
-            i++; ws(); if(s.charAt(i)=='}'){ i++; return m; }
-            while(true){
-                ws(); String k=str();
-                ws(); if(s.charAt(i++)!=':') throw err("Expected ':'");
-                Object v=val(); m.put(k,v);
-                ws(); char c=s.charAt(i++);
-                if(c=='}') return m;
-                if(c!=',') throw err("Expected ',' or '}'");
+    //objMap describes a skipped object in the report
+    private static Object restoreObject(Class<?> clazz, long id, Supplier<?> objMap, Construction construction) {
+        int[] restoring = RESTORING.get();
+        restoring[0]++;
+        try {
+            Object instance = construction.build();
+            if (id != ObjectDecoder.Decoded.NO_ID) ObjectIds.assign(instance, id);
+            return instance;
+        } catch (InvocationTargetException ite) {
+            Throwable cause = ite.getTargetException();
+            if (isValidationException(cause)) {
+                System.err.println("ValidationException in " + clazz.getSimpleName()
+                        + ": " + cause.getMessage() + " — skipping " + objMap.get());
+            } else {
+                System.err.println("Ctor threw " + cause.getClass().getSimpleName()
+                        + ": " + cause.getMessage() + " — skipping " + objMap.get());
             }
+        } catch (ReflectiveOperationException | IllegalArgumentException ex) {
+            System.err.println("Failed to construct " + clazz.getSimpleName()
+                    + ": " + ex.getMessage() + " — skipping " + objMap.get());
+        } finally {
+            restoring[0]--;
         }
+        return null;
+    }
+
+    /**
+     * Restores a base snapshot (any format) followed by the delta snapshots written after it,
+     * oldest first. Afterwards change tracking restarts from the restored state, so the next
+     * delta only holds changes made from here on.
+     */
+    public static void readSnapshotChain(Path base, List<Path> deltas, Collection<Class<?>> knownModels)
+            throws IOException {
+        readSnapshot(base, knownModels);
+        long previous = -1;
+        for (Path delta : deltas) {
+            long sequence = readDelta(delta, knownModels);
+            if (sequence <= previous) throw new IOException("Delta snapshot out of order: " + delta);
+            previous = sequence;
+        }
+        ChangeTracker.checkpoint();
+    }
 
-        private List<Object> arr(){
-            List<Object> a=new ArrayList<>(); i++; ws();
-            if(s.charAt(i)==']'){ i++; return a; }
-            while(true){
-                Object v=val(); a.add(v);
-                ws(); char c=s.charAt(i++);
-                if(c==']') return a;
-                if(c!=',') throw err("Expected ',' or ']'");
+    /**
+     * Applies one delta snapshot on top of the objects in memory: objects whose id is known
+     * are updated in place, the others are constructed, and removed ids leave their registries.
+     * Returns the sequence number of the delta.
+     */
+    public static long readDelta(Path file, Collection<Class<?>> knownModels) throws IOException {
+        long sequence = -1;
+        try (JsonReader reader = openReader(file)) {
+            reader.useStrings(new StringTable());
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) throw new IOException("Not a delta snapshot: " + file);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                JsonReader.Token next = reader.peek();
+                if (key.equals("delta") && next == JsonReader.Token.BEGIN_OBJECT) {
+                    if (((Map<?, ?>) reader.readValue()).get("sequence") instanceof Number n) sequence = n.longValue();
+                } else if (key.equals("models") && next == JsonReader.Token.BEGIN_OBJECT) {
+                    GraphRestore graph = new GraphRestore(knownModels);
+                    readDeltaModels(reader, knownModels, graph);
+                    graph.finish();
+                } else {
+                    reader.skipValue();
+                }
             }
+            reader.endObject();
         }
+        if (sequence < 0) throw new IOException("Not a delta snapshot: " + file);
+        return sequence;
+    }
 
-        private String str(){
-            if(s.charAt(i)!='"') throw err("Expected '\"'");
-            i++; StringBuilder b=new StringBuilder();
-            while(i<s.length()){
-                char c=s.charAt(i++);
-                if(c=='"') return b.toString();
-                if(c=='\\'){
-                    if(i>=s.length()) throw err("Bad escape");
-                    char e=s.charAt(i++);
-                    switch(e){
-                        case '"': b.append('"'); break;
-                        case '\\': b.append('\\'); break;
-                        case '/': b.append('/'); break;
-                        case 'b': b.append('\b'); break;
-                        case 'f': b.append('\f'); break;
-                        case 'n': b.append('\n'); break;
-                        case 'r': b.append('\r'); break;
-                        case 't': b.append('\t'); break;
-                        case 'u':
-                            if(i+4> s.length()) throw err("Bad \\u");
-                            int cp=Integer.parseInt(s.substring(i,i+4),16);
-                            b.append((char)cp); i+=4; break;
-                        default: throw err("Bad escape: \\"+e);
+    private static void readDeltaModels(JsonReader reader, Collection<Class<?>> knownModels, GraphRestore graph)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fqcn = reader.nextName();
+            Class<?> clazz = resolveClass(fqcn, knownModels);
+            if (clazz == null || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                if (clazz == null) System.err.println("Unknown class: " + fqcn + " (skipping)");
+                reader.skipValue();
+                continue;
+            }
+            graph.block(clazz);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                JsonReader.Token next = reader.peek();
+                if (key.equals("static") && next == JsonReader.Token.BEGIN_OBJECT) {
+                    restoreStaticFields(clazz, (Map<?, ?>) reader.readValue());
+                } else if (key.equals("objects") && next == JsonReader.Token.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        upsertObject(clazz, (Map<?, ?>) reader.readValue(), graph);
                     }
+                    reader.endArray();
+                } else if (key.equals("removed") && next == JsonReader.Token.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() != JsonReader.Token.NUMBER) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        removeObject(clazz, reader.nextNumber().longValue());
+                    }
+                    reader.endArray();
                 } else {
-                    b.append(c);
+                    reader.skipValue();
                 }
             }
-            throw err("Unterminated string");
+            reader.endObject();
         }
+        reader.endObject();
+    }
 
-        private Boolean bool(){
-            if(s.startsWith("true",i)){ i+=4; return true; }
-            if(s.startsWith("false",i)){ i+=5; return false; }
-            throw err("Bad boolean");
+    private static void upsertObject(Class<?> clazz, Map<?, ?> objMap, GraphRestore graph) {
+        Object existing = objMap.get(GraphEncoding.ID) instanceof Number id ? ObjectIds.find(id.longValue()) : null;
+        if (existing != null && existing.getClass() == clazz) {
+            graph.update(existing, objMap);
+        } else {
+            graph.restore(clazz, objMap);
         }
+    }
 
-        private Object nul(){
-            if(s.startsWith("null",i)){ i+=4; return null; }
-            throw err("Bad null");
+    private static void removeObject(Class<?> clazz, long id) {
+        Object existing = ObjectIds.find(id);
+        if (existing == null || existing.getClass() != clazz) {
+            System.err.println("Unknown " + clazz.getSimpleName() + " @id " + id + " (skipping removal)");
+            return;
+        }
+        for (SerializerPlan.Property registry : SerializerPlan.of(clazz).registries()) {
+            if (registry.getStatic() instanceof List<?> list) list.removeIf(o -> o == existing);
         }
+        ObjectIds.forget(existing);
+    }
+
+    static Class<?> resolveClass(String fqcn, Collection<Class<?>> known) {
+        Class<?> c = findClass(fqcn, known);
+        if (c != null) return c;
+        try { return Class.forName(fqcn); } catch (ClassNotFoundException e) { return null; }
+    }
+
+    private static Class<?> findClass(String fqcn, Collection<Class<?>> known) {
+        for (Class<?> c : known) if (c.getName().equals(fqcn)) return c;
+        return null;
+    }
 
-        private Number num(){
-            int start=i; if(s.charAt(i)=='-') i++;
-            while(i<s.length() && Character.isDigit(s.charAt(i))) i++;
-            boolean frac=false, exp=false;
-            if(i<s.length() && s.charAt(i)=='.'){ frac=true; i++; while(i<s.length()&&Character.isDigit(s.charAt(i))) i++; }
-            if(i<s.length() && (s.charAt(i)=='e'||s.charAt(i)=='E')){
-                exp=true; i++; if(i<s.length()&&(s.charAt(i)=='+'||s.charAt(i)=='-')) i++;
-                while(i<s.length()&&Character.isDigit(s.charAt(i))) i++;
+    static void restoreStaticFields(Class<?> clazz, Map<?, ?> stat) {
+        ModelCodec<?> codec = Codecs.find(clazz);
+        for (Field f : clazz.getDeclaredFields()) {
+            if (!Modifier.isStatic(f.getModifiers())) continue;
+            if (hasAnnotation(f, "ObjectList")) continue;
+            if (!stat.containsKey(f.getName())) continue;
+
+            try {
+                Object coerced = CtorBinding.coercerFor(f.getGenericType()).coerce(stat.get(f.getName()));
+                if (codec != null && codec.setStatic(f.getName(), coerced)) continue;
+                f.setAccessible(true);
+                f.set(null, coerced);
+            } catch (IllegalAccessException | RuntimeException ex) {
+                System.err.println("Cannot set " + clazz.getSimpleName() + "." + f.getName() + ": " + ex.getMessage());
             }
-            String token=s.substring(start,i);
-            try{
-                if(frac||exp) return Double.parseDouble(token);
-                long L=Long.parseLong(token);
-                if(L>=Integer.MIN_VALUE && L<=Integer.MAX_VALUE) return (int)L;
-                return L;
-            }catch(NumberFormatException e){ throw err("Bad number"); }
         }
+    }
+
+    /** Use the cached @JsonCtor binding of the class; parameter names must match JSON keys. */
+    private static Object constructViaAnnotatedCtorUsingParamNames(Class<?> clazz, Map<?, ?> obj)
+            throws ReflectiveOperationException {
+        return CtorBinding.of(clazz).construct(obj);
+    }
+
+    private static boolean isValidationException(Throwable t) {
+        if (t == null) return false;
+        return "ValidationException".equals(t.getClass().getSimpleName());
+    }
 
-        private RuntimeException err(String msg){ return new RuntimeException(msg+" at pos "+i); }
+    private static boolean hasAnnotation(Field f, String simpleName) {
+        for (Annotation a : f.getAnnotations()) {
+            if (a.annotationType().getSimpleName().equals(simpleName)) return true;
+        }
+        return false;
     }
 }
@@ -1,52 +1,347 @@
 package persistence.fileio;
 
+import persistence.ChangeSet;
+import persistence.ChangeTracker;
+import persistence.Epoch;
+import persistence.JsonSerializer;
+import persistence.JsonWriter;
 import persistence.SerializeException;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 public class FileOut {
 
+    private static final String DELTA_EXTENSION = "delta.json";
+    private static final int BUFFER_SIZE = 1 << 16;
+
     public static Path writeJson(Path directory, String baseName, String json) {
-        if (baseName == null || baseName.isBlank()) {
-            throw new IllegalArgumentException("Base name must not be blank");
-        }
+        return writeJson(directory, baseName, json, Compression.forFileName(baseName));
+    }
+
+    /** Same as writeJson, compressed as asked; the file name gets the compression's extension too. */
+    public static Path writeJson(Path directory, String baseName, String json, Compression compression) {
         if (json == null) {
             throw new IllegalArgumentException("JSON content must not be null");
         }
-        try{
-            Files.createDirectories(directory);
+        Path targetPath = prepareTarget(directory, baseName, "json", compression);
+
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                compression.compress(Files.newOutputStream(targetPath)), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writer.write(json);
         } catch (IOException e) {
             throw new SerializeException(e.getMessage());
         }
-        String cleanBase = stripJsonExtension(baseName.trim());
-        Path targetPath = uniqueJsonPath(directory, cleanBase);
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(targetPath.toFile(), false))) {
-            writer.write(json);
+        if (compression == Compression.NONE) {
+            try {
+                writeIndex(targetPath, SnapshotIndex.scan(targetPath, SnapshotIndex.DEFAULT_STRIDE));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Cannot index " + targetPath.getFileName() + ": " + e.getMessage() + " — skipping");
+            }
+        }
+        return targetPath;
+    }
+
+    /**
+     * Streams a snapshot of the given model classes straight to disk.
+     * Objects are serialized one by one into a buffered writer, so memory use
+     * does not depend on how many objects the registries hold.
+     * Uncompressed JSON snapshots get a SnapshotIndex next to them for FileIn.readClasses.
+     */
+    public static Path writeSnapshot(Path directory, String baseName, List<Class<?>> classes) {
+        return writeSnapshot(directory, baseName, classes, SnapshotFormats.JSON);
+    }
+
+    /**
+     * Same as writeSnapshot, in the given format; the file gets the format's extension.
+     * A base name ending in ".gz" or ".deflate" asks for that compression.
+     */
+    public static Path writeSnapshot(Path directory, String baseName, List<Class<?>> classes, SnapshotFormat format) {
+        return writeSnapshot(directory, baseName, classes, format, Compression.forFileName(baseName));
+    }
+
+    /** Same as writeSnapshot, compressed on the fly while the snapshot streams out. */
+    public static Path writeSnapshot(Path directory, String baseName, List<Class<?>> classes,
+                                     SnapshotFormat format, Compression compression) {
+        if (classes == null) {
+            throw new IllegalArgumentException("Model classes must not be null");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("Snapshot format must not be null");
+        }
+        return writeSnapshotTo(prepareTarget(directory, baseName, format.extension(), compression),
+                classes, format, compression);
+    }
+
+    //writes to exactly this path, replacing what is there; see SnapshotDirectory
+    static Path writeSnapshotTo(Path targetPath, List<Class<?>> classes, SnapshotFormat format, Compression compression) {
+        return write(targetPath, compression, out -> {
+            if (compression == Compression.NONE && format instanceof JsonSnapshotFormat json) {
+                return json.writeIndexed(classes, out, SnapshotIndex.DEFAULT_STRIDE);
+            }
+            format.write(classes, out);
+            return null;
+        });
+    }
+
+    /**
+     * Writes the registries as they were when the epoch began, as a JSON snapshot. The models
+     * may keep changing while this runs (see Epoch), so it can be called off the threads
+     * that change them.
+     */
+    public static Path writeSnapshot(Path directory, String baseName, Epoch epoch, Compression compression) {
+        if (epoch == null) {
+            throw new IllegalArgumentException("Epoch must not be null");
+        }
+        return writeSnapshotTo(prepareTarget(directory, baseName, SnapshotFormats.JSON.extension(), compression),
+                epoch, compression);
+    }
+
+    static Path writeSnapshotTo(Path targetPath, Epoch epoch, Compression compression) {
+        return write(targetPath, compression, out -> {
+            SnapshotIndex index = ((JsonSnapshotFormat) SnapshotFormats.JSON)
+                    .writeIndexed(epoch, out, SnapshotIndex.DEFAULT_STRIDE);
+            return compression == Compression.NONE ? index : null; // offsets of compressed files are useless
+        });
+    }
+
+    /**
+     * Writes a sharded snapshot (see ShardedSnapshot) of the classes on the common pool, with
+     * registries of more than ShardedSnapshot.DEFAULT_SHARD_OBJECTS objects cut into several shards.
+     */
+    public static Path writeSharded(Path directory, String baseName, List<Class<?>> classes) {
+        return writeSharded(directory, baseName, classes, ShardedSnapshot.DEFAULT_SHARD_OBJECTS,
+                Compression.forFileName(baseName), ForkJoinPool.commonPool());
+    }
+
+    public static Path writeSharded(Path directory, String baseName, List<Class<?>> classes, int shardObjects,
+                                    Compression compression, Executor executor) {
+        if (classes == null) {
+            throw new IllegalArgumentException("Model classes must not be null");
+        }
+        try (Epoch epoch = Epoch.begin(classes)) {
+            return writeSharded(directory, baseName, epoch, shardObjects, compression, executor);
+        }
+    }
+
+    /**
+     * Writes the registries as they were when the epoch began as a sharded snapshot: every
+     * shard is serialized and written as its own task on the executor, all from the same epoch.
+     * The shards go to a temporary directory that is renamed to "&lt;base&gt;.shards" once the
+     * manifest is written, so a failed write leaves nothing behind.
+     */
+    public static Path writeSharded(Path directory, String baseName, Epoch epoch, int shardObjects,
+                                    Compression compression, Executor executor) {
+        if (epoch == null) {
+            throw new IllegalArgumentException("Epoch must not be null");
+        }
+        if (shardObjects < 1) {
+            throw new IllegalArgumentException("Shard size must be at least 1");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        if (compression == null) {
+            throw new IllegalArgumentException("Compression must not be null");
+        }
+        // only the shards are compressed, the directory keeps its plain name
+        String base = baseName == null || compression == Compression.NONE
+                ? baseName : stripExtension(baseName.trim(), compression.extension());
+        Path target = prepareTarget(directory, base, ShardedSnapshot.EXTENSION);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        String extension = SnapshotFormats.JSON.extension()
+                + (compression == Compression.NONE ? "" : "." + compression.extension());
+        try {
+            deleteTree(tmp); // left over from a crashed write
+            Files.createDirectories(tmp);
         } catch (IOException e) {
             throw new SerializeException(e.getMessage());
         }
 
+        List<ShardedSnapshot.Shard> shards = new ArrayList<>();
+        List<CompletableFuture<?>> writes = new ArrayList<>();
+        for (Class<?> clazz : epoch.classes()) {
+            boolean withStatic = true;
+            for (Object[] members : epoch.registries(clazz)) {
+                for (int from = 0; from < members.length; from += shardObjects) {
+                    int to = (int) Math.min(members.length, (long) from + shardObjects);
+                    Path file = tmp.resolve(String.format("%04d-%s.%s", shards.size() + 1, clazz.getSimpleName(), extension));
+                    shards.add(new ShardedSnapshot.Shard(clazz.getName(), countObjects(members, from, to), file));
+                    int start = from;
+                    boolean statics = withStatic;
+                    writes.add(CompletableFuture.runAsync(() -> write(file, compression, out -> {
+                        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                        JsonSerializer.serializeShard(epoch, clazz, members, start, to, statics, writer);
+                        writer.flush();
+                        return null;
+                    }), executor));
+                    withStatic = false;
+                }
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+            new ShardedSnapshot(tmp, shards).write();
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (CompletionException | IOException e) {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            try {
+                deleteTree(tmp);
+            } catch (IOException ignored) {
+            }
+            if (cause instanceof SerializeException se) throw se;
+            throw new SerializeException(cause.getMessage());
+        }
+        return target;
+    }
+
+    private static long countObjects(Object[] members, int from, int to) {
+        long n = 0;
+        for (int i = from; i < to; i++) if (members[i] != null) n++;
+        return n;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    private interface SnapshotBody {
+        /** Writes the snapshot; returns its index, or null when it has none. */
+        SnapshotIndex write(OutputStream out) throws IOException;
+    }
+
+    private static Path write(Path targetPath, Compression compression, SnapshotBody body) {
+        SnapshotIndex index;
+        try (OutputStream out = compression.compress(Files.newOutputStream(targetPath))) {
+            index = body.write(out);
+        } catch (IOException | SerializeException e) {
+            deleteQuietly(targetPath); // never leave a truncated snapshot behind
+            throw new SerializeException(e.getMessage());
+        }
+
+        if (index != null) {
+            try {
+                writeIndex(targetPath, index);
+            } catch (IOException e) {
+                System.err.println("Cannot index " + targetPath.getFileName() + ": " + e.getMessage() + " — skipping");
+            }
+        }
+        return targetPath;
+    }
+
+    /**
+     * Writes a full snapshot that later deltas build on, and starts change tracking from it.
+     * If the write fails, the deltas written afterwards have no base: write a new base first.
+     */
+    public static Path writeBaseSnapshot(Path directory, String baseName, List<Class<?>> classes, SnapshotFormat format) {
+        ChangeTracker.checkpoint();
+        return writeSnapshot(directory, baseName, classes, format);
+    }
+
+    public static Path writeBaseSnapshot(Path directory, String baseName, List<Class<?>> classes) {
+        return writeBaseSnapshot(directory, baseName, classes, SnapshotFormats.JSON);
+    }
+
+    /**
+     * Writes only the objects created, changed or removed since the last base or delta snapshot,
+     * as a "*.delta.json" file. When the write fails, the changes stay pending for the next delta.
+     */
+    public static Path writeDeltaSnapshot(Path directory, String baseName, List<Class<?>> classes) {
+        if (classes == null) {
+            throw new IllegalArgumentException("Model classes must not be null");
+        }
+        if (!ChangeTracker.isTracking()) {
+            throw new IllegalStateException("No base snapshot: write one with writeBaseSnapshot first");
+        }
+        Path targetPath = prepareTarget(directory, baseName, DELTA_EXTENSION);
+
+        ChangeSet changes = ChangeTracker.checkpoint();
+        try (Writer out = new JsonWriter(new OutputStreamWriter(Files.newOutputStream(targetPath), StandardCharsets.UTF_8))) {
+            JsonSerializer.serializeDelta(classes, changes, out);
+        } catch (IOException | SerializeException e) {
+            deleteQuietly(targetPath);
+            ChangeTracker.requeue(changes);
+            throw new SerializeException(e.getMessage());
+        }
+
         return targetPath;
     }
 
-    private static Path uniqueJsonPath(Path dir, String base) {
-        Path candidate = dir.resolve(base + ".json");
+    private static Path prepareTarget(Path directory, String baseName, String extension, Compression compression) {
+        if (compression == null) {
+            throw new IllegalArgumentException("Compression must not be null");
+        }
+        if (compression == Compression.NONE) return prepareTarget(directory, baseName, extension);
+        String base = baseName == null ? null : stripExtension(baseName.trim(), compression.extension());
+        return prepareTarget(directory, base, extension + "." + compression.extension());
+    }
+
+    private static Path prepareTarget(Path directory, String baseName, String extension) {
+        if (baseName == null || baseName.isBlank()) {
+            throw new IllegalArgumentException("Base name must not be blank");
+        }
+        try{
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new SerializeException(e.getMessage());
+        }
+        String cleanBase = stripExtension(baseName.trim(), extension);
+        int dot = extension.indexOf('.');
+        if (dot > 0) cleanBase = stripExtension(cleanBase, extension.substring(0, dot)); // "x.json" asked for as json.gz
+        return uniquePath(directory, cleanBase, extension);
+    }
+
+    //the index is only an accelerator: without it readers fall back to parsing the whole file
+    private static void writeIndex(Path snapshot, SnapshotIndex index) throws IOException {
+        try {
+            index.write(snapshot);
+        } catch (IOException e) {
+            deleteQuietly(SnapshotIndex.pathFor(snapshot));
+            throw e;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Path uniquePath(Path dir, String base, String extension) {
+        Path candidate = dir.resolve(base + "." + extension);
         int i = 1;
         while (Files.exists(candidate)) {
-            candidate = dir.resolve(base + " (" + i + ").json");
+            candidate = dir.resolve(base + " (" + i + ")." + extension);
             i++;
         }
         return candidate;
     }
 
-    private static String stripJsonExtension(String name) {
-        if (name.toLowerCase().endsWith(".json")) {
-            return name.substring(0, name.length() - 5);
+    private static String stripExtension(String name, String extension) {
+        String suffix = "." + extension;
+        if (name.toLowerCase().endsWith(suffix)) {
+            return name.substring(0, name.length() - suffix.length());
         }
         return name;
     }
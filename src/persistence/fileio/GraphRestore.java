@@ -0,0 +1,192 @@
+package persistence.fileio;
+
+import persistence.ChangeTracker;
+import persistence.GraphEncoding;
+import persistence.ObjectIds;
+import persistence.SerializerPlan;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One restore of a snapshot or delta. Objects are built as they are read and get their id
+ * back right away. Plain fields the constructor does not take are set straight after it;
+ * fields holding references are linked in a second pass, once every object of the file
+ * exists, so the order of class blocks does not matter. An object whose constructor needs a
+ * reference that is not restored yet waits until the end of the file.
+ * Safe to feed from several threads; finish runs once, after all blocks were read.
+ */
+final class GraphRestore {
+
+    private record Pending(Class<?> clazz, Map<?, ?> objMap) {}
+
+    private record Link(Object target, Map<?, ?> values) {}
+
+    private final Collection<Class<?>> knownModels;
+    //registry contents before the restore, to tell constructor side effects from restored objects
+    private final Set<Object> existing = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Object> restored = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Class<?>> blocks = new LinkedHashSet<>();
+    private List<Pending> pending = new ArrayList<>();
+    private final List<Link> links = new ArrayList<>();
+
+    GraphRestore(Collection<Class<?>> knownModels) {
+        this.knownModels = knownModels;
+        for (Class<?> clazz : knownModels) {
+            for (SerializerPlan.Property registry : SerializerPlan.of(clazz).registries()) {
+                if (registry.getStatic() instanceof List<?> list) existing.addAll(list);
+            }
+        }
+    }
+
+    /** Notes that the file has a block for clazz. */
+    synchronized void block(Class<?> clazz) {
+        blocks.add(clazz);
+    }
+
+    /** Builds a new object, or puts it on hold when its constructor refers to objects not restored yet. */
+    void restore(Class<?> clazz, Map<?, ?> objMap) {
+        for (String name : CtorBinding.of(clazz).names()) {
+            if (hasDanglingRef(objMap.get(name))) {
+                synchronized (this) {
+                    pending.add(new Pending(clazz, objMap));
+                }
+                return;
+            }
+        }
+        construct(clazz, objMap);
+    }
+
+    /** Same as restore(Class, Map) for an object read by ObjectDecoder. */
+    void restore(Class<?> clazz, ObjectDecoder.Decoded decoded) {
+        if (decoded.hasDanglingRef()) {
+            restore(clazz, decoded.toMap(CtorBinding.of(clazz))); // waits like any other object
+            return;
+        }
+        Object instance = FileIn.restoreObject(clazz, decoded);
+        if (instance == null) return;
+        synchronized (this) {
+            restored.add(instance);
+        }
+        fill(instance, decoded.rest(), Set.of());
+    }
+
+    /** Brings an object that already exists up to date, as a delta does. */
+    void update(Object target, Map<?, ?> objMap) {
+        synchronized (this) {
+            restored.add(target);
+        }
+        fill(target, objMap, Set.of());
+    }
+
+    private void construct(Class<?> clazz, Map<?, ?> objMap) {
+        Object instance = FileIn.restoreObject(clazz, objMap);
+        if (instance == null) return;
+        synchronized (this) {
+            restored.add(instance);
+        }
+        fill(instance, objMap, Set.of(CtorBinding.of(clazz).names()));
+    }
+
+    private void fill(Object target, Map<?, ?> objMap, Set<String> skip) {
+        Map<Object, Object> now = new HashMap<>();
+        Map<Object, Object> later = new HashMap<>();
+        for (Map.Entry<?, ?> e : objMap.entrySet()) {
+            Object key = e.getKey();
+            if (GraphEncoding.ID.equals(key) || skip.contains(key)) continue;
+            (hasRef(e.getValue()) ? later : now).put(key, e.getValue());
+        }
+        if (!now.isEmpty()) FieldBinding.of(target.getClass()).apply(target, now);
+        if (!later.isEmpty()) {
+            synchronized (this) {
+                links.add(new Link(target, later));
+            }
+        }
+    }
+
+    /**
+     * Builds what was on hold (as far as its references can be resolved), links the reference
+     * fields, and drops objects that constructors created as a side effect from the registries
+     * of classes the file restored, since the file has the real ones. Every restored object is
+     * then reported to ChangeTracker.restored, with its links in place.
+     */
+    synchronized void finish() {
+        while (!pending.isEmpty()) {
+            List<Pending> round = pending;
+            pending = new ArrayList<>();
+            boolean progress = false;
+            for (Pending p : round) {
+                if (readyToBuild(p)) {
+                    construct(p.clazz(), p.objMap());
+                    progress = true;
+                } else {
+                    pending.add(p);
+                }
+            }
+            if (!progress) {
+                // cycles through constructors or missing objects: build anyway, the constructor reports what is missing
+                round = pending;
+                pending = new ArrayList<>();
+                for (Pending p : round) construct(p.clazz(), p.objMap());
+            }
+        }
+
+        for (Link link : links) FieldBinding.of(link.target().getClass()).apply(link.target(), link.values());
+        links.clear();
+
+        for (Class<?> clazz : blocks) {
+            if (!knownModels.contains(clazz)) continue;
+            for (SerializerPlan.Property registry : SerializerPlan.of(clazz).registries()) {
+                if (!(registry.getStatic() instanceof List<?> list)) continue;
+                List<Object> stray = new ArrayList<>();
+                for (Object o : list) {
+                    if (o != null && !existing.contains(o) && !restored.contains(o)) stray.add(o);
+                }
+                for (Object o : stray) {
+                    synchronized (ChangeTracker.REGISTRY_LOCK) {
+                        list.removeIf(x -> x == o);
+                    }
+                    ChangeTracker.removed(o);
+                }
+            }
+        }
+
+        for (Object o : restored) ChangeTracker.restored(o);
+    }
+
+    private static boolean readyToBuild(Pending p) {
+        for (String name : CtorBinding.of(p.clazz()).names()) {
+            if (hasDanglingRef(p.objMap().get(name))) return false;
+        }
+        return true;
+    }
+
+    /** Whether raw holds a reference anywhere inside it. */
+    static boolean hasRef(Object raw) {
+        if (raw instanceof Map<?, ?> m) {
+            if (CtorBinding.isRef(m)) return true;
+            for (Object v : m.values()) if (hasRef(v)) return true;
+        } else if (raw instanceof List<?> list) {
+            for (Object v : list) if (hasRef(v)) return true;
+        }
+        return false;
+    }
+
+    /** Whether raw refers to an id that has no object yet. */
+    static boolean hasDanglingRef(Object raw) {
+        if (raw instanceof Map<?, ?> m) {
+            if (m.get(GraphEncoding.REF) instanceof Number id) return ObjectIds.find(id.longValue()) == null;
+            for (Object v : m.values()) if (hasDanglingRef(v)) return true;
+        } else if (raw instanceof List<?> list) {
+            for (Object v : list) if (hasDanglingRef(v)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,584 @@
+package persistence.fileio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental pull parser over UTF-8 bytes. The caller asks for one token at a time,
+ * so a snapshot never has to be held as text or as a complete tree; only the value
+ * currently being read (a name, a string, a number) is materialized.
+ */
+final class JsonReader implements Closeable {
+
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    /** Supplies the input as a sequence of byte chunks; returns null once exhausted. */
+    interface Source extends Closeable {
+        ByteBuffer next() throws IOException;
+    }
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    //a single mapping is limited to 2 GB, bigger files are mapped segment by segment
+    static final int MAPPED_SEGMENT_SIZE = 1 << 30;
+
+    //scopes of the nesting stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Source source;
+    private ByteBuffer buf;
+    private long pos;          // absolute offset of the next byte to be read
+    private int pushback = -1;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+
+    private Token peeked;
+    private boolean peekedBoolean;
+
+    private byte[] scratch = new byte[256];
+    private int scratchLen;
+    private StringTable strings; // null: every name and string is a new instance
+
+    JsonReader(Source source) {
+        this.source = source;
+        this.stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /** Names and strings read from now on are shared through the table, for the rest of this load. */
+    void useStrings(StringTable table) {
+        this.strings = table;
+    }
+
+    static JsonReader open(Path file) throws IOException {
+        return new JsonReader(streamSource(Files.newInputStream(file)));
+    }
+
+    /** Parses the file straight from memory-mapped pages, without decoding it into chars first. */
+    static JsonReader openMapped(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new JsonReader(mappedSource(channel, 0, channel.size(), MAPPED_SEGMENT_SIZE));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Maps [start, end) of the channel lazily, one segment of at most segmentSize bytes at a time. */
+    static Source mappedSource(FileChannel channel, long start, long end, int segmentSize) {
+        return new Source() {
+            private long next = start;
+
+            @Override
+            public ByteBuffer next() throws IOException {
+                if (next >= end) return null;
+                long len = Math.min(segmentSize, end - next);
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, next, len);
+                next += len;
+                return segment;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    static Source streamSource(InputStream in) {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ByteBuffer view = ByteBuffer.wrap(chunk);
+        return new Source() {
+            @Override
+            public ByteBuffer next() throws IOException {
+                int n = in.read(chunk);
+                if (n < 0) return null;
+                view.clear().limit(n);
+                return view;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    // ---------------- byte level ----------------
+
+    private int read() throws IOException {
+        if (pushback >= 0) {
+            int b = pushback;
+            pushback = -1;
+            pos++;
+            return b;
+        }
+        while (buf == null || !buf.hasRemaining()) {
+            buf = source.next();
+            if (buf == null) return -1;
+        }
+        pos++;
+        return buf.get() & 0xFF;
+    }
+
+    private void unread(int b) {
+        if (b < 0) return;
+        pushback = b;
+        pos--;
+    }
+
+    private int nextNonWs() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    /** Offset of the next unread byte from the start of the source. */
+    long position() {
+        return pos;
+    }
+
+    // ---------------- tokens ----------------
+
+    Token peek() throws IOException {
+        if (peeked == null) peeked = doPeek();
+        return peeked;
+    }
+
+    private Token doPeek() throws IOException {
+        int scope = stack[depth - 1];
+        if (scope == EMPTY_ARRAY) {
+            stack[depth - 1] = NONEMPTY_ARRAY;
+            int c = nextNonWs();
+            if (c == ']') return Token.END_ARRAY;
+            unread(c);
+        } else if (scope == NONEMPTY_ARRAY) {
+            int c = nextNonWs();
+            if (c == ']') return Token.END_ARRAY;
+            if (c != ',') throw err("Expected ',' or ']'");
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[depth - 1] = DANGLING_NAME;
+            int c = nextNonWs();
+            if (scope == NONEMPTY_OBJECT) {
+                if (c == '}') return Token.END_OBJECT;
+                if (c != ',') throw err("Expected ',' or '}'");
+                c = nextNonWs();
+            } else if (c == '}') {
+                return Token.END_OBJECT;
+            }
+            if (c != '"') throw err("Expected '\"'");
+            return Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            stack[depth - 1] = NONEMPTY_OBJECT;
+            if (nextNonWs() != ':') throw err("Expected ':'");
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[depth - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            int c = nextNonWs();
+            if (c < 0) return Token.END_DOCUMENT;
+            throw err("Unexpected trailing content");
+        }
+
+        int c = nextNonWs();
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't': expectLiteral("rue"); peekedBoolean = true; return Token.BOOLEAN;
+            case 'f': expectLiteral("alse"); peekedBoolean = false; return Token.BOOLEAN;
+            case 'n': expectLiteral("ull"); return Token.NULL;
+            case -1: throw err("Unexpected end");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    unread(c);
+                    return Token.NUMBER;
+                }
+                throw err("Unexpected char '" + (char) c + "'");
+        }
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int k = 0; k < rest.length(); k++) {
+            if (read() != rest.charAt(k)) throw err("Bad literal");
+        }
+    }
+
+    private void expect(Token t) throws IOException {
+        if (peek() != t) throw err("Expected " + t + " but was " + peeked);
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = scope;
+    }
+
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    /** Continues inside an array whose '[' lies before the start of the source, e.g. from an indexed element. */
+    void resumeArray() {
+        push(EMPTY_ARRAY);
+    }
+
+    /** True while the current object or array has more members. */
+    boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        readStringBytes();
+        return scratchString();
+    }
+
+    String nextString() throws IOException {
+        expect(Token.STRING);
+        readStringBytes();
+        return scratchString();
+    }
+
+    boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    /** Integer or Long for integral values that fit, Double otherwise (same as the old tree parser). */
+    Number nextNumber() throws IOException {
+        if (scanNumber()) {
+            long L = parseLong();
+            if (L >= Integer.MIN_VALUE && L <= Integer.MAX_VALUE) return (int) L;
+            return L;
+        }
+        return parseDouble();
+    }
+
+    /** The next number as nextNumber().longValue() would give it, without boxing it. */
+    long nextLong() throws IOException {
+        return scanNumber() ? parseLong() : (long) parseDouble();
+    }
+
+    /** The next number as nextNumber().intValue() would give it, without boxing it. */
+    int nextInt() throws IOException {
+        return scanNumber() ? (int) parseLong() : (int) parseDouble();
+    }
+
+    /** The next number as nextNumber().floatValue() would give it, without boxing it. */
+    float nextFloat() throws IOException {
+        return scanNumber() ? (float) parseLong() : (float) parseDouble();
+    }
+
+    /** The next number as nextNumber().doubleValue() would give it, without boxing it. */
+    double nextDouble() throws IOException {
+        return scanNumber() ? (double) parseLong() : parseDouble();
+    }
+
+    //reads the number token into scratch; true when it has neither fraction nor exponent
+    private boolean scanNumber() throws IOException {
+        expect(Token.NUMBER);
+        scratchLen = 0;
+        boolean integral = true;
+        int c = read();
+        if (c == '-') { append(c); c = read(); }
+        while (c >= '0' && c <= '9') { append(c); c = read(); }
+        if (c == '.') {
+            integral = false; append(c); c = read();
+            while (c >= '0' && c <= '9') { append(c); c = read(); }
+        }
+        if (c == 'e' || c == 'E') {
+            integral = false; append(c); c = read();
+            if (c == '+' || c == '-') { append(c); c = read(); }
+            while (c >= '0' && c <= '9') { append(c); c = read(); }
+        }
+        unread(c);
+        return integral;
+    }
+
+    //the integral token in scratch, with the overflow check of Long.parseLong
+    private long parseLong() {
+        boolean negative = scratchLen > 0 && scratch[0] == '-';
+        int start = negative ? 1 : 0;
+        if (start == scratchLen || scratchLen - start > 19) throw err("Bad number");
+        long v = 0; // accumulated negatively, so Long.MIN_VALUE fits
+        for (int k = start; k < scratchLen; k++) {
+            int d = scratch[k] - '0';
+            if (v < (Long.MIN_VALUE + d) / 10) throw err("Bad number");
+            v = v * 10 - d;
+        }
+        if (!negative && v == Long.MIN_VALUE) throw err("Bad number");
+        return negative ? v : -v;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The token in scratch as Double.parseDouble reads it. Up to 15 significant digits and a
+     * decimal exponent within 22 are exact as doubles, so one multiplication or division
+     * rounds correctly and no string is needed; anything else goes through parseDouble.
+     */
+    private double parseDouble() {
+        int k = 0;
+        boolean negative = scratch[0] == '-';
+        if (negative) k++;
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean fast = true;
+        for (; k < scratchLen && scratch[k] >= '0' && scratch[k] <= '9'; k++) {
+            if (digits > 0 || scratch[k] != '0') digits++;
+            mantissa = mantissa * 10 + (scratch[k] - '0');
+            if (digits > 15) { fast = false; break; }
+        }
+        if (fast && k < scratchLen && scratch[k] == '.') {
+            for (k++; k < scratchLen && scratch[k] >= '0' && scratch[k] <= '9'; k++) {
+                if (digits > 0 || scratch[k] != '0') digits++;
+                mantissa = mantissa * 10 + (scratch[k] - '0');
+                exponent--;
+                if (digits > 15) { fast = false; break; }
+            }
+        }
+        if (fast && k < scratchLen) { // exponent part
+            k++;
+            boolean expNegative = k < scratchLen && scratch[k] == '-';
+            if (k < scratchLen && (scratch[k] == '-' || scratch[k] == '+')) k++;
+            int e = 0, start = k;
+            for (; k < scratchLen && e < 1000; k++) e = e * 10 + (scratch[k] - '0');
+            if (k < scratchLen || k == start) fast = false; // huge or missing exponents are left to parseDouble
+            exponent += expNegative ? -e : e;
+        }
+        if (fast && exponent >= -22 && exponent <= 22) {
+            double v = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -v : v;
+        }
+        try {
+            return Double.parseDouble(new String(scratch, 0, scratchLen, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            throw err("Bad number");
+        }
+    }
+
+    /**
+     * Reads the next name and returns the index of the candidate (UTF-8 bytes) it equals, or -1;
+     * only then is it worth making a String of it with lastName().
+     */
+    int nextName(byte[][] candidates) throws IOException {
+        expect(Token.NAME);
+        readStringBytes();
+        for (int i = 0; i < candidates.length; i++) {
+            byte[] c = candidates[i];
+            if (c.length == scratchLen && Arrays.equals(c, 0, c.length, scratch, 0, scratchLen)) return i;
+        }
+        return -1;
+    }
+
+    /** The name last read by nextName(byte[][]). */
+    String lastName() {
+        return scratchString();
+    }
+
+    private String scratchString() {
+        if (strings != null) return strings.get(scratch, scratchLen);
+        return new String(scratch, 0, scratchLen, StandardCharsets.UTF_8);
+    }
+
+    /** Skips the next value, including everything nested inside it. */
+    void skipValue() throws IOException {
+        int level = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT: beginObject(); level++; break;
+                case BEGIN_ARRAY: beginArray(); level++; break;
+                case END_OBJECT: endObject(); level--; break;
+                case END_ARRAY: endArray(); level--; break;
+                case NAME: expect(Token.NAME); skipStringBytes(); break;
+                case STRING: expect(Token.STRING); skipStringBytes(); break;
+                case NUMBER: nextNumber(); break;
+                case BOOLEAN: nextBoolean(); break;
+                case NULL: nextNull(); break;
+                case END_DOCUMENT: throw err("Unexpected end");
+            }
+        } while (level > 0);
+    }
+
+    /** Reads the next value as plain Java data: Map, List, String, Number, Boolean or null. */
+    Object readValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT: {
+                Map<String, Object> m = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String k = nextName();
+                    m.put(k, readValue());
+                }
+                endObject();
+                return m;
+            }
+            case BEGIN_ARRAY: {
+                List<Object> a = new ArrayList<>();
+                beginArray();
+                while (hasNext()) a.add(readValue());
+                endArray();
+                return a;
+            }
+            case STRING: return nextString();
+            case NUMBER: return nextNumber();
+            case BOOLEAN: return nextBoolean();
+            case NULL: nextNull(); return null;
+            default: throw err("Unexpected " + peeked);
+        }
+    }
+
+    // ---------------- strings ----------------
+
+    private void append(int b) {
+        if (scratchLen == scratch.length) scratch = Arrays.copyOf(scratch, scratchLen * 2);
+        scratch[scratchLen++] = (byte) b;
+    }
+
+    //reads the raw UTF-8 of a string body (opening quote already consumed) into scratch, resolving escapes
+    private void readStringBytes() throws IOException {
+        scratchLen = 0;
+        while (true) {
+            int c = read();
+            if (c == '"') return;
+            if (c < 0) throw err("Unterminated string");
+            if (c != '\\') {
+                append(c);
+                continue;
+            }
+            appendEscape(read());
+        }
+    }
+
+    private void appendEscape(int e) throws IOException {
+        switch (e) {
+            case '"': append('"'); break;
+            case '\\': append('\\'); break;
+            case '/': append('/'); break;
+            case 'b': append('\b'); break;
+            case 'f': append('\f'); break;
+            case 'n': append('\n'); break;
+            case 'r': append('\r'); break;
+            case 't': append('\t'); break;
+            case 'u': appendCodeUnit(readHex4()); break;
+            default: throw err("Bad escape: \\" + (char) e);
+        }
+    }
+
+    private void skipStringBytes() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '"') return;
+            if (c < 0) throw err("Unterminated string");
+            if (c == '\\') read();
+        }
+    }
+
+    private int readHex4() throws IOException {
+        int cp = 0;
+        for (int k = 0; k < 4; k++) {
+            int h = Character.digit(read(), 16);
+            if (h < 0) throw err("Bad \\u");
+            cp = (cp << 4) | h;
+        }
+        return cp;
+    }
+
+    //encodes an escaped UTF-16 unit back to UTF-8, joining surrogate pairs
+    private void appendCodeUnit(int unit) throws IOException {
+        if (Character.isHighSurrogate((char) unit)) {
+            int a = read();
+            if (a != '\\') {
+                unread(a);
+                append('?'); // unpaired surrogate
+                return;
+            }
+            int b = read();
+            if (b != 'u') {
+                append('?');
+                appendEscape(b);
+                return;
+            }
+            int low = readHex4();
+            if (Character.isLowSurrogate((char) low)) {
+                appendCodePoint(Character.toCodePoint((char) unit, (char) low));
+            } else {
+                append('?');
+                appendCodeUnit(low);
+            }
+            return;
+        }
+        appendCodePoint(Character.isLowSurrogate((char) unit) ? '?' : unit);
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < 0x80) {
+            append(cp);
+        } else if (cp < 0x800) {
+            append(0xC0 | (cp >> 6));
+            append(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            append(0xE0 | (cp >> 12));
+            append(0x80 | ((cp >> 6) & 0x3F));
+            append(0x80 | (cp & 0x3F));
+        } else {
+            append(0xF0 | (cp >> 18));
+            append(0x80 | ((cp >> 12) & 0x3F));
+            append(0x80 | ((cp >> 6) & 0x3F));
+            append(0x80 | (cp & 0x3F));
+        }
+    }
+
+    private RuntimeException err(String msg) {
+        return new RuntimeException(msg + " at pos " + pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
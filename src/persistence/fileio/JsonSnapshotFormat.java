@@ -0,0 +1,93 @@
+package persistence.fileio;
+
+import persistence.Epoch;
+import persistence.JsonSerializer;
+import persistence.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/** The original text format: {"models":{"fqcn":{"static":{...},"objects":[...]}}}. */
+final class JsonSnapshotFormat implements SnapshotFormat {
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public String extension() {
+        return "json";
+    }
+
+    @Override
+    public boolean matches(byte[] header, int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = header[i];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') continue;
+            return b == '{' || b == '[';
+        }
+        return false;
+    }
+
+    @Override
+    public void write(List<Class<?>> classes, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonSerializer.serializeObjects(classes, writer);
+        writer.release(); // flushes; the caller owns the stream
+    }
+
+    /** Same as write, and records where each class block and every stride-th object starts. */
+    SnapshotIndex writeIndexed(List<Class<?>> classes, OutputStream out, int stride) throws IOException {
+        return writeIndexed(out, stride, (writer, index) -> JsonSerializer.serializeObjects(classes, writer, index));
+    }
+
+    /** Writes the registries as the epoch saw them, with an index. */
+    SnapshotIndex writeIndexed(Epoch epoch, OutputStream out, int stride) throws IOException {
+        return writeIndexed(out, stride, (writer, index) -> JsonSerializer.serializeObjects(epoch, writer, index));
+    }
+
+    private interface Body {
+        void write(Writer writer, JsonSerializer.BlockListener index) throws IOException;
+    }
+
+    private static SnapshotIndex writeIndexed(OutputStream out, int stride, Body body) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(counting, StandardCharsets.UTF_8));
+        SnapshotIndex.Builder index = new SnapshotIndex.Builder(stride, () -> {
+            writer.flush(); // offsets are in bytes, so the chars buffered so far have to be encoded first
+            return counting.count;
+        });
+        body.write(writer, index);
+        writer.release();
+        return index.build();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    @Override
+    public void read(InputStream in, Collection<Class<?>> knownModels) throws IOException {
+        JsonReader reader = new JsonReader(JsonReader.streamSource(in));
+        FileIn.read(reader, knownModels);
+    }
+}
@@ -0,0 +1,168 @@
+package persistence.fileio;
+
+import persistence.GraphEncoding;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads one JSON object of a class with a @JsonCtor straight into the constructor's argument
+ * slots, resolved once per class from its CtorBinding. Keys are matched as UTF-8 bytes, so
+ * constructor keys never become Strings; numbers, booleans and strings for parameters of
+ * those types are decoded directly instead of as boxed tree values. Anything else (graph
+ * values, mismatched tokens) is read as before and converted by the parameter's coercer,
+ * and keys the constructor does not take are kept for the fields.
+ */
+final class ObjectDecoder {
+
+    //how a parameter is decoded when the token has the expected kind
+    private enum Slot { LONG, INT, DOUBLE, FLOAT, BOOLEAN, STRING, OTHER }
+
+    private static final byte[] ID = GraphEncoding.ID.getBytes(StandardCharsets.UTF_8);
+
+    private static final ClassValue<ObjectDecoder> DECODERS = new ClassValue<>() {
+        @Override
+        protected ObjectDecoder computeValue(Class<?> type) {
+            return new ObjectDecoder(CtorBinding.of(type));
+        }
+    };
+
+    /** One decoded object: constructor arguments, its id and the remaining keys (null when none). */
+    static final class Decoded {
+        static final long NO_ID = Long.MIN_VALUE;
+
+        final Object[] values;
+        final boolean[] converted; // values[i] already has the parameter's type
+        final boolean[] present;
+        long id = NO_ID;
+        Map<String, Object> rest;
+
+        private Decoded(int n) {
+            values = new Object[n];
+            converted = new boolean[n];
+            present = new boolean[n];
+        }
+
+        /** Whether a raw argument refers to an object that is not restored yet. */
+        boolean hasDanglingRef() {
+            for (int i = 0; i < values.length; i++) {
+                if (!converted[i] && GraphRestore.hasDanglingRef(values[i])) return true;
+            }
+            return false;
+        }
+
+        /** The arguments for the constructor; raw values fail like CtorBinding.construct would. */
+        Object[] arguments(CtorBinding binding) {
+            Object[] args = new Object[values.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = converted[i] ? values[i] : binding.coerceArg(i, values[i]);
+            }
+            return args;
+        }
+
+        /** The object as readValue() would have given it, for the paths that work on maps. */
+        Map<String, Object> toMap(CtorBinding binding) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            if (id != NO_ID) map.put(GraphEncoding.ID, id);
+            String[] names = binding.names();
+            for (int i = 0; i < names.length; i++) {
+                if (present[i]) map.put(names[i], values[i]);
+            }
+            if (rest != null) map.putAll(rest);
+            return map;
+        }
+
+        Map<String, Object> rest() {
+            return rest == null ? Map.of() : rest;
+        }
+    }
+
+    private final CtorBinding binding;
+    private final byte[][] keys;
+    private final Slot[] slots;
+
+    private ObjectDecoder(CtorBinding binding) {
+        this.binding = binding;
+        String[] names = binding.names();
+        Class<?>[] types = binding.types();
+        this.keys = new byte[names.length + 1][];
+        this.slots = new Slot[names.length];
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            slots[i] = slotFor(types[i]);
+        }
+        keys[names.length] = ID;
+    }
+
+    static ObjectDecoder of(Class<?> type) {
+        return DECODERS.get(type);
+    }
+
+    CtorBinding binding() {
+        return binding;
+    }
+
+    /** Reads the object the reader is positioned at. */
+    Decoded read(JsonReader reader) throws IOException {
+        Decoded d = new Decoded(slots.length);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int k = reader.nextName(keys);
+            if (k == slots.length) {
+                if (reader.peek() == JsonReader.Token.NUMBER) d.id = reader.nextLong();
+                else reader.skipValue();
+            } else if (k >= 0) {
+                d.converted[k] = readSlot(reader, k, d.values);
+                d.present[k] = true;
+            } else {
+                String name = reader.lastName();
+                if (d.rest == null) d.rest = new LinkedHashMap<>();
+                d.rest.put(name, reader.readValue());
+            }
+        }
+        reader.endObject();
+        return d;
+    }
+
+    //true when the value was decoded to the parameter's type, false when values[k] holds it raw
+    private boolean readSlot(JsonReader reader, int k, Object[] values) throws IOException {
+        JsonReader.Token token = reader.peek();
+        Slot slot = slots[k];
+        if (token == JsonReader.Token.NUMBER) {
+            switch (slot) {
+                case LONG -> values[k] = reader.nextLong();
+                case INT -> values[k] = reader.nextInt();
+                case DOUBLE -> values[k] = reader.nextDouble();
+                case FLOAT -> values[k] = reader.nextFloat();
+                default -> {
+                    values[k] = reader.readValue();
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (token == JsonReader.Token.BOOLEAN && slot == Slot.BOOLEAN) {
+            values[k] = reader.nextBoolean();
+            return true;
+        }
+        if (token == JsonReader.Token.STRING && slot == Slot.STRING) {
+            values[k] = reader.nextString();
+            return true;
+        }
+        values[k] = reader.readValue();
+        return false;
+    }
+
+    //must agree with CtorBinding.coercerFor, which handles every token the slots do not
+    private static Slot slotFor(Class<?> type) {
+        if (type == long.class || type == Long.class) return Slot.LONG;
+        if (type == int.class || type == Integer.class) return Slot.INT;
+        if (type == double.class || type == Double.class) return Slot.DOUBLE;
+        if (type == float.class || type == Float.class) return Slot.FLOAT;
+        if (type == boolean.class || type == Boolean.class) return Slot.BOOLEAN;
+        if (type == String.class) return Slot.STRING;
+        return Slot.OTHER;
+    }
+}
@@ -0,0 +1,85 @@
+package persistence.fileio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The manifest of a sharded snapshot: a "&lt;base&gt;.shards" directory holding one JSON snapshot
+ * per shard, each with a single class block, and a "manifest" file listing the shards in the
+ * order they were cut (class by class, registry by registry, object range by object range).
+ * Only the first shard of a class carries its static fields. See FileOut.writeSharded and
+ * FileIn.readSharded.
+ *
+ * <pre>
+ * manifest := "SHARDS 1" line, then per shard: className objects fileName
+ * </pre>
+ */
+public final class ShardedSnapshot {
+
+    public static final String EXTENSION = "shards";
+    public static final String MANIFEST = "manifest";
+    public static final int DEFAULT_SHARD_OBJECTS = 50_000;
+
+    private static final String HEADER = "SHARDS 1";
+
+    /** One shard file; objects is how many objects it holds. */
+    public record Shard(String className, long objects, Path file) {}
+
+    private final Path directory;
+    private final List<Shard> shards;
+
+    ShardedSnapshot(Path directory, List<Shard> shards) {
+        this.directory = directory;
+        this.shards = List.copyOf(shards);
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public List<Shard> shards() {
+        return shards;
+    }
+
+    public long objectCount() {
+        long n = 0;
+        for (Shard s : shards) n += s.objects();
+        return n;
+    }
+
+    /** Reads the manifest of the sharded snapshot in this directory. */
+    public static ShardedSnapshot read(Path directory) throws IOException {
+        List<String> lines = Files.readAllLines(directory.resolve(MANIFEST), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            throw new IOException("Not a sharded snapshot: " + directory);
+        }
+        List<Shard> shards = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            String[] parts = line.split(" ", 3);
+            if (parts.length < 3) throw new IOException("Bad manifest line: " + line);
+            try {
+                shards.add(new Shard(parts[0], Long.parseLong(parts[1]), directory.resolve(parts[2])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad manifest line: " + line);
+            }
+        }
+        return new ShardedSnapshot(directory, shards);
+    }
+
+    //written last, so a directory with a manifest has all of its shards
+    void write() throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (Shard s : shards) {
+                out.write(s.className() + " " + s.objects() + " " + s.file().getFileName() + "\n");
+            }
+        }
+    }
+}
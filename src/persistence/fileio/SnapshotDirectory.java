@@ -0,0 +1,298 @@
+package persistence.fileio;
+
+import persistence.Epoch;
+import persistence.SerializeException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The snapshots of one base name in one directory, numbered "&lt;base&gt;-&lt;sequence&gt;.&lt;ext&gt;"
+ * with a sequence that only grows. A "&lt;base&gt;.manifest" file lists them, so naming the next
+ * snapshot, finding the latest one and applying the retention policy never list the directory;
+ * only a missing or unreadable manifest is rebuilt from a directory listing.
+ *
+ * <pre>
+ * manifest := "BSNAP 1" line, then per snapshot: sequence createdMillis bytes fileName
+ * </pre>
+ */
+public final class SnapshotDirectory {
+
+    public static final String MANIFEST_EXTENSION = "manifest";
+
+    private static final String HEADER = "BSNAP 1";
+    private static final String SEQUENCE_FORMAT = "%012d";
+
+    /** One snapshot of the directory, oldest first in entries(). */
+    public record Entry(long sequence, Path file, Instant created, long bytes) {}
+
+    /**
+     * Which snapshots to keep after each write: at most the last keepLast ones (0 for no limit)
+     * and none older than maxAge (null for no limit). The latest snapshot is always kept.
+     */
+    public record Retention(int keepLast, Duration maxAge) {
+        public static final Retention KEEP_ALL = new Retention(0, null);
+
+        public Retention {
+            if (keepLast < 0) throw new IllegalArgumentException("keepLast must not be negative");
+            if (maxAge != null && maxAge.isNegative()) throw new IllegalArgumentException("maxAge must not be negative");
+        }
+
+        public static Retention keepLast(int n) {
+            if (n < 1) throw new IllegalArgumentException("keepLast must be at least 1");
+            return new Retention(n, null);
+        }
+
+        public static Retention maxAge(Duration age) {
+            if (age == null) throw new IllegalArgumentException("maxAge must not be null");
+            return new Retention(0, age);
+        }
+
+        public Retention andMaxAge(Duration age) {
+            return new Retention(keepLast, age);
+        }
+    }
+
+    private final Path directory;
+    private final String baseName;
+    private final Path manifest;
+    private final Retention retention;
+    private final Clock clock;
+    private final List<Entry> entries;
+    private long reserved; // highest sequence handed out, also to writes still running
+
+    private SnapshotDirectory(Path directory, String baseName, Retention retention, Clock clock) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.manifest = directory.resolve(baseName + "." + MANIFEST_EXTENSION);
+        this.retention = retention;
+        this.clock = clock;
+        List<Entry> loaded = readManifest();
+        this.entries = loaded != null ? loaded : scan();
+        if (loaded == null && !entries.isEmpty()) saveManifest();
+    }
+
+    public static SnapshotDirectory open(Path directory, String baseName) {
+        return open(directory, baseName, Retention.KEEP_ALL);
+    }
+
+    public static SnapshotDirectory open(Path directory, String baseName, Retention retention) {
+        return open(directory, baseName, retention, Clock.systemUTC());
+    }
+
+    /** As open(directory, baseName, retention), with the clock that stamps entries and ages them out. */
+    public static SnapshotDirectory open(Path directory, String baseName, Retention retention, Clock clock) {
+        if (directory == null) throw new IllegalArgumentException("Directory must not be null");
+        if (baseName == null || baseName.isBlank()) throw new IllegalArgumentException("Base name must not be blank");
+        if (baseName.contains("/") || baseName.contains("\\")) {
+            throw new IllegalArgumentException("Base name must not contain a path: " + baseName);
+        }
+        if (retention == null) throw new IllegalArgumentException("Retention must not be null");
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new SerializeException(e.getMessage());
+        }
+        return new SnapshotDirectory(directory, baseName.trim(), retention, clock);
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public String baseName() {
+        return baseName;
+    }
+
+    /** Every snapshot still kept, oldest first. */
+    public synchronized List<Entry> entries() {
+        return List.copyOf(entries);
+    }
+
+    public synchronized Optional<Entry> latest() {
+        return entries.isEmpty() ? Optional.empty() : Optional.of(entries.get(entries.size() - 1));
+    }
+
+    /** Writes the next JSON snapshot of the classes. */
+    public Entry write(List<Class<?>> classes) {
+        return write(classes, SnapshotFormats.JSON, Compression.NONE);
+    }
+
+    public Entry write(List<Class<?>> classes, SnapshotFormat format, Compression compression) {
+        if (classes == null) throw new IllegalArgumentException("Model classes must not be null");
+        if (format == null) throw new IllegalArgumentException("Snapshot format must not be null");
+        if (compression == null) throw new IllegalArgumentException("Compression must not be null");
+        return write(format.extension(), compression,
+                target -> FileOut.writeSnapshotTo(target, classes, format, compression));
+    }
+
+    /** Writes the next snapshot from the epoch, as JSON; see FileOut.writeSnapshot(Path, String, Epoch, Compression). */
+    public Entry write(Epoch epoch, Compression compression) {
+        if (epoch == null) throw new IllegalArgumentException("Epoch must not be null");
+        if (compression == null) throw new IllegalArgumentException("Compression must not be null");
+        return write(SnapshotFormats.JSON.extension(), compression, target -> FileOut.writeSnapshotTo(target, epoch, compression));
+    }
+
+    private interface Writing {
+        Path write(Path target);
+    }
+
+    //the sequence is taken under the lock, the (long) write itself runs outside of it
+    private Entry write(String extension, Compression compression, Writing writing) {
+        String suffix = compression == Compression.NONE ? extension : extension + "." + compression.extension();
+        Path target;
+        long sequence;
+        synchronized (this) {
+            sequence = entries.isEmpty() ? 1 : entries.get(entries.size() - 1).sequence() + 1;
+            sequence = Math.max(sequence, reserved + 1);
+            target = fileFor(sequence, suffix);
+            while (Files.exists(target)) target = fileFor(++sequence, suffix); // left behind by a lost manifest
+            reserved = sequence;
+        }
+        writing.write(target);
+        Entry entry = new Entry(sequence, target, clock.instant().truncatedTo(ChronoUnit.MILLIS), sizeOf(target)); // as the manifest keeps it
+        synchronized (this) {
+            int at = entries.size();
+            while (at > 0 && entries.get(at - 1).sequence() > sequence) at--;
+            entries.add(at, entry);
+            if (!prune() && at == entries.size() - 1) append(entry);
+            else saveManifest();
+        }
+        return entry;
+    }
+
+    private Path fileFor(long sequence, String suffix) {
+        return directory.resolve(baseName + "-" + String.format(SEQUENCE_FORMAT, sequence) + "." + suffix);
+    }
+
+    //deletes what the retention policy no longer keeps; true when anything was removed
+    private boolean prune() {
+        Instant oldest = retention.maxAge() == null ? null : clock.instant().minus(retention.maxAge());
+        List<Entry> dropped = new ArrayList<>();
+        for (int i = 0; i < entries.size() - 1; i++) { // never the latest
+            Entry e = entries.get(i);
+            boolean tooMany = retention.keepLast() > 0 && entries.size() - i > retention.keepLast();
+            boolean tooOld = oldest != null && e.created().isBefore(oldest);
+            if (tooMany || tooOld) dropped.add(e);
+        }
+        for (Entry e : dropped) {
+            try {
+                Files.deleteIfExists(e.file());
+                Files.deleteIfExists(SnapshotIndex.pathFor(e.file()));
+                entries.remove(e);
+            } catch (IOException ex) {
+                System.err.println("Cannot delete " + e.file().getFileName() + ": " + ex.getMessage() + " — skipping");
+            }
+        }
+        return !dropped.isEmpty();
+    }
+
+    private void append(Entry entry) {
+        try {
+            if (!Files.exists(manifest)) {
+                saveManifest();
+                return;
+            }
+            Files.writeString(manifest, line(entry), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Cannot update " + manifest.getFileName() + ": " + e.getMessage() + " — skipping");
+        }
+    }
+
+    //rewritten next to the old one and moved over it, so a crash leaves one or the other
+    private void saveManifest() {
+        Path tmp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                out.write(HEADER);
+                out.write('\n');
+                for (Entry e : entries) out.write(line(e));
+            }
+            Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Cannot write " + manifest.getFileName() + ": " + e.getMessage() + " — skipping");
+        }
+    }
+
+    private static String line(Entry e) {
+        return e.sequence() + " " + e.created().toEpochMilli() + " " + e.bytes() + " " + e.file().getFileName() + "\n";
+    }
+
+    //null when there is no usable manifest
+    private List<Entry> readManifest() {
+        try {
+            List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && lines.get(0).equals(HEADER)) {
+                List<Entry> loaded = new ArrayList<>();
+                for (String line : lines.subList(1, lines.size())) {
+                    if (line.isBlank()) continue;
+                    String[] parts = line.split(" ", 4);
+                    if (parts.length < 4) throw new IllegalArgumentException("Bad manifest line: " + line);
+                    loaded.add(new Entry(Long.parseLong(parts[0]), directory.resolve(parts[3]),
+                            Instant.ofEpochMilli(Long.parseLong(parts[1])), Long.parseLong(parts[2])));
+                }
+                loaded.sort(Comparator.comparingLong(Entry::sequence));
+                return loaded;
+            }
+            System.err.println("Unknown manifest " + manifest.getFileName() + " — rebuilding it");
+        } catch (NoSuchFileException e) {
+            // first use, or the manifest was lost: the listing below finds what is there
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot read " + manifest.getFileName() + ": " + e.getMessage() + " — rebuilding it");
+        }
+        return null;
+    }
+
+    //one listing of the directory, for when there is no usable manifest
+    private List<Entry> scan() {
+        List<Entry> found = new ArrayList<>();
+        String prefix = baseName + "-";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob(prefix) + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.', prefix.length());
+                if (dot < 0 || name.endsWith("." + SnapshotIndex.EXTENSION)) continue;
+                String digits = name.substring(prefix.length(), dot);
+                if (digits.isEmpty() || !digits.chars().allMatch(Character::isDigit)) continue;
+                found.add(new Entry(Long.parseLong(digits), file,
+                        Files.getLastModifiedTime(file).toInstant(), Files.size(file)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Cannot list " + directory + ": " + e.getMessage() + " — skipping");
+        }
+        found.sort(Comparator.comparingLong(Entry::sequence));
+        return found;
+    }
+
+    private static String glob(String literal) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : literal.toCharArray()) {
+            if ("*?[]{}\\".indexOf(c) >= 0) sb.append('\\');
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package persistence.fileio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One on-disk encoding of a model snapshot. FileOut writes with a chosen format,
+ * FileIn picks the format back from the first bytes of the file (see SnapshotFormats).
+ */
+public interface SnapshotFormat {
+
+    /** Short name, e.g. "json". */
+    String name();
+
+    /** File extension without the dot. */
+    String extension();
+
+    /** True if a file starting with these bytes is written in this format. */
+    boolean matches(byte[] header, int length);
+
+    /** Writes the @ObjectList registries of the given classes. Buffers internally, does not close out. */
+    void write(List<Class<?>> classes, OutputStream out) throws IOException;
+
+    /** Restores a snapshot in this format into the model registries. Does not close in. */
+    void read(InputStream in, Collection<Class<?>> knownModels) throws IOException;
+}
@@ -0,0 +1,29 @@
+package persistence.fileio;
+
+import java.util.List;
+
+/** The available snapshot formats and header-based detection between them. */
+public final class SnapshotFormats {
+
+    public static final SnapshotFormat JSON = new JsonSnapshotFormat();
+    public static final SnapshotFormat BINARY = new BinarySnapshotFormat();
+
+    /** Bytes FileIn reads up front to recognize a format. */
+    static final int HEADER_SIZE = 16;
+
+    private static final List<SnapshotFormat> FORMATS = List.of(BINARY, JSON);
+
+    private SnapshotFormats() {}
+
+    public static List<SnapshotFormat> all() {
+        return FORMATS;
+    }
+
+    /** Returns the format whose header matches, or null if none does. */
+    public static SnapshotFormat detect(byte[] header, int length) {
+        for (SnapshotFormat f : FORMATS) {
+            if (f.matches(header, length)) return f;
+        }
+        return null;
+    }
+}
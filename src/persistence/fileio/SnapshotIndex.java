@@ -0,0 +1,214 @@
+package persistence.fileio;
+
+import persistence.JsonSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte offsets into a JSON snapshot, kept next to it as "&lt;snapshot&gt;.idx": the range of
+ * every class block and where every stride-th object of a block starts. With it FileIn can
+ * map just the blocks (or objects) a caller asks for instead of parsing the whole file.
+ *
+ * <pre>
+ * file  := "BIDX" version:u8 snapshotSize:i64 snapshotModified:i64 stride:i32 blockCount:i32 block*
+ * block := className:utf start:i64 end:i64 objects:i64 offsetCount:i32 offset:i64*
+ * </pre>
+ * The size and modification time of the snapshot are recorded, so an index left over from
+ * an older file with the same name is recognized and ignored.
+ */
+public final class SnapshotIndex {
+
+    public static final int DEFAULT_STRIDE = 1024;
+    public static final String EXTENSION = "idx";
+
+    private static final byte[] MAGIC = {'B', 'I', 'D', 'X'};
+    private static final int VERSION = 1;
+
+    /** [start, end) is the class block value; objectOffsets[i] is where object i * stride begins. */
+    public record Block(String className, long start, long end, long objects, long[] objectOffsets) {}
+
+    private final int stride;
+    private final Map<String, Block> blocks;
+
+    private SnapshotIndex(int stride, Map<String, Block> blocks) {
+        this.stride = stride;
+        this.blocks = blocks;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    public List<Block> blocks() {
+        return List.copyOf(blocks.values());
+    }
+
+    /** The block of the class, or null when the snapshot has none. */
+    public Block block(String className) {
+        return blocks.get(className);
+    }
+
+    public static Path pathFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + "." + EXTENSION);
+    }
+
+    /** Reads the index of the snapshot; null when there is none or it belongs to another version of the file. */
+    public static SnapshotIndex read(Path snapshot) throws IOException {
+        Path file = pathFor(snapshot);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION) return null;
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (size != Files.size(snapshot) || modified != Files.getLastModifiedTime(snapshot).toMillis()) return null;
+            int stride = in.readInt();
+            int count = in.readInt();
+            Map<String, Block> blocks = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long start = in.readLong(), end = in.readLong(), objects = in.readLong();
+                long[] offsets = new long[in.readInt()];
+                for (int k = 0; k < offsets.length; k++) offsets[k] = in.readLong();
+                blocks.put(name, new Block(name, start, end, objects, offsets));
+            }
+            return new SnapshotIndex(stride, blocks);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /** Writes the index next to the snapshot, stamped with the snapshot's current size and time. */
+    public void write(Path snapshot) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pathFor(snapshot))))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(Files.size(snapshot));
+            out.writeLong(Files.getLastModifiedTime(snapshot).toMillis());
+            out.writeInt(stride);
+            out.writeInt(blocks.size());
+            for (Block b : blocks.values()) {
+                out.writeUTF(b.className());
+                out.writeLong(b.start());
+                out.writeLong(b.end());
+                out.writeLong(b.objects());
+                out.writeInt(b.objectOffsets().length);
+                for (long offset : b.objectOffsets()) out.writeLong(offset);
+            }
+        }
+    }
+
+    /**
+     * Builds the index of an existing uncompressed JSON snapshot with one pass that skips over
+     * the values instead of building them.
+     */
+    public static SnapshotIndex scan(Path snapshot, int stride) throws IOException {
+        Map<String, Block> blocks = new LinkedHashMap<>();
+        try (JsonReader reader = JsonReader.openMapped(snapshot)) {
+            if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return new SnapshotIndex(stride, blocks);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("models") || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String fqcn = reader.nextName();
+                    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    long start = reader.position() - 1; // peek consumed the opening brace
+                    OffsetList offsets = new OffsetList();
+                    long objects = 0;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (!reader.nextName().equals("objects") || reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (objects % stride == 0) offsets.add(reader.position() - 1);
+                            objects++;
+                            reader.skipValue();
+                        }
+                        reader.endArray();
+                    }
+                    reader.endObject();
+                    blocks.put(fqcn, new Block(fqcn, start, reader.position(), objects, offsets.toArray()));
+                }
+                reader.endObject();
+            }
+        }
+        return new SnapshotIndex(stride, blocks);
+    }
+
+    /** Collects offsets while FileOut streams a snapshot; position() must report the bytes written so far. */
+    static final class Builder implements JsonSerializer.BlockListener {
+
+        interface Position {
+            long get() throws IOException;
+        }
+
+        private final int stride;
+        private final Position position;
+        private final Map<String, Block> blocks = new LinkedHashMap<>();
+        private long start;
+        private OffsetList offsets;
+
+        Builder(int stride, Position position) {
+            if (stride <= 0) throw new IllegalArgumentException("Stride must be positive");
+            this.stride = stride;
+            this.position = position;
+        }
+
+        @Override
+        public void blockStarted(Class<?> type) throws IOException {
+            start = position.get();
+            offsets = new OffsetList();
+        }
+
+        @Override
+        public void objectStarted(Class<?> type, long index) throws IOException {
+            if (index % stride == 0) offsets.add(position.get());
+        }
+
+        @Override
+        public void blockFinished(Class<?> type, long objects) throws IOException {
+            String name = type.getName();
+            blocks.put(name, new Block(name, start, position.get(), objects, offsets.toArray()));
+        }
+
+        SnapshotIndex build() {
+            return new SnapshotIndex(stride, Collections.unmodifiableMap(blocks));
+        }
+    }
+
+    private static final class OffsetList {
+        private long[] values = new long[16];
+        private int n;
+
+        void add(long v) {
+            if (n == values.length) values = Arrays.copyOf(values, n * 2);
+            values[n++] = v;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, n);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package persistence.fileio;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Shares one String instance between equal values read during a load (allergens, fruit
+ * names, toppings, cities...). It is looked up with the UTF-8 bytes the reader already has,
+ * so a repeated value costs no String at all. The table has a fixed number of slots, each
+ * holding the last value that hashed to it: a new value replaces an older one instead of
+ * growing the table, and values longer than maxLength (descriptions, notes) are never kept.
+ * One table belongs to one load and is dropped with it; it is not thread-safe.
+ */
+final class StringTable {
+
+    static final int DEFAULT_SLOTS = 1 << 14;
+    static final int DEFAULT_MAX_LENGTH = 64;
+
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+    private final int maxLength;
+    private long hits;
+    private long misses;
+
+    StringTable() {
+        this(DEFAULT_SLOTS, DEFAULT_MAX_LENGTH);
+    }
+
+    /** slots is rounded up to a power of two. */
+    StringTable(int slots, int maxLength) {
+        if (slots < 1 || slots > 1 << 30) throw new IllegalArgumentException("slots must be between 1 and 2^30");
+        if (maxLength < 0) throw new IllegalArgumentException("maxLength must not be negative");
+        int size = slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.keys = new byte[size][];
+        this.values = new String[size];
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /** The string of bytes[0, len) as UTF-8, the same instance as last time when still in the table. */
+    String get(byte[] bytes, int len) {
+        if (len > maxLength) return new String(bytes, 0, len, StandardCharsets.UTF_8);
+        int h = 0;
+        for (int i = 0; i < len; i++) h = 31 * h + bytes[i];
+        int slot = (h ^ (h >>> 16)) & mask;
+        byte[] key = keys[slot];
+        if (key != null && key.length == len && Arrays.equals(key, 0, len, bytes, 0, len)) {
+            hits++;
+            return values[slot];
+        }
+        misses++;
+        String s = new String(bytes, 0, len, StandardCharsets.UTF_8);
+        keys[slot] = Arrays.copyOf(bytes, len);
+        values[slot] = s;
+        return s;
+    }
+
+    int slots() {
+        return values.length;
+    }
+
+    /** Lookups answered with a kept instance. */
+    long hits() {
+        return hits;
+    }
+
+    /** Lookups that made a new String (values longer than maxLength are not counted). */
+    long misses() {
+        return misses;
+    }
+}
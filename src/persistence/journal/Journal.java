@@ -0,0 +1,403 @@
+package persistence.journal;
+
+import persistence.SerializeException;
+import persistence.fileio.FileIn;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of model mutations, for recovery between snapshots.
+ *
+ * <pre>
+ * file   := "BJNL" version:u8 record*
+ * record := length:u32 crc32:u32 payload   (payload = op:u8 fields, see JournalRecord)
+ * </pre>
+ * Appends only copy the encoded record into a buffer. A single writer thread drains
+ * whatever has piled up with one write and one fsync (group commit), so the cost of a
+ * sync is shared by every record that arrived while the previous one was running.
+ * <p>
+ * To cut the journal after a snapshot, take a mark() before the snapshot starts and pass
+ * it to checkpoint once the snapshot is written: only the records before the mark are
+ * dropped, everything after it is kept behind the checkpoint and replayed on top.
+ */
+public final class Journal implements Closeable {
+
+    private static final byte[] MAGIC = {'B', 'J', 'N', 'L'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+    private static final int FRAME_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    //appends wait once this much is waiting for the disk
+    private static final int MAX_PENDING = 8 << 20;
+
+    private static volatile Journal active;
+
+    private final Path file;
+    private final Object lock = new Object();
+    private final Object io = new Object();
+    private final Thread writer;
+    private FileChannel channel;
+    //guarded by io: the file offset of stream position 0, and the mark of the last checkpoint
+    private long origin;
+    private long checkpointed;
+
+    //guarded by lock
+    private byte[] pending = new byte[1 << 16];
+    private byte[] spare = new byte[1 << 16]; // null while the writer holds it
+    private int pendingLength;
+    private long appended;
+    private long position; // bytes appended so far, the stream position mark() hands out
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private Journal(Path file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.origin = channel.position();
+        this.writer = new Thread(this::drainLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** Opens (or creates) the journal for appending and makes it the one the models write to. */
+    public static Journal start(Path file) throws IOException {
+        synchronized (Journal.class) {
+            if (active != null) throw new IllegalStateException("A journal is already active: " + active.file);
+            Journal journal = new Journal(file, openForAppend(file));
+            active = journal;
+            return journal;
+        }
+    }
+
+    public static boolean isActive() {
+        return active != null;
+    }
+
+    /** Appends to the active journal; does nothing when there is none. */
+    public static void log(JournalRecord record) {
+        Journal journal = active;
+        if (journal != null) journal.append(record);
+    }
+
+    /** Queues the record and returns its sequence number; it is durable once sync covers it. */
+    public long append(JournalRecord record) {
+        byte[] framed = frame(record);
+        synchronized (lock) {
+            while (pendingLength > MAX_PENDING && failure == null && !closed) awaitQuietly();
+            checkOpen();
+            if (pendingLength + framed.length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + framed.length));
+            }
+            System.arraycopy(framed, 0, pending, pendingLength, framed.length);
+            pendingLength += framed.length;
+            position += framed.length;
+            lock.notifyAll();
+            return ++appended;
+        }
+    }
+
+    /** Blocks until everything appended so far has been written and forced to disk. */
+    public void sync() {
+        synchronized (lock) {
+            long target = appended;
+            while (durable < target && failure == null) awaitQuietly();
+            if (failure != null) throw new SerializeException("Journal write failed: " + failure.getMessage());
+        }
+    }
+
+    /** The position after everything appended so far; take it before a snapshot starts. */
+    public long mark() {
+        synchronized (lock) {
+            return position;
+        }
+    }
+
+    /**
+     * Marks snapshot as holding everything journaled before mark and drops those records:
+     * the journal is replaced by one that starts with a checkpoint naming the snapshot,
+     * followed by every record appended after the mark.
+     */
+    public void checkpoint(Path snapshot, long mark) throws IOException {
+        synchronized (lock) {
+            if (mark > position) throw new IllegalArgumentException("Mark " + mark + " is ahead of the journal");
+        }
+        sync();
+        Path parent = file.toAbsolutePath().getParent();
+        Path snap = snapshot.toAbsolutePath();
+        String name = parent != null && parent.equals(snap.getParent()) ? snap.getFileName().toString() : snap.toString();
+
+        synchronized (io) {
+            if (mark < checkpointed) throw new IllegalArgumentException("Mark " + mark + " is before the last checkpoint");
+            //the writer is held off: the file ends at a record boundary at or after the mark
+            long from = origin + mark;
+            long end = channel.size();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            long start;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, ByteBuffer.wrap(header()));
+                writeFully(out, ByteBuffer.wrap(frame(new JournalRecord.Checkpoint(name))));
+                start = out.position();
+                for (long at = from; at < end; ) at += channel.transferTo(at, end - at, out);
+                out.force(true);
+            }
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = openForAppend(file);
+            origin = start - mark;
+            checkpointed = mark;
+        }
+    }
+
+    /** Flushes what is pending, stops the writer and deactivates the journal. */
+    @Override
+    public void close() throws IOException {
+        synchronized (Journal.class) {
+            if (active == this) active = null;
+        }
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            channel.close();
+        }
+        synchronized (lock) {
+            if (failure != null) throw failure;
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            byte[] batch;
+            int length;
+            long upTo;
+            synchronized (lock) {
+                while (pendingLength == 0 && !closed) awaitQuietly();
+                if (pendingLength == 0) return;
+                batch = pending;
+                length = pendingLength;
+                upTo = appended;
+                pending = spare != null ? spare : new byte[1 << 16];
+                spare = null;
+                pendingLength = 0;
+                lock.notifyAll(); // appenders held back by MAX_PENDING can go on
+            }
+            try {
+                synchronized (io) {
+                    writeFully(channel, ByteBuffer.wrap(batch, 0, length));
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                spare = batch.length > (1 << 20) ? new byte[1 << 16] : batch; // do not keep a peak-sized buffer
+                durable = upTo;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) throw new SerializeException("Journal write failed: " + failure.getMessage());
+        if (closed) throw new SerializeException("Journal is closed");
+    }
+
+    private void awaitQuietly() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SerializeException("Interrupted while waiting for the journal");
+        }
+    }
+
+    // ---------------- recovery ----------------
+
+    /**
+     * Restores the snapshot named by the journal's last checkpoint, then replays every record
+     * after it. A torn record at the end (from a crash mid-write) is cut off so appending can
+     * continue. Records that no longer apply, or that refer to an object that exists neither in
+     * the snapshot nor through an earlier record, are reported and skipped one by one; the rest
+     * of the journal is still replayed. Returns the snapshot that was loaded, or null when the
+     * journal has no checkpoint or does not exist.
+     * Must run before start, so the replay itself is not journaled again.
+     */
+    public static Path recover(Path file, Collection<Class<?>> knownModels) throws IOException {
+        if (isActive()) throw new IllegalStateException("Recover before starting the journal");
+        if (!Files.exists(file)) return null;
+
+        //first pass: last checkpoint and the end of the intact records
+        long checkpointEnd = HEADER_SIZE;
+        long validEnd = HEADER_SIZE;
+        String snapshot = null;
+        try (Scanner scanner = new Scanner(file)) {
+            for (JournalRecord r; (r = scanner.next()) != null; ) {
+                validEnd = scanner.offset;
+                if (r instanceof JournalRecord.Checkpoint c) {
+                    snapshot = c.snapshot();
+                    checkpointEnd = scanner.offset;
+                }
+            }
+        }
+
+        Path snapshotPath = null;
+        if (snapshot != null) {
+            Path parent = file.toAbsolutePath().getParent();
+            snapshotPath = parent == null ? Path.of(snapshot) : parent.resolve(snapshot);
+            FileIn.readSnapshot(snapshotPath, knownModels);
+        }
+
+        try (Scanner scanner = new Scanner(file)) {
+            long index = 0;
+            for (JournalRecord r; scanner.offset < validEnd && (r = scanner.next()) != null; index++) {
+                if (scanner.offset <= checkpointEnd) continue;
+                try {
+                    r.replay();
+                } catch (SerializeException e) {
+                    System.err.println("Journal record " + index + " (" + r.getClass().getSimpleName()
+                            + ") cannot be replayed: " + e.getMessage() + " — skipping");
+                } catch (RuntimeException e) {
+                    System.err.println("Journal record " + index + " (" + r.getClass().getSimpleName()
+                            + ") failed: " + e.getMessage() + " — skipping");
+                }
+            }
+        }
+
+        if (Files.size(file) > validEnd) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(validEnd);
+                ch.force(true);
+            }
+        }
+        return snapshotPath;
+    }
+
+    /** Sequential reader over the intact records; stops at the first torn or corrupt one. */
+    private static final class Scanner implements Closeable {
+        private final DataInputStream in;
+        long offset;
+
+        Scanner(Path file) throws IOException {
+            InputStream raw = Files.newInputStream(file);
+            this.in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+            byte[] header = new byte[HEADER_SIZE];
+            try {
+                in.readFully(header);
+            } catch (EOFException e) {
+                close();
+                throw new IOException("Not a journal: " + file);
+            }
+            if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+                close();
+                throw new IOException("Not a journal: " + file);
+            }
+            if (header[MAGIC.length] != VERSION) {
+                close();
+                throw new IOException("Unsupported journal version " + header[MAGIC.length]);
+            }
+            offset = HEADER_SIZE;
+        }
+
+        JournalRecord next() throws IOException {
+            int length, crc;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                crc = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) return null;
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                return null;
+            }
+            CRC32 check = new CRC32();
+            check.update(payload);
+            if ((int) check.getValue() != crc) return null;
+            JournalRecord record;
+            try {
+                record = JournalRecord.read(new RecordInput(payload));
+            } catch (RuntimeException e) {
+                return null;
+            }
+            offset += FRAME_SIZE + length;
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // ---------------- helpers ----------------
+
+    private static FileChannel openForAppend(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (ch.size() == 0) {
+            writeFully(ch, ByteBuffer.wrap(header()));
+            ch.force(true);
+        }
+        ch.position(ch.size());
+        return ch;
+    }
+
+    private static byte[] header() {
+        byte[] h = Arrays.copyOf(MAGIC, HEADER_SIZE);
+        h[MAGIC.length] = VERSION;
+        return h;
+    }
+
+    private static byte[] frame(JournalRecord record) {
+        RecordOutput out = new RecordOutput();
+        out.u8(record.op());
+        record.write(out);
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.length());
+        byte[] b = new byte[FRAME_SIZE + out.length()];
+        putInt(b, 0, out.length());
+        putInt(b, 4, (int) crc.getValue());
+        System.arraycopy(out.array(), 0, b, FRAME_SIZE, out.length());
+        return b;
+    }
+
+    private static void putInt(byte[] b, int at, int v) {
+        b[at] = (byte) (v >>> 24);
+        b[at + 1] = (byte) (v >>> 16);
+        b[at + 2] = (byte) (v >>> 8);
+        b[at + 3] = (byte) v;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+}
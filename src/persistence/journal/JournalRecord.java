@@ -0,0 +1,306 @@
+package persistence.journal;
+
+import models.Delivery;
+import models.Drink;
+import models.Employee;
+import models.Facility;
+import models.Order;
+import models.Shop;
+import models.Warehouse;
+import models.aspects.ColdDrink;
+import models.aspects.HoneySweetened;
+import models.aspects.HotDrink;
+import models.aspects.SugarSweetened;
+import models.aspects.SweetenerAspect;
+import models.aspects.TemperatureAspect;
+import models.utils.Drink_Size;
+import models.utils.Status;
+import persistence.ObjectIds;
+import persistence.SerializeException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One journaled model mutation. Objects are referred to by their ObjectIds id, so a record
+ * can be replayed on top of a snapshot that was restored with the same ids. Orders, drinks,
+ * employees, shops and deliveries are journaled when they are created, so later records can
+ * name them; a record naming an object that is neither in the snapshot nor created by an
+ * earlier record cannot be replayed (SerializeException).
+ */
+public sealed interface JournalRecord {
+
+    //op codes are part of the file format: append new ones, never renumber
+    int CHECKPOINT = 1;
+    int ORDER_CREATED = 2;
+    int DRINK_ADDED = 3;
+    int SHOP_ORDER_ADDED = 4;
+    int DELIVERY_STATUS = 5;
+    int BECAME_CASHIER = 6;
+    int DRINK_CREATED = 7;
+    int EMPLOYEE_CREATED = 8;
+    int SHOP_CREATED = 9;
+    int DELIVERY_CREATED = 10;
+
+    int op();
+
+    void write(RecordOutput out);
+
+    /** Performs the mutation again on the objects in memory. */
+    void replay();
+
+    static JournalRecord read(RecordInput in) {
+        int op = in.u8();
+        switch (op) {
+            case CHECKPOINT: return new Checkpoint(in.string());
+            case ORDER_CREATED: return new OrderCreated(in.varint(), in.zigzag(), in.dateTime(), in.float64());
+            case DRINK_ADDED: {
+                long order = in.varint();
+                long drink = in.varint();
+                boolean cold = in.bool();
+                int sweeteners = in.u8();
+                Drink_Size size = Drink_Size.values()[in.u8()];
+                List<String> toppings = new ArrayList<>();
+                for (long i = in.varint(); i > 0; i--) toppings.add(in.string());
+                return new DrinkAdded(order, drink, cold, sweeteners, size, toppings);
+            }
+            case SHOP_ORDER_ADDED: return new ShopOrderAdded(in.varint(), in.dateTime(), in.varint(), in.varint());
+            case DELIVERY_STATUS: return new DeliveryStatusChanged(in.varint(), Status.values()[in.u8()]);
+            case BECAME_CASHIER: return new BecameCashier(in.varint(), in.bool(), in.string(), in.float64());
+            case DRINK_CREATED: return new DrinkCreated(in.varint(), in.string(), in.float64(), in.string());
+            case EMPLOYEE_CREATED:
+                return new EmployeeCreated(in.varint(), in.string(), in.string(), in.string(), in.string(), in.string());
+            case SHOP_CREATED: return new ShopCreated(in.varint(), in.varint(), in.dateTime());
+            case DELIVERY_CREATED: {
+                long id = in.varint();
+                LocalDateTime started = in.dateTime();
+                LocalDateTime delivered = in.dateTime();
+                int capacityKg = (int) in.zigzag();
+                Status status = Status.values()[in.u8()];
+                return new DeliveryCreated(id, started, delivered, capacityKg, status, in.varint());
+            }
+            default: throw new IllegalStateException("Unknown journal op " + op);
+        }
+    }
+
+    // ---------------- factories used by the models ----------------
+
+    static JournalRecord orderCreated(Order order) {
+        return new OrderCreated(ObjectIds.idOf(order), order.getOrderId(), order.getTimeOfOrder(), order.getTip());
+    }
+
+    static JournalRecord drinkCreated(Drink drink) {
+        return new DrinkCreated(ObjectIds.idOf(drink), drink.getName(), drink.getBasePrice(),
+                drink.getPersistentAllergens());
+    }
+
+    static JournalRecord employeeCreated(Employee employee, String peselNumber, String passportNumber) {
+        return new EmployeeCreated(ObjectIds.idOf(employee), employee.getName(), employee.getSurname(),
+                employee.getEmail(), peselNumber, passportNumber);
+    }
+
+    static JournalRecord shopCreated(Shop shop, Facility facility, LocalDateTime dateOfLastStock) {
+        return new ShopCreated(ObjectIds.idOf(shop), ObjectIds.idOf(facility), dateOfLastStock);
+    }
+
+    //warehouse id 0: the delivery has no source warehouse
+    static JournalRecord deliveryCreated(Delivery delivery, int capacityKg) {
+        Warehouse source = delivery.getSourceWarehouse();
+        return new DeliveryCreated(ObjectIds.idOf(delivery), delivery.getTimeStarted(), delivery.getTimeDelivered(),
+                capacityKg, delivery.getStatus(), source == null ? 0 : ObjectIds.idOf(source));
+    }
+
+    static JournalRecord drinkAdded(Order order, Drink drink, TemperatureAspect temperature,
+                                    Set<SweetenerAspect> sweeteners, Drink_Size size, List<String> toppings) {
+        int mask = 0;
+        if (sweeteners != null) {
+            for (SweetenerAspect s : sweeteners) mask |= s instanceof HoneySweetened ? 1 : 2;
+        }
+        return new DrinkAdded(ObjectIds.idOf(order), ObjectIds.idOf(drink), temperature instanceof ColdDrink,
+                mask, size, List.copyOf(toppings));
+    }
+
+    static JournalRecord shopOrderAdded(Shop shop, LocalDateTime time, Employee cashier, Order order) {
+        return new ShopOrderAdded(ObjectIds.idOf(shop), time, ObjectIds.idOf(cashier), ObjectIds.idOf(order));
+    }
+
+    static JournalRecord deliveryStatus(Delivery delivery, Status status) {
+        return new DeliveryStatusChanged(ObjectIds.idOf(delivery), status);
+    }
+
+    static JournalRecord becameCashier(Employee employee, boolean handlesCash, String cashierId, double score) {
+        return new BecameCashier(ObjectIds.idOf(employee), handlesCash, cashierId, score);
+    }
+
+    // ---------------- records ----------------
+
+    /** The snapshot that holds everything journaled before this point. */
+    record Checkpoint(String snapshot) implements JournalRecord {
+        public int op() { return CHECKPOINT; }
+
+        public void write(RecordOutput out) {
+            out.string(snapshot);
+        }
+
+        public void replay() {}
+    }
+
+    record OrderCreated(long id, long orderId, LocalDateTime timeOfOrder, double tip) implements JournalRecord {
+        public int op() { return ORDER_CREATED; }
+
+        public void write(RecordOutput out) {
+            out.varint(id);
+            out.zigzag(orderId);
+            out.dateTime(timeOfOrder);
+            out.float64(tip);
+        }
+
+        public void replay() {
+            ObjectIds.assign(new Order(orderId, timeOfOrder, tip), id);
+        }
+    }
+
+    record DrinkAdded(long order, long drink, boolean cold, int sweeteners, Drink_Size size,
+                      List<String> toppings) implements JournalRecord {
+        public int op() { return DRINK_ADDED; }
+
+        public void write(RecordOutput out) {
+            out.varint(order);
+            out.varint(drink);
+            out.bool(cold);
+            out.u8(sweeteners);
+            out.u8(size.ordinal());
+            out.varint(toppings.size());
+            for (String t : toppings) out.string(t);
+        }
+
+        public void replay() {
+            Set<SweetenerAspect> aspects = new HashSet<>();
+            if ((sweeteners & 1) != 0) aspects.add(new HoneySweetened());
+            if ((sweeteners & 2) != 0) aspects.add(new SugarSweetened());
+            resolve(order, Order.class).addDrink(resolve(drink, Drink.class),
+                    cold ? new ColdDrink() : new HotDrink(), aspects, size, toppings);
+        }
+    }
+
+    record ShopOrderAdded(long shop, LocalDateTime time, long cashier, long order) implements JournalRecord {
+        public int op() { return SHOP_ORDER_ADDED; }
+
+        public void write(RecordOutput out) {
+            out.varint(shop);
+            out.dateTime(time);
+            out.varint(cashier);
+            out.varint(order);
+        }
+
+        public void replay() {
+            resolve(shop, Shop.class).addOrder(time, resolve(cashier, Employee.class), resolve(order, Order.class));
+        }
+    }
+
+    record DeliveryStatusChanged(long delivery, Status status) implements JournalRecord {
+        public int op() { return DELIVERY_STATUS; }
+
+        public void write(RecordOutput out) {
+            out.varint(delivery);
+            out.u8(status.ordinal());
+        }
+
+        public void replay() {
+            resolve(delivery, Delivery.class).setStatus(status);
+        }
+    }
+
+    record BecameCashier(long employee, boolean handlesCash, String cashierId, double score) implements JournalRecord {
+        public int op() { return BECAME_CASHIER; }
+
+        public void write(RecordOutput out) {
+            out.varint(employee);
+            out.bool(handlesCash);
+            out.string(cashierId);
+            out.float64(score);
+        }
+
+        public void replay() {
+            resolve(employee, Employee.class).becomeCashier(handlesCash, cashierId, score);
+        }
+    }
+
+    record DrinkCreated(long id, String name, double basePrice, String persistentAllergens)
+            implements JournalRecord {
+        public int op() { return DRINK_CREATED; }
+
+        public void write(RecordOutput out) {
+            out.varint(id);
+            out.string(name);
+            out.float64(basePrice);
+            out.string(persistentAllergens);
+        }
+
+        public void replay() {
+            ObjectIds.assign(new Drink(name, basePrice, persistentAllergens), id);
+        }
+    }
+
+    record EmployeeCreated(long id, String name, String surname, String email, String peselNumber,
+                           String passportNumber) implements JournalRecord {
+        public int op() { return EMPLOYEE_CREATED; }
+
+        public void write(RecordOutput out) {
+            out.varint(id);
+            out.string(name);
+            out.string(surname);
+            out.string(email);
+            out.string(peselNumber);
+            out.string(passportNumber);
+        }
+
+        public void replay() {
+            ObjectIds.assign(new Employee(name, surname, email, peselNumber, passportNumber), id);
+        }
+    }
+
+    record ShopCreated(long id, long facility, LocalDateTime dateOfLastStock) implements JournalRecord {
+        public int op() { return SHOP_CREATED; }
+
+        public void write(RecordOutput out) {
+            out.varint(id);
+            out.varint(facility);
+            out.dateTime(dateOfLastStock);
+        }
+
+        public void replay() {
+            ObjectIds.assign(new Shop(resolve(facility, Facility.class), dateOfLastStock), id);
+        }
+    }
+
+    record DeliveryCreated(long id, LocalDateTime timeStarted, LocalDateTime timeDelivered, int capacityKg,
+                           Status status, long sourceWarehouse) implements JournalRecord {
+        public int op() { return DELIVERY_CREATED; }
+
+        public void write(RecordOutput out) {
+            out.varint(id);
+            out.dateTime(timeStarted);
+            out.dateTime(timeDelivered);
+            out.zigzag(capacityKg);
+            out.u8(status.ordinal());
+            out.varint(sourceWarehouse);
+        }
+
+        public void replay() {
+            Warehouse source = sourceWarehouse == 0 ? null : resolve(sourceWarehouse, Warehouse.class);
+            ObjectIds.assign(new Delivery(timeStarted, timeDelivered, capacityKg, status, source), id);
+        }
+    }
+
+    private static <T> T resolve(long id, Class<T> type) {
+        Object o = ObjectIds.find(id);
+        if (!type.isInstance(o)) {
+            throw new SerializeException("No " + type.getSimpleName() + " with @id " + id);
+        }
+        return type.cast(o);
+    }
+}
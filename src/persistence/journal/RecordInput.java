@@ -0,0 +1,66 @@
+package persistence.journal;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/** Reads back what RecordOutput wrote; running past the payload is a corrupt record. */
+final class RecordInput {
+
+    private final byte[] buf;
+    private int pos;
+
+    RecordInput(byte[] buf) {
+        this.buf = buf;
+    }
+
+    int u8() {
+        if (pos >= buf.length) throw new IllegalStateException("Journal record is truncated");
+        return buf[pos++] & 0xFF;
+    }
+
+    long varint() {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = u8();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalStateException("Malformed varint in journal record");
+    }
+
+    long zigzag() {
+        long v = varint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    boolean bool() {
+        return u8() != 0;
+    }
+
+    long fixed64() {
+        long v = 0;
+        for (int i = 0; i < 8; i++) v |= (long) u8() << (i * 8);
+        return v;
+    }
+
+    double float64() {
+        return Double.longBitsToDouble(fixed64());
+    }
+
+    String string() {
+        long head = varint();
+        if (head == 0) return null;
+        int len = (int) (head - 1);
+        if (len > buf.length - pos) throw new IllegalStateException("Journal record is truncated");
+        String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+        pos += len;
+        return s;
+    }
+
+    LocalDateTime dateTime() {
+        if (u8() == 0) return null;
+        long seconds = zigzag();
+        return LocalDateTime.ofEpochSecond(seconds, (int) varint(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,72 @@
+package persistence.journal;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/** Growable byte buffer for one journal record payload: varints, zigzag longs, UTF-8 strings. */
+final class RecordOutput {
+
+    private byte[] buf = new byte[64];
+    private int n;
+
+    void u8(int b) {
+        if (n == buf.length) buf = Arrays.copyOf(buf, n * 2);
+        buf[n++] = (byte) b;
+    }
+
+    void varint(long v) {
+        while ((v & ~0x7FL) != 0) {
+            u8((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        u8((int) v);
+    }
+
+    void zigzag(long v) {
+        varint((v << 1) ^ (v >> 63));
+    }
+
+    void bool(boolean b) {
+        u8(b ? 1 : 0);
+    }
+
+    void fixed64(long v) {
+        for (int i = 0; i < 8; i++) u8((int) (v >>> (i * 8)));
+    }
+
+    void float64(double d) {
+        fixed64(Double.doubleToRawLongBits(d));
+    }
+
+    void string(String s) {
+        if (s == null) {
+            varint(0);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        varint(b.length + 1L); // 0 is null
+        if (b.length > buf.length - n) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, n + b.length));
+        System.arraycopy(b, 0, buf, n, b.length);
+        n += b.length;
+    }
+
+    void dateTime(LocalDateTime t) {
+        if (t == null) {
+            u8(0);
+            return;
+        }
+        u8(1);
+        zigzag(t.toEpochSecond(ZoneOffset.UTC));
+        varint(t.getNano());
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    int length() {
+        return n;
+    }
+}
@@ -0,0 +1,177 @@
+package validation;
+
+import persistence.ChangeTracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * An invariant that spans objects (a multiplicity, a capacity), kept up to date by the
+ * mutators that can break it instead of being recomputed over the model. A mutator calls
+ * update(o) after its change: the rule is evaluated on o's own state, which is O(1), and o
+ * enters or leaves the set of objects violating the constraint. Listeners hear about every
+ * transition on the mutating thread; violations() lists what is broken right now.
+ * <p>
+ * Constructors call update too, so a new object that starts out broken (a Facility before
+ * its first Shift) is listed right away. The violators are a concurrent identity set with a
+ * counter beside it: update takes no lock, and when nothing is violated an object that holds
+ * is not even looked up. A restore sets fields without the mutators, so every object it
+ * restored is evaluated once afterwards (ChangeTracker.restored). Other state changed
+ * without update leaves the object where it was; violators() checks each listed object
+ * again. An object that leaves its registry (ChangeTracker.removed) no longer violates anything.
+ */
+public class Constraint<T> {
+
+    private static final List<Constraint<?>> ALL = new CopyOnWriteArrayList<>();
+    private static volatile Listener[] listeners = new Listener[0];
+
+    static {
+        ChangeTracker.addListener(new ChangeTracker.Listener() {
+            @Override
+            public void removed(Object o) {
+                for (Constraint<?> c : ALL) c.forget(o);
+            }
+
+            @Override
+            public void restored(Object o) {
+                for (Constraint<?> c : ALL) c.check(o);
+            }
+        });
+    }
+
+    /** Told when an object starts or stops violating a constraint. */
+    public interface Listener {
+        default void violated(Constraint<?> constraint, Object o) {}
+
+        default void resolved(Constraint<?> constraint, Object o) {}
+    }
+
+    /** One object that violates one constraint. */
+    public record Violation(Constraint<?> constraint, Object object) {
+        @Override
+        public String toString() {
+            return constraint.name() + ": " + object;
+        }
+    }
+
+    private final String name;
+    private final Class<T> type;
+    private final Predicate<? super T> holds;
+    private final Map<Key, Object> violators = new ConcurrentHashMap<>();
+    private final AtomicInteger violating = new AtomicInteger(); // violators.size(), kept beside it
+
+    Constraint(String name, Class<T> type, Predicate<? super T> holds) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("Constraint name must not be blank");
+        this.name = name;
+        this.type = Objects.requireNonNull(type);
+        this.holds = Objects.requireNonNull(holds);
+    }
+
+    /** A constraint that holds for o when holds.test(o); the test must be O(1) on o's own state. */
+    public static <T> Constraint<T> define(String name, Class<T> type, Predicate<? super T> holds) {
+        return register(new Constraint<>(name, type, holds));
+    }
+
+    static <C extends Constraint<?>> C register(C constraint) {
+        ALL.add(constraint);
+        return constraint;
+    }
+
+    public static synchronized void addListener(Listener listener) {
+        Listener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[next.length - 1] = Objects.requireNonNull(listener);
+        listeners = next;
+    }
+
+    public static synchronized void removeListener(Listener listener) {
+        List<Listener> next = new ArrayList<>(Arrays.asList(listeners));
+        next.removeIf(l -> l == listener);
+        listeners = next.toArray(new Listener[0]);
+    }
+
+    /** Every object violating a constraint right now, constraint by constraint. */
+    public static List<Violation> violations() {
+        List<Violation> all = new ArrayList<>();
+        for (Constraint<?> c : ALL) {
+            for (Object o : c.violators()) all.add(new Violation(c, o));
+        }
+        return all;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Class<T> type() {
+        return type;
+    }
+
+    /** Evaluates the constraint for o after a change to it; true when it holds. */
+    public boolean update(T o) {
+        boolean ok = holds.test(o);
+        if (ok && violating.get() == 0) return true; // nothing to resolve, the usual case
+        boolean changed = ok ? violators.remove(new Key(o)) != null : violators.putIfAbsent(new Key(o), o) == null;
+        if (changed) {
+            violating.addAndGet(ok ? -1 : 1);
+            for (Listener l : listeners) {
+                if (ok) l.resolved(this, o);
+                else l.violated(this, o);
+            }
+        }
+        return ok;
+    }
+
+    private void check(Object o) {
+        if (type.isInstance(o)) update(type.cast(o));
+    }
+
+    /** Whether o was violating the constraint when it was last updated. */
+    public boolean isViolated(T o) {
+        return violating.get() != 0 && violators.containsKey(new Key(o));
+    }
+
+    /** The objects violating the constraint; each listed object is checked again first. */
+    public List<T> violators() {
+        List<Object> listed = new ArrayList<>(violators.values());
+        List<T> still = new ArrayList<>();
+        for (Object o : listed) {
+            T t = type.cast(o);
+            if (!update(t)) still.add(t);
+        }
+        return still;
+    }
+
+    /** Drops o, as when it leaves its registry. */
+    public void forget(Object o) {
+        if (violating.get() == 0 || !type.isInstance(o)) return;
+        if (violators.remove(new Key(o)) != null) {
+            violating.decrementAndGet();
+            for (Listener l : listeners) l.resolved(this, o);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    //identity, since models may define equals
+    private record Key(Object o) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key k && k.o == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(o);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package validation;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * A Constraint on how many objects one object is linked to: count(o) has to stay within
+ * [min, max]. The count comes from the object's own association (a list size), so updating
+ * it is O(1). Mutators that refuse a link instead of letting the model break the upper
+ * bound ask allows() first.
+ */
+public final class Multiplicity<T> extends Constraint<T> {
+
+    public static final int MANY = Integer.MAX_VALUE;
+
+    private final ToIntFunction<? super T> count;
+    private final int min;
+    private final int max;
+
+    private Multiplicity(String name, Class<T> type, ToIntFunction<? super T> count, int min, int max) {
+        super(name, type, o -> {
+            int n = count.applyAsInt(o);
+            return n >= min && n <= max;
+        });
+        this.count = count;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static <T> Multiplicity<T> of(String name, Class<T> type, ToIntFunction<? super T> count, int min, int max) {
+        if (min < 0 || max < min) throw new IllegalArgumentException("Multiplicity bounds must satisfy 0 <= min <= max");
+        return register(new Multiplicity<>(name, type, count, min, max));
+    }
+
+    public int min() {
+        return min;
+    }
+
+    public int max() {
+        return max;
+    }
+
+    public int count(T o) {
+        return count.applyAsInt(o);
+    }
+
+    /** Whether n links are within the bounds. */
+    public boolean allows(int n) {
+        return n >= min && n <= max;
+    }
+}
@@ -0,0 +1,188 @@
+package validation;
+
+import persistence.fileio.FileIn;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A restore of data that was valid when it was written. While a trusted load is open,
+ * Validator.validate checks nothing for the objects a snapshot restore constructs
+ * (FileIn.isRestoring on the constructing thread): they are only remembered, on whichever
+ * thread restores them. validate() then ends the load and checks
+ * them all at once on a fork-join pool, with the field rules of their ValidationPlan
+ * (@Unique against the other members of the registry) and the cross-object rule of classes
+ * with a public no-argument validate() method (Facility, Shift), and reports what broke.
+ * <pre>
+ * try (TrustedLoad load = TrustedLoad.open()) {
+ *     FileIn.readJsonParallel(file, classes);
+ *     ValidationReport report = load.validate();
+ * }
+ * </pre>
+ * Models constructed outside a restore are still validated right away, on any thread.
+ * Only one load is open at a time.
+ */
+public final class TrustedLoad implements AutoCloseable {
+
+    private static final AtomicReference<TrustedLoad> OPEN = new AtomicReference<>();
+
+    //objects per fork-join task
+    private static final int CHUNK = 1024;
+
+    //the public no-argument validate() of a class, null when it has none
+    private static final ClassValue<MethodHandle> CROSS_CHECKS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                Method m = type.getMethod("validate");
+                if (Modifier.isStatic(m.getModifiers())) return null;
+                m.setAccessible(true);
+                return MethodHandles.lookup().unreflect(m).asType(MethodType.methodType(void.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+    };
+
+    private final Queue<Object> deferred = new ConcurrentLinkedQueue<>();
+    //defer calls between seeing the load open and adding to deferred; validate waits them out
+    private final AtomicInteger deferring = new AtomicInteger();
+    private volatile boolean closed;
+
+    private TrustedLoad() {}
+
+    /** Starts deferring validation; throws IllegalStateException when a load is already open. */
+    public static TrustedLoad open() {
+        TrustedLoad load = new TrustedLoad();
+        if (!OPEN.compareAndSet(null, load)) throw new IllegalStateException("A trusted load is already open");
+        return load;
+    }
+
+    public static boolean isOpen() {
+        return OPEN.get() != null;
+    }
+
+    /** Called by Validator: true when o was deferred to the open load instead of being validated. */
+    static boolean defer(Object o) {
+        TrustedLoad load = OPEN.get();
+        if (load == null || !FileIn.isRestoring()) return false;
+        load.deferring.incrementAndGet();
+        try {
+            if (load.closed) return false; // closed meanwhile: validate now
+            load.deferred.add(o);
+            return true;
+        } finally {
+            load.deferring.decrementAndGet();
+        }
+    }
+
+    /** Objects deferred so far, an object validated twice counted twice. */
+    public int pending() {
+        return deferred.size();
+    }
+
+    /** Ends the load and validates what it deferred on the common fork-join pool. */
+    public ValidationReport validate() {
+        return validate(ForkJoinPool.commonPool());
+    }
+
+    /** Ends the load and validates what it deferred on pool; may be called once. */
+    public ValidationReport validate(ForkJoinPool pool) {
+        if (pool == null) throw new IllegalArgumentException("Pool must not be null");
+        close();
+        //a defer that saw the load open before close is adding its object now
+        while (deferring.get() != 0) Thread.onSpinWait();
+        long start = System.nanoTime();
+        Map<Object, Boolean> seen = new IdentityHashMap<>();
+        List<Object> objects = new ArrayList<>();
+        for (Object o; (o = deferred.poll()) != null; ) {
+            if (seen.put(o, Boolean.TRUE) == null) objects.add(o);
+        }
+        Object[] all = objects.toArray();
+        String[] failures = new String[all.length];
+        pool.invoke(new Check(all, failures, 0, all.length));
+
+        List<ValidationReport.Violation> violations = new ArrayList<>();
+        for (int i = 0; i < all.length; i++) {
+            if (failures[i] != null) violations.add(new ValidationReport.Violation(all[i], failures[i]));
+        }
+        return new ValidationReport(all.length, violations, System.nanoTime() - start);
+    }
+
+    /** Stops deferring; objects not validated yet are dropped. */
+    @Override
+    public void close() {
+        closed = true;
+        OPEN.compareAndSet(this, null);
+    }
+
+    //checks objects[from, to) and writes the message of each broken rule to its slot
+    private static final class Check extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Object[] objects; // tasks are never serialized
+        private final String[] failures;
+        private final int from, to;
+
+        Check(Object[] objects, String[] failures, int from, int to) {
+            this.objects = objects;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Check(objects, failures, from, mid), new Check(objects, failures, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) failures[i] = check(objects[i]);
+        }
+    }
+
+    //null when o is valid
+    private static String check(Object o) {
+        try {
+            ValidationPlan.of(o.getClass()).validate(o, ValidationMetrics.Source.DEFERRED);
+            MethodHandle cross = CROSS_CHECKS.get(o.getClass());
+            if (cross != null) {
+                if (ValidationMetrics.ENABLED) crossMeasured(o, cross);
+                else cross.invokeExact(o);
+            }
+            return null;
+        } catch (ValidationException e) {
+            return e.getMessage();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            return t.getClass().getSimpleName() + ": " + t.getMessage();
+        }
+    }
+
+    private static void crossMeasured(Object o, MethodHandle cross) throws Throwable {
+        ValidationMetrics.RuleMetrics metrics = ValidationMetrics.of(o.getClass()).rule("validate()");
+        long start = System.nanoTime();
+        try {
+            cross.invokeExact(o);
+            metrics.record(System.nanoTime() - start, false);
+        } catch (Throwable t) {
+            metrics.record(System.nanoTime() - start, true);
+            throw t;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package validation;
+
+import persistence.ChangeTracker;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The values of one @Unique field over the members of one static @ObjectList registry, keyed
+ * the way the check compares them (trimmed, ignoring case), so checking a value is one hash
+ * lookup instead of a scan of the registry.
+ * <p>
+ * The registry itself stays the source of truth. Members appended since the last check are
+ * indexed on the next one, and a registry that shrank, was replaced or no longer starts and
+ * ends with the members indexed last (cleared and refilled directly) is indexed again from
+ * scratch. ChangeTracker reports keep it exact in between: a removed member leaves the index,
+ * and a touched member is keyed again on the next check, after its setter has run. Members
+ * with a null value are not indexed and a null value is never taken.
+ */
+final class UniqueIndex {
+
+    //indexes by the class declaring their registry; ChangeTracker reports look up the object's class and its superclasses
+    private static final Map<Class<?>, UniqueIndex[]> BY_CLASS = new ConcurrentHashMap<>();
+
+    static {
+        ChangeTracker.addListener(new ChangeTracker.Listener() {
+            @Override
+            public void touched(Object o) {
+                for (Class<?> c = o.getClass(); c != null; c = c.getSuperclass()) {
+                    UniqueIndex[] indexes = BY_CLASS.get(c);
+                    if (indexes != null) for (UniqueIndex index : indexes) index.touched(o);
+                }
+            }
+
+            @Override
+            public void removed(Object o) {
+                for (Class<?> c = o.getClass(); c != null; c = c.getSuperclass()) {
+                    UniqueIndex[] indexes = BY_CLASS.get(c);
+                    if (indexes != null) for (UniqueIndex index : indexes) index.removed(o);
+                }
+            }
+        });
+    }
+
+    //several members with one key (a registry filled without validation) share an Owners list
+    private static final class Owners {
+        final List<Object> members = new ArrayList<>();
+    }
+
+    private final String name;
+    private final ClassValue<MethodHandle> sameField;
+
+    private final Map<String, Object> byKey = new HashMap<>();
+    private final Map<Object, String> keyOf = new IdentityHashMap<>();
+    private final Set<Object> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+    private List<?> registry; // the list indexed last, null to index it again
+    private int indexed;
+    private Object first, last;
+
+    /** sameField gives the getter of the field on a member's class, null when it has none. */
+    private UniqueIndex(String name, ClassValue<MethodHandle> sameField) {
+        this.name = name;
+        this.sameField = sameField;
+    }
+
+    /** A new index for the field, registered for ChangeTracker reports about members of owner. */
+    static UniqueIndex register(Class<?> owner, String name, ClassValue<MethodHandle> sameField) {
+        UniqueIndex index = new UniqueIndex(name, sameField);
+        BY_CLASS.merge(owner, new UniqueIndex[]{index}, (a, b) -> {
+            UniqueIndex[] both = Arrays.copyOf(a, a.length + 1);
+            both[a.length] = b[0];
+            return both;
+        });
+        return index;
+    }
+
+    /**
+     * The key a value is compared by: its trimmed toString() with every code point upper- and
+     * then lower-cased, so two values have equal keys exactly when equalsIgnoreCase holds.
+     */
+    static String key(Object value) {
+        if (value == null) return null;
+        String s = value.toString().trim();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || c >= 'A' && c <= 'Z') return fold(s);
+        }
+        return s;
+    }
+
+    private static String fold(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        s.codePoints().forEach(cp -> sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp))));
+        return sb.toString();
+    }
+
+    /**
+     * Whether a member of the registry other than self has this key; throws
+     * ValidationException(name) for a member without the field.
+     */
+    synchronized boolean taken(List<?> list, String key, Object self) throws Throwable {
+        sync(list);
+        Object owner = byKey.get(key);
+        return owner != null && owner != self; // an Owners list always holds someone else
+    }
+
+    private void sync(List<?> list) throws Throwable {
+        int size = list.size();
+        if (list != registry || size < indexed
+                || indexed > 0 && (list.get(0) != first || list.get(indexed - 1) != last)) {
+            byKey.clear();
+            keyOf.clear();
+            pending.clear();
+            registry = list;
+            indexed = 0;
+        }
+        for (int i = indexed; i < size; i++) {
+            Object member = list.get(i);
+            if (member != null && !keyOf.containsKey(member)) {
+                String key = key(valueOf(member));
+                keyOf.put(member, key);
+                if (key != null) put(key, member);
+            }
+        }
+        indexed = size;
+        first = size > 0 ? list.get(0) : null;
+        last = size > 0 ? list.get(size - 1) : null;
+        for (Object member : pending) {
+            String old = keyOf.get(member);
+            String key = key(valueOf(member));
+            if (Objects.equals(old, key)) continue;
+            if (old != null) remove(old, member);
+            keyOf.put(member, key);
+            if (key != null) put(key, member);
+        }
+        pending.clear();
+    }
+
+    private Object valueOf(Object member) throws Throwable {
+        MethodHandle get = sameField.get(member.getClass());
+        if (get == null) throw new ValidationException(name); // NoSuchFieldException's message
+        return (Object) get.invokeExact(member);
+    }
+
+    private synchronized void touched(Object o) {
+        if (keyOf.containsKey(o)) pending.add(o);
+    }
+
+    private synchronized void removed(Object o) {
+        if (!keyOf.containsKey(o)) return;
+        String key = keyOf.remove(o);
+        if (key != null) remove(key, o);
+        pending.remove(o);
+        indexed--;
+        if (o == first || o == last) registry = null; // the ends cannot be told apart any more
+    }
+
+    private void put(String key, Object member) {
+        Object had = byKey.putIfAbsent(key, member);
+        if (had == null || had == member) return;
+        if (had instanceof Owners owners) {
+            owners.members.add(member);
+        } else {
+            Owners owners = new Owners();
+            owners.members.add(had);
+            owners.members.add(member);
+            byKey.put(key, owners);
+        }
+    }
+
+    private void remove(String key, Object member) {
+        Object had = byKey.get(key);
+        if (had == member) {
+            byKey.remove(key);
+        } else if (had instanceof Owners owners) {
+            owners.members.removeIf(x -> x == member);
+            if (owners.members.size() == 1) byKey.put(key, owners.members.get(0));
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package validation;
+
+import persistence.fileio.FileIn;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times validation, per model class and per rule. Recording is switched on with
+ * the system property "validation.metrics" set to "true", read once: when it is off,
+ * ValidationPlan checks one static final flag and nothing is recorded or allocated.
+ * <p>
+ * Each class keeps, per Source, how often it was validated, how often that failed and a
+ * latency histogram of the whole check. Each of its rules ("orderId @Unique", and
+ * "validate()" for a cross-object rule a TrustedLoad runs) keeps its own counts and
+ * histogram. snapshot() copies everything; the same numbers are published as the
+ * "validation:type=ValidationMetrics" MXBean once recording starts.
+ */
+public final class ValidationMetrics {
+
+    public static final boolean ENABLED = "true".equalsIgnoreCase(System.getProperty("validation.metrics"));
+
+    public static final String OBJECT_NAME = "validation:type=ValidationMetrics";
+
+    /** Where a validation came from. */
+    public enum Source {
+        /** Validator.validate from a constructor, outside of any restore. */
+        CONSTRUCTOR,
+        /** A constructor FileIn called to restore an object. */
+        RESTORE,
+        /** The validation pass of a TrustedLoad. */
+        DEFERRED
+    }
+
+    //bucket i holds latencies of [2^(i-1), 2^i) ns, bucket 0 only 0 ns; the last one everything above
+    static final int BUCKETS = 48;
+
+    private static final Map<Class<?>, ClassMetrics> CLASSES = new ConcurrentHashMap<>();
+
+    static {
+        if (ENABLED) register();
+    }
+
+    private ValidationMetrics() {}
+
+    /** The recorders of one class; only made while recording is on. */
+    static ClassMetrics of(Class<?> type) {
+        return CLASSES.computeIfAbsent(type, ClassMetrics::new);
+    }
+
+    /** Source of a validation Validator runs. */
+    static Source sourceOfConstructor() {
+        return FileIn.isRestoring() ? Source.RESTORE : Source.CONSTRUCTOR;
+    }
+
+    /** Everything recorded so far; empty when recording is off. */
+    public static Snapshot snapshot() {
+        List<ClassStats> classes = new ArrayList<>();
+        for (ClassMetrics m : CLASSES.values()) classes.add(m.snapshot());
+        classes.sort(Comparator.comparing(ClassStats::className));
+        return new Snapshot(ENABLED, classes);
+    }
+
+    /** Zeroes every counter and histogram. */
+    public static void reset() {
+        for (ClassMetrics m : CLASSES.values()) m.reset();
+    }
+
+    /** Registers the MXBean with the platform MBean server; false when it already is. */
+    public static boolean register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return false;
+        } catch (JMException e) {
+            System.err.println("Cannot register " + OBJECT_NAME + ": " + e.getMessage() + " — skipping");
+            return false;
+        }
+    }
+
+    // ---------------- recording ----------------
+
+    /** Log2 latency buckets, safe to record into from any thread. */
+    static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets[Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+            totalNanos.add(nanos);
+        }
+
+        Latency snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) counts[i] = buckets[i].sum();
+            return new Latency(counts, totalNanos.sum());
+        }
+
+        void reset() {
+            for (LongAdder b : buckets) b.reset();
+            totalNanos.reset();
+        }
+    }
+
+    static final class RuleMetrics {
+        private final String rule;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final Histogram latency = new Histogram();
+
+        RuleMetrics(String rule) {
+            this.rule = rule;
+        }
+
+        void record(long nanos, boolean failed) {
+            invocations.increment();
+            if (failed) failures.increment();
+            latency.record(nanos);
+        }
+
+        RuleStats snapshot() {
+            return new RuleStats(rule, invocations.sum(), failures.sum(), latency.snapshot());
+        }
+
+        void reset() {
+            invocations.reset();
+            failures.reset();
+            latency.reset();
+        }
+    }
+
+    static final class ClassMetrics {
+        private final Class<?> type;
+        private final Map<Source, RuleMetrics> bySource = new EnumMap<>(Source.class);
+        private final Map<String, RuleMetrics> rules = new ConcurrentHashMap<>();
+        private final List<String> order = new ArrayList<>(); // rules in the order they were made
+
+        private ClassMetrics(Class<?> type) {
+            this.type = type;
+            for (Source s : Source.values()) bySource.put(s, new RuleMetrics(s.name()));
+        }
+
+        /** The recorder of one rule of the class, made on first use. */
+        RuleMetrics rule(String name) {
+            return rules.computeIfAbsent(name, n -> {
+                synchronized (order) {
+                    order.add(n);
+                }
+                return new RuleMetrics(n);
+            });
+        }
+
+        /** Records one whole validation of an object of the class. */
+        void record(Source source, long nanos, boolean failed) {
+            bySource.get(source).record(nanos, failed);
+        }
+
+        ClassStats snapshot() {
+            Map<Source, RuleStats> sources = new EnumMap<>(Source.class);
+            bySource.forEach((s, m) -> sources.put(s, m.snapshot()));
+            List<RuleStats> ruleStats = new ArrayList<>();
+            synchronized (order) {
+                for (String n : order) {
+                    RuleMetrics m = rules.get(n); // null while it is still being made
+                    if (m != null) ruleStats.add(m.snapshot());
+                }
+            }
+            return new ClassStats(type.getName(), sources, ruleStats);
+        }
+
+        void reset() {
+            bySource.values().forEach(RuleMetrics::reset);
+            rules.values().forEach(RuleMetrics::reset);
+        }
+    }
+
+    // ---------------- snapshots ----------------
+
+    /** Latency counts per log2 bucket: counts[i] for [2^(i-1), 2^i) ns, counts[0] for 0 ns. */
+    public record Latency(long[] counts, long totalNanos) {
+        public long count() {
+            long n = 0;
+            for (long c : counts) n += c;
+            return n;
+        }
+
+        public double meanNanos() {
+            long n = count();
+            return n == 0 ? 0 : (double) totalNanos / n;
+        }
+
+        /** Upper bound in ns of the bucket holding the p-th percentile (0 &lt; p &lt;= 100); 0 when empty. */
+        public long percentileNanos(double p) {
+            if (p <= 0 || p > 100) throw new IllegalArgumentException("Percentile must be in (0, 100]");
+            long n = count();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(n * p / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i == counts.length - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** Counts of one rule, or of whole validations from one Source (rule is then the source's name). */
+    public record RuleStats(String rule, long invocations, long failures, Latency latency) {}
+
+    public record ClassStats(String className, Map<Source, RuleStats> bySource, List<RuleStats> rules) {
+        public long invocations() {
+            long n = 0;
+            for (RuleStats s : bySource.values()) n += s.invocations();
+            return n;
+        }
+
+        public long failures() {
+            long n = 0;
+            for (RuleStats s : bySource.values()) n += s.failures();
+            return n;
+        }
+
+        /** Stats of the named rule, or null. */
+        public RuleStats rule(String name) {
+            for (RuleStats r : rules) if (r.rule().equals(name)) return r;
+            return null;
+        }
+    }
+
+    public record Snapshot(boolean enabled, List<ClassStats> classes) {
+        /** Stats of the class, or null when it was never validated while recording. */
+        public ClassStats of(Class<?> type) {
+            for (ClassStats c : classes) if (c.className().equals(type.getName())) return c;
+            return null;
+        }
+    }
+
+    // ---------------- MXBean ----------------
+
+    private static final class MXBean implements ValidationMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public long getValidations() {
+            long n = 0;
+            for (ClassStats c : snapshot().classes()) n += c.invocations();
+            return n;
+        }
+
+        @Override
+        public long getFailures() {
+            long n = 0;
+            for (ClassStats c : snapshot().classes()) n += c.failures();
+            return n;
+        }
+
+        @Override
+        public Map<String, Long> getValidationsByClass() {
+            Map<String, Long> map = new TreeMap<>();
+            for (ClassStats c : snapshot().classes()) map.put(c.className(), c.invocations());
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getFailuresByRule() {
+            Map<String, Long> map = new TreeMap<>();
+            for (ClassStats c : snapshot().classes()) {
+                for (RuleStats r : c.rules()) {
+                    if (r.failures() > 0) map.put(c.className() + "." + r.rule(), r.failures());
+                }
+            }
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getP99NanosByClass() {
+            Map<String, Long> map = new TreeMap<>();
+            for (ClassStats c : snapshot().classes()) {
+                long[] counts = new long[BUCKETS];
+                long total = 0;
+                for (RuleStats s : c.bySource().values()) {
+                    for (int i = 0; i < BUCKETS; i++) counts[i] += s.latency().counts()[i];
+                    total += s.latency().totalNanos();
+                }
+                Latency all = new Latency(counts, total);
+                if (all.count() > 0) map.put(c.className(), all.percentileNanos(99));
+            }
+            return map;
+        }
+
+        @Override
+        public void reset() {
+            ValidationMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package validation;
+
+import java.util.Map;
+
+/** ValidationMetrics as published over JMX; every value is read from a fresh snapshot. */
+public interface ValidationMetricsMXBean {
+
+    boolean isEnabled();
+
+    /** Objects validated, over all classes and sources. */
+    long getValidations();
+
+    long getFailures();
+
+    Map<String, Long> getValidationsByClass();
+
+    /** Failures per "className.rule", for rules that failed at least once. */
+    Map<String, Long> getFailuresByRule();
+
+    /** Upper bound of the 99th percentile of a whole validation, per class. */
+    Map<String, Long> getP99NanosByClass();
+
+    void reset();
+}
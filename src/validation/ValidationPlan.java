@@ -0,0 +1,294 @@
+package validation;
+
+import persistence.ObjectList;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The checks Validator.validate runs for one class, compiled once: one rule per validation
+ * annotation on a declared field, in field and annotation order, each with a getter handle
+ * for its field. Primitive fields are read through typed handles, so @Range and @Derived
+ * compare without boxing. Annotations are recognized by simple name and the messages are
+ * the ones Validator always gave.
+ */
+public final class ValidationPlan {
+
+    //ClassValue does not pin the model classes, so nothing here retains a reference to them
+    private static final ClassValue<ValidationPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected ValidationPlan computeValue(Class<?> type) {
+            return new ValidationPlan(type);
+        }
+    };
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    /** One compiled check; throws ValidationException when o breaks it. */
+    interface Rule {
+        void check(Object o) throws Throwable;
+    }
+
+    private final Rule[] rules;
+
+    //null unless ValidationMetrics.ENABLED
+    private final ValidationMetrics.ClassMetrics metrics;
+    private final ValidationMetrics.RuleMetrics[] ruleMetrics;
+
+    private ValidationPlan(Class<?> type) {
+        Field[] fields = type.getDeclaredFields();
+        List<Rule> compiled = new ArrayList<>();
+        List<String> names = new ArrayList<>(); // "field @Annotation", as ValidationMetrics reports them
+        for (Field field : fields) {
+            for (Annotation annotation : field.getAnnotations()) {
+                Rule rule = compile(field, annotation, fields);
+                if (rule == null) continue;
+                compiled.add(rule);
+                names.add(field.getName() + " @" + annotation.annotationType().getSimpleName());
+            }
+        }
+        this.rules = compiled.toArray(new Rule[0]);
+        if (ValidationMetrics.ENABLED) {
+            metrics = ValidationMetrics.of(type);
+            ruleMetrics = new ValidationMetrics.RuleMetrics[rules.length];
+            for (int i = 0; i < rules.length; i++) ruleMetrics[i] = metrics.rule(names.get(i));
+        } else {
+            metrics = null;
+            ruleMetrics = null;
+        }
+    }
+
+    public static ValidationPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /** Number of compiled rules; 0 when the class has nothing to validate. */
+    public int size() {
+        return rules.length;
+    }
+
+    /** Runs every rule in order and stops at the first one o breaks. */
+    public void validate(Object o) throws ValidationException {
+        if (ValidationMetrics.ENABLED) {
+            validate(o, ValidationMetrics.sourceOfConstructor());
+            return;
+        }
+        try {
+            for (Rule rule : rules) rule.check(o);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new ValidationException(t.getMessage());
+        }
+    }
+
+    /** Same, timing each rule into ValidationMetrics under source when recording is on. */
+    void validate(Object o, ValidationMetrics.Source source) throws ValidationException {
+        if (!ValidationMetrics.ENABLED) {
+            validate(o);
+            return;
+        }
+        long start = System.nanoTime();
+        long from = start;
+        int i = 0;
+        try {
+            for (; i < rules.length; i++) {
+                rules[i].check(o);
+                long now = System.nanoTime();
+                ruleMetrics[i].record(now - from, false);
+                from = now;
+            }
+        } catch (Throwable t) {
+            long now = System.nanoTime();
+            ruleMetrics[i].record(now - from, true);
+            metrics.record(source, now - start, true);
+            if (t instanceof RuntimeException e) throw e;
+            if (t instanceof Error e) throw e;
+            throw new ValidationException(t.getMessage());
+        }
+        metrics.record(source, from - start, false);
+    }
+
+    private static Rule compile(Field field, Annotation annotation, Field[] fields) {
+        String name = field.getName();
+        return switch (annotation.annotationType().getSimpleName()) {
+            case "NotNull" -> {
+                MethodHandle get = getter(field, Object.class);
+                yield o -> {
+                    if (get.invokeExact(o) == null) throw new ValidationException("Field " + name + " is required");
+                };
+            }
+            case "NotBlank" -> {
+                MethodHandle get = getter(field, Object.class);
+                yield o -> {
+                    Object v = get.invokeExact(o);
+                    if (v == null) throw new ValidationException("Field " + name + " is required (null)");
+                    if (v.toString().trim().isEmpty()) throw new ValidationException("Field " + name + " is required (empty)");
+                };
+            }
+            case "Unique" -> unique(field, fields);
+            case "NotFuture" -> {
+                MethodHandle get = getter(field, Object.class);
+                yield o -> {
+                    Object v = get.invokeExact(o);
+                    boolean future = v instanceof LocalDateTime dt ? dt.isAfter(LocalDateTime.now())
+                            : v instanceof LocalDate d ? d.isAfter(LocalDate.now())
+                            : v instanceof LocalTime t && t.isAfter(LocalTime.now()); // a time without a date, compared to now
+                    if (future) throw new ValidationException("Field " + name + " has to be before now");
+                };
+            }
+            case "Range" -> range(field, (Range) annotation);
+            case "NotEmpty" -> {
+                MethodHandle get = getter(field, Object.class);
+                yield o -> {
+                    Object v = get.invokeExact(o);
+                    if (v == null) throw new ValidationException("Field " + name + " must not be null or empty");
+                    boolean empty = v instanceof String s ? s.trim().isEmpty()
+                            : v instanceof Collection<?> c ? c.isEmpty()
+                            : v.getClass().isArray() && java.lang.reflect.Array.getLength(v) == 0;
+                    if (empty) throw new ValidationException("Field " + name + " must not be empty");
+                };
+            }
+            case "Derived" -> derived(field);
+            default -> null;
+        };
+    }
+
+    private static Rule range(Field field, Range range) {
+        String name = field.getName();
+        String outOfRange = "Field " + name + " is out of range";
+        Class<?> type = field.getType();
+        if (type == int.class) {
+            MethodHandle get = getter(field, int.class);
+            int min = (int) range.min(), max = (int) range.max();
+            return o -> {
+                int v = (int) get.invokeExact(o);
+                if (v < min || v > max) throw new ValidationException(outOfRange);
+            };
+        }
+        if (type == double.class) {
+            MethodHandle get = getter(field, double.class);
+            double min = range.min(), max = range.max();
+            return o -> {
+                double v = (double) get.invokeExact(o);
+                if (v < min || v > max) throw new ValidationException(outOfRange);
+            };
+        }
+        if (type == long.class) {
+            MethodHandle get = getter(field, long.class);
+            long min = (long) range.min(), max = (long) range.max();
+            return o -> {
+                long v = (long) get.invokeExact(o);
+                if (v < min || v > max) throw new ValidationException(outOfRange);
+            };
+        }
+        if (type.isPrimitive()) return null; // never null, and other primitive types are not compared
+        MethodHandle get = getter(field, Object.class);
+        return o -> {
+            if (get.invokeExact(o) == null) throw new ValidationException("Field " + name + " is required");
+        };
+    }
+
+    //a derived field has to be left at its default; a reference-typed one is always rejected
+    private static Rule derived(Field field) {
+        String message = "Field " + field.getName() + " must be derived";
+        Class<?> type = field.getType();
+        if (!type.isPrimitive()) {
+            return o -> {
+                throw new ValidationException(message);
+            };
+        }
+        if (type == boolean.class) {
+            MethodHandle get = getter(field, boolean.class);
+            return o -> {
+                if ((boolean) get.invokeExact(o)) throw new ValidationException(message);
+            };
+        }
+        if (type == double.class || type == float.class) {
+            MethodHandle get = getter(field, double.class);
+            return o -> {
+                if ((double) get.invokeExact(o) != 0.0) throw new ValidationException(message);
+            };
+        }
+        MethodHandle get = getter(field, long.class); // byte, short, char, int and long widen exactly
+        return o -> {
+            if ((long) get.invokeExact(o) != 0) throw new ValidationException(message);
+        };
+    }
+
+    /**
+     * The value may not equal (trimmed, ignoring case) the same-named field of any member of the
+     * class's @ObjectList lists, other than o itself when it is a member already (a trusted load
+     * validates registered objects). Members are looked up by their own class, as Validator did.
+     * Static registries are checked through a UniqueIndex, the lists of one object are scanned.
+     */
+    private static Rule unique(Field field, Field[] fields) {
+        String name = field.getName();
+        String notUnique = "Field " + name + " must be unique";
+        MethodHandle get = getter(field, Object.class);
+        ClassValue<MethodHandle> sameField = new ClassValue<>() {
+            @Override
+            protected MethodHandle computeValue(Class<?> type) {
+                try {
+                    return getter(type.getDeclaredField(name), Object.class);
+                } catch (NoSuchFieldException e) {
+                    return null;
+                }
+            }
+        };
+        List<Rule> lists = new ArrayList<>();
+        for (Field f : fields) {
+            if (!f.isAnnotationPresent(ObjectList.class)) continue;
+            MethodHandle list = getter(f, Object.class);
+            if (Modifier.isStatic(f.getModifiers())) {
+                UniqueIndex index = UniqueIndex.register(field.getDeclaringClass(), name, sameField);
+                lists.add(o -> {
+                    String key = UniqueIndex.key((Object) get.invokeExact(o));
+                    Object members = list.invokeExact(o);
+                    if (key != null && index.taken((List<?>) members, key, o)) throw new ValidationException(notUnique);
+                });
+            } else {
+                lists.add(o -> {
+                    Object members = list.invokeExact(o);
+                    for (Object other : (List<?>) members) {
+                        if (other == o) continue;
+                        MethodHandle otherGet = sameField.get(other.getClass());
+                        if (otherGet == null) throw new ValidationException(name); // NoSuchFieldException's message
+                        Object mine = get.invokeExact(o);
+                        Object theirs = otherGet.invokeExact(other);
+                        if (mine.toString().trim().equalsIgnoreCase(theirs.toString().trim())) {
+                            throw new ValidationException(notUnique);
+                        }
+                    }
+                });
+            }
+        }
+        Rule[] checks = lists.toArray(new Rule[0]);
+        return o -> {
+            for (Rule check : checks) check.check(o);
+        };
+    }
+
+    //(Object)returnType for instance and static fields alike
+    private static MethodHandle getter(Field field, Class<?> returnType) {
+        try {
+            field.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            return mh.asType(GETTER.changeReturnType(returnType));
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new ValidationException("Field access failed for " + field.getDeclaringClass().getName()
+                    + "." + field.getName() + ": " + e.getMessage());
+        }
+    }
+}
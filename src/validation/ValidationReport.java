@@ -0,0 +1,63 @@
+package validation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a TrustedLoad found when it validated the objects it deferred: how many were checked
+ * and, in the order they were constructed, every object that broke a rule with the message
+ * the rule gave. Nothing is undone; the objects stay where the load put them.
+ */
+public final class ValidationReport {
+
+    /** One object that broke a rule; message is the first one it broke. */
+    public record Violation(Object object, String message) {
+        public Class<?> type() {
+            return object.getClass();
+        }
+    }
+
+    private final int checked;
+    private final List<Violation> violations;
+    private final long nanos;
+
+    ValidationReport(int checked, List<Violation> violations, long nanos) {
+        this.checked = checked;
+        this.violations = List.copyOf(violations);
+        this.nanos = nanos;
+    }
+
+    /** Number of objects validated, each counted once. */
+    public int checked() {
+        return checked;
+    }
+
+    public List<Violation> violations() {
+        return violations;
+    }
+
+    public boolean isValid() {
+        return violations.isEmpty();
+    }
+
+    /** Violations per class, classes in the order of their first violation. */
+    public Map<Class<?>, Integer> countByClass() {
+        Map<Class<?>, Integer> counts = new LinkedHashMap<>();
+        for (Violation v : violations) counts.merge(v.type(), 1, Integer::sum);
+        return counts;
+    }
+
+    /** How long the validation pass took. */
+    public long nanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(checked).append(" objects checked, ").append(violations.size()).append(" invalid");
+        countByClass().forEach((type, n) -> sb.append(", ").append(type.getSimpleName()).append(": ").append(n));
+        return sb.toString();
+    }
+}
@@ -1,12 +1,16 @@
 package modelsTests;
 
 
+import models.Delivery;
 import models.Warehouse;
 import models.Facility;
 import models.utils.Address;
+import models.utils.Status;
 import org.junit.jupiter.api.Test;
 import validation.ValidationException;
 
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class WarehouseTests {
@@ -16,4 +20,27 @@ public class WarehouseTests {
         Facility f = new Facility(new Address("City", "Street", "Building", 11111));
         assertThrows(ValidationException.class, () -> new Warehouse(f, -5, true));
     }
+
+    @Test
+    void availableCapacity_followsAddedDeliveries() {
+        Facility f = new Facility(new Address("City", "Street", "Building", 11111));
+        Warehouse w = new Warehouse(f, 1000, false);
+        assertEquals(1000, w.getAvailableCapacity());
+
+        new Delivery(LocalDateTime.now().minusHours(1), null, 300, Status.ENROUTE, w);
+        assertEquals(700, w.getAvailableCapacity());
+        new Delivery(LocalDateTime.now().minusHours(1), null, 700, Status.ENROUTE, w);
+        assertEquals(0, w.getAvailableCapacity());
+        assertFalse(Warehouse.CAPACITY.isViolated(w));
+
+        new Delivery(LocalDateTime.now().minusHours(1), null, 1, Status.ENROUTE, w);
+        assertTrue(Warehouse.CAPACITY.isViolated(w));
+        assertThrows(ValidationException.class, w::getAvailableCapacity);
+
+        Delivery first = w.getDeliveries().get(0);
+        assertThrows(UnsupportedOperationException.class, () -> w.getDeliveries().set(1, first));
+        assertThrows(UnsupportedOperationException.class, () -> w.getDeliveries().remove(2));
+        assertTrue(Warehouse.CAPACITY.violators().contains(w));
+        Warehouse.CAPACITY.forget(w);
+    }
 }
@@ -3,6 +3,7 @@ package modelsTests.associationTests;
 import models.*;
 import models.utils.Address;
 import org.junit.jupiter.api.Test;
+import validation.Constraint;
 import validation.ValidationException;
 
 import java.time.LocalDateTime;
@@ -86,4 +87,24 @@ public class ShiftFacilityTests {
         Facility f = new Facility(new Address("A", "Street", "1", 12345));
         assertThrows(ValidationException.class, f::validate);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMultiplicityConstraintsFollowTheAssociation() {
+        Facility f = new Facility(new Address("A", "Street", "1", 12345));
+        Shift s = new Shift(now(), now().plusHours(2));
+        assertTrue(Facility.SHIFTS.isViolated(f));
+        assertTrue(Constraint.violations().stream().anyMatch(v -> v.object() == f));
+        assertTrue(Shift.FACILITIES.isViolated(s));
+
+        f.addShift(s);
+        assertFalse(Facility.SHIFTS.isViolated(f));
+        assertFalse(Shift.FACILITIES.isViolated(s));
+        assertDoesNotThrow(() -> f.validate());
+
+        s.removeFacility(f);
+        assertTrue(Facility.SHIFTS.isViolated(f));
+        assertTrue(Shift.FACILITIES.isViolated(s));
+        assertEquals("Facility must have at least one Shift",
+                assertThrows(ValidationException.class, () -> f.validate()).getMessage());
+    }
+}
@@ -0,0 +1,82 @@
+package persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeTrackerTests {
+
+    @BeforeEach
+    @AfterEach
+    void reset() {
+        ChangeTracker.reset();
+        ObjectIds.clear();
+    }
+
+    @Test
+    void nothingIsRecordedBeforeFirstCheckpoint() {
+        ChangeTracker.touch(new Object());
+        assertFalse(ChangeTracker.isTracking());
+        assertTrue(ChangeTracker.checkpoint().isEmpty());
+        assertTrue(ChangeTracker.isTracking());
+    }
+
+    @Test
+    void touchedObjectsAreListedOnceInFirstTouchOrder() {
+        ChangeTracker.checkpoint();
+        Object a = new Object(), b = new Object();
+        ChangeTracker.touch(b);
+        ChangeTracker.created(a);
+        ChangeTracker.touch(b);
+
+        ChangeSet changes = ChangeTracker.checkpoint();
+        assertEquals(List.of(b, a), changes.changed());
+        assertEquals(1, changes.sequence());
+        assertTrue(ChangeTracker.checkpoint().isEmpty());
+    }
+
+    @Test
+    void removedObjectsAreReportedOnlyWhenTheyHaveAnId() {
+        Object saved = "saved", unsaved = "unsaved";
+        long id = ObjectIds.idOf(saved);
+        ChangeTracker.checkpoint();
+        ChangeTracker.touch(saved);
+        ChangeTracker.created(unsaved);
+        ChangeTracker.removed(saved);
+        ChangeTracker.removed(unsaved);
+
+        ChangeSet changes = ChangeTracker.checkpoint();
+        assertTrue(changes.changed().isEmpty());
+        assertEquals(List.of(id), changes.removed().get(String.class));
+        assertEquals(0, ObjectIds.peek(saved));
+        assertNull(ObjectIds.find(id));
+    }
+
+    @Test
+    void requeue_putsFailedCheckpointBackInFront() {
+        ChangeTracker.checkpoint();
+        Object a = new Object(), b = new Object();
+        ChangeTracker.touch(a);
+        ChangeSet failed = ChangeTracker.checkpoint();
+        ChangeTracker.touch(b);
+        ChangeTracker.touch(a);
+        ChangeTracker.requeue(failed);
+
+        assertEquals(List.of(a, b), ChangeTracker.checkpoint().changed());
+    }
+
+    @Test
+    void assign_takesIdOverFromPreviousHolder() {
+        Object old = new Object(), restored = new Object();
+        ObjectIds.assign(old, 5);
+        ObjectIds.assign(restored, 5);
+
+        assertSame(restored, ObjectIds.find(5));
+        assertEquals(0, ObjectIds.peek(old));
+        assertEquals(6, ObjectIds.idOf(old));
+    }
+}
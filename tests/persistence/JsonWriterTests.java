@@ -0,0 +1,74 @@
+package persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonWriterTests {
+
+    private interface Body {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private static String written(Body body) throws IOException {
+        StringWriter sw = new StringWriter();
+        JsonWriter json = new JsonWriter(sw);
+        body.write(json);
+        json.release();
+        return sw.toString();
+    }
+
+    @Test
+    void writeString_escapesInOnePass() throws Exception {
+        String s = "a\"b\\c\bd\fe\nf\rg\th\u0001i\u001fj\u00e9\ud83d\ude00";
+        assertEquals("\"a\\\"b\\\\c\\bd\\fe\\nf\\rg\\th\\u0001i\\u001fj\u00e9\ud83d\ude00\"",
+                written(json -> json.writeString(s)));
+        assertEquals("\"plain\"", written(json -> json.writeString("plain")));
+        assertEquals("\"\\u0000\"", written(json -> json.writeString('\0')));
+    }
+
+    @Test
+    void writeString_longerThanTheBuffer() throws Exception {
+        String s = "x".repeat(JsonWriter.BUFFER_SIZE * 2 + 7) + "\n";
+        assertEquals("\"" + s.replace("\n", "\\n") + "\"", written(json -> json.writeString(s)));
+    }
+
+    @Test
+    void numbers_matchToString() throws Exception {
+        long[] longs = {0, 7, -7, 10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE,
+                999_999_999_999_999_999L, 1_000_000_000_000_000_000L};
+        for (long v : longs) assertEquals(Long.toString(v), written(json -> json.writeLong(v)));
+
+        double[] doubles = {0.0, -0.0, 1.0, -3.0, 9_999_999.0, 1e7, 12.5, 0.1, 1e-5, 1e300,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Long.MAX_VALUE};
+        for (double d : doubles) assertEquals(Double.toString(d), written(json -> json.writeDouble(d)));
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            double d = random.nextInt(2_000_000) - 1_000_000 + (i % 2 == 0 ? 0 : random.nextDouble());
+            assertEquals(Double.toString(d), written(json -> json.writeDouble(d)));
+            float f = (float) d;
+            assertEquals(Float.toString(f), written(json -> json.writeFloat(f)));
+        }
+
+        assertEquals("5", written(json -> json.writeNumber((short) 5)));
+        assertEquals("2.5", written(json -> json.writeNumber(new java.math.BigDecimal("2.5"))));
+    }
+
+    @Test
+    void release_returnsTheBufferAndLeavesTheWriterOpen() throws Exception {
+        StringWriter sw = new StringWriter();
+        JsonWriter json = new JsonWriter(sw);
+        json.write("abc");
+        assertEquals("", sw.toString(), "buffered until drained");
+        json.drain();
+        assertEquals("abc", sw.toString());
+        json.release();
+        json.release();
+        sw.write("!");
+        assertEquals("abc!", sw.toString());
+    }
+}
@@ -0,0 +1,73 @@
+package persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectIdsTests {
+
+    @BeforeEach
+    @AfterEach
+    void reset() {
+        ObjectIds.clear();
+    }
+
+    @Test
+    void concurrentCallers_agreeOnOneIdPerObject() throws Exception {
+        List<Object> shared = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) shared.add(new Object());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<long[]>> runs = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                runs.add(pool.submit(() -> {
+                    long[] seen = new long[shared.size()];
+                    for (int i = shared.size() - 1; i >= 0; i--) seen[i] = ObjectIds.idOf(shared.get(i));
+                    return seen;
+                }));
+            }
+            long[] first = runs.get(0).get();
+            for (Future<long[]> run : runs) assertArrayEquals(first, run.get());
+        } finally {
+            pool.shutdown();
+        }
+        Set<Long> distinct = new HashSet<>();
+        for (int i = 0; i < shared.size(); i++) {
+            assertTrue(distinct.add(ObjectIds.peek(shared.get(i))));
+            assertSame(shared.get(i), ObjectIds.find(ObjectIds.peek(shared.get(i))));
+        }
+    }
+
+    @Test
+    void unreferencedObjects_areNotKeptAlive() throws Exception {
+        long id = ObjectIds.idOf(new Object());
+        for (int i = 0; i < 50 && ObjectIds.find(id) != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ObjectIds.find(id));
+        assertNotEquals(id, ObjectIds.idOf(new Object()));
+    }
+
+    @Test
+    void assign_takesTheIdFromItsHolder() {
+        Object old = new Object(), restored = new Object();
+        ObjectIds.assign(old, 3);
+        ObjectIds.assign(restored, 3);
+        assertSame(restored, ObjectIds.find(3));
+        assertEquals(0, ObjectIds.peek(old));
+        ObjectIds.assign(restored, 7);
+        assertNull(ObjectIds.find(3));
+        assertEquals(8, ObjectIds.idOf(old));
+    }
+}
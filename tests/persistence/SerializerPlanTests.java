@@ -0,0 +1,68 @@
+package persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerializerPlanTests {
+
+    @JsonSerializable
+    static class Parent {
+        String parentName = "p";
+    }
+
+    @JsonSerializable
+    static class Child extends Parent {
+        @ObjectList
+        public static List<Child> registry = new ArrayList<>();
+        private static int counter = 3;
+        @JsonIgnore
+        static String ignoredStatic = "x";
+
+        private long id = 9L;
+        @JsonIgnore
+        String secret = "s";
+    }
+
+    static class Plain {
+        int value;
+    }
+
+    private static List<String> names(SerializerPlan.Property[] props) {
+        return Arrays.stream(props).map(SerializerPlan.Property::name).toList();
+    }
+
+    @Test
+    void planIsComputedOncePerClass() {
+        assertSame(SerializerPlan.of(Child.class), SerializerPlan.of(Child.class));
+        assertNotSame(SerializerPlan.of(Child.class), SerializerPlan.of(Parent.class));
+    }
+
+    @Test
+    void instanceFields_includeSuperclass_andSkipIgnoredAndStatic() {
+        SerializerPlan plan = SerializerPlan.of(Child.class);
+        assertEquals(List.of("id", "parentName"), names(plan.instanceFields()));
+        assertEquals(List.of("counter"), names(plan.staticFields()));
+        assertEquals(List.of("registry"), names(plan.registries()));
+    }
+
+    @Test
+    void propertiesCarryQuotedKeys_andReadPrivateValues() {
+        SerializerPlan plan = SerializerPlan.of(Child.class);
+        SerializerPlan.Property id = plan.instanceFields()[0];
+        assertEquals("\"id\":", id.key());
+        assertEquals(9L, id.get(new Child()));
+        assertEquals(3, plan.staticFields()[0].getStatic());
+        assertEquals("\"" + Child.class.getName() + "\":", plan.blockKey());
+    }
+
+    @Test
+    void nonAnnotatedClassIsNotSerializable() {
+        assertFalse(SerializerPlan.of(Plain.class).isSerializable());
+        assertTrue(SerializerPlan.of(Child.class).isSerializable());
+    }
+}
@@ -0,0 +1,168 @@
+package persistence.codegenTests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonSerializable;
+import persistence.SerializerPlan;
+import persistence.codegen.CodecProcessor;
+import persistence.codegen.Codecs;
+import persistence.codegen.ModelCodec;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.StringWriter;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodecProcessorTests {
+
+    private static final String BASE = """
+            package sample;
+
+            public class Base {
+                private int version = 2;
+            }
+            """;
+
+    private static final String TICKET = """
+            package sample;
+
+            import persistence.*;
+            import java.util.ArrayList;
+            import java.util.List;
+
+            @JsonSerializable
+            public class Ticket extends Base {
+                @ObjectList
+                public static List<Ticket> tickets = new ArrayList<>();
+                static String prefix = "T";
+                private static int issued;
+
+                private final long number;
+                String label;
+                List<String> tags = new ArrayList<>();
+                @JsonIgnore
+                String cache = "x";
+
+                @JsonCtor
+                public Ticket(long number, String label) {
+                    this.number = number;
+                    this.label = label;
+                    tickets.add(this);
+                }
+
+                public static int issued() {
+                    return issued;
+                }
+
+                @JsonSerializable
+                private static class Hidden {
+                }
+            }
+            """;
+
+    private static final String STAMP = """
+            package sample;
+
+            import persistence.*;
+
+            @JsonSerializable
+            public class Stamp {
+                String code;
+
+                @JsonCtor
+                public Stamp(String code) throws IllegalAccessException {
+                    if (code == null) throw new IllegalAccessException("no code");
+                    this.code = code;
+                }
+            }
+            """;
+
+    @TempDir
+    Path tmp;
+
+    private ClassLoader loader;
+
+    private Class<?> compile() throws Exception {
+        Path src = tmp.resolve("src/sample");
+        Files.createDirectories(src);
+        Files.writeString(src.resolve("Base.java"), BASE);
+        Files.writeString(src.resolve("Ticket.java"), TICKET);
+        Files.writeString(src.resolve("Stamp.java"), STAMP);
+        Path out = Files.createDirectories(tmp.resolve("out"));
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        String classpath = Path.of(JsonSerializable.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        StringWriter log = new StringWriter();
+        try (StandardJavaFileManager files = javac.getStandardFileManager(null, null, null)) {
+            JavaCompiler.CompilationTask task = javac.getTask(log, files, null,
+                    List.of("-parameters", "-classpath", classpath, "-d", out.toString(), "-s", out.toString()),
+                    null, files.getJavaFileObjects(src.resolve("Base.java"), src.resolve("Ticket.java"),
+                            src.resolve("Stamp.java")));
+            task.setProcessors(List.of(new CodecProcessor()));
+            assertTrue(task.call(), log.toString());
+        }
+        assertTrue(Files.exists(out.resolve("sample/TicketCodec.java")));
+        assertFalse(Files.exists(out.resolve("sample/Ticket_HiddenCodec.java")), "private classes cannot be named");
+        assertTrue(log.toString().contains("No codec for sample.Ticket.Hidden"), log.toString());
+
+        assertTrue(log.toString().contains("Codec of sample.Stamp does not construct"), log.toString());
+
+        loader = new URLClassLoader(new java.net.URL[]{out.toUri().toURL()}, getClass().getClassLoader());
+        return loader.loadClass("sample.Ticket");
+    }
+
+    @Test
+    void generatedCodec_readsTheSameValuesAsThePlan() throws Exception {
+        Class<?> ticket = compile();
+        ModelCodec<?> codec = Codecs.find(ticket);
+        assertNotNull(codec);
+        assertSame(ticket, codec.type());
+
+        SerializerPlan plan = SerializerPlan.of(ticket);
+        assertSame(codec, plan.codec());
+        SerializerPlan.Property[] fields = plan.instanceFields();
+        assertArrayEquals(Arrays.stream(fields).map(SerializerPlan.Property::name).toArray(), codec.fields());
+
+        Object t = ticket.getConstructor(long.class, String.class).newInstance(7L, "window");
+        Object[] values = plan.values(t);
+        for (int i = 0; i < fields.length; i++) assertEquals(fields[i].get(t), values[i], fields[i].name());
+        assertEquals(List.of(7L, "window", List.of(), 2), Arrays.asList(values));
+    }
+
+    @Test
+    void generatedCodec_constructsAndSetsStatics() throws Exception {
+        Class<?> ticket = compile();
+        @SuppressWarnings("unchecked")
+        ModelCodec<Object> codec = (ModelCodec<Object>) Codecs.find(ticket);
+
+        assertArrayEquals(new String[]{"number", "label"}, codec.constructorParameters());
+        Object t = codec.construct(new Object[]{12L, "bar"});
+        assertEquals(List.of(12L, "bar", List.of(), 2), Arrays.asList(SerializerPlan.of(ticket).values(t)));
+        assertThrows(NullPointerException.class, () -> codec.construct(new Object[]{null, "bar"}));
+
+        assertTrue(codec.setStatic("prefix", "V"));
+        assertTrue(codec.setStatic("issued", 5));
+        assertFalse(codec.setStatic("tickets", List.of()), "registries are not static values");
+        assertFalse(codec.setStatic("missing", 1));
+        assertEquals("V", SerializerPlan.of(ticket).staticFields()[0].getStatic());
+        assertEquals(5, ticket.getMethod("issued").invoke(null));
+    }
+
+    @Test
+    void checkedExceptionCtor_isLeftToReflection() throws Exception {
+        compile();
+        Class<?> stamp = loader.loadClass("sample.Stamp");
+        ModelCodec<?> codec = Codecs.find(stamp);
+        assertNotNull(codec);
+        assertNull(codec.constructorParameters());
+        assertThrows(UnsupportedOperationException.class, () -> codec.construct(new Object[]{"A"}));
+        assertArrayEquals(new String[]{"code"}, codec.fields());
+    }
+}
@@ -0,0 +1,176 @@
+package persistence.fileioTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.ChangeTracker;
+import persistence.Epoch;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.CheckpointService;
+import persistence.fileio.Compression;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckpointServiceTests {
+
+    @JsonSerializable
+    static class Till {
+        @ObjectList
+        public static List<Till> tills = new ArrayList<>();
+
+        String name;
+        int balance;
+        List<String> notes = new ArrayList<>();
+
+        @JsonCtor
+        public Till(String name, int balance) {
+            this.name = name;
+            this.balance = balance;
+            synchronized (ChangeTracker.REGISTRY_LOCK) {
+                tills.add(this);
+            }
+            ChangeTracker.created(this);
+        }
+
+        void setBalance(int balance) {
+            ChangeTracker.touch(this);
+            this.balance = balance;
+        }
+
+        void addNote(String note) {
+            ChangeTracker.touch(this);
+            notes.add(note);
+        }
+    }
+
+    @JsonSerializable
+    static class Receipt {
+        @ObjectList
+        public static List<Receipt> receipts = new ArrayList<>();
+
+        Till till;
+
+        @JsonCtor
+        public Receipt(Till till) {
+            this.till = till;
+            synchronized (ChangeTracker.REGISTRY_LOCK) {
+                receipts.add(this);
+            }
+            ChangeTracker.created(this);
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    private static final List<Class<?>> CLASSES = List.of(Till.class);
+
+    @BeforeEach
+    void reset() {
+        Till.tills.clear();
+        Receipt.receipts.clear();
+        ObjectIds.clear();
+    }
+
+    @Test
+    void epoch_keepsTheStateFromWhenItBegan() throws Exception {
+        Till front = new Till("front", 100);
+        new Till("back", 5);
+
+        Path file;
+        try (Epoch epoch = Epoch.begin(CLASSES)) {
+            front.setBalance(250);
+            front.addNote("refund");
+            new Till("terrace", 0);
+            file = FileOut.writeSnapshot(tmp, "checkpoint", epoch, Compression.NONE);
+            assertEquals(2, epoch.objectCount());
+            assertEquals(1, epoch.copiesMade());
+        }
+        reset();
+
+        FileIn.readSnapshot(file, CLASSES);
+
+        assertEquals(List.of("front", "back"), Till.tills.stream().map(t -> t.name).toList());
+        assertEquals(100, Till.tills.get(0).balance);
+        assertTrue(Till.tills.get(0).notes.isEmpty());
+    }
+
+    @Test
+    void epoch_copiesAllRegistriesAtOneMoment() throws Exception {
+        Thread till = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) new Receipt(new Till("till-" + i, i));
+        });
+        till.start();
+        try {
+            while (till.isAlive()) {
+                try (Epoch epoch = Epoch.begin(List.of(Till.class, Receipt.class))) {
+                    int tills = epoch.registries(Till.class).get(0).length;
+                    int receipts = epoch.registries(Receipt.class).get(0).length;
+                    //each Till is registered just before its Receipt
+                    assertTrue(tills == receipts || tills == receipts + 1, tills + " tills, " + receipts + " receipts");
+                }
+            }
+        } finally {
+            till.join();
+        }
+    }
+
+    @Test
+    void epoch_needsNoCopyForObjectsAlreadyWritten() throws Exception {
+        Till front = new Till("front", 100);
+
+        try (Epoch epoch = Epoch.begin(CLASSES)) {
+            FileOut.writeSnapshot(tmp, "checkpoint", epoch, Compression.NONE);
+            front.setBalance(1);
+            assertEquals(0, epoch.copiesMade());
+        }
+    }
+
+    @Test
+    void checkpoint_writesInTheBackgroundAndReportsItsCost() throws Exception {
+        for (int i = 0; i < 100; i++) new Till("till-" + i, i);
+
+        CheckpointService.Checkpoint done;
+        try (CheckpointService service = new CheckpointService(tmp, "checkpoint", CLASSES)) {
+            done = service.checkpoint().get();
+            assertSame(done, service.last());
+        }
+
+        assertEquals(100, done.objects());
+        assertEquals(Files.size(done.file()), done.bytes());
+        assertFalse(done.pause().isNegative());
+        assertTrue(done.duration().compareTo(done.pause()) >= 0);
+
+        reset();
+        FileIn.readSnapshot(done.file(), CLASSES);
+        assertEquals(100, Till.tills.size());
+        assertEquals(42, Till.tills.get(42).balance);
+    }
+
+    @Test
+    void sharded_writesTheEpochAsShards() throws Exception {
+        for (int i = 0; i < 100; i++) new Till("till-" + i, i);
+
+        CheckpointService.Checkpoint done;
+        try (CheckpointService service = CheckpointService.sharded(tmp, "checkpoint", CLASSES)) {
+            done = service.checkpoint().get();
+        }
+
+        assertTrue(Files.isDirectory(done.file()));
+        assertTrue(done.bytes() > 0);
+        reset();
+        FileIn.readSharded(done.file(), CLASSES);
+        assertEquals(100, Till.tills.size());
+        assertEquals(42, Till.tills.get(42).balance);
+    }
+}
@@ -0,0 +1,58 @@
+package persistence.fileio; // tests package-private classes, so it keeps their package
+
+import models.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassBlockGraphTests {
+
+    @Test
+    void dependencies_followJsonCtorParameters() {
+        Map<Class<?>, Set<Class<?>>> deps = ClassBlockGraph.dependencies(List.of(
+                Facility.class, Shop.class, Stock.class, Warehouse.class,
+                Order.class, Certification.class, Employee.class, Delivery.class, Drink.class));
+
+        assertEquals(Set.of(Facility.class), deps.get(Shop.class));
+        assertEquals(Set.of(Facility.class), deps.get(Stock.class));
+        assertEquals(Set.of(Facility.class), deps.get(Warehouse.class));
+        assertEquals(Set.of(Employee.class), deps.get(Certification.class));
+        assertEquals(Set.of(Warehouse.class), deps.get(Delivery.class));
+        assertTrue(deps.get(Order.class).isEmpty());
+        assertTrue(deps.get(Drink.class).isEmpty());
+        assertTrue(deps.get(Facility.class).isEmpty());
+    }
+
+    @Test
+    void run_startsDependentsOnlyAfterTheirOwners_andKeepsBlockOrderPerClass() {
+        List<Class<?>> blocks = List.of(Shop.class, Order.class, Facility.class, Warehouse.class,
+                Delivery.class, Facility.class, Drink.class);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        int[] facilityBlock = {0};
+
+        ClassBlockGraph.run(blocks, c -> c, c -> {
+            if (c == Facility.class) {
+                log.add("Facility#" + facilityBlock[0]++);
+                try { Thread.sleep(20); } catch (InterruptedException ignored) {}
+            } else {
+                log.add(c.getSimpleName());
+            }
+        }, ForkJoinPool.commonPool());
+
+        assertEquals(blocks.size(), log.size());
+        assertTrue(log.indexOf("Facility#0") < log.indexOf("Facility#1"));
+        assertTrue(log.indexOf("Facility#1") < log.indexOf("Shop"));
+        assertTrue(log.indexOf("Facility#1") < log.indexOf("Warehouse"));
+        assertTrue(log.indexOf("Warehouse") < log.indexOf("Delivery"));
+    }
+
+    @Test
+    void run_rethrowsFailures() {
+        assertThrows(IllegalStateException.class, () -> ClassBlockGraph.run(List.of(Order.class, Drink.class),
+                c -> c, c -> { if (c == Drink.class) throw new IllegalStateException("boom"); },
+                ForkJoinPool.commonPool()));
+    }
+}
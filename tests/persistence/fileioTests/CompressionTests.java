@@ -0,0 +1,124 @@
+package persistence.fileioTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectList;
+import persistence.fileio.Compression;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotFormats;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionTests {
+
+    @JsonSerializable
+    static class Note {
+        @ObjectList
+        public static List<Note> notes = new ArrayList<>();
+
+        String text;
+        int n;
+
+        @JsonCtor
+        public Note(String text, int n) {
+            this.text = text;
+            this.n = n;
+            notes.add(this);
+        }
+    }
+
+    private static final List<Class<?>> CLASSES = List.of(Note.class);
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    void reset() {
+        Note.notes.clear();
+    }
+
+    private static void fill() {
+        for (int i = 0; i < 2000; i++) new Note(i % 3 == 0 ? "contains milk, nuts" : "gluten \"free\"", i);
+    }
+
+    private static void assertRestored() {
+        assertEquals(2000, Note.notes.size());
+        assertEquals("gluten \"free\"", Note.notes.get(1).text);
+        assertEquals(1999, Note.notes.get(1999).n);
+    }
+
+    @Test
+    void gzipChosenByFileName_isSmaller_andReadBackByEveryReader() throws Exception {
+        fill();
+        Path plain = FileOut.writeSnapshot(tmp, "plain", CLASSES);
+        Path gz = FileOut.writeSnapshot(tmp, "store.json.gz", CLASSES, SnapshotFormats.JSON);
+
+        assertEquals(tmp.resolve("store.json.gz"), gz);
+        byte[] head = Files.readAllBytes(gz);
+        assertEquals((byte) 0x1F, head[0]);
+        assertEquals((byte) 0x8B, head[1]);
+        assertTrue(Files.size(gz) * 5 < Files.size(plain), Files.size(gz) + " vs " + Files.size(plain));
+
+        Note.notes.clear();
+        assertSame(SnapshotFormats.JSON, FileIn.readSnapshot(gz, CLASSES));
+        assertRestored();
+
+        Note.notes.clear();
+        FileIn.readJson(gz, CLASSES);
+        assertRestored();
+
+        Note.notes.clear();
+        FileIn.readJsonMapped(gz, CLASSES);
+        assertRestored();
+
+        Note.notes.clear();
+        FileIn.readJsonParallel(gz, CLASSES);
+        assertRestored();
+    }
+
+    @Test
+    void deflateOption_worksWithBinaryFormat() throws Exception {
+        fill();
+        Path written = FileOut.writeSnapshot(tmp, "store", CLASSES, SnapshotFormats.BINARY, Compression.DEFLATE);
+        assertEquals(tmp.resolve("store.bsnap.deflate"), written);
+
+        Note.notes.clear();
+        assertSame(SnapshotFormats.BINARY, FileIn.readSnapshot(written, CLASSES));
+        assertRestored();
+    }
+
+    @Test
+    void writeJson_compressesWhenAsked() throws Exception {
+        String json = "{\"models\":{}}";
+        Path written = FileOut.writeJson(tmp, "data.json.gz", json);
+        assertEquals(tmp.resolve("data.json.gz"), written);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(written))) {
+            assertEquals(json, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        Path explicit = FileOut.writeJson(tmp, "data", json, Compression.GZIP);
+        assertEquals(tmp.resolve("data (1).json.gz"), explicit);
+    }
+
+    @Test
+    void detect_leavesPlainSnapshotsAlone() {
+        assertSame(Compression.NONE, Compression.detect("{\"models\"".getBytes(StandardCharsets.UTF_8), 9));
+        assertSame(Compression.NONE, Compression.detect(new byte[]{'B', 'S', 'N', 'P', 2}, 5));
+        assertSame(Compression.NONE, Compression.detect(new byte[]{'\n', ' '}, 2));
+        assertSame(Compression.NONE, Compression.detect(new byte[]{0x1F}, 1));
+        assertSame(Compression.GZIP, Compression.forFileName("x.JSON.GZ"));
+        assertSame(Compression.NONE, Compression.forFileName("x.json"));
+    }
+}
@@ -0,0 +1,93 @@
+package persistence.fileio; // tests package-private classes, so it keeps their package
+
+import models.utils.Status;
+import org.junit.jupiter.api.Test;
+import persistence.JsonCtor;
+import validation.ValidationException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class CtorBindingTests {
+
+    static class Shipment {
+        final long id;
+        final LocalDateTime started;
+        final Status status;
+        final double weight;
+
+        @JsonCtor
+        Shipment(long id, LocalDateTime started, Status status, double weight) {
+            if (weight < 0) throw new ValidationException("weight must not be negative");
+            this.id = id;
+            this.started = started;
+            this.status = status;
+            this.weight = weight;
+        }
+    }
+
+    static class NoCtor {
+        NoCtor(int x) {}
+    }
+
+    private static Map<String, Object> row(Object id, Object started, Object status, Object weight) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("id", id);
+        m.put("started", started);
+        m.put("status", status);
+        m.put("weight", weight);
+        return m;
+    }
+
+    private static void assumeParamNames() {
+        assumeTrue(CtorBinding.of(Shipment.class).names()[0].equals("id"),
+                "Compile tests with -parameters so constructor parameter names are available");
+    }
+
+    @Test
+    void bindingIsResolvedOncePerClass() {
+        assertSame(CtorBinding.of(Shipment.class), CtorBinding.of(Shipment.class));
+        assertEquals(4, CtorBinding.of(Shipment.class).types().length);
+    }
+
+    @Test
+    void construct_coercesNumbersEnumsAndTimes() throws Exception {
+        assumeParamNames();
+        Shipment s = (Shipment) CtorBinding.of(Shipment.class)
+                .construct(row(12, "2024-05-01T10:15:30", "ENROUTE", 3));
+        assertEquals(12L, s.id);
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 15, 30), s.started);
+        assertEquals(Status.ENROUTE, s.status);
+        assertEquals(3.0, s.weight, 1e-9);
+
+        Shipment byOrdinal = (Shipment) CtorBinding.of(Shipment.class).construct(row(1, null, 2, 1.5));
+        assertEquals(Status.DELIVERED, byOrdinal.status);
+    }
+
+    @Test
+    void construct_rejectsMissingPrimitives_andUnparsableValues() {
+        assumeParamNames();
+        CtorBinding b = CtorBinding.of(Shipment.class);
+        assertThrows(IllegalArgumentException.class, () -> b.construct(row(null, null, null, 1.0)));
+        assertThrows(IllegalArgumentException.class, () -> b.construct(row(1, "not a date", null, 1.0)));
+        assertThrows(IllegalArgumentException.class, () -> b.construct(row(1, null, "NOPE", 1.0)));
+    }
+
+    @Test
+    void construct_wrapsConstructorExceptions() {
+        assumeParamNames();
+        InvocationTargetException ex = assertThrows(InvocationTargetException.class,
+                () -> CtorBinding.of(Shipment.class).construct(row(1, null, null, -1)));
+        assertInstanceOf(ValidationException.class, ex.getTargetException());
+    }
+
+    @Test
+    void construct_withoutJsonCtor_throwsNoSuchMethod() {
+        assertThrows(NoSuchMethodException.class, () -> CtorBinding.of(NoCtor.class).construct(Map.of()));
+    }
+}
@@ -0,0 +1,198 @@
+package persistence.fileioTests;
+
+import models.Drink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.ChangeTracker;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotFormats;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeltaSnapshotTests {
+
+    @JsonSerializable
+    static class Tab {
+        @ObjectList
+        public static List<Tab> tabs = new ArrayList<>();
+        static double fee = 0.5;
+
+        String owner;
+        double total;
+
+        @JsonCtor
+        public Tab(String owner, double total) {
+            this.owner = owner;
+            this.total = total;
+            tabs.add(this);
+            ChangeTracker.created(this);
+        }
+
+        void add(double amount) {
+            ChangeTracker.touch(this);
+            total += amount;
+        }
+
+        void close() {
+            tabs.remove(this);
+            ChangeTracker.removed(this);
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    private static final List<Class<?>> CLASSES = List.of(Tab.class);
+
+    @BeforeEach
+    void reset() {
+        Tab.tabs.clear();
+        Tab.fee = 0.5;
+        ChangeTracker.reset();
+        ObjectIds.clear();
+    }
+
+    @AfterEach
+    void stopTracking() {
+        ChangeTracker.reset();
+        ObjectIds.clear();
+    }
+
+    private static Tab find(String owner) {
+        for (Tab t : Tab.tabs) if (t.owner.equals(owner)) return t;
+        return null;
+    }
+
+    @Test
+    void delta_holdsOnlyChangedNewAndRemovedObjects() throws Exception {
+        for (int i = 0; i < 100; i++) new Tab("t" + i, i);
+        FileOut.writeBaseSnapshot(tmp, "store", CLASSES);
+
+        find("t3").add(10);
+        find("t7").close();
+        new Tab("late", 1);
+
+        Path delta = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+        String json = Files.readString(delta);
+
+        assertEquals("store.delta.json", delta.getFileName().toString());
+        assertTrue(json.contains("\"owner\":\"t3\""));
+        assertTrue(json.contains("\"owner\":\"late\""));
+        assertFalse(json.contains("\"owner\":\"t4\""));
+        assertTrue(json.contains("\"removed\":[8]"), json); // ids follow write order, t7 got 8
+    }
+
+    @Test
+    void readSnapshotChain_restoresBasePlusDeltasInOrder() throws Exception {
+        for (int i = 0; i < 5; i++) new Tab("t" + i, i);
+        Path base = FileOut.writeBaseSnapshot(tmp, "store", CLASSES);
+
+        find("t1").add(5);
+        find("t2").close();
+        Path d1 = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+
+        find("t1").add(1);
+        new Tab("t9", 9);
+        Tab.fee = 2.0;
+        Path d2 = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+
+        Tab.tabs.clear();
+        ObjectIds.clear();
+        Tab.fee = 0;
+        FileIn.readSnapshotChain(base, List.of(d1, d2), CLASSES);
+
+        assertEquals(5, Tab.tabs.size());
+        assertEquals(7.0, find("t1").total);
+        assertNull(find("t2"));
+        assertEquals(9.0, find("t9").total);
+        assertEquals(2.0, Tab.fee);
+
+        // the restored state is the new starting point for tracking
+        Tab t1 = find("t1");
+        t1.add(1);
+        Path d3 = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+        String json = Files.readString(d3);
+        assertTrue(json.contains("\"@id\":" + ObjectIds.peek(t1)));
+        assertFalse(json.contains("\"owner\":\"t0\""));
+    }
+
+    @Test
+    void readDelta_updatesExistingObjectsInPlace() throws Exception {
+        Tab t = new Tab("x", 1);
+        FileOut.writeBaseSnapshot(tmp, "store", CLASSES);
+        t.add(2);
+        Path delta = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+
+        t.total = 100;
+        FileIn.readDelta(delta, CLASSES);
+
+        assertSame(t, find("x"));
+        assertEquals(1, Tab.tabs.size());
+        assertEquals(3.0, t.total);
+    }
+
+    @Test
+    void readSnapshotChain_acceptsBinaryBase() throws Exception {
+        new Tab("a", 1);
+        new Tab("b", 2);
+        Path base = FileOut.writeBaseSnapshot(tmp, "store", CLASSES, SnapshotFormats.BINARY);
+        find("b").add(3);
+        Path delta = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+
+        Tab.tabs.clear();
+        ObjectIds.clear();
+        FileIn.readSnapshotChain(base, List.of(delta), CLASSES);
+
+        assertEquals(2, Tab.tabs.size());
+        assertEquals(5.0, find("b").total);
+    }
+
+    @Test
+    void readSnapshotChain_rejectsDeltasOutOfOrder() throws Exception {
+        new Tab("a", 1);
+        Path base = FileOut.writeBaseSnapshot(tmp, "store", CLASSES);
+        find("a").add(1);
+        Path d1 = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+        find("a").add(1);
+        Path d2 = FileOut.writeDeltaSnapshot(tmp, "store", CLASSES);
+
+        Tab.tabs.clear();
+        ObjectIds.clear();
+        assertThrows(java.io.IOException.class,
+                () -> FileIn.readSnapshotChain(base, List.of(d2, d1), CLASSES));
+    }
+
+    @Test
+    void writeDeltaSnapshot_requiresBase() {
+        assertThrows(IllegalStateException.class, () -> FileOut.writeDeltaSnapshot(tmp, "store", CLASSES));
+    }
+
+    @Test
+    void modelMutators_markObjectsDirty() throws Exception {
+        Drink.drinks.clear();
+        Drink kept = new Drink("Kept", 5.0, "none");
+        Drink changed = new Drink("Changed", 6.0, "none");
+        List<Class<?>> drinks = List.of(Drink.class);
+        FileOut.writeBaseSnapshot(tmp, "drinks", drinks);
+
+        changed.setBasePrice(7.5);
+        String json = Files.readString(FileOut.writeDeltaSnapshot(tmp, "drinks", drinks));
+
+        assertTrue(json.contains("\"name\":\"Changed\""));
+        assertFalse(json.contains("\"name\":\"Kept\""));
+        assertNotEquals(0, ObjectIds.peek(kept));
+        Drink.drinks.clear();
+    }
+}
@@ -128,6 +128,30 @@ public class FileInTests {
         assertEquals(2, ListGuardModel.registry.size(), "Static should not overwrite @ObjectList");
     }
 
+    @Test
+    void badStaticValue_isReported_andTheRestStillLoads() throws Exception {
+        assumeTrue(ctorParamNamesPresent(DemoModel.class),
+                "Compile tests with -parameters so constructor parameter names are available");
+
+        String json = """
+            { "models": {
+                "%s": {
+                  "static": { "factor": "not a number" },
+                  "objects": [ { "base": "B1", "name": "Alice", "count": 2 } ]
+                },
+                "%s": { "static": { "info": "updated" }, "objects": [] }
+            } }
+            """.formatted(DemoModel.class.getName(), ListGuardModel.class.getName());
+
+        Path in = tmp.resolve("badstatic.json");
+        Files.writeString(in, json, StandardCharsets.UTF_8);
+        assertDoesNotThrow(() -> FileIn.readJson(in, List.of(DemoModel.class, ListGuardModel.class)));
+
+        assertEquals(1.0, DemoModel.factor, 1e-9);
+        assertEquals(1, DemoModel.registry.size());
+        assertEquals("updated", ListGuardModel.info);
+    }
+
     @Test
     void skipsUnknownClasses_andContinues() throws Exception {
         assumeTrue(ctorParamNamesPresent(DemoModel.class),
@@ -232,4 +256,92 @@ public class FileInTests {
         assertDoesNotThrow(() -> FileIn.readJson(p2, List.of(DemoModel.class)));
         assertEquals(0, DemoModel.registry.size());
     }
+
+    @Test
+    void streamsObjects_withEscapes_unicode_andUnknownNestedKeys() throws Exception {
+        assumeTrue(ctorParamNamesPresent(DemoModel.class),
+                "Compile tests with -parameters so constructor parameter names are available");
+
+        String json = """
+            {
+              "meta": { "written": [1, 2.5e3, true, null, {"x": "y"}] },
+              "models": {
+                "%s": {
+                  "extra": [ { "a": [ [], {} ] } ],
+                  "objects": [
+                    { "base": "B\\u00e9", "name": "Zo\\u00eb \\"Q\\" \\ud83d\\ude00", "count": 7, "ignored": {"deep": [1]} },
+                    "not an object",
+                    { "base": "\u017c\u00f3\u0142w", "name": "Plain", "count": -3 }
+                  ],
+                  "static": { "factor": 6.25E-1 }
+                }
+              }
+            }
+            """.formatted(DemoModel.class.getName());
+
+        Path in = tmp.resolve("stream.json");
+        Files.writeString(in, json, StandardCharsets.UTF_8);
+        FileIn.readJson(in, List.of(DemoModel.class));
+
+        assertEquals(2, DemoModel.registry.size());
+        assertEquals("B\u00e9", DemoModel.registry.get(0).base);
+        assertEquals("Zo\u00eb \"Q\" \ud83d\ude00", DemoModel.registry.get(0).name);
+        assertEquals(7, DemoModel.registry.get(0).count);
+        assertEquals("\u017c\u00f3\u0142w", DemoModel.registry.get(1).base);
+        assertEquals(-3, DemoModel.registry.get(1).count);
+        assertEquals(0.625, DemoModel.factor, 1e-9);
+    }
+
+    @Test
+    void readJsonMapped_restoresSameObjectsAsReadJson() throws Exception {
+        assumeTrue(ctorParamNamesPresent(DemoModel.class),
+                "Compile tests with -parameters so constructor parameter names are available");
+
+        String json = """
+            { "models": { "%s": {
+                "static": { "factor": 9.0 },
+                "objects": [ { "base": "M1", "name": "Mapped", "count": 11 } ]
+            } } }
+            """.formatted(DemoModel.class.getName());
+
+        Path in = tmp.resolve("mapped.json");
+        Files.writeString(in, json, StandardCharsets.UTF_8);
+        FileIn.readJsonMapped(in, List.of(DemoModel.class));
+
+        assertEquals(1, DemoModel.registry.size());
+        assertEquals("Mapped", DemoModel.registry.get(0).name);
+        assertEquals(11, DemoModel.registry.get(0).count);
+        assertEquals(9.0, DemoModel.factor, 1e-9);
+    }
+
+    @Test
+    void readJsonParallel_restoresEveryBlock_andSkipsUnknownOnes() throws Exception {
+        assumeTrue(ctorParamNamesPresent(DemoModel.class),
+                "Compile tests with -parameters so constructor parameter names are available");
+
+        StringBuilder objects = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) objects.append(",\n");
+            objects.append("{ \"base\": \"B\", \"name\": \"N").append(i).append("\", \"count\": ").append(i).append(" }");
+        }
+        String json = """
+            { "models": {
+                "x.y.z.MissingClass": { "objects": [ { "a": 1 } ] },
+                "%s": { "static": { "factor": 7.5 }, "objects": [ %s ] },
+                "%s": { "static": { "info": "parallel" }, "objects": [ { }, { } ] }
+            } }
+            """.formatted(DemoModel.class.getName(), objects, ListGuardModel.class.getName());
+
+        Path in = tmp.resolve("parallel.json");
+        Files.writeString(in, json, StandardCharsets.UTF_8);
+        FileIn.readJsonParallel(in, List.of(DemoModel.class, ListGuardModel.class));
+
+        assertEquals(200, DemoModel.registry.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("N" + i, DemoModel.registry.get(i).name, "Objects of a class keep file order");
+        }
+        assertEquals(7.5, DemoModel.factor, 1e-9);
+        assertEquals(2, ListGuardModel.registry.size());
+        assertEquals("parallel", ListGuardModel.info);
+    }
 }
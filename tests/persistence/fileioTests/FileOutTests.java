@@ -2,12 +2,17 @@ package persistence.fileioTests;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonSerializable;
+import persistence.JsonSerializer;
+import persistence.ObjectList;
 import persistence.SerializeException;
 import persistence.fileio.FileOut;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -15,6 +20,26 @@ public class FileOutTests {
     @TempDir
     Path tempDir;
 
+    @JsonSerializable
+    static class StreamModel {
+        @ObjectList
+        public static List<StreamModel> registry = new ArrayList<>();
+        String label;
+        int n;
+
+        StreamModel(String label, int n) {
+            this.label = label;
+            this.n = n;
+            registry.add(this);
+        }
+    }
+
+    @JsonSerializable
+    static class BrokenModel {
+        @ObjectList
+        public static List<Object> registry = new ArrayList<>();
+    }
+
     @Test
     void writesJson_createsDirectory_andReturnsPath() throws Exception {
         Path targetDir = tempDir.resolve("exports/sub");
@@ -82,4 +107,29 @@ public class FileOutTests {
                 () -> FileOut.writeJson(fileWhereDirShouldBe, "data", "{}"));
         assertNotNull(ex.getMessage());
     }
+
+    @Test
+    void writeSnapshot_streamsSameContentAsSerializeObjects() throws Exception {
+        StreamModel.registry.clear();
+        for (int i = 0; i < 500; i++) new StreamModel("item \"" + i + "\"", i);
+
+        Path written = FileOut.writeSnapshot(tempDir.resolve("snap"), "store", List.of(StreamModel.class));
+        assertEquals(tempDir.resolve("snap").resolve("store.json"), written);
+
+        String expected = JsonSerializer.serializeObjects(List.of(StreamModel.class));
+        assertEquals(expected, Files.readString(written, StandardCharsets.UTF_8));
+        StreamModel.registry.clear();
+    }
+
+    @Test
+    void writeSnapshot_removesPartialFile_whenSerializationFails() {
+        BrokenModel.registry.clear();
+        BrokenModel.registry.add(new Object()); // not @JsonSerializable
+
+        Path targetDir = tempDir.resolve("broken");
+        assertThrows(SerializeException.class,
+                () -> FileOut.writeSnapshot(targetDir, "store", List.of(BrokenModel.class)));
+        assertFalse(Files.exists(targetDir.resolve("store.json")), "Truncated snapshot must not be left behind");
+        BrokenModel.registry.clear();
+    }
 }
@@ -0,0 +1,156 @@
+package persistence.fileioTests;
+
+import models.*;
+import models.aspects.HotDrink;
+import models.aspects.SugarSweetened;
+import models.utils.Address;
+import models.utils.Drink_Size;
+import models.utils.EmployeeType;
+import models.utils.OrderQualifier;
+import modelsTests.utilTests.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.ObjectIds;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotFormat;
+import persistence.fileio.SnapshotFormats;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphSnapshotTests {
+
+    //dependents first, so restoring has to wait for references instead of finding them ready
+    private static final List<Class<?>> CLASSES = List.of(Order_Drink.class, Shop.class, OrderQualifier.class,
+            Order.class, Employee.class, Drink.class, Stock.class, Facility.class);
+
+    //counts how often a snapshot made one
+    static class Intruder {
+        static int built;
+
+        Intruder() {
+            built++;
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    @AfterEach
+    void reset() {
+        TestUtils.resetObjectLists(CLASSES.toArray(new Class<?>[0]));
+        ObjectIds.clear();
+    }
+
+    private static double buildGraph() {
+        Facility facility = new Facility(new Address("Warsaw", "Koszykowa", "86", 2008));
+        Shop shop = new Shop(facility, LocalDateTime.now().minusDays(2));
+        Drink latte = new Drink("Latte", 10.0, "milk");
+        Employee anna = new Employee("Anna", "Nowak", "anna@corp", "99010112345", null);
+        anna.becomeCashier(true, "C1", 4.0);
+        LocalDateTime time = LocalDateTime.now().minusMinutes(5);
+        Order order = new Order(7L, time, 2.0);
+        order.addDrink(latte, new HotDrink(), Set.of(new SugarSweetened()), Drink_Size.BIG, List.of("foam"));
+        order.addCashier(anna);
+        shop.addOrder(time, anna, order);
+        return order.getTotalPrice();
+    }
+
+    private void assertRoundTrip(SnapshotFormat format) throws Exception {
+        double total = buildGraph();
+        Path file = FileOut.writeSnapshot(tmp, "graph", CLASSES, format);
+        reset();
+
+        FileIn.readSnapshot(file, CLASSES);
+
+        assertEquals(1, Facility.facilities.size());
+        Facility facility = Facility.facilities.get(0);
+        assertNotNull(facility.getAddress());
+        assertEquals(1, Stock.stocks.size(), "the Stock the Facility constructor made is replaced by the saved one");
+        assertSame(Stock.stocks.get(0), facility.getStock());
+        assertSame(facility, facility.getStock().getFacility());
+        assertSame(Shop.shops.get(0), facility.getShop().orElseThrow());
+
+        Order order = Order.orders.get(0);
+        assertEquals(total, order.getTotalPrice(), 1e-9);
+        Order_Drink line = order.getDrinks().get(0);
+        assertSame(Order_Drink.order_Drinks.get(0), line);
+        assertSame(order, line.getOrder());
+        assertSame(Drink.drinks.get(0), line.getDrink());
+
+        Employee anna = Employee.employees.get(0);
+        assertEquals(EmployeeType.CASHIER, anna.getType());
+        assertSame(anna, OrderQualifier.orderQualifiers.get(0).getCashier());
+    }
+
+    @Test
+    void jsonSnapshot_restoresAssociationsByReference() throws Exception {
+        assertRoundTrip(SnapshotFormats.JSON);
+    }
+
+    @Test
+    void binarySnapshot_restoresAssociationsByReference() throws Exception {
+        assertRoundTrip(SnapshotFormats.BINARY);
+    }
+
+    @Test
+    void associationsAreWrittenAsReferences() throws Exception {
+        buildGraph();
+        String json = Files.readString(FileOut.writeSnapshot(tmp, "graph", CLASSES));
+
+        long drinkId = ObjectIds.peek(Drink.drinks.get(0));
+        assertTrue(json.contains("\"drink\":{\"@ref\":" + drinkId + "}"), json);
+        assertTrue(json.contains("\"@type\":\"models.utils.Address\""), json);
+        assertTrue(json.contains("\"size\":\"BIG\""), json);
+        assertFalse(json.contains("models.Drink@"), "no identity toString left in the snapshot");
+    }
+
+    @Test
+    void embeddedType_mustFitTheDeclaredType() throws Exception {
+        List<Class<?>> classes = List.of(Stock.class, Facility.class);
+        Facility facility = new Facility(new Address("Warsaw", "Koszykowa", "86", 2008));
+        Path file = FileOut.writeSnapshot(tmp, "embedded", classes);
+        String json = Files.readString(file);
+        Files.writeString(file, json.replace("\"models.utils.Address\"", "\"" + Intruder.class.getName() + "\""));
+        reset();
+
+        FileIn.readSnapshot(file, classes);
+
+        assertTrue(Facility.facilities.isEmpty());
+        assertEquals(0, Intruder.built, "an Intruder is no Address, so none is constructed");
+        Facility.SHIFTS.forget(facility);
+    }
+
+    @Test
+    void restoredAssociations_areCheckedAgainstTheirMultiplicities() throws Exception {
+        List<Class<?>> classes = List.of(Shift.class, Stock.class, Facility.class);
+        TestUtils.resetObjectLists(Shift.class);
+        Facility staffed = new Facility(new Address("Warsaw", "Koszykowa", "86", 2008));
+        Facility empty = new Facility(new Address("Warsaw", "Nowy Swiat", "1", 2009));
+        staffed.addShift(new Shift(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1)));
+        Path file = FileOut.writeSnapshot(tmp, "shifts", classes);
+        TestUtils.resetObjectLists(Shift.class);
+        reset();
+
+        FileIn.readSnapshot(file, classes);
+
+        assertEquals(2, Facility.facilities.size());
+        Facility restoredStaffed = Facility.facilities.get(0), restoredEmpty = Facility.facilities.get(1);
+        assertEquals(1, restoredStaffed.getShifts().size());
+        assertFalse(Facility.SHIFTS.isViolated(restoredStaffed));
+        assertFalse(Shift.FACILITIES.isViolated(Shift.shifts.get(0)));
+        assertTrue(Facility.SHIFTS.isViolated(restoredEmpty));
+        Facility.SHIFTS.forget(restoredEmpty);
+        Facility.SHIFTS.forget(empty);
+        TestUtils.resetObjectLists(Shift.class);
+    }
+}
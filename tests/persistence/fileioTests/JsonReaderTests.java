@@ -0,0 +1,129 @@
+package persistence.fileio; // tests package-private classes, so it keeps their package
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonReaderTests {
+
+    private static final String DOC =
+            "{\"a\": [1, -2, 3000000000, 2.5, true, false, null],\n" +
+            " \"s\": \"\\u017c\u00f3\u0142w \\\"q\\\" \\n\",\n" +
+            " \"o\": {\"k\": {}, \"l\": []}}";
+
+    @TempDir
+    Path tmp;
+
+    private static void assertDoc(JsonReader reader) throws Exception {
+        Object value = reader.readValue();
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+        Map<?, ?> root = (Map<?, ?>) value;
+        assertEquals(List.of(1, -2, 3000000000L, 2.5, true, false), ((List<?>) root.get("a")).subList(0, 6));
+        assertNull(((List<?>) root.get("a")).get(6));
+        assertEquals("\u017c\u00f3\u0142w \"q\" \n", root.get("s"));
+        assertEquals(Map.of("k", Map.of(), "l", List.of()), root.get("o"));
+    }
+
+    @Test
+    void readsFromStream() throws Exception {
+        byte[] bytes = DOC.getBytes(StandardCharsets.UTF_8);
+        try (JsonReader reader = new JsonReader(JsonReader.streamSource(new ByteArrayInputStream(bytes)))) {
+            assertDoc(reader);
+        }
+    }
+
+    @Test
+    void readsFromMappedSegments_whenTokensStraddleSegmentBoundaries() throws Exception {
+        Path file = tmp.resolve("doc.json");
+        Files.writeString(file, DOC, StandardCharsets.UTF_8);
+        for (int segment : new int[]{1, 3, 7, 1 << 20}) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try (JsonReader reader = new JsonReader(JsonReader.mappedSource(channel, 0, channel.size(), segment))) {
+                assertDoc(reader);
+            }
+        }
+    }
+
+    @Test
+    void skipValue_skipsNestedStructures_andTracksPosition() throws Exception {
+        byte[] bytes = "[{\"x\":[1,{\"y\":\"]\"}]}, 42]".getBytes(StandardCharsets.UTF_8);
+        try (JsonReader reader = new JsonReader(JsonReader.streamSource(new ByteArrayInputStream(bytes)))) {
+            reader.beginArray();
+            reader.skipValue();
+            assertEquals(42, reader.nextNumber());
+            reader.endArray();
+            assertEquals(bytes.length, reader.position());
+        }
+    }
+
+    @Test
+    void malformedInput_throws() {
+        byte[] bytes = "{\"a\" 1}".getBytes(StandardCharsets.UTF_8);
+        JsonReader reader = new JsonReader(JsonReader.streamSource(new ByteArrayInputStream(bytes)));
+        assertThrows(RuntimeException.class, reader::readValue);
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(JsonReader.streamSource(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void typedNumbers_matchNextNumber() throws Exception {
+        String[] tokens = {"0", "-0", "7", "-12", "2147483648", "9223372036854775807", "-9223372036854775808",
+                "0.1", "-0.0", "2.5", "1e3", "1E-7", "123456789012345.6", "1234567890123456789.5", "4.9e-324",
+                "1.7976931348623157e308", "3.14159265358979323846", "0.000001", "22e22", "1e23", "-7.25e-3"};
+        for (String t : tokens) {
+            Number expected;
+            try (JsonReader r = reader(t)) {
+                expected = r.nextNumber();
+            }
+            try (JsonReader r = reader(t)) {
+                assertEquals(expected.longValue(), r.nextLong(), t);
+            }
+            try (JsonReader r = reader(t)) {
+                assertEquals(expected.intValue(), r.nextInt(), t);
+            }
+            try (JsonReader r = reader(t)) {
+                assertEquals(Double.doubleToRawLongBits(expected.doubleValue()), Double.doubleToRawLongBits(r.nextDouble()), t);
+            }
+            try (JsonReader r = reader(t)) {
+                assertEquals(expected.floatValue(), r.nextFloat(), t);
+            }
+        }
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 2000; i++) {
+            String t = Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 15));
+            try (JsonReader r = reader(t)) {
+                assertEquals(Double.parseDouble(t), r.nextDouble(), t);
+            }
+        }
+        assertThrows(RuntimeException.class, () -> reader("9223372036854775808").nextLong());
+        assertThrows(RuntimeException.class, () -> reader("-9223372036854775809").nextNumber());
+    }
+
+    @Test
+    void nextName_matchesCandidateBytes() throws Exception {
+        byte[][] keys = {"id".getBytes(StandardCharsets.UTF_8), "\u017c\u00f3\u0142w".getBytes(StandardCharsets.UTF_8)};
+        try (JsonReader r = reader("{\"\\u017c\u00f3\u0142w\":1,\"idx\":2,\"id\":3}")) {
+            r.beginObject();
+            assertEquals(1, r.nextName(keys));
+            r.skipValue();
+            assertEquals(-1, r.nextName(keys));
+            assertEquals("idx", r.lastName());
+            r.skipValue();
+            assertEquals(0, r.nextName(keys));
+            assertEquals(3, r.nextLong());
+            r.endObject();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package persistence.fileio; // tests package-private classes, so it keeps their package
+
+import org.junit.jupiter.api.Test;
+import persistence.JsonCtor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectDecoderTests {
+
+    static class Line {
+        final long id;
+        final int quantity;
+        final double price;
+        final float weight;
+        final boolean paid;
+        final String note;
+        final LocalDate day;
+        String extra;
+
+        @JsonCtor
+        Line(long id, int quantity, double price, float weight, boolean paid, String note, LocalDate day) {
+            this.id = id;
+            this.quantity = quantity;
+            this.price = price;
+            this.weight = weight;
+            this.paid = paid;
+            this.note = note;
+            this.day = day;
+        }
+    }
+
+    private static ObjectDecoder.Decoded decode(String json) throws Exception {
+        try (JsonReader reader = new JsonReader(JsonReader.streamSource(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))))) {
+            return ObjectDecoder.of(Line.class).read(reader);
+        }
+    }
+
+    @Test
+    void read_decodesArgumentsByType_andKeepsTheRest() throws Exception {
+        ObjectDecoder.Decoded d = decode("{\"@id\":12,\"note\":\"n\\\"1\",\"price\":2.5,\"quantity\":3,"
+                + "\"id\":9000000000,\"weight\":1,\"paid\":true,\"day\":\"2024-05-01\",\"extra\":[1,{\"@ref\":4}]}");
+
+        assertEquals(12, d.id);
+        assertArrayEquals(new boolean[]{true, true, true, true, true, true, false}, d.converted);
+        Object[] args = d.arguments(CtorBinding.of(Line.class));
+        assertEquals(List.of(9000000000L, 3, 2.5, 1.0f, true, "n\"1", LocalDate.of(2024, 5, 1)), List.of(args));
+        assertEquals(Map.of("extra", List.of(1, Map.of("@ref", 4))), d.rest());
+        assertFalse(d.hasDanglingRef(), "only constructor arguments can keep an object waiting");
+    }
+
+    @Test
+    void read_convertsLikeTheMapPath() throws Exception {
+        String json = "{\"id\":\"17\",\"quantity\":2.9,\"price\":4,\"weight\":null,\"paid\":1,\"note\":5}";
+        ObjectDecoder.Decoded d = decode(json);
+        CtorBinding binding = CtorBinding.of(Line.class);
+
+        Map<String, Object> map;
+        try (JsonReader reader = new JsonReader(JsonReader.streamSource(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))))) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> m = (Map<String, Object>) reader.readValue();
+            map = m;
+        }
+        assertEquals(map.keySet(), d.toMap(binding).keySet());
+        IllegalArgumentException typed = assertThrows(IllegalArgumentException.class, () -> d.arguments(binding));
+        IllegalArgumentException old = assertThrows(IllegalArgumentException.class, () -> binding.construct(map));
+        assertEquals(old.getMessage(), typed.getMessage());
+        IllegalArgumentException viaToMap = assertThrows(IllegalArgumentException.class, () -> binding.construct(d.toMap(binding)));
+        assertEquals(old.getMessage(), viaToMap.getMessage());
+
+        map.put("weight", 0.5);
+        ObjectDecoder.Decoded fixed = decode(json.replace("null", "0.5"));
+        Line viaMap = (Line) binding.construct(map);
+        Line viaSlots = (Line) binding.invoke(fixed.arguments(binding));
+        assertEquals(List.of(viaMap.id, viaMap.quantity, viaMap.price, viaMap.weight, viaMap.paid, viaMap.note),
+                List.of(viaSlots.id, viaSlots.quantity, viaSlots.price, viaSlots.weight, viaSlots.paid, viaSlots.note));
+    }
+}
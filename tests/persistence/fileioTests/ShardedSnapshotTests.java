@@ -0,0 +1,138 @@
+package persistence.fileioTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.Compression;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.ShardedSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedSnapshotTests {
+
+    @JsonSerializable
+    static class Product {
+        @ObjectList
+        public static List<Product> products = new ArrayList<>();
+
+        String name;
+
+        @JsonCtor
+        public Product(String name) {
+            this.name = name;
+            products.add(this);
+        }
+    }
+
+    @JsonSerializable
+    static class Receipt {
+        @ObjectList
+        public static List<Receipt> receipts = new ArrayList<>();
+        static String currency = "PLN";
+
+        int number;
+        Product product;
+
+        @JsonCtor
+        public Receipt(int number, Product product) {
+            this.number = number;
+            this.product = product;
+            receipts.add(this);
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    // Receipt first: its shards still have to wait for the Product shard
+    private static final List<Class<?>> CLASSES = List.of(Receipt.class, Product.class);
+
+    @BeforeEach
+    void reset() {
+        Product.products.clear();
+        Receipt.receipts.clear();
+        Receipt.currency = "PLN";
+        ObjectIds.clear();
+    }
+
+    private void sample(int receipts) {
+        Product tea = new Product("Tea");
+        Product cake = new Product("Cake");
+        for (int i = 0; i < receipts; i++) new Receipt(i, i % 3 == 0 ? cake : tea);
+        Receipt.currency = "EUR";
+    }
+
+    @Test
+    void writeSharded_cutsBigRegistries_andReadsBackEveryObjectInOrder() throws Exception {
+        sample(2500);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Path dir;
+        try {
+            dir = FileOut.writeSharded(tmp, "store", CLASSES, 1000, Compression.NONE, pool);
+        } finally {
+            pool.shutdown();
+        }
+        reset();
+
+        assertEquals("store.shards", dir.getFileName().toString());
+        ShardedSnapshot snapshot = ShardedSnapshot.read(dir);
+        assertEquals(List.of(1000L, 1000L, 500L, 2L), snapshot.shards().stream().map(ShardedSnapshot.Shard::objects).toList());
+        assertEquals(2502, snapshot.objectCount());
+        for (ShardedSnapshot.Shard s : snapshot.shards()) assertTrue(Files.exists(s.file()), s.file().toString());
+        assertFalse(Files.readString(snapshot.shards().get(1).file()).contains("\"static\""));
+
+        FileIn.readSharded(dir, CLASSES);
+
+        assertEquals(2, Product.products.size());
+        assertEquals(2500, Receipt.receipts.size());
+        for (int i = 0; i < 2500; i++) {
+            Receipt r = Receipt.receipts.get(i);
+            assertEquals(i, r.number);
+            assertSame(Product.products.get(i % 3 == 0 ? 1 : 0), r.product);
+        }
+        assertEquals("EUR", Receipt.currency);
+    }
+
+    @Test
+    void writeSharded_compressesShards_andKeepsEarlierSnapshots() throws Exception {
+        sample(10);
+        Path first = FileOut.writeSharded(tmp, "store.gz", CLASSES);
+        Path second = FileOut.writeSharded(tmp, "store.gz", CLASSES);
+        reset();
+
+        assertEquals("store.shards", first.getFileName().toString());
+        assertNotEquals(first, second);
+        ShardedSnapshot snapshot = ShardedSnapshot.read(second);
+        assertTrue(snapshot.shards().get(0).file().getFileName().toString().endsWith(".json.gz"));
+        try (var files = Files.list(tmp)) {
+            assertEquals(2, files.count()); // no temporary directory left behind
+        }
+
+        FileIn.readSharded(second, CLASSES);
+        assertEquals(10, Receipt.receipts.size());
+        assertEquals("Cake", Receipt.receipts.get(9).product.name);
+    }
+
+    @Test
+    void readSharded_rejectsDirectoryWithoutManifest() throws Exception {
+        Files.createDirectories(tmp.resolve("empty.shards"));
+        assertThrows(NoSuchFileException.class, () -> FileIn.readSharded(tmp.resolve("empty.shards"), CLASSES));
+        Files.writeString(tmp.resolve("empty.shards").resolve(ShardedSnapshot.MANIFEST), "nope\n");
+        assertThrows(IOException.class, () -> FileIn.readSharded(tmp.resolve("empty.shards"), CLASSES));
+    }
+}
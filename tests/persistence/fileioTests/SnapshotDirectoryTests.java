@@ -0,0 +1,147 @@
+package persistence.fileioTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.Compression;
+import persistence.fileio.FileIn;
+import persistence.fileio.SnapshotDirectory;
+import persistence.fileio.SnapshotFormats;
+import persistence.fileio.SnapshotIndex;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotDirectoryTests {
+
+    @JsonSerializable
+    static class Counter {
+        @ObjectList
+        public static List<Counter> counters = new ArrayList<>();
+
+        int value;
+
+        @JsonCtor
+        Counter(int value) {
+            this.value = value;
+            counters.add(this);
+        }
+    }
+
+    //a clock the test moves forward by hand
+    private static final class ManualClock extends Clock {
+        Instant now = Instant.parse("2024-05-01T10:00:00Z");
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private static final List<Class<?>> CLASSES = List.of(Counter.class);
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    void reset() {
+        Counter.counters.clear();
+        ObjectIds.clear();
+    }
+
+    @Test
+    void write_numbersSnapshotsAndKeepsTheLastN() throws Exception {
+        SnapshotDirectory snapshots = SnapshotDirectory.open(tmp, "shop", SnapshotDirectory.Retention.keepLast(3));
+        new Counter(0);
+        for (int i = 1; i <= 5; i++) {
+            Counter.counters.get(0).value = i;
+            snapshots.write(CLASSES);
+        }
+
+        List<SnapshotDirectory.Entry> entries = snapshots.entries();
+        assertEquals(List.of(3L, 4L, 5L), entries.stream().map(SnapshotDirectory.Entry::sequence).toList());
+        assertEquals("shop-000000000005.json", entries.get(2).file().getFileName().toString());
+        assertFalse(Files.exists(tmp.resolve("shop-000000000002.json")));
+        assertFalse(Files.exists(SnapshotIndex.pathFor(tmp.resolve("shop-000000000002.json"))));
+        assertEquals(Files.size(entries.get(2).file()), entries.get(2).bytes());
+
+        reset();
+        assertEquals(entries.get(2).file(), FileIn.readLatest(snapshots, CLASSES));
+        assertEquals(5, Counter.counters.get(0).value);
+    }
+
+    @Test
+    void open_continuesFromTheManifest_andRebuildsItWhenLost() throws Exception {
+        SnapshotDirectory first = SnapshotDirectory.open(tmp, "shop");
+        new Counter(1);
+        first.write(CLASSES);
+        first.write(CLASSES, SnapshotFormats.BINARY, Compression.GZIP);
+
+        SnapshotDirectory reopened = SnapshotDirectory.open(tmp, "shop");
+        assertEquals(first.entries(), reopened.entries());
+        assertEquals(3, reopened.write(CLASSES).sequence());
+
+        Files.delete(tmp.resolve("shop." + SnapshotDirectory.MANIFEST_EXTENSION));
+        SnapshotDirectory rebuilt = SnapshotDirectory.open(tmp, "shop");
+        assertEquals(List.of(1L, 2L, 3L), rebuilt.entries().stream().map(SnapshotDirectory.Entry::sequence).toList());
+        assertEquals("shop-000000000002." + SnapshotFormats.BINARY.extension() + ".gz", rebuilt.entries().get(1).file().getFileName().toString());
+        assertEquals(4, rebuilt.write(CLASSES).sequence());
+        assertTrue(Files.exists(tmp.resolve("shop." + SnapshotDirectory.MANIFEST_EXTENSION)));
+    }
+
+    @Test
+    void retention_dropsSnapshotsOlderThanMaxAge_butNeverTheLatest() throws Exception {
+        ManualClock clock = new ManualClock();
+        SnapshotDirectory snapshots = SnapshotDirectory.open(tmp, "shop",
+                SnapshotDirectory.Retention.maxAge(Duration.ofHours(1)), clock);
+        new Counter(1);
+        snapshots.write(CLASSES);
+        clock.now = clock.now.plus(Duration.ofMinutes(30));
+        snapshots.write(CLASSES);
+        clock.now = clock.now.plus(Duration.ofMinutes(45));
+        snapshots.write(CLASSES);
+
+        assertEquals(List.of(2L, 3L), snapshots.entries().stream().map(SnapshotDirectory.Entry::sequence).toList());
+
+        clock.now = clock.now.plus(Duration.ofDays(1));
+        snapshots = SnapshotDirectory.open(tmp, "shop", SnapshotDirectory.Retention.maxAge(Duration.ofHours(1)), clock);
+        assertEquals(3, snapshots.latest().orElseThrow().sequence(), "retention only runs after a write");
+        snapshots.write(CLASSES);
+        assertEquals(List.of(4L), snapshots.entries().stream().map(SnapshotDirectory.Entry::sequence).toList());
+    }
+
+    @Test
+    void readLatest_skipsMissingFiles() throws Exception {
+        SnapshotDirectory snapshots = SnapshotDirectory.open(tmp, "shop");
+        assertNull(FileIn.readLatest(snapshots, CLASSES));
+
+        new Counter(1);
+        Path older = snapshots.write(CLASSES).file();
+        Counter.counters.get(0).value = 2;
+        Files.delete(snapshots.write(CLASSES).file());
+
+        reset();
+        assertEquals(older, FileIn.readLatest(snapshots, CLASSES));
+        assertEquals(1, Counter.counters.get(0).value);
+    }
+}
@@ -0,0 +1,196 @@
+package persistence.fileioTests;
+
+import models.utils.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectList;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotFormat;
+import persistence.fileio.SnapshotFormats;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SnapshotFormatTests {
+
+    @JsonSerializable
+    static class Parcel {
+        @ObjectList
+        public static List<Parcel> parcels = new ArrayList<>();
+        static double rate = 1.0;
+
+        long parcelId;
+        LocalDateTime sentAt;
+        Status status;
+        String city;
+        double weight;
+
+        @JsonCtor
+        public Parcel(long parcelId, LocalDateTime sentAt, Status status, String city, double weight) {
+            this.parcelId = parcelId;
+            this.sentAt = sentAt;
+            this.status = status;
+            this.city = city;
+            this.weight = weight;
+            parcels.add(this);
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    void reset() {
+        Parcel.parcels.clear();
+        Parcel.rate = 1.0;
+    }
+
+    private static boolean ctorParamNamesPresent(Class<?> cls) {
+        for (Constructor<?> c : cls.getDeclaredConstructors()) {
+            if (c.isAnnotationPresent(JsonCtor.class)) {
+                for (Parameter p : c.getParameters()) {
+                    if (!p.isNamePresent()) return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void fill() {
+        LocalDateTime base = LocalDateTime.of(2024, 3, 1, 8, 30, 15, 123_000_000);
+        for (int i = 0; i < 1000; i++) {
+            new Parcel(1_000_000L + i, base.plusMinutes(i), Status.values()[i % 4],
+                    i % 2 == 0 ? "Warszawa" : "Kraków \"Old Town\"", i * 0.25);
+        }
+        Parcel.rate = 4.75;
+    }
+
+    @Test
+    void binaryRoundTrip_restoresAllValues_andIsDetectedByHeader() throws Exception {
+        assumeTrue(ctorParamNamesPresent(Parcel.class),
+                "Compile tests with -parameters so constructor parameter names are available");
+        fill();
+        List<Parcel> before = new ArrayList<>(Parcel.parcels);
+
+        Path written = FileOut.writeSnapshot(tmp, "store", List.of(Parcel.class), SnapshotFormats.BINARY);
+        assertEquals(tmp.resolve("store.bsnap"), written);
+
+        Parcel.parcels.clear();
+        Parcel.rate = 0;
+        SnapshotFormat detected = FileIn.readSnapshot(written, List.of(Parcel.class));
+
+        assertSame(SnapshotFormats.BINARY, detected);
+        assertEquals(4.75, Parcel.rate, 1e-9);
+        assertEquals(before.size(), Parcel.parcels.size());
+        for (int i = 0; i < before.size(); i++) {
+            Parcel a = before.get(i), b = Parcel.parcels.get(i);
+            assertEquals(a.parcelId, b.parcelId);
+            assertEquals(a.sentAt, b.sentAt);
+            assertEquals(a.status, b.status);
+            assertEquals(a.city, b.city);
+            assertEquals(a.weight, b.weight, 0.0);
+        }
+    }
+
+    @Test
+    void binaryIsSmallerThanJson_forTheSameStore() throws Exception {
+        fill();
+        Path json = FileOut.writeSnapshot(tmp, "store", List.of(Parcel.class), SnapshotFormats.JSON);
+        Path bin = FileOut.writeSnapshot(tmp, "store", List.of(Parcel.class), SnapshotFormats.BINARY);
+        assertTrue(Files.size(bin) * 3 < Files.size(json),
+                "binary " + Files.size(bin) + " vs json " + Files.size(json));
+    }
+
+    @Test
+    void binaryRoundTrip_restoresStringsLongerThanTheReadBuffer() throws Exception {
+        String city = "Kraków ".repeat(40_000);
+        new Parcel(1L, LocalDateTime.of(2024, 3, 1, 8, 30), Status.PENDING, city, 1.0);
+        new Parcel(2L, LocalDateTime.of(2024, 3, 1, 8, 31), Status.ENROUTE, city, 2.0);
+        Path written = FileOut.writeSnapshot(tmp, "long", List.of(Parcel.class), SnapshotFormats.BINARY);
+        Parcel.parcels.clear();
+
+        FileIn.readSnapshot(written, List.of(Parcel.class));
+
+        assertEquals(2, Parcel.parcels.size());
+        assertEquals(city, Parcel.parcels.get(0).city);
+        assertEquals(city, Parcel.parcels.get(1).city);
+    }
+
+    //replaces the length head of the first "Warszawa" in a one-parcel binary snapshot
+    private Path withStringHead(int head) throws Exception {
+        new Parcel(1L, LocalDateTime.of(2024, 3, 1, 8, 30), Status.PENDING, "Warszawa", 1.0);
+        Path written = FileOut.writeSnapshot(tmp, "bad", List.of(Parcel.class), SnapshotFormats.BINARY);
+        Parcel.parcels.clear();
+        byte[] bytes = Files.readAllBytes(written);
+        byte[] text = "Warszawa".getBytes(StandardCharsets.UTF_8);
+        for (int i = 1; i + text.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + text.length, text, 0, text.length)) {
+                assertEquals(text.length << 1 | 1, bytes[i - 1]);
+                bytes[i - 1] = (byte) head;
+                Files.write(written, bytes);
+                return written;
+            }
+        }
+        throw new AssertionError("no Warszawa in the snapshot");
+    }
+
+    @Test
+    void binaryRead_rejectsStringTableIndexOutOfRange() throws Exception {
+        Path bad = withStringHead(126); // index 63 of a table with far fewer entries
+        IOException e = assertThrows(IOException.class, () -> FileIn.readSnapshot(bad, List.of(Parcel.class)));
+        assertTrue(e.getMessage().contains("String table index 63"), e.getMessage());
+    }
+
+    @Test
+    void binaryRead_rejectsStringLongerThanTheSnapshot() throws Exception {
+        Path bad = withStringHead(127); // 63 bytes, more than are left
+        assertThrows(EOFException.class, () -> FileIn.readSnapshot(bad, List.of(Parcel.class)));
+    }
+
+    @Test
+    void enumOrdinalOutOfRange_skipsTheObject() throws Exception {
+        new Parcel(1L, LocalDateTime.of(2024, 3, 1, 8, 30), Status.PENDING, "Warszawa", 1.0);
+        new Parcel(2L, LocalDateTime.of(2024, 3, 1, 8, 31), Status.ENROUTE, "Gdańsk", 2.0);
+        Path written = FileOut.writeSnapshot(tmp, "ordinals", List.of(Parcel.class), SnapshotFormats.JSON);
+        Parcel.parcels.clear();
+        String json = Files.readString(written);
+        Files.writeString(written, json.replace("\"ENROUTE\"", "7"));
+
+        FileIn.readSnapshot(written, List.of(Parcel.class));
+
+        assertEquals(List.of(1L), Parcel.parcels.stream().map(p -> p.parcelId).toList());
+    }
+
+    @Test
+    void readSnapshot_detectsJson() throws Exception {
+        Path in = tmp.resolve("in.json");
+        Files.writeString(in, "\n  { \"models\": { \"%s\": { \"static\": { \"rate\": 2.0 } } } }"
+                .formatted(Parcel.class.getName()));
+        assertSame(SnapshotFormats.JSON, FileIn.readSnapshot(in, List.of(Parcel.class)));
+        assertEquals(2.0, Parcel.rate, 1e-9);
+    }
+
+    @Test
+    void readSnapshot_rejectsUnknownHeader() throws Exception {
+        Path in = tmp.resolve("garbage.bin");
+        Files.write(in, new byte[]{1, 2, 3, 4, 5});
+        assertThrows(java.io.IOException.class, () -> FileIn.readSnapshot(in, List.of(Parcel.class)));
+    }
+}
@@ -0,0 +1,140 @@
+package persistence.fileioTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotIndexTests {
+
+    @JsonSerializable
+    static class MenuItem {
+        @ObjectList
+        public static List<MenuItem> items = new ArrayList<>();
+
+        String name;
+
+        @JsonCtor
+        public MenuItem(String name) {
+            this.name = name;
+            items.add(this);
+        }
+    }
+
+    @JsonSerializable
+    static class Sale {
+        @ObjectList
+        public static List<Sale> sales = new ArrayList<>();
+        static String currency = "PLN";
+
+        int number;
+
+        @JsonCtor
+        public Sale(int number) {
+            this.number = number;
+            sales.add(this);
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    private static final List<Class<?>> CLASSES = List.of(Sale.class, MenuItem.class);
+
+    @BeforeEach
+    void reset() {
+        MenuItem.items.clear();
+        Sale.sales.clear();
+        Sale.currency = "PLN";
+        ObjectIds.clear();
+    }
+
+    private Path writeSample(int sales) {
+        for (int i = 0; i < sales; i++) new Sale(i);
+        new MenuItem("Latte");
+        new MenuItem("Mocha");
+        Path file = FileOut.writeSnapshot(tmp, "store", CLASSES);
+        reset();
+        return file;
+    }
+
+    @Test
+    void writeSnapshot_writesIndexMatchingTheBlocks() throws Exception {
+        Path file = writeSample(2500);
+
+        SnapshotIndex index = SnapshotIndex.read(file);
+        assertNotNull(index);
+        SnapshotIndex.Block sales = index.block(Sale.class.getName());
+        assertEquals(2500, sales.objects());
+        assertEquals(3, sales.objectOffsets().length); // objects 0, 1024 and 2048
+
+        byte[] bytes = Files.readAllBytes(file);
+        assertEquals('{', bytes[(int) sales.start()]);
+        assertEquals('}', bytes[(int) sales.end() - 1]);
+        String second = new String(bytes, (int) sales.objectOffsets()[1], 40, StandardCharsets.UTF_8);
+        assertTrue(second.contains("\"number\":1024"), second);
+
+        SnapshotIndex scanned = SnapshotIndex.scan(file, SnapshotIndex.DEFAULT_STRIDE);
+        assertEquals(sales.start(), scanned.block(Sale.class.getName()).start());
+        assertArrayEquals(sales.objectOffsets(), scanned.block(Sale.class.getName()).objectOffsets());
+    }
+
+    @Test
+    void readClasses_loadsOnlyTheRequestedBlocks() throws Exception {
+        Path file = writeSample(50);
+        Sale.currency = "EUR";
+
+        FileIn.readClasses(file, List.of(MenuItem.class));
+
+        assertEquals(2, MenuItem.items.size());
+        assertEquals("Mocha", MenuItem.items.get(1).name);
+        assertTrue(Sale.sales.isEmpty());
+        assertEquals("EUR", Sale.currency, "static fields of other classes stay untouched");
+    }
+
+    @Test
+    void readClasses_withoutIndex_skipsOtherBlocks() throws Exception {
+        Path file = writeSample(50);
+        Files.delete(SnapshotIndex.pathFor(file));
+
+        FileIn.readClasses(file, List.of(MenuItem.class));
+
+        assertEquals(2, MenuItem.items.size());
+        assertTrue(Sale.sales.isEmpty());
+    }
+
+    @Test
+    void readObjects_seeksToTheRange() throws Exception {
+        Path file = writeSample(3000);
+
+        assertEquals(5, FileIn.readObjects(file, Sale.class, 2046, 5));
+
+        assertEquals(List.of(2046, 2047, 2048, 2049, 2050), Sale.sales.stream().map(s -> s.number).toList());
+        assertEquals(4, FileIn.readObjects(file, Sale.class, 2996, 10));
+        assertEquals(0, FileIn.readObjects(file, Sale.class, 3000, 1));
+    }
+
+    @Test
+    void staleIndex_isIgnored() throws Exception {
+        Path file = writeSample(10);
+        Files.writeString(file, "{\"models\":{}}");
+
+        assertNull(SnapshotIndex.read(file));
+        FileIn.readClasses(file, CLASSES);
+        assertTrue(Sale.sales.isEmpty());
+    }
+}
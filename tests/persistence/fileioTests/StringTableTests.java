@@ -0,0 +1,61 @@
+package persistence.fileio; // tests package-private classes, so it keeps their package
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StringTableTests {
+
+    private static JsonReader reader(String json, StringTable table) {
+        JsonReader reader = new JsonReader(JsonReader.streamSource(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+        reader.useStrings(table);
+        return reader;
+    }
+
+    @Test
+    void equalValues_shareOneInstance_namesIncluded() throws Exception {
+        StringTable table = new StringTable();
+        try (JsonReader reader = reader("[{\"city\":\"Gda\\u0144sk\"},{\"city\":\"Gdańsk\"},[\"apple\",\"apple\"]]", table)) {
+            List<?> doc = (List<?>) reader.readValue();
+            String first = (String) ((Map<?, ?>) doc.get(0)).get("city");
+            String second = (String) ((Map<?, ?>) doc.get(1)).get("city");
+            assertEquals("Gdańsk", first);
+            assertSame(first, second);
+            List<?> fruits = (List<?>) doc.get(2);
+            assertSame(fruits.get(0), fruits.get(1));
+            assertSame(((Map<?, ?>) doc.get(0)).keySet().iterator().next(),
+                    ((Map<?, ?>) doc.get(1)).keySet().iterator().next());
+        }
+        assertEquals(3, table.hits());
+    }
+
+    @Test
+    void longValues_areNotKept() {
+        StringTable table = new StringTable(16, 4);
+        byte[] note = "long note".getBytes(StandardCharsets.UTF_8);
+        String a = table.get(note, note.length);
+        String b = table.get(note, note.length);
+        assertEquals("long note", a);
+        assertNotSame(a, b);
+        assertEquals(0, table.hits() + table.misses());
+    }
+
+    @Test
+    void table_isBounded_newValuesReplaceOlderOnes() {
+        StringTable table = new StringTable(5, 64);
+        assertEquals(8, table.slots());
+        for (int i = 0; i < 1000; i++) {
+            byte[] b = ("value" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals("value" + i, table.get(b, b.length));
+        }
+        byte[] last = "value999".getBytes(StandardCharsets.UTF_8);
+        assertSame(table.get(last, last.length), table.get(last, last.length));
+        assertThrows(IllegalArgumentException.class, () -> new StringTable(0, 64));
+    }
+}
@@ -0,0 +1,238 @@
+package persistence.journalTests;
+
+import models.*;
+import models.aspects.HotDrink;
+import models.aspects.SugarSweetened;
+import models.utils.Drink_Size;
+import models.utils.EmployeeType;
+import models.utils.OrderQualifier;
+import models.utils.Status;
+import modelsTests.utilTests.TestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.ObjectIds;
+import persistence.fileio.FileOut;
+import persistence.fileio.SnapshotFormats;
+import persistence.journal.Journal;
+import persistence.journal.JournalRecord;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTests {
+
+    private static final List<Class<?>> CLASSES = List.of(Drink.class, Delivery.class, Order.class);
+
+    @TempDir
+    Path tmp;
+
+    private Journal journal;
+
+    @BeforeEach
+    void reset() {
+        clearModels();
+    }
+
+    @AfterEach
+    void closeJournal() throws Exception {
+        if (journal != null) journal.close();
+        clearModels();
+    }
+
+    private static void clearModels() {
+        TestUtils.resetObjectLists(Drink.class, Order.class, Order_Drink.class, Employee.class,
+                Delivery.class, OrderQualifier.class);
+        ObjectIds.clear();
+    }
+
+    @Test
+    void recover_loadsCheckpointSnapshot_andReplaysTail() throws Exception {
+        Drink latte = new Drink("Latte", 10.0, "milk");
+        Delivery delivery = new Delivery(LocalDateTime.now().minusHours(1), null, 50, Status.PENDING, null);
+        Path journalFile = tmp.resolve("store.journal");
+        journal = Journal.start(journalFile);
+        long mark = journal.mark();
+        journal.checkpoint(FileOut.writeSnapshot(tmp, "base", CLASSES, SnapshotFormats.BINARY), mark);
+
+        Order order = new Order(42L, LocalDateTime.now().minusMinutes(5), 2.0);
+        order.addDrink(latte, new HotDrink(), Set.of(new SugarSweetened()), Drink_Size.BIG, List.of("foam"));
+        delivery.setStatus(Status.ENROUTE);
+        journal.close();
+        journal = null;
+
+        clearModels();
+        Path loaded = Journal.recover(journalFile, CLASSES);
+
+        assertEquals(tmp.resolve("base.bsnap"), loaded);
+        assertEquals(1, Order.orders.size());
+        Order restored = Order.orders.get(0);
+        assertEquals(42L, restored.getOrderId());
+        assertEquals(1, restored.getDrinks().size());
+        assertEquals("Latte", restored.getDrinks().get(0).getDrink().getName());
+        assertEquals(10.0 + 4 + 1 + 0.5 + 2.0, restored.getTotalPrice(), 1e-9);
+        assertEquals(Status.ENROUTE, Delivery.deliveries.get(0).getStatus());
+    }
+
+    @Test
+    void checkpoint_keepsRecordsAppendedAfterTheMark() throws Exception {
+        Path journalFile = tmp.resolve("mark.journal");
+        LocalDateTime t = LocalDateTime.now().minusMinutes(1);
+        journal = Journal.start(journalFile);
+        new Order(1L, t, 0);
+        long mark = journal.mark();
+        Path snapshot = FileOut.writeSnapshot(tmp, "base", CLASSES, SnapshotFormats.BINARY);
+        new Order(2L, t, 0); // after the mark, so not in the snapshot
+        journal.sync();
+        journal.checkpoint(snapshot, mark);
+        assertThrows(IllegalArgumentException.class, () -> journal.checkpoint(snapshot, mark - 1));
+        new Order(3L, t, 0);
+        journal.close();
+        journal = null;
+
+        clearModels();
+        assertEquals(snapshot, Journal.recover(journalFile, CLASSES));
+
+        assertEquals(List.of(1L, 2L, 3L), Order.orders.stream().map(Order::getOrderId).toList());
+    }
+
+    @Test
+    void becameCashier_replaysOnRestoredEmployee() {
+        Employee anna = new Employee("Anna", "Nowak", "anna@corp", "99010112345", null);
+        ObjectIds.assign(anna, 5);
+
+        new JournalRecord.BecameCashier(5, true, "C9", 3.0).replay();
+
+        assertEquals(EmployeeType.CASHIER, anna.getType());
+    }
+
+    @Test
+    void recover_cutsTornTail_andKeepsIntactRecords() throws Exception {
+        Path journalFile = tmp.resolve("torn.journal");
+        journal = Journal.start(journalFile);
+        LocalDateTime t = LocalDateTime.now().minusMinutes(1);
+        journal.append(new JournalRecord.OrderCreated(1, 1L, t, 0));
+        journal.append(new JournalRecord.OrderCreated(2, 2L, t, 0));
+        journal.close();
+        journal = null;
+        long intact = Files.size(journalFile);
+        Files.write(journalFile, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertNull(Journal.recover(journalFile, CLASSES));
+
+        assertEquals(2, Order.orders.size());
+        assertSame(Order.orders.get(1), ObjectIds.find(2));
+        assertEquals(intact, Files.size(journalFile));
+    }
+
+    @Test
+    void recover_skipsRecordsThatNoLongerApply() throws Exception {
+        Path journalFile = tmp.resolve("stale.journal");
+        LocalDateTime t = LocalDateTime.now().minusMinutes(1);
+        journal = Journal.start(journalFile);
+        journal.append(new JournalRecord.OrderCreated(1, 7L, t, 1.5));
+        journal.append(new JournalRecord.OrderCreated(2, 7L, t, 0)); // duplicate orderId
+        journal.append(new JournalRecord.OrderCreated(3, 8L, t, 0));
+        journal.close();
+        journal = null;
+
+        Journal.recover(journalFile, CLASSES);
+
+        assertEquals(List.of(7L, 8L), Order.orders.stream().map(Order::getOrderId).toList());
+    }
+
+    @Test
+    void recover_skipsOnlyRecordsReferringToUnknownObjects() throws Exception {
+        Path journalFile = tmp.resolve("dangling.journal");
+        LocalDateTime t = LocalDateTime.now().minusMinutes(1);
+        journal = Journal.start(journalFile);
+        journal.append(new JournalRecord.OrderCreated(1, 7L, t, 1.5));
+        journal.append(new JournalRecord.DeliveryStatusChanged(99, Status.DELIVERED));
+        journal.append(new JournalRecord.OrderCreated(2, 8L, t, 0));
+        journal.close();
+        journal = null;
+
+        Journal.recover(journalFile, CLASSES);
+
+        assertEquals(List.of(7L, 8L), Order.orders.stream().map(Order::getOrderId).toList());
+        assertTrue(Delivery.deliveries.isEmpty());
+    }
+
+    @Test
+    void recover_recreatesModelsCreatedAfterTheCheckpoint() throws Exception {
+        Path journalFile = tmp.resolve("created.journal");
+        journal = Journal.start(journalFile);
+        journal.checkpoint(FileOut.writeSnapshot(tmp, "empty", CLASSES, SnapshotFormats.BINARY), journal.mark());
+
+        Drink mocha = new Drink("Mocha", 12.0, "milk");
+        Employee anna = new Employee("Anna", "Nowak", "anna@corp", "99010112345", null);
+        anna.becomeCashier(true, "C9", 3.0);
+        Delivery delivery = new Delivery(LocalDateTime.now().minusHours(1), null, 40, Status.PENDING, null);
+        delivery.setStatus(Status.ENROUTE);
+        Order order = new Order(42L, LocalDateTime.now().minusMinutes(5), 0);
+        order.addDrink(mocha, new HotDrink(), Set.of(), Drink_Size.SMALL, List.of());
+        journal.close();
+        journal = null;
+
+        clearModels();
+        Journal.recover(journalFile, CLASSES);
+
+        assertEquals("Mocha", Order.orders.get(0).getDrinks().get(0).getDrink().getName());
+        assertSame(Drink.drinks.get(0), Order.orders.get(0).getDrinks().get(0).getDrink());
+        assertEquals(EmployeeType.CASHIER, Employee.employees.get(0).getType());
+        assertEquals("anna@corp", Employee.employees.get(0).getEmail());
+        assertEquals(40, Delivery.deliveries.get(0).getCapacityKg(), 0);
+        assertEquals(Status.ENROUTE, Delivery.deliveries.get(0).getStatus());
+    }
+
+    @Test
+    void concurrentAppends_areAllDurableAfterSync() throws Exception {
+        Path journalFile = tmp.resolve("busy.journal");
+        journal = Journal.start(journalFile);
+        LocalDateTime t = LocalDateTime.now().minusMinutes(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            int base = w * 250;
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= 250; i++) {
+                    journal.append(new JournalRecord.OrderCreated(base + i, base + i, t, 0));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+        journal.sync();
+        journal.close();
+        journal = null;
+
+        Journal.recover(journalFile, CLASSES);
+
+        assertEquals(2000, Order.orders.size());
+        for (long id = 1; id <= 2000; id++) {
+            assertEquals(id, ((Order) ObjectIds.find(id)).getOrderId());
+        }
+    }
+
+    @Test
+    void modelsDoNotJournal_withoutActiveJournal() {
+        assertFalse(Journal.isActive());
+        new Order(1L, LocalDateTime.now().minusMinutes(1), 0);
+        assertEquals(0, ObjectIds.peek(Order.orders.get(0)));
+    }
+
+    @Test
+    void onlyOneJournalCanBeActive() throws Exception {
+        journal = Journal.start(tmp.resolve("a.journal"));
+        assertThrows(IllegalStateException.class, () -> Journal.start(tmp.resolve("b.journal")));
+        assertThrows(IllegalStateException.class, () -> Journal.recover(tmp.resolve("a.journal"), CLASSES));
+    }
+}
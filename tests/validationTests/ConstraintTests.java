@@ -0,0 +1,95 @@
+package validationTests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import persistence.ChangeTracker;
+import validation.Constraint;
+import validation.Multiplicity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConstraintTests {
+
+    static class Team {
+        final List<String> members = new ArrayList<>();
+        int budget = 10;
+    }
+
+    static final Multiplicity<Team> MEMBERS =
+            Multiplicity.of("Team has 1 to 2 members", Team.class, t -> t.members.size(), 1, 2);
+    static final Constraint<Team> BUDGET =
+            Constraint.define("Team budget is not negative", Team.class, t -> t.budget >= 0);
+
+    private final List<String> events = new ArrayList<>();
+    private final Constraint.Listener listener = new Constraint.Listener() {
+        @Override
+        public void violated(Constraint<?> constraint, Object o) {
+            events.add("violated " + constraint.name());
+        }
+
+        @Override
+        public void resolved(Constraint<?> constraint, Object o) {
+            events.add("resolved " + constraint.name());
+        }
+    };
+
+    @AfterEach
+    void removeListener() {
+        Constraint.removeListener(listener);
+    }
+
+    @Test
+    void update_reportsEachTransitionOnce() {
+        Constraint.addListener(listener);
+        Team t = new Team();
+        assertFalse(MEMBERS.update(t));
+        assertFalse(MEMBERS.update(t));
+        assertTrue(MEMBERS.isViolated(t));
+
+        t.members.add("ann");
+        assertTrue(MEMBERS.update(t));
+        t.members.add("bob");
+        assertTrue(MEMBERS.update(t));
+        t.members.add("cid");
+        assertFalse(MEMBERS.update(t));
+        assertEquals(3, MEMBERS.count(t));
+        assertFalse(MEMBERS.allows(3));
+
+        assertEquals(List.of("violated Team has 1 to 2 members", "resolved Team has 1 to 2 members",
+                "violated Team has 1 to 2 members"), events);
+        MEMBERS.forget(t);
+    }
+
+    @Test
+    void violators_areCheckedAgain_whenStateChangedWithoutUpdate() {
+        Team t = new Team();
+        t.budget = -1;
+        BUDGET.update(t);
+        assertTrue(Constraint.violations().stream().anyMatch(v -> v.object() == t && v.constraint() == BUDGET));
+
+        t.budget = 5; // no update
+        assertTrue(BUDGET.isViolated(t));
+        assertFalse(BUDGET.violators().contains(t));
+        assertFalse(BUDGET.isViolated(t));
+    }
+
+    @Test
+    void removedObjects_violateNothing() {
+        Constraint.addListener(listener);
+        Team t = new Team();
+        MEMBERS.update(t);
+        ChangeTracker.removed(t);
+        assertFalse(MEMBERS.isViolated(t));
+        assertFalse(MEMBERS.violators().contains(t));
+        assertEquals(List.of("violated Team has 1 to 2 members", "resolved Team has 1 to 2 members"), events);
+    }
+
+    @Test
+    void bounds_areChecked() {
+        assertThrows(IllegalArgumentException.class, () -> Multiplicity.of("bad", Team.class, t -> 0, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> Constraint.define(" ", Team.class, t -> true));
+    }
+}
@@ -0,0 +1,159 @@
+package validationTests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import validation.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrustedLoadTests {
+
+    @JsonSerializable
+    static class Badge implements Validatable {
+        @ObjectList
+        public static List<Badge> badges = new ArrayList<>();
+
+        @NotBlank
+        @Unique
+        String code;
+        List<String> holders = new ArrayList<>();
+
+        @JsonCtor
+        public Badge(String code) throws IllegalAccessException {
+            this.code = code;
+            if (!validate(this)) throw new ValidationException("Invalid data");
+            badges.add(this);
+        }
+
+        //a cross-object rule, like Facility.validate()
+        public void validate() {
+            if (holders.isEmpty()) throw new ValidationException("Badge must have a holder");
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    void reset() {
+        Badge.badges.clear();
+        ObjectIds.clear();
+    }
+
+    @AfterEach
+    void closeLoads() {
+        assertFalse(TrustedLoad.isOpen());
+    }
+
+    private static Badge badge(String code, String holder) throws Exception {
+        Badge b = new Badge(code);
+        if (holder != null) b.holders.add(holder);
+        return b;
+    }
+
+    @Test
+    void restoreConstructors_deferValidation_untilTheLoadValidates() throws Exception {
+        badge("A-1", null);
+        badge("X-1", null).code = " ";
+        badge("B-1", null);
+        badge("X-2", null).code = "b-1 ";
+        badge("C-1", null);
+        Path file = FileOut.writeSnapshot(tmp, "badges", List.of(Badge.class));
+        Badge.badges.clear();
+        ObjectIds.clear();
+
+        ValidationReport report;
+        try (TrustedLoad load = TrustedLoad.open()) {
+            FileIn.readJson(file, List.of(Badge.class));
+            assertEquals(5, load.pending());
+            assertEquals(5, Badge.badges.size());
+            for (int i = 0; i < 4; i++) Badge.badges.get(i).holders.add("holder-" + i);
+            report = load.validate(new ForkJoinPool(2));
+        }
+
+        List<Badge> restored = Badge.badges;
+        assertEquals(5, report.checked());
+        assertFalse(report.isValid());
+        List<ValidationReport.Violation> v = report.violations();
+        assertEquals(4, v.size());
+        assertSame(restored.get(1), v.get(0).object());
+        assertEquals("Field code is required (empty)", v.get(0).message());
+        assertSame(restored.get(2), v.get(1).object());
+        assertEquals("Field code must be unique", v.get(1).message());
+        assertSame(restored.get(3), v.get(2).object());
+        assertEquals("Field code must be unique", v.get(2).message());
+        assertSame(restored.get(4), v.get(3).object());
+        assertEquals("Badge must have a holder", v.get(3).message());
+        assertEquals(4, report.countByClass().get(Badge.class));
+    }
+
+    @Test
+    void constructorsOutsideARestore_areValidatedImmediately() throws Exception {
+        try (TrustedLoad load = TrustedLoad.open()) {
+            assertThrows(IllegalStateException.class, TrustedLoad::open);
+            badge("A-1", "ann");
+            assertThrows(ValidationException.class, () -> badge("a-1", "bob"));
+            assertEquals(0, load.pending());
+        }
+        assertThrows(ValidationException.class, () -> badge(" ", "cid"));
+        assertEquals(1, Badge.badges.size());
+    }
+
+    @Test
+    void validate_waitsForRestoresStillDeferring() throws Exception {
+        for (int i = 0; i < 20000; i++) badge("code-" + i, "ann");
+        Path file = FileOut.writeSnapshot(tmp, "badges", List.of(Badge.class));
+        Badge.badges.clear();
+        ObjectIds.clear();
+
+        ValidationReport report;
+        try (TrustedLoad load = TrustedLoad.open()) {
+            Thread reader = new Thread(() -> {
+                try {
+                    FileIn.readJson(file, List.of(Badge.class));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            reader.start();
+            while (load.pending() == 0 && reader.isAlive()) Thread.onSpinWait();
+            report = load.validate();
+            reader.join();
+            assertEquals(0, load.pending()); // nothing deferred after the load took its objects
+        }
+        //whatever the load did not take was validated by its constructor instead
+        assertTrue(report.checked() > 0);
+        assertTrue(report.checked() <= Badge.badges.size());
+    }
+
+    @Test
+    void restoredSnapshot_isValidatedAfterTheLoad() throws Exception {
+        for (int i = 0; i < 3000; i++) badge("code-" + i, null);
+        Path file = FileOut.writeSnapshot(tmp, "badges", List.of(Badge.class));
+        Badge.badges.clear();
+        ObjectIds.clear();
+
+        ValidationReport report;
+        try (TrustedLoad load = TrustedLoad.open()) {
+            FileIn.readJsonParallel(file, List.of(Badge.class));
+            report = load.validate();
+        }
+        assertEquals(3000, Badge.badges.size());
+        assertEquals(3000, report.checked());
+        assertEquals(3000, report.violations().size()); // none of them has a holder
+        assertTrue(report.violations().stream().allMatch(v -> v.message().equals("Badge must have a holder")));
+    }
+}
@@ -0,0 +1,112 @@
+package validationTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.ChangeTracker;
+import persistence.ObjectList;
+import validation.Unique;
+import validation.ValidationException;
+import validation.Validator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UniqueIndexTests {
+
+    static class Item {
+        @ObjectList
+        static List<Item> items = new ArrayList<>();
+
+        @Unique
+        String code;
+
+        Item(String code) {
+            this.code = code;
+        }
+
+        void setCode(String code) {
+            ChangeTracker.touch(this);
+            this.code = code;
+        }
+    }
+
+    @BeforeEach
+    void reset() {
+        Item.items.clear();
+    }
+
+    private static Item add(String code) throws Exception {
+        Item item = new Item(code);
+        Validator.validate(item);
+        Item.items.add(item);
+        ChangeTracker.created(item);
+        return item;
+    }
+
+    private static boolean taken(String code) throws Exception {
+        try {
+            return !Validator.validate(new Item(code));
+        } catch (ValidationException e) {
+            assertEquals("Field code must be unique", e.getMessage());
+            return true;
+        }
+    }
+
+    @Test
+    void value_isTaken_trimmedIgnoringCase() throws Exception {
+        add("Ab-1");
+        add("ÄÖ-2");
+        assertTrue(taken("  aB-1 "));
+        assertTrue(taken("äö-2"));
+        assertFalse(taken("Ab-3"));
+        assertFalse(taken(null));
+    }
+
+    @Test
+    void removedMember_freesItsValue() throws Exception {
+        Item first = add("A-1");
+        add("A-2");
+        add("A-3");
+        Item.items.remove(first);
+        ChangeTracker.removed(first);
+        assertFalse(taken("a-1"));
+        assertTrue(taken("A-2"));
+        assertTrue(taken("A-3"));
+    }
+
+    @Test
+    void touchedMember_isKeyedAgain_afterItsSetter() throws Exception {
+        Item first = add("A-1");
+        add("A-2");
+        assertTrue(taken("A-1"));
+        first.setCode("B-1");
+        assertFalse(taken("A-1"));
+        assertTrue(taken("b-1"));
+    }
+
+    @Test
+    void registryChangedDirectly_isIndexedAgain() throws Exception {
+        add("A-1");
+        add("A-2");
+        assertTrue(taken("A-1"));
+        Item.items.clear();
+        Item.items.add(new Item("C-1"));
+        Item.items.add(new Item("C-2"));
+        Item.items.add(new Item("C-3"));
+        assertFalse(taken("A-1"));
+        assertTrue(taken("C-2"));
+
+        Item.items.remove(1); // no ChangeTracker report
+        assertFalse(taken("C-2"));
+        assertTrue(taken("C-3"));
+    }
+
+    @Test
+    void manyMembers_stayUnique() throws Exception {
+        for (int i = 0; i < 20_000; i++) add("code-" + i);
+        assertTrue(taken("CODE-19999"));
+        assertFalse(taken("code-20000"));
+    }
+}
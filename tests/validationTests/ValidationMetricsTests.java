@@ -0,0 +1,137 @@
+package validationTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import persistence.JsonCtor;
+import persistence.JsonSerializable;
+import persistence.ObjectIds;
+import persistence.ObjectList;
+import persistence.fileio.FileIn;
+import persistence.fileio.FileOut;
+import validation.*;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/** The recording tests only run with -Dvalidation.metrics=true. */
+public class ValidationMetricsTests {
+
+    @JsonSerializable
+    static class Ticket implements Validatable {
+        @ObjectList
+        public static List<Ticket> tickets = new ArrayList<>();
+
+        @NotBlank
+        @Unique
+        String code;
+        @Range(min = 0)
+        int seats;
+
+        @JsonCtor
+        public Ticket(String code, int seats) throws IllegalAccessException {
+            this.code = code;
+            this.seats = seats;
+            if (!validate(this)) throw new ValidationException("Invalid data");
+            tickets.add(this);
+        }
+    }
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    void reset() {
+        Ticket.tickets.clear();
+        ObjectIds.clear();
+        ValidationMetrics.reset();
+    }
+
+    @Test
+    void disabled_recordsNothing() throws Exception {
+        assumeFalse(ValidationMetrics.ENABLED);
+        new Ticket("T-1", 2);
+        assertThrows(ValidationException.class, () -> new Ticket("T-2", -1));
+        ValidationMetrics.Snapshot snapshot = ValidationMetrics.snapshot();
+        assertFalse(snapshot.enabled());
+        assertNull(snapshot.of(Ticket.class));
+    }
+
+    @Test
+    void latency_percentiles_areBucketUpperBounds() {
+        long[] counts = new long[48];
+        counts[4] = 90;  // 8..15 ns
+        counts[10] = 10; // 512..1023 ns
+        ValidationMetrics.Latency latency = new ValidationMetrics.Latency(counts, 90 * 10 + 10 * 600);
+        assertEquals(100, latency.count());
+        assertEquals(69.0, latency.meanNanos());
+        assertEquals(15, latency.percentileNanos(50));
+        assertEquals(15, latency.percentileNanos(90));
+        assertEquals(1023, latency.percentileNanos(99));
+        assertEquals(0, new ValidationMetrics.Latency(new long[48], 0).percentileNanos(99));
+        assertThrows(IllegalArgumentException.class, () -> latency.percentileNanos(0));
+    }
+
+    @Test
+    void enabled_countsPerClassSourceAndRule() throws Exception {
+        assumeTrue(ValidationMetrics.ENABLED);
+        new Ticket("T-1", 2);
+        new Ticket("T-2", 3);
+        assertThrows(ValidationException.class, () -> new Ticket("t-1", 1));
+        assertThrows(ValidationException.class, () -> new Ticket("T-3", -1));
+
+        ValidationMetrics.ClassStats stats = ValidationMetrics.snapshot().of(Ticket.class);
+        assertEquals(4, stats.invocations());
+        assertEquals(2, stats.failures());
+        ValidationMetrics.RuleStats constructor = stats.bySource().get(ValidationMetrics.Source.CONSTRUCTOR);
+        assertEquals(4, constructor.invocations());
+        assertEquals(4, constructor.latency().count());
+        assertEquals(4, stats.rule("code @NotBlank").invocations());
+        assertEquals(4, stats.rule("code @Unique").invocations());
+        assertEquals(1, stats.rule("code @Unique").failures());
+        assertEquals(3, stats.rule("seats @Range").invocations());
+        assertEquals(1, stats.rule("seats @Range").failures());
+    }
+
+    @Test
+    void enabled_separatesRestoresAndTrustedLoads() throws Exception {
+        assumeTrue(ValidationMetrics.ENABLED);
+        for (int i = 0; i < 10; i++) new Ticket("T-" + i, i);
+        Path file = FileOut.writeSnapshot(tmp, "tickets", List.of(Ticket.class));
+
+        Ticket.tickets.clear();
+        FileIn.readJson(file, List.of(Ticket.class));
+        Ticket.tickets.clear();
+        try (TrustedLoad load = TrustedLoad.open()) {
+            FileIn.readJson(file, List.of(Ticket.class));
+            assertTrue(load.validate().isValid());
+        }
+
+        ValidationMetrics.ClassStats stats = ValidationMetrics.snapshot().of(Ticket.class);
+        assertEquals(10, stats.bySource().get(ValidationMetrics.Source.CONSTRUCTOR).invocations());
+        assertEquals(10, stats.bySource().get(ValidationMetrics.Source.RESTORE).invocations());
+        assertEquals(10, stats.bySource().get(ValidationMetrics.Source.DEFERRED).invocations());
+        assertEquals(30, stats.rule("code @Unique").invocations());
+    }
+
+    @Test
+    void enabled_publishesTheMXBean() throws Exception {
+        assumeTrue(ValidationMetrics.ENABLED);
+        new Ticket("T-1", 2);
+        assertThrows(ValidationException.class, () -> new Ticket("", 2));
+        ObjectName name = new ObjectName(ValidationMetrics.OBJECT_NAME);
+        var server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(name));
+        assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+        assertTrue((Long) server.getAttribute(name, "Failures") >= 1);
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, ValidationMetrics.snapshot().of(Ticket.class).invocations());
+    }
+}
@@ -0,0 +1,144 @@
+package validationTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import persistence.ObjectList;
+import validation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidationPlanTests {
+
+    static class Base {
+        @NotNull
+        String inherited; // only the fields the object's own class declares are checked
+    }
+
+    static class Sample extends Base {
+        @ObjectList
+        static List<Sample> all = new ArrayList<>();
+
+        @NotNull
+        @Unique
+        String code = "A-1";
+        @NotBlank
+        String name = "Tea";
+        @NotFuture
+        LocalDateTime when = LocalDateTime.now().minusDays(1);
+        @NotFuture
+        LocalDate day;
+        @Range(min = 0, max = 10)
+        int count = 1;
+        @Range(min = 0)
+        double price = 2.5;
+        @Range(min = 1)
+        long id = 1;
+        @Range(min = 0)
+        Double score = 1.0;
+        @NotEmpty
+        List<String> tags = List.of("hot");
+        @NotEmpty
+        int[] sizes = {1};
+        @Derived
+        double cost;
+        @Derived
+        char mark;
+    }
+
+    static class DerivedObject {
+        @Derived
+        String label;
+    }
+
+    @BeforeEach
+    void reset() {
+        Sample.all.clear();
+    }
+
+    private static String failure(Sample s) {
+        return assertThrows(ValidationException.class, () -> Validator.validate(s)).getMessage();
+    }
+
+    @Test
+    void validSample_passes_andCompilesOneRulePerAnnotation() throws Exception {
+        assertTrue(Validator.validate(new Sample()));
+        assertEquals(13, ValidationPlan.of(Sample.class).size());
+        assertEquals(0, ValidationPlan.of(String.class).size());
+    }
+
+    @Test
+    void eachRule_failsWithValidatorsMessage() {
+        Sample s = new Sample();
+        s.code = null;
+        assertEquals("Field code is required", failure(s));
+
+        s = new Sample();
+        s.name = "  ";
+        assertEquals("Field name is required (empty)", failure(s));
+        s.name = null;
+        assertEquals("Field name is required (null)", failure(s));
+
+        s = new Sample();
+        s.when = LocalDateTime.now().plusDays(1);
+        assertEquals("Field when has to be before now", failure(s));
+        s.when = null;
+        s.day = LocalDate.now().plusDays(1);
+        assertEquals("Field day has to be before now", failure(s));
+
+        s = new Sample();
+        s.count = 11;
+        assertEquals("Field count is out of range", failure(s));
+        s = new Sample();
+        s.price = -0.01;
+        assertEquals("Field price is out of range", failure(s));
+        s = new Sample();
+        s.id = 0;
+        assertEquals("Field id is out of range", failure(s));
+        s = new Sample();
+        s.score = null;
+        assertEquals("Field score is required", failure(s));
+
+        s = new Sample();
+        s.tags = List.of();
+        assertEquals("Field tags must not be empty", failure(s));
+        s.tags = null;
+        assertEquals("Field tags must not be null or empty", failure(s));
+        s = new Sample();
+        s.sizes = new int[0];
+        assertEquals("Field sizes must not be empty", failure(s));
+
+        s = new Sample();
+        s.cost = 0.5;
+        assertEquals("Field cost must be derived", failure(s));
+        s = new Sample();
+        s.mark = 'x';
+        assertEquals("Field mark must be derived", failure(s));
+
+        assertEquals("Field label must be derived",
+                assertThrows(ValidationException.class, () -> Validator.validate(new DerivedObject())).getMessage());
+    }
+
+    @Test
+    void unique_comparesTrimmedIgnoringCase_withTheRegistry() throws Exception {
+        Sample first = new Sample();
+        Sample.all.add(first);
+        Sample second = new Sample();
+        second.code = "  a-1 ";
+        assertEquals("Field code must be unique", failure(second));
+        second.code = "A-2";
+        assertTrue(Validator.validate(second));
+    }
+
+    @Test
+    void firstBrokenRule_wins_inFieldOrder() {
+        Sample s = new Sample();
+        s.name = "";
+        s.count = -1;
+        assertEquals("Field name is required (empty)", failure(s));
+    }
+}